@@ -0,0 +1,112 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.r3d.d.Camera_d;
+import uk.ac.leeds.ccg.r3d.d.Universe_d;
+import uk.ac.leeds.ccg.r3d.io.IO;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * For benchmarking {@link IO#imageToFile(java.awt.Image, String, Path)} for
+ * a rendered image.
+ *
+ * @author Andy Turner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageToFileBenchmark {
+
+    /**
+     * The image format.
+     */
+    @Param({"png"})
+    public String format;
+
+    /**
+     * The number of rows and columns of pixels.
+     */
+    @Param({"256", "1024"})
+    public int resolution;
+
+    BufferedImage image;
+
+    Path path;
+
+    /**
+     * Create a new instance.
+     */
+    public ImageToFileBenchmark() {
+    }
+
+    /**
+     * Set up by rendering the Utah teapot.
+     *
+     * @throws Exception If the mesh cannot be read or rendered.
+     */
+    @Setup
+    public void setup() throws Exception {
+        V3D_Environment_d env = new V3D_Environment_d();
+        Universe_d u = Scenes.getUniverse(env, "Utah_teapot_(solid)");
+        Camera_d camera = Scenes.setCamera(u, resolution);
+        int[] pix = camera.render(u,
+                new V3D_Vector_d(-1, -2, -3).getUnitVector(), 1d / 20d,
+                false, false, 1, Scenes.EPSILON);
+        image = new BufferedImage(resolution, resolution,
+                BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, resolution, resolution, pix, 0, resolution);
+        path = Files.createTempFile("ccg-r3d-benchmarks", "." + format);
+    }
+
+    /**
+     * Tear down.
+     *
+     * @throws Exception If the file cannot be deleted.
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Write the image.
+     */
+    @Benchmark
+    public void imageToFile() {
+        IO.imageToFile(image, format, path);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.leeds.ccg.r3d.d.Universe_d;
+import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * For benchmarking {@link Area_d#setLighting(V3D_Point_d, V3D_Vector_d,
+ * double, double)} over all the areas of a universe as done before rendering.
+ *
+ * @author Andy Turner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LightingBenchmark {
+
+    /**
+     * The name of the mesh (see {@link Scenes#getSTL(String)}).
+     */
+    @Param({"Icosahedron", "Utah_teapot_(solid)", "sphere_1000",
+        "sphere_10000", "sphere_100000", "sphere_1000000"})
+    public String mesh;
+
+    Universe_d universe;
+
+    V3D_Point_d centroid;
+
+    V3D_Vector_d lighting;
+
+    /**
+     * Create a new instance.
+     */
+    public LightingBenchmark() {
+    }
+
+    /**
+     * Set up.
+     *
+     * @throws Exception If the mesh cannot be read.
+     */
+    @Setup
+    public void setup() throws Exception {
+        V3D_Environment_d env = new V3D_Environment_d();
+        universe = Scenes.getUniverse(env, mesh);
+        centroid = universe.aabb.getCentroid();
+        lighting = new V3D_Vector_d(-1, -2, -3).getUnitVector();
+    }
+
+    /**
+     * @param bh For consuming the lightness of each area.
+     */
+    @Benchmark
+    public void setLighting(Blackhole bh) {
+        for (Area_d a : universe.areas) {
+            a.setLighting(centroid, lighting, 1d / 20d, Scenes.EPSILON);
+            bh.consume(a.lightingColor);
+        }
+    }
+}
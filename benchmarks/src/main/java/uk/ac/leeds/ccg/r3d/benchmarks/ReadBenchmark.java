@@ -0,0 +1,118 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.benchmarks;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.r3d.d.Mesh_d;
+import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
+import uk.ac.leeds.ccg.r3d.io.d.STL_Reader_d;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * For benchmarking {@link STL_Reader_d#readBinary(Path, V3D_Vector_d, double,
+ * boolean, int)} and {@link STL_Reader_d#readMesh(Path, V3D_Vector_d, double,
+ * boolean)}.
+ *
+ * @author Andy Turner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+    /**
+     * The name of the mesh (see {@link Scenes#getSTL(String)}).
+     */
+    @Param({"Tetrahedron", "Cube", "Octahedron", "Dodecahedron",
+        "Icosahedron", "Utah_teapot_(solid)", "sphere_1000", "sphere_10000",
+        "sphere_100000", "sphere_1000000", "soup_100000", "terrain_100000",
+        "buildings_100000"})
+    public String mesh;
+
+    /**
+     * Whether to assess the topology while reading.
+     */
+    @Param({"false", "true"})
+    public boolean assessTopology;
+
+    /**
+     * The number of threads to decode triangles with.
+     */
+    @Param({"1", "4"})
+    public int parallelism;
+
+    V3D_Environment_d env;
+
+    Path path;
+
+    /**
+     * Create a new instance.
+     */
+    public ReadBenchmark() {
+    }
+
+    /**
+     * Set up.
+     *
+     * @throws Exception If the mesh cannot be found or written.
+     */
+    @Setup
+    public void setup() throws Exception {
+        env = new V3D_Environment_d();
+        path = Scenes.getSTL(mesh);
+    }
+
+    /**
+     * @return The triangles read.
+     * @throws Exception If the mesh cannot be read.
+     */
+    @Benchmark
+    public List<Area_d> readBinary() throws Exception {
+        STL_Reader_d reader = new STL_Reader_d(env, assessTopology);
+        reader.readBinary(path, V3D_Vector_d.ZERO, 1d, false, parallelism);
+        return reader.triangles;
+    }
+
+    /**
+     * Read the mesh with its vertices welded. This does not depend on
+     * {@link #assessTopology} or {@link #parallelism}.
+     *
+     * @return The mesh read.
+     * @throws Exception If the mesh cannot be read.
+     */
+    @Benchmark
+    public Mesh_d readMesh() throws Exception {
+        STL_Reader_d reader = new STL_Reader_d(env, false);
+        return reader.readMesh(path, V3D_Vector_d.ZERO, 1d, false);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.benchmarks;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.r3d.d.Camera_d;
+import uk.ac.leeds.ccg.r3d.d.FrameBuffer_d;
+import uk.ac.leeds.ccg.r3d.d.Universe_d;
+import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
+import uk.ac.leeds.ccg.r3d.d.entities.Point_d;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_LineSegment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * For benchmarking {@link Camera_d#render(Universe_d, V3D_Vector_d, double,
+ * boolean, boolean, int, double)} for a mesh of areas, for the edges of the
+ * mesh as lines and for the vertices of the mesh as points. The render does
+ * not draw the points of a universe, so these are drawn with
+ * {@link Camera_d#renderPoint(double, FrameBuffer_d, Point_d, int[])} as they
+ * would be by an application.
+ *
+ * @author Andy Turner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+    /**
+     * What is rendered: "areas", "lines" or "points".
+     */
+    @Param({"areas", "lines", "points"})
+    public String geometry;
+
+    /**
+     * The name of the mesh (see {@link Scenes#getSTL(String)}).
+     */
+    @Param({"Icosahedron", "Utah_teapot_(solid)", "sphere_1000",
+        "sphere_10000", "sphere_100000", "sphere_1000000", "terrain_100000",
+        "buildings_100000"})
+    public String mesh;
+
+    /**
+     * The engine used to render areas (see {@link Camera_d.Engine}).
+     */
+    @Param({"AREA"})
+    public String engine;
+
+    /**
+     * The number of rows and columns of pixels.
+     */
+    @Param({"256"})
+    public int resolution;
+
+    /**
+     * The number of threads to use.
+     */
+    @Param({"1"})
+    public int parallelism;
+
+    Universe_d universe;
+
+    Camera_d camera;
+
+    V3D_Vector_d lighting;
+
+    /**
+     * Create a new instance.
+     */
+    public RenderBenchmark() {
+    }
+
+    /**
+     * Set up.
+     *
+     * @throws Exception If the mesh cannot be read.
+     */
+    @Setup
+    public void setup() throws Exception {
+        V3D_Environment_d env = new V3D_Environment_d();
+        Universe_d u = Scenes.getUniverse(env, mesh);
+        switch (geometry) {
+            case "areas" ->
+                universe = u;
+            case "lines" -> {
+                universe = new Universe_d(env, V3D_Vector_d.ZERO,
+                        Scenes.EPSILON);
+                for (Area_d a : u.areas) {
+                    V3D_Point_d[] pts = a.getPointsArray();
+                    for (int i = 0; i < pts.length; i++) {
+                        universe.addLine(new V3D_LineSegment_d(pts[i],
+                                pts[(i + 1) % pts.length]), Color.YELLOW);
+                    }
+                }
+            }
+            case "points" -> {
+                universe = new Universe_d(env, V3D_Vector_d.ZERO,
+                        Scenes.EPSILON);
+                for (Area_d a : u.areas) {
+                    for (V3D_Point_d p : a.getPointsArray()) {
+                        universe.addPoint(p).color = Color.YELLOW;
+                    }
+                }
+            }
+            default ->
+                throw new IllegalArgumentException(geometry);
+        }
+        // Frame each the same way whatever the geometry.
+        universe.aabb = u.aabb;
+        camera = Scenes.setCamera(universe, resolution);
+        camera.engine = Camera_d.Engine.valueOf(engine);
+        lighting = new V3D_Vector_d(-1, -2, -3).getUnitVector();
+        // Rendering once up front builds anything that is cached.
+        render();
+    }
+
+    /**
+     * @return The image map.
+     * @throws Exception If the render fails.
+     */
+    @Benchmark
+    public int[] render() throws Exception {
+        if (geometry.equals("points")) {
+            int[] pix = new int[resolution * resolution];
+            FrameBuffer_d fb = new FrameBuffer_d(resolution, resolution);
+            for (Point_d p : universe.points) {
+                camera.renderPoint(Scenes.EPSILON, fb, p, pix);
+            }
+            return pix;
+        }
+        return camera.render(universe, lighting, 1d / 20d, false, false,
+                parallelism, Scenes.EPSILON);
+    }
+}
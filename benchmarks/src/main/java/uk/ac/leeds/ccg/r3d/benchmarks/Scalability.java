@@ -0,0 +1,435 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import ch.obermuhlner.math.big.BigRational;
+import uk.ac.leeds.ccg.r3d.Camera;
+import uk.ac.leeds.ccg.r3d.Universe;
+import uk.ac.leeds.ccg.r3d.d.Camera_d;
+import uk.ac.leeds.ccg.r3d.d.Universe_d;
+import uk.ac.leeds.ccg.v3d.core.V3D_Environment;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_Vector;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * For measuring how whole render jobs scale. Each job reads a mesh into a
+ * universe, sets a camera and renders an image as done in
+ * {@link uk.ac.leeds.ccg.r3d.d.RenderImage_d} (or
+ * {@link uk.ac.leeds.ccg.r3d.RenderImage} for BigRational precision). Jobs are
+ * run for each combination of mesh, resolution, number of threads and
+ * precision and a row of results is written for each run to a CSV file and a
+ * JSON file. The results are the times taken to load and to render, the
+ * triangles and pixels rendered per second, the peak heap used, and the time
+ * spent in and number of garbage collections.
+ *
+ * The matrix is set with system properties (comma separated where there can
+ * be more than one value):
+ * <ul>
+ * <li>{@code r3d.meshes} - the meshes (see {@link Scenes#getSTL(String)}),
+ * default {@code Icosahedron,Utah_teapot_(solid),sphere_1000,sphere_10000,
+ * sphere_100000,sphere_1000000};</li>
+ * <li>{@code r3d.resolutions} - the number of rows and columns of pixels,
+ * default {@code 64,256,1024};</li>
+ * <li>{@code r3d.threads} - the numbers of threads, default 1 and the number
+ * of available processors;</li>
+ * <li>{@code r3d.precisions} - {@code double} and/or {@code BigRational},
+ * default both;</li>
+ * <li>{@code r3d.oom} - the Order of Magnitude for the precision of
+ * BigRational jobs, default -6;</li>
+ * <li>{@code r3d.maxBigRationalWork} - BigRational jobs with more than this
+ * number of triangles multiplied by pixels are skipped as they would take
+ * hours, default 200000;</li>
+ * <li>{@code r3d.warmups} - the number of runs of each job before those
+ * recorded, default 1;</li>
+ * <li>{@code r3d.repeats} - the number of runs of each job recorded, default
+ * 3;</li>
+ * <li>{@code r3d.out} - the path of the output files without the
+ * {@code .csv} and {@code .json} extensions, default {@code scalability}.</li>
+ * </ul>
+ * BigRational rendering is single threaded so BigRational jobs are only run
+ * for 1 thread. For peak heap figures that are comparable between jobs, run
+ * with a fixed heap size (e.g. {@code -Xms4g -Xmx4g}).
+ *
+ * @author Andy Turner
+ */
+public class Scalability {
+
+    /**
+     * The header of the CSV file.
+     */
+    public static final String HEADER = "precision,mesh,triangles,resolution,"
+            + "pixels,threads,repeat,loadMs,renderMs,wallMs,trianglesPerSecond,"
+            + "pixelsPerSecond,peakHeapBytes,gcMs,gcCount";
+
+    /**
+     * The results of a run.
+     */
+    public static class Result {
+
+        /**
+         * "double" or "BigRational".
+         */
+        public String precision;
+
+        /**
+         * The name of the mesh.
+         */
+        public String mesh;
+
+        /**
+         * The number of triangles.
+         */
+        public int triangles;
+
+        /**
+         * The number of rows and columns of pixels.
+         */
+        public int resolution;
+
+        /**
+         * The number of threads.
+         */
+        public int threads;
+
+        /**
+         * The index of the run.
+         */
+        public int repeat;
+
+        /**
+         * The time taken to read the mesh and construct the universe in
+         * nanoseconds.
+         */
+        public long loadNanos;
+
+        /**
+         * The time taken to render in nanoseconds.
+         */
+        public long renderNanos;
+
+        /**
+         * The peak heap used in bytes. This is the sum of the peaks of each
+         * heap memory pool, so it may be a little more than the actual peak.
+         */
+        public long peakHeap;
+
+        /**
+         * The time spent in garbage collection in milliseconds.
+         */
+        public long gcMillis;
+
+        /**
+         * The number of garbage collections.
+         */
+        public long gcCount;
+
+        /**
+         * Create a new instance.
+         */
+        public Result() {
+        }
+
+        /**
+         * @return The number of pixels.
+         */
+        public long getPixels() {
+            return (long) resolution * resolution;
+        }
+
+        /**
+         * @return The triangles rendered per second.
+         */
+        public double getTrianglesPerSecond() {
+            return triangles * 1e9d / renderNanos;
+        }
+
+        /**
+         * @return The pixels rendered per second.
+         */
+        public double getPixelsPerSecond() {
+            return getPixels() * 1e9d / renderNanos;
+        }
+
+        /**
+         * @return The values of the fields of {@link #HEADER}.
+         */
+        public Object[] getValues() {
+            return new Object[]{precision, mesh, triangles, resolution,
+                getPixels(), threads, repeat, loadNanos / 1e6d,
+                renderNanos / 1e6d, (loadNanos + renderNanos) / 1e6d,
+                getTrianglesPerSecond(), getPixelsPerSecond(), peakHeap,
+                gcMillis, gcCount};
+        }
+    }
+
+    /**
+     * The results so far.
+     */
+    public final List<Result> results = new ArrayList<>();
+
+    /**
+     * Create a new instance.
+     */
+    public Scalability() {
+    }
+
+    /**
+     * Run the jobs set by the system properties.
+     *
+     * @param args Ignored.
+     * @throws Exception If a job fails.
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> meshes = getList("r3d.meshes", "Icosahedron,"
+                + "Utah_teapot_(solid),sphere_1000,sphere_10000,sphere_100000,"
+                + "sphere_1000000");
+        List<String> resolutions = getList("r3d.resolutions", "64,256,1024");
+        int np = Runtime.getRuntime().availableProcessors();
+        List<String> threads = getList("r3d.threads",
+                np == 1 ? "1" : "1," + np);
+        List<String> precisions = getList("r3d.precisions",
+                "double,BigRational");
+        int oom = Integer.getInteger("r3d.oom", -6);
+        long maxBigRationalWork = Long.getLong("r3d.maxBigRationalWork",
+                200000L);
+        int warmups = Integer.getInteger("r3d.warmups", 1);
+        int repeats = Integer.getInteger("r3d.repeats", 3);
+        String out = System.getProperty("r3d.out", "scalability");
+        Path csv = Paths.get(out + ".csv");
+        Path json = Paths.get(out + ".json");
+        Scalability s = new Scalability();
+        for (String precision : precisions) {
+            boolean big = precision.equalsIgnoreCase("BigRational");
+            for (String mesh : meshes) {
+                for (String resolution : resolutions) {
+                    int n = Integer.parseInt(resolution);
+                    for (String thread : threads) {
+                        int t = Integer.parseInt(thread);
+                        if (big && t != 1) {
+                            continue;
+                        }
+                        for (int r = -warmups; r < repeats; r++) {
+                            Result x;
+                            if (big) {
+                                x = s.runBigRational(mesh, n, oom,
+                                        RoundingMode.HALF_UP,
+                                        maxBigRationalWork);
+                                if (x == null) {
+                                    System.out.println("Skip BigRational "
+                                            + mesh + " " + n);
+                                    break;
+                                }
+                            } else {
+                                x = s.run(mesh, n, t);
+                            }
+                            if (r >= 0) {
+                                x.repeat = r;
+                                s.results.add(x);
+                                System.out.println(toCSV(x.getValues()));
+                                s.write(csv, json);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a job with double precision.
+     *
+     * @param mesh The name of the mesh.
+     * @param n The number of rows and columns of pixels.
+     * @param threads The number of threads.
+     * @return The result.
+     * @throws Exception If the job fails.
+     */
+    public Result run(String mesh, int n, int threads) throws Exception {
+        Result x = new Result();
+        x.precision = "double";
+        x.mesh = mesh;
+        x.resolution = n;
+        x.threads = threads;
+        Scenes.getSTL(mesh);
+        Monitor m = new Monitor();
+        long t0 = System.nanoTime();
+        V3D_Environment_d env = new V3D_Environment_d();
+        Universe_d u = Scenes.getUniverse(env, mesh);
+        long t1 = System.nanoTime();
+        Camera_d camera = Scenes.setCamera(u, n);
+        camera.render(u, new V3D_Vector_d(-1, -2, -3).getUnitVector(),
+                1d / 20d, false, false, threads, Scenes.EPSILON);
+        long t2 = System.nanoTime();
+        x.triangles = u.areas.size();
+        x.loadNanos = t1 - t0;
+        x.renderNanos = t2 - t1;
+        m.set(x);
+        return x;
+    }
+
+    /**
+     * Run a job with BigRational precision.
+     *
+     * @param mesh The name of the mesh.
+     * @param n The number of rows and columns of pixels.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @param maxWork If the number of triangles multiplied by the number of
+     * pixels is greater than this, the job is not run.
+     * @return The result or null if the job is not run.
+     * @throws Exception If the job fails.
+     */
+    public Result runBigRational(String mesh, int n, int oom, RoundingMode rm,
+            long maxWork) throws Exception {
+        Result x = new Result();
+        x.precision = "BigRational";
+        x.mesh = mesh;
+        x.resolution = n;
+        x.threads = 1;
+        x.triangles = Scenes.getNumberOfTriangles(Scenes.getSTL(mesh));
+        if ((long) x.triangles * x.getPixels() > maxWork) {
+            return null;
+        }
+        Monitor m = new Monitor();
+        long t0 = System.nanoTime();
+        V3D_Environment env = new V3D_Environment(oom, rm);
+        Universe u = Scenes.getUniverse(env, mesh, oom, rm);
+        long t1 = System.nanoTime();
+        Camera camera = Scenes.setCamera(u, n, oom, rm);
+        camera.render(u, new V3D_Vector(-1, -2, -3).getUnitVector(oom, rm),
+                BigRational.valueOf(1, 20), false, false, oom, rm);
+        long t2 = System.nanoTime();
+        x.loadNanos = t1 - t0;
+        x.renderNanos = t2 - t1;
+        m.set(x);
+        return x;
+    }
+
+    /**
+     * Write all the results.
+     *
+     * @param csv The CSV file to write.
+     * @param json The JSON file to write.
+     * @throws IOException If a file cannot be written.
+     */
+    public void write(Path csv, Path json) throws IOException {
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(csv))) {
+            pw.println(HEADER);
+            for (Result x : results) {
+                pw.println(toCSV(x.getValues()));
+            }
+        }
+        String[] names = HEADER.split(",");
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(json))) {
+            pw.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                Object[] values = results.get(i).getValues();
+                StringBuilder sb = new StringBuilder("  {");
+                for (int j = 0; j < names.length; j++) {
+                    if (j > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append('"').append(names[j]).append("\": ");
+                    if (values[j] instanceof String v) {
+                        sb.append('"').append(v).append('"');
+                    } else {
+                        sb.append(values[j]);
+                    }
+                }
+                sb.append(i < results.size() - 1 ? "}," : "}");
+                pw.println(sb);
+            }
+            pw.println("]");
+        }
+    }
+
+    private static String toCSV(Object[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < values.length; j++) {
+            if (j > 0) {
+                sb.append(',');
+            }
+            sb.append(values[j]);
+        }
+        return sb.toString();
+    }
+
+    private static List<String> getList(String key, String def) {
+        return Arrays.asList(System.getProperty(key, def).split(","));
+    }
+
+    /**
+     * For measuring the peak heap used and the garbage collections over a
+     * run. The heap is collected and the peaks are reset on construction.
+     */
+    static class Monitor {
+
+        final List<MemoryPoolMXBean> pools = new ArrayList<>();
+
+        final List<GarbageCollectorMXBean> gcs
+                = ManagementFactory.getGarbageCollectorMXBeans();
+
+        long gcMillis;
+
+        long gcCount;
+
+        Monitor() {
+            System.gc();
+            for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (p.getType() == MemoryType.HEAP && p.isValid()) {
+                    p.resetPeakUsage();
+                    pools.add(p);
+                }
+            }
+            for (GarbageCollectorMXBean gc : gcs) {
+                gcMillis -= Math.max(0L, gc.getCollectionTime());
+                gcCount -= Math.max(0L, gc.getCollectionCount());
+            }
+        }
+
+        /**
+         * Set the peak heap and garbage collection fields of x.
+         *
+         * @param x The result to set.
+         */
+        void set(Result x) {
+            x.peakHeap = 0L;
+            for (MemoryPoolMXBean p : pools) {
+                x.peakHeap += p.getPeakUsage().getUsed();
+            }
+            x.gcMillis = gcMillis;
+            x.gcCount = gcCount;
+            for (GarbageCollectorMXBean gc : gcs) {
+                x.gcMillis += Math.max(0L, gc.getCollectionTime());
+                x.gcCount += Math.max(0L, gc.getCollectionCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.benchmarks;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import uk.ac.leeds.ccg.r3d.Camera;
+import uk.ac.leeds.ccg.r3d.SceneGenerator;
+import uk.ac.leeds.ccg.r3d.Universe;
+import uk.ac.leeds.ccg.r3d.d.Camera_d;
+import uk.ac.leeds.ccg.r3d.d.Universe_d;
+import uk.ac.leeds.ccg.v3d.core.V3D_Environment;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_AABB;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_Point;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_Rectangle;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_Vector;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Rectangle_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * The meshes and camera set up shared by the benchmarks.
+ *
+ * A mesh is named either after a bundled STL file (one of the Platonic solids
+ * "Tetrahedron", "Cube", "Octahedron", "Dodecahedron", "Icosahedron" or the
+ * "Utah_teapot_(solid)") or is the name of a scene generated by a
+ * {@link SceneGenerator} (see {@link SceneGenerator#parse(String)}), such as
+ * "sphere_1000" for a sphere of about 1000 triangles. Generated scenes are
+ * written to binary STL files in the temporary directory the first time they
+ * are needed. The bundled files are looked for in the directory given by the
+ * system property {@code r3d.data}, which defaults to {@code ../data/input}
+ * (the data directory of ccg-r3d when run from the benchmarks directory).
+ *
+ * @author Andy Turner
+ */
+public class Scenes {
+
+    /**
+     * The tolerance within which vector components are regarded as equal.
+     */
+    public static final double EPSILON = 1d / 10000000d;
+
+    /**
+     * Create a new instance.
+     */
+    public Scenes() {
+    }
+
+    /**
+     * @return The directory with the bundled input data.
+     */
+    public static Path getInputDir() {
+        return Paths.get(System.getProperty("r3d.data",
+                Paths.get("..", "data", "input").toString()));
+    }
+
+    /**
+     * Get the path of a binary STL file for a mesh.
+     *
+     * @param mesh The name of the mesh.
+     * @return The path.
+     * @throws IOException If a synthetic mesh cannot be written.
+     */
+    public static Path getSTL(String mesh) throws IOException {
+        if (isGenerated(mesh)) {
+            Path p = Paths.get(System.getProperty("java.io.tmpdir"),
+                    "ccg-r3d-benchmarks", mesh + ".stl");
+            if (!Files.exists(p)) {
+                Files.createDirectories(p.getParent());
+                SceneGenerator.parse(mesh).writeBinary(p);
+            }
+            return p;
+        }
+        if (mesh.equals("Utah_teapot_(solid)")) {
+            return Paths.get(getInputDir().toString(), mesh, mesh + ".stl");
+        }
+        return Paths.get(getInputDir().toString(),
+                "3361664_Platonic_Solid_Collection", "files", mesh + ".stl");
+    }
+
+    /**
+     * @param mesh The name of the mesh.
+     * @return true if the mesh is generated by a {@link SceneGenerator}.
+     */
+    public static boolean isGenerated(String mesh) {
+        int i = mesh.indexOf('_');
+        if (i < 0) {
+            return false;
+        }
+        for (SceneGenerator.Scene s : SceneGenerator.Scene.values()) {
+            if (s.name().equalsIgnoreCase(mesh.substring(0, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param p The path of a binary STL file.
+     * @return The number of triangles in the file as given in its header.
+     * @throws IOException If the file cannot be read.
+     */
+    public static int getNumberOfTriangles(Path p) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            while (b.hasRemaining()) {
+                if (fc.read(b, 80 + b.position()) < 0) {
+                    throw new IOException("Truncated STL file " + p);
+                }
+            }
+        }
+        return b.getInt(0);
+    }
+
+    /**
+     * Read a mesh into a new universe.
+     *
+     * @param env The environment.
+     * @param mesh The name of the mesh.
+     * @return The universe.
+     * @throws IOException If the mesh cannot be read.
+     */
+    public static Universe_d getUniverse(V3D_Environment_d env, String mesh)
+            throws IOException {
+        return new Universe_d(env, getSTL(mesh), V3D_Vector_d.ZERO,
+                Color.YELLOW, false, EPSILON, 1d, false);
+    }
+
+    /**
+     * Set a camera looking along the z axis at the universe so that it fills
+     * the view. The pixels of the camera are a unit apart on a screen at a
+     * distance of n from the focus, so the screen is n wide and is placed to
+     * take in the bounding sphere of the universe (of radius r) from a focus
+     * at a distance 2r from its centre.
+     *
+     * @param u The universe.
+     * @param n The number of rows and columns of pixels.
+     * @return The camera.
+     * @throws Exception
+     */
+    public static Camera_d setCamera(Universe_d u, int n) throws Exception {
+        V3D_Environment_d env = u.env;
+        V3D_Point_d c = u.aabb.getCentroid();
+        double radius = u.aabb.getPointsArray()[0].getDistance(c);
+        double fz = c.getZ() - 2d * radius;
+        double x = n / 2d;
+        double z = fz + n;
+        V3D_Rectangle_d rect = new V3D_Rectangle_d(
+                new V3D_Point_d(env, c.getX() - x, c.getY() - x, z),
+                new V3D_Point_d(env, c.getX() - x, c.getY() + x, z),
+                new V3D_Point_d(env, c.getX() + x, c.getY() + x, z),
+                new V3D_Point_d(env, c.getX() + x, c.getY() - x, z));
+        V3D_Point_d focus = new V3D_Point_d(env, c.getX(), c.getY(), fz);
+        Camera_d camera = new Camera_d(env, V3D_Vector_d.ZERO, focus, rect,
+                new Dimension(n, n));
+        u.setCamera(camera);
+        return camera;
+    }
+
+    /**
+     * Read a mesh into a new universe with BigRational coordinates.
+     *
+     * @param env The environment.
+     * @param mesh The name of the mesh.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return The universe.
+     * @throws IOException If the mesh cannot be read.
+     */
+    public static Universe getUniverse(V3D_Environment env, String mesh,
+            int oom, RoundingMode rm) throws IOException {
+        return new Universe(getSTL(mesh), V3D_Vector.ZERO, Color.YELLOW, oom,
+                rm, env);
+    }
+
+    /**
+     * Set a camera on a universe with BigRational coordinates the same way as
+     * {@link #setCamera(Universe_d, int)}.
+     *
+     * @param u The universe.
+     * @param n The number of rows and columns of pixels.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return The camera.
+     * @throws Exception
+     */
+    public static Camera setCamera(Universe u, int n, int oom,
+            RoundingMode rm) throws Exception {
+        V3D_Environment env = u.env;
+        V3D_AABB b = u.aabb;
+        double xmin = b.getXMin(oom, rm).toDouble();
+        double xmax = b.getXMax(oom, rm).toDouble();
+        double ymin = b.getYMin(oom, rm).toDouble();
+        double ymax = b.getYMax(oom, rm).toDouble();
+        double zmin = b.getZMin(oom, rm).toDouble();
+        double zmax = b.getZMax(oom, rm).toDouble();
+        double cx = (xmin + xmax) / 2d;
+        double cy = (ymin + ymax) / 2d;
+        double cz = (zmin + zmax) / 2d;
+        double radius = Math.sqrt((xmax - cx) * (xmax - cx)
+                + (ymax - cy) * (ymax - cy) + (zmax - cz) * (zmax - cz));
+        double fz = cz - 2d * radius;
+        double x = n / 2d;
+        double z = fz + n;
+        V3D_Rectangle rect = new V3D_Rectangle(
+                new V3D_Point(env, cx - x, cy - x, z),
+                new V3D_Point(env, cx - x, cy + x, z),
+                new V3D_Point(env, cx + x, cy + x, z),
+                new V3D_Point(env, cx + x, cy - x, z), oom, rm);
+        V3D_Point focus = new V3D_Point(env, cx, cy, fz);
+        Camera camera = new Camera(env, V3D_Vector.ZERO, focus, rect,
+                new Dimension(n, n), oom, rm);
+        u.setCamera(camera);
+        return camera;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.leeds.ccg.r3d.d.Universe_d;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+
+/**
+ * For benchmarking the construction of a {@link Universe_d} from an STL file,
+ * which reads the file and calculates the bounding box.
+ *
+ * @author Andy Turner
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UniverseBenchmark {
+
+    /**
+     * The name of the mesh (see {@link Scenes#getSTL(String)}).
+     */
+    @Param({"Icosahedron", "Utah_teapot_(solid)", "sphere_1000",
+        "sphere_10000", "sphere_100000", "sphere_1000000"})
+    public String mesh;
+
+    V3D_Environment_d env;
+
+    /**
+     * Create a new instance.
+     */
+    public UniverseBenchmark() {
+    }
+
+    /**
+     * Set up.
+     *
+     * @throws Exception If the mesh cannot be found or written.
+     */
+    @Setup
+    public void setup() throws Exception {
+        env = new V3D_Environment_d();
+        Scenes.getSTL(mesh);
+    }
+
+    /**
+     * @return The universe.
+     * @throws Exception If the mesh cannot be read.
+     */
+    @Benchmark
+    public Universe_d universe() throws Exception {
+        return Scenes.getUniverse(env, mesh);
+    }
+}
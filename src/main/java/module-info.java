@@ -27,6 +27,7 @@ module uk.ac.leeds.ccg.r3d {
     requires transitive uk.ac.leeds.ccg.io;
     requires transitive uk.ac.leeds.ccg.math;
     requires transitive uk.ac.leeds.ccg.v3d;
+    requires jdk.jfr;
     
     opens uk.ac.leeds.ccg.r3d to uk.ac.leeds.ccg.data;
     
@@ -36,4 +37,5 @@ module uk.ac.leeds.ccg.r3d {
     exports uk.ac.leeds.ccg.r3d;
     exports uk.ac.leeds.ccg.r3d.entities;
     exports uk.ac.leeds.ccg.r3d.io;
+    exports uk.ac.leeds.ccg.r3d.jfr;
 }
@@ -18,18 +18,22 @@ package uk.ac.leeds.ccg.r3d;
 import ch.obermuhlner.math.big.BigRational;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Set;
-import java.util.TreeMap;
-import uk.ac.leeds.ccg.generic.util.Generic_Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
 import uk.ac.leeds.ccg.math.arithmetic.Math_BigRational;
+import uk.ac.leeds.ccg.r3d.RenderMetrics.Counter;
+import uk.ac.leeds.ccg.r3d.RenderMetrics.Phase;
 import uk.ac.leeds.ccg.r3d.entities.Area;
 import uk.ac.leeds.ccg.r3d.entities.Line;
 import uk.ac.leeds.ccg.r3d.entities.Point;
+import uk.ac.leeds.ccg.r3d.jfr.RenderEvent;
 import uk.ac.leeds.ccg.v3d.core.V3D_Environment;
 import uk.ac.leeds.ccg.v3d.geometry.V3D_Geometry;
 import uk.ac.leeds.ccg.v3d.geometry.V3D_Point;
@@ -94,6 +98,20 @@ public class Camera extends V3D_Frustum {
      */
     public BigRational pixelSize;
 
+    /**
+     * For mapping between points in the universe and the screen coordinates
+     * of the rows and columns of the rays (see
+     * {@link #getViewProjection(int, RoundingMode)}).
+     */
+    protected ViewProjection viewProjection;
+
+    /**
+     * For recording the time taken by each phase of rendering and counting
+     * the intersection tests, depth test rejections and exceptions caught. This is not serialized, so a deserialized camera reports to
+     * {@link RenderMetrics#NONE}.
+     */
+    public transient RenderMetrics metrics = RenderMetrics.NONE;
+
     /**
      * Create a new instance.
      *
@@ -145,18 +163,84 @@ public class Camera extends V3D_Frustum {
      *
      * @param universe
      * @param lighting The lighting vector.
-     * @return An image map.
+     * @param ambientLight The proportion of light for areas facing away from
+     * the lighting.
+     * @param castShadow Whether to cast shadows.
+     * @param addGraticules Whether to add graticules.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return An image map. The time taken by each phase and the work done
+     * are reported to {@link #metrics}, and a {@link RenderEvent} is recorded
+     * for the frame.
      * @throws Exception
      */
-    int[] render(Universe universe, V3D_Vector lighting,
+    public int[] render(Universe universe, V3D_Vector lighting,
             BigRational ambientLight, boolean castShadow, boolean addGraticules,
             int oom, RoundingMode rm) throws Exception {
+        return render(universe, lighting, ambientLight, castShadow,
+                addGraticules, oom, rm, new RenderControl());
+    }
+
+    /**
+     * Renders the visible universe as an image map in the background (see
+     * {@link #render(Universe, V3D_Vector, BigRational, boolean, boolean, int, RoundingMode, RenderControl)}).
+     * Cancelling the returned future stops the render soon after.
+     *
+     * @param universe The universe.
+     * @param lighting The lighting vector.
+     * @param ambientLight The proportion of light for areas facing away from
+     * the lighting.
+     * @param castShadow Whether to cast shadows.
+     * @param addGraticules Whether to add graticules.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @param progress The listener for the progress of the render or
+     * {@code null}.
+     * @param executor The executor to run the render on (see
+     * {@link RenderControl#submit(RenderControl.Job, RenderProgress, Executor)}).
+     * @return The future image map.
+     */
+    public CompletableFuture<int[]> renderAsync(Universe universe,
+            V3D_Vector lighting, BigRational ambientLight, boolean castShadow,
+            boolean addGraticules, int oom, RoundingMode rm,
+            RenderProgress progress, Executor executor) {
+        return RenderControl.submit(c -> render(universe, lighting,
+                ambientLight, castShadow, addGraticules, oom, rm, c), progress,
+                executor);
+    }
+
+    /**
+     * Renders the visible universe as an image map as for
+     * {@link #render(Universe, V3D_Vector, BigRational, boolean, boolean, int, RoundingMode)},
+     * checking whether control is cancelled between lines and areas and
+     * reporting the number of areas processed to it.
+     *
+     * @param universe The universe.
+     * @param lighting The lighting vector.
+     * @param ambientLight The proportion of light for areas facing away from
+     * the lighting.
+     * @param castShadow Whether to cast shadows.
+     * @param addGraticules Whether to add graticules.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @param control For cancelling the render and reporting progress.
+     * @return An image map.
+     * @throws java.util.concurrent.CancellationException If control is
+     * cancelled.
+     * @throws Exception
+     */
+    public int[] render(Universe universe, V3D_Vector lighting,
+            BigRational ambientLight, boolean castShadow, boolean addGraticules,
+            int oom, RoundingMode rm, RenderControl control) throws Exception {
+        RenderEvent event = new RenderEvent();
+        event.begin();
         int n = ncols * nrows;
         int[] pix = new int[n];
         HashMap<Grids_2D_ID_int, BigRational> mind2s = new HashMap<>();
+        long t0 = System.nanoTime();
+        long now;
         // Add axes
         if (addGraticules) {
-            System.out.println("Add Graticules");
             BigRational xmin = universe.aabb.getXMin(oom);
             BigRational xmax = universe.aabb.getXMax(oom);
             BigRational ymin = universe.aabb.getYMin(oom);
@@ -174,14 +258,12 @@ public class Camera extends V3D_Frustum {
                     (xmax.subtract(xmin)).divide(scale),
                     (ymax.subtract(ymin)).divide(scale),
                     (zmax.subtract(zmin)).divide(scale)), oom, rm);
-            System.out.println("tr=" + tr.toString());
             // Render axes
             // x axis
             V3D_Point x_min = new V3D_Point(env, new V3D_Vector(xmin.divide(scale), BigRational.ZERO, BigRational.ZERO));
             V3D_Point x_max = new V3D_Point(env, new V3D_Vector(xmax.divide(scale), BigRational.ZERO, BigRational.ZERO));
             V3D_LineSegment x_axis = new V3D_LineSegment(x_min, x_max, oom, rm);
             x_axis.translate(tr, oom, rm);
-            System.out.println("X graticule " + x_axis.toString());
             Line xAxis = new Line(x_axis, Color.BLUE);
             V3D_Point xpoi = xAxis.l.l.getPointOfIntersect(focus, oom, rm);
             V3D_Vector xpoin = new V3D_Vector(xpoi, focus, oom, rm);
@@ -197,7 +279,6 @@ public class Camera extends V3D_Frustum {
             V3D_Point y_max = new V3D_Point(env, new V3D_Vector(BigRational.ZERO, ymax.divide(scale), BigRational.ZERO));
             V3D_LineSegment y_axis = new V3D_LineSegment(y_min, y_max, oom, rm);
             y_axis.translate(tr, oom, rm);
-            System.out.println("Y graticule " + y_axis.toString());
             Line yAxis = new Line(y_axis, Color.RED);
             V3D_Point ypoi = yAxis.l.l.getPointOfIntersect(focus, oom, rm);
             V3D_Vector ypoin = new V3D_Vector(ypoi, focus, oom, rm);
@@ -213,7 +294,6 @@ public class Camera extends V3D_Frustum {
             V3D_Point z_max = new V3D_Point(env, new V3D_Vector(BigRational.ZERO, BigRational.ZERO, zmax.divide(scale)));
             V3D_LineSegment z_axis = new V3D_LineSegment(z_min, z_max, oom, rm);
             z_axis.translate(tr, oom, rm);
-            System.out.println("Z graticule " + z_axis.toString());
             Line zAxis = new Line(z_axis, Color.GREEN);
             V3D_Point zpoi = zAxis.l.l.getPointOfIntersect(focus, oom, rm);
             V3D_Vector zpoin = new V3D_Vector(zpoi, focus, oom, rm);
@@ -229,6 +309,7 @@ public class Camera extends V3D_Frustum {
         int nlines = universe.lines.size();
         universe.lines.forEach(x
                 -> {
+            control.checkCancelled();
 //            if (x.l.l.v.isScalarMultiple(rect.getPQR().getPQV(oom, rm), oom, rm)) {
 //                renderLine(oom, rm, mind2s, x, new V3D_Plane(x.l, rect.getPQR().getQRV(oom, rm), oom, rm), pix);
 //            } else {
@@ -258,6 +339,9 @@ public class Camera extends V3D_Frustum {
 //                }
 //            }
         });
+        now = System.nanoTime();
+        metrics.time(Phase.LINE_PASS, now - t0);
+        t0 = now;
         // Render Areas
         int nAreas = universe.areas.size();
         V3D_Point centroid = universe.aabb.getCentroid(oom, rm);
@@ -266,35 +350,35 @@ public class Camera extends V3D_Frustum {
              * Find the closest area intersects for a ray and colour the pixel
              * accordingly.
              */
-            System.out.println("Calculate the minimum distance between each"
-                    + " area and the camera focal point. Order the areas by"
-                    + " the distance, and set the lighting.");
-            TreeMap<BigRational, Set<Integer>> mindOrderedAreas = new TreeMap<>();
             /**
+             * Calculate the minimum distance between each area and the camera
+             * focal point, order the areas by the distance, and set the
+             * lighting.
+             *
              * mind2st is the minimum distance of each each area to the camera
              * focus point for those parts of the area in view of the camera
-             * i.e. through the frustum.
+             * i.e. through the frustum. mind2sta caches approximations of
+             * these for sorting.
              */
             BigRational[] mind2st = new BigRational[nAreas];
-            process(centroid, 0, universe.areas, lighting, ambientLight,
-                    mindOrderedAreas, mind2st, oom, rm);
-            int nAP = (nAreas / 100);
-            if (nAP < 1) {
-                nAP = 1;
-            }
-            for (int i = 1; i < nAreas; i++) {
-                if (i % nAP == 0) {
-                    System.out.println("Area " + i + " out of " + nAreas);
-                }
+            double[] mind2sta = new double[nAreas];
+            int[] order = new int[nAreas];
+            for (int i = 0; i < nAreas; i++) {
+                control.checkCancelled();
                 process(centroid, i, universe.areas, lighting, ambientLight,
-                        mindOrderedAreas, mind2st, oom, rm);
+                        mind2st, oom, rm);
+                mind2sta[i] = mind2st[i].toDouble();
+                order[i] = i;
             }
-            System.out.println("Minimum distance squared between any area and"
-                    + " the camera focal point = "
-                    + mindOrderedAreas.firstKey().toString());
-            System.out.println("Process each area working from the closest to "
-                    + "the furthest.");
-            // Process areas.
+            // Order the areas by distance.
+            DepthSort.sort(mind2sta, order, nAreas, (a, b) -> {
+                int c = mind2st[a].compareTo(mind2st[b]);
+                return c != 0 ? c : Integer.compare(a, b);
+            });
+            now = System.nanoTime();
+            metrics.time(Phase.ORDERING, now - t0);
+            t0 = now;
+            // Process each area working from the closest to the furthest.
             HashMap<Grids_2D_ID_int, Integer> closestIndex = new HashMap<>();
             /**
              * idPoint is used to store the point of intersection. This could be
@@ -302,32 +386,36 @@ public class Camera extends V3D_Frustum {
              * in a shadow...
              */
             //HashMap<Grids_2D_ID_int, V3D_Point> idPoint = new HashMap<>();
-            for (BigRational mind2 : mindOrderedAreas.keySet()) {
-                System.out.println("mind2 = " + mind2);
-                Set<Integer> triangleIndexes = mindOrderedAreas.get(mind2);
-                for (var i : triangleIndexes) {
-                    processArea(i, universe.areas.get(i).area, mind2st,
-                            mind2s, closestIndex, //idPoint,
-                            oom, rm);
-                }
+            control.start(nAreas);
+            for (int i : order) {
+                control.checkCancelled();
+                processArea(i, universe.areas.get(i).area, mind2st,
+                        mind2s, closestIndex, //idPoint,
+                        oom, rm);
+                control.advance(1L);
             }
-            // Render pixels
-            System.out.println("Render the closest area.");
-            int pixelsToPop = closestIndex.size();
-            int pixelsToPopPC = pixelsToPop / 100;
-            int pixel = 0;
+            now = System.nanoTime();
+            metrics.time(Phase.AREA_PASS, now - t0);
+            t0 = now;
+            // Render the closest area through each pixel.
             for (var x : closestIndex.keySet()) {
-                if (pixelsToPopPC > 0) {
-                    if (pixel % pixelsToPopPC == 0) {
-                        System.out.println("Rendering pixel " + pixel
-                                + " out of " + pixelsToPop);
-                    }
-                }
-                pixel++;
                 int ci = closestIndex.get(x);
                 Area a = universe.areas.get(ci);
                 render(pix, x.getRow(), x.getCol(), a.lightingColor);
             }
+            metrics.time(Phase.COMPOSITE, System.nanoTime() - t0);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.areas = nAreas;
+            event.lines = nlines;
+            event.rows = nrows;
+            event.cols = ncols;
+            event.engine = "AREA";
+            event.parallelism = 1;
+            event.castShadow = castShadow;
+            event.oom = oom;
+            event.commit();
         }
         return pix;
     }
@@ -465,12 +553,11 @@ public class Camera extends V3D_Frustum {
      */
     public void renderPoint(int oom, RoundingMode rm,
             HashMap<Grids_2D_ID_int, BigRational> mind2s, Point p, int[] pix) {
-        if (!focus.equals(p.p, oom, rm)) {
-            V3D_Ray ray = new V3D_Ray(focus, p.p, oom, rm);
-            V3D_Point pt = (V3D_Point) rect.getIntersect(ray, oom, rm);
-            if (pt != null) {
-                int r = getScreenRow(pt, oom, rm);
-                int c = getScreenCol(pt, oom, rm);
+        ViewProjection vp = getViewProjection(oom, rm);
+        if (vp.getW(p.p).compareTo(BigRational.ZERO) == 1) {
+            int r = ViewProjection.floor(vp.getRow(p.p));
+            int c = ViewProjection.floor(vp.getCol(p.p));
+            if (r >= 0 && r < nrows && c >= 0 && c < ncols) {
                 Grids_2D_ID_int id = new Grids_2D_ID_int(r, c);
                 BigRational d2 = p.p.getDistanceSquared(focus, oom, rm);
                 BigRational d2p = mind2s.get(id);
@@ -499,23 +586,19 @@ public class Camera extends V3D_Frustum {
     /**
      * Calculate the minimum distance squared from this area to the camera point
      * for those parts visible through the camera frustum. These are stored in
-     * mind2t. The mindOrderedTriangles map is updated so that the indexes of
-     * the triangles are stored against the minimum distances. Additionally,
-     * this sets the colour of the triangle based on the lighting vector and
-     * ambientLight.
+     * mind2t. Additionally, this sets the colour of the triangle based on the
+     * lighting vector and ambientLight.
      *
      * @param centroid
      * @param index
      * @param areas
      * @param lighting
      * @param ambientLight
-     * @param mindOrderedTriangles
      * @param mind2t
      * @param oom, rm
      */
     private void process(V3D_Point centroid, int index,
             ArrayList<Area> areas, V3D_Vector lighting, BigRational ambientLight,
-            TreeMap<BigRational, Set<Integer>> mindOrderedTriangles,
             BigRational[] mind2t, int oom, RoundingMode rm) {
         Area area = areas.get(index);
         area.setLighting(centroid, lighting, ambientLight, oom, rm);
@@ -549,7 +632,6 @@ public class Camera extends V3D_Frustum {
             }
         }
         mind2t[index] = mind2;
-        Generic_Collections.addToMap(mindOrderedTriangles, mind2t[index], index);
     }
 
     /**
@@ -575,15 +657,23 @@ public class Camera extends V3D_Frustum {
             //HashMap<Grids_2D_ID_int, V3D_Point> idPoint,
             int oom, RoundingMode rm) {
         /**
-         * Loop over the extent, and where necessary, calculate the intersection
-         * to determine if the triangle is in the pixel and if the distance is a
-         * minimum distance.
+         * Loop over the extent of the area projected onto the screen, and where
+         * necessary, calculate the intersection to determine if the area is in
+         * the pixel and if the distance is a minimum distance.
          */
-        for (int row = 0; row < nrows; row++) {
-            for (int col = 0; col < ncols; col++) {
+        int[] bounds = getScreenBounds(a.getPointsArray(oom, rm), oom, rm);
+        if (bounds == null) {
+            return;
+        }
+        long tests = 0L;
+        long rejections = 0L;
+        long exceptions = 0L;
+        for (int row = bounds[0]; row <= bounds[2]; row++) {
+            for (int col = bounds[1]; col <= bounds[3]; col++) {
                 Grids_2D_ID_int id = new Grids_2D_ID_int(row, col);
                 BigRational mind2 = mind2s.get(id);
                 if (mind2 == null) {
+                    tests++;
                     try {
                         V3D_Ray ray = getRay(id, oom, rm);
                         V3D_Point ti = a.getIntersectNonCoplanar(ray, oom, rm);
@@ -594,12 +684,13 @@ public class Camera extends V3D_Frustum {
                             //idPoint.put(id, ti);
                         }
                     } catch (RuntimeException ex) {
-                        System.out.println("Resolution too coarse to render "
-                                + "triangle: " + a.toString());
+                        // The resolution is too coarse to render the area.
+                        exceptions++;
                     }
                 } else {
                     //if (mind2t[tIndex] < mind2) {
                     if (mind2a[index].compareTo(mind2) == -1) {
+                        tests++;
                         try {
                             V3D_Ray ray = getRay(id, oom, rm);
                             V3D_Point ti = a.getIntersectNonCoplanar(ray, oom, rm);
@@ -611,16 +702,89 @@ public class Camera extends V3D_Frustum {
                                     mind2s.put(id, d2);
                                     closestIndex.put(id, index);
                                     //idPoint.put(id, ti);
+                                } else {
+                                    rejections++;
                                 }
                             }
                         } catch (RuntimeException ex) {
-                            System.out.println("Resolution too coarse to render "
-                                    + "triangle: " + a.toString());
+                            // The resolution is too coarse to render the area.
+                            exceptions++;
                         }
+                    } else {
+                        rejections++;
                     }
                 }
             }
         }
+        metrics.count(Counter.INTERSECTION_TESTS, tests);
+        metrics.count(Counter.DEPTH_REJECTIONS, rejections);
+        metrics.count(Counter.EXCEPTIONS, exceptions);
+    }
+
+    /**
+     * Calculate the row and column bounds of the pixels with rays that may
+     * intersect the convex hull of {@code pts}. Each point is projected from
+     * {@link #focus} onto the plane of {@link #rect} in the same row and
+     * column coordinates that {@link #getRay(Grids_2D_ID_int, int, RoundingMode)}
+     * uses. The projection is exact, but a margin of a row and a column is
+     * added as the rays are calculated to the precision given by {@code oom}.
+     * If some, but not all of the points are not in front of {@link #focus},
+     * the projection is unbounded and so the bounds of the whole screen are
+     * returned.
+     *
+     * @param pts The points.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return {minRow, minCol, maxRow, maxCol} or {@code null} if no ray can
+     * intersect the convex hull of {@code pts}.
+     */
+    protected int[] getScreenBounds(V3D_Point[] pts, int oom, RoundingMode rm) {
+        ViewProjection vp = getViewProjection(oom, rm);
+        BigRational minr = null;
+        BigRational minc = null;
+        BigRational maxr = null;
+        BigRational maxc = null;
+        int nBehind = 0;
+        boolean unbounded = false;
+        for (var pt : pts) {
+            if (vp.getW(pt).compareTo(BigRational.ZERO) != 1) {
+                nBehind++;
+                unbounded = true;
+            } else {
+                BigRational r = vp.getRow(pt);
+                BigRational c = vp.getCol(pt);
+                if (minr == null) {
+                    minr = r;
+                    maxr = r;
+                    minc = c;
+                    maxc = c;
+                } else {
+                    minr = BigRational.min(minr, r);
+                    maxr = BigRational.max(maxr, r);
+                    minc = BigRational.min(minc, c);
+                    maxc = BigRational.max(maxc, c);
+                }
+            }
+        }
+        if (nBehind == pts.length) {
+            return null;
+        }
+        if (unbounded) {
+            return new int[]{0, 0, nrows - 1, ncols - 1};
+        }
+        double minrd = minr.toDouble();
+        double mincd = minc.toDouble();
+        double maxrd = maxr.toDouble();
+        double maxcd = maxc.toDouble();
+        if (maxrd < -1d || maxcd < -1d || minrd > nrows || mincd > ncols) {
+            return null;
+        }
+        int[] b = new int[4];
+        b[0] = Math.max(0, (int) Math.floor(minrd) - 1);
+        b[1] = Math.max(0, (int) Math.floor(mincd) - 1);
+        b[2] = Math.min(nrows - 1, (int) Math.ceil(Math.min(maxrd, nrows)) + 1);
+        b[3] = Math.min(ncols - 1, (int) Math.ceil(Math.min(maxcd, ncols)) + 1);
+        return b;
     }
 
     /**
@@ -636,11 +800,9 @@ public class Camera extends V3D_Frustum {
     protected V3D_Ray getRay(Grids_2D_ID_int id, int oom, RoundingMode rm) {
         V3D_Ray r = rays.get(id);
         if (r == null) {
-            V3D_Vector rv = verticalUV.multiply(id.getRow(), oom, rm);
-            V3D_Vector cv = horizontalUV.multiply(id.getCol(), oom, rm);
-            V3D_Point rcpt = new V3D_Point(rect.getP(oom, rm));
-            rcpt.translate(rv.add(cv, oom, rm), oom, rm);
-            r = new V3D_Ray(focus, rcpt, oom, rm);
+            r = new V3D_Ray(focus, getScreenPoint(
+                    BigRational.valueOf(id.getRow()),
+                    BigRational.valueOf(id.getCol()), oom, rm), oom, rm);
             rays.put(id, r);
         }
         return r;
@@ -652,51 +814,49 @@ public class Camera extends V3D_Frustum {
      * @param p A point in the universe.
      * @param oom The Order of Magnitude for the precision.
      * @param rm The RoundingMode for any rounding.
-     * @return The ID of the rect cell that intersects a ray from this to focus,
-     * or {@code null}.
+     * @return The ID of the rect cell that intersects a ray from focus to p,
+     * or {@code null} if p is not in front of the focus.
      */
     protected Grids_2D_ID_int getRC(V3D_Point p, int oom, RoundingMode rm) {
-        if (focus.equals(p, oom, rm)) {
-            return new Grids_2D_ID_int(
-                    getScreenRow(p, oom, rm),
-                    getScreenCol(p, oom, rm));
-        }
-        V3D_Ray ray = new V3D_Ray(focus, p, oom, rm);
-        //V3D_Point px = (V3D_Point) rect.getIntersect(ray, oom, rm);
-        V3D_Point px = (V3D_Point) ray.getIntersect(rect.getPl(oom, rm), oom, rm);
-        if (px == null) {
+        ViewProjection vp = getViewProjection(oom, rm);
+        if (vp.getW(p).compareTo(BigRational.ZERO) != 1) {
             return null;
-        } else {
-            return new Grids_2D_ID_int(
-                    getScreenRow(px, oom, rm),
-                    getScreenCol(px, oom, rm));
         }
+        return new Grids_2D_ID_int(ViewProjection.floor(vp.getRow(p)),
+                ViewProjection.floor(vp.getCol(p)));
     }
 
     /**
-     * Calculate and return the row index of {@code p}.
+     * Calculate and return the row index of {@code p}. This is the row
+     * coordinate of {@code p} on the screen rounded down, so rows are
+     * measured along PQ from P of {@link #rect} and the row of any point in
+     * a pixel from {@link #getPixel(int, int, int, RoundingMode)} is the row
+     * of that pixel. Points before P give negative rows. This used to be
+     * {@code nrows} less the number of pixels in the distance of {@code p}
+     * from QR, which is one more than this for points not on a pixel boundary
+     * and which is the same for points either side of QR.
      *
-     * @param p A point on the screen.
+     * @param p A point on the screen (or in front of the focus, in which case
+     * it is projected onto the screen).
      * @param oom The Order of Magnitude for the precision.
      * @param rm The RoundingMode for any rounding.
      * @return The row index of {@code p}.
      */
     protected int getScreenRow(V3D_Point p, int oom, RoundingMode rm) {
-        BigRational d = rect.getPQR().getQR(oom, rm).getDistance(p, oom, rm);
-        return nrows - (d.divide(pixelSize)).intValue();
+        return ViewProjection.floor(getViewProjection(oom, rm).getRow(p));
     }
 
     /**
      * Calculate and return the column index of {@code p}.
      *
-     * @param p A point on the screen.
+     * @param p A point on the screen (or in front of the focus, in which case
+     * it is projected onto the screen).
      * @param oom The Order of Magnitude for the precision.
      * @param rm The RoundingMode for any rounding.
      * @return The column index of {@code p}.
      */
     protected int getScreenCol(V3D_Point p, int oom, RoundingMode rm) {
-        BigRational d = rect.getPQR().getPQ(oom, rm).getDistance(p, oom, rm);
-        return (d.divide(pixelSize)).intValue();
+        return ViewProjection.floor(getViewProjection(oom, rm).getCol(p));
     }
 
     /**
@@ -710,15 +870,9 @@ public class Camera extends V3D_Frustum {
      * {@code col}.
      */
     protected V3D_Point getPoint(int row, int col, int oom, RoundingMode rm) {
-        V3D_Point p = rect.getP(oom, rm);
-        V3D_Point pP = new V3D_Point(p);
-        pP.translate(
-                verticalUV.multiply(
-                        BigRational.valueOf(row + 0.5d), oom, rm).add(
-                        horizontalUV.multiply(
-                                BigRational.valueOf(col + 0.5d),
-                                oom, rm), oom, rm), oom, rm);
-        return pP;
+        BigRational half = BigRational.valueOf(1, 2);
+        return getScreenPoint(BigRational.valueOf(row).add(half),
+                BigRational.valueOf(col).add(half), oom, rm);
     }
 
     /**
@@ -732,27 +886,59 @@ public class Camera extends V3D_Frustum {
      * @return The pixel rectangle indexed by {@code row} and {@code col}.
      */
     public V3D_Rectangle getPixel(int row, int col, int oom, RoundingMode rm) {
-        // Get bottom left point (row=0, col=0).
-        V3D_Point p = rect.getP(oom, rm);
-        V3D_Point pP = new V3D_Point(p);
-        pP.translate(
-                verticalUV.multiply(row, oom, rm).add(
-                        horizontalUV.multiply(col, oom, rm), oom, rm), oom, rm);
-        // q
-        V3D_Point pQ = new V3D_Point(p);
-        pQ.translate(
-                verticalUV.multiply(row + 1, oom, rm).add(
-                        horizontalUV.multiply(col, oom, rm), oom, rm), oom, rm);
-        // r
-        V3D_Point pR = new V3D_Point(p);
-        pR.translate(
-                verticalUV.multiply(row + 1, oom, rm).add(
-                        horizontalUV.multiply(col + 1, oom, rm), oom, rm), oom, rm);
-        // s
-        V3D_Point pS = new V3D_Point(p);
-        pS.translate(
-                verticalUV.multiply(row, oom, rm).add(
-                        horizontalUV.multiply(col + 1, oom, rm), oom, rm), oom, rm);
-        return new V3D_Rectangle(pP, pQ, pR, pS, oom, rm);
+        BigRational r0 = BigRational.valueOf(row);
+        BigRational r1 = BigRational.valueOf(row + 1);
+        BigRational c0 = BigRational.valueOf(col);
+        BigRational c1 = BigRational.valueOf(col + 1);
+        return new V3D_Rectangle(getScreenPoint(r0, c0, oom, rm),
+                getScreenPoint(r1, c0, oom, rm),
+                getScreenPoint(r1, c1, oom, rm),
+                getScreenPoint(r0, c1, oom, rm), oom, rm);
+    }
+
+    /**
+     * @param r The row coordinate.
+     * @param c The column coordinate.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return The point on the screen with the screen coordinates (r, c).
+     */
+    private V3D_Point getScreenPoint(BigRational r, BigRational c, int oom,
+            RoundingMode rm) {
+        BigRational[] x = getViewProjection(oom, rm).getScreenPoint(r, c);
+        return new V3D_Point(env, x[0], x[1], x[2]);
+    }
+
+    /**
+     * Get {@link #viewProjection} creating it from {@link #focus},
+     * {@link #rect}, {@link #verticalUV} and {@link #horizontalUV} if it has
+     * not already been created for oom and rm.
+     *
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @return The view-projection transform.
+     */
+    public ViewProjection getViewProjection(int oom, RoundingMode rm) {
+        ViewProjection vp = viewProjection;
+        if (vp == null || vp.oom != oom || vp.rm != rm) {
+            vp = new ViewProjection(focus, rect.getP(oom, rm), verticalUV,
+                    horizontalUV, oom, rm);
+            viewProjection = vp;
+        }
+        return vp;
+    }
+
+    /**
+     * Read a serialized camera and set {@link #metrics} to
+     * {@link RenderMetrics#NONE} as it is not serialized.
+     *
+     * @param in The stream.
+     * @throws IOException If the stream cannot be read.
+     * @throws ClassNotFoundException If a class of a field cannot be found.
+     */
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        metrics = RenderMetrics.NONE;
     }
 }
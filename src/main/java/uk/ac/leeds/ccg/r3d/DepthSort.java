@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * For ordering indexes by primitive keys such as the minimum distance squared
+ * of each area from a camera focus.
+ *
+ * Each index is packed into a long with the most significant bits of its key
+ * so that the packed values can be sorted with
+ * {@link Arrays#parallelSort(long[])}. Runs of indexes with keys that have the
+ * same most significant bits are then put in exact order with a comparator.
+ * Runs are usually very short, so this is much the same cost as sorting the
+ * packed values and nothing is boxed.
+ *
+ * @author Andy Turner
+ */
+public class DepthSort {
+
+    private DepthSort() {
+    }
+
+    /**
+     * Sort the first n values of ids into ascending order of keys[id]. Ties
+     * are ordered by id.
+     *
+     * @param keys The keys indexed by id.
+     * @param ids The ids to sort.
+     * @param n The number of ids to sort.
+     */
+    public static void sort(double[] keys, int[] ids, int n) {
+        sort(keys, ids, n, (a, b) -> {
+            int c = Double.compare(keys[a], keys[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+    }
+
+    /**
+     * Sort the first n values of ids into ascending order of keys[id] using
+     * compare to order ids with keys that are approximately equal. This is
+     * for ordering by keys that are only approximated by keys, such as
+     * BigRational distances. If compare is consistent with keys, the result
+     * is in the exact order of compare.
+     *
+     * @param keys The approximate keys indexed by id.
+     * @param ids The ids to sort.
+     * @param n The number of ids to sort.
+     * @param compare For comparing two ids. This should return a negative
+     * number, zero, or a positive number as the first should be ordered
+     * before, the same as, or after the second.
+     */
+    public static void sort(double[] keys, int[] ids, int n,
+            IntBinaryOperator compare) {
+        if (n < 2) {
+            return;
+        }
+        int maxId = 0;
+        for (int j = 0; j < n; j++) {
+            maxId = Math.max(maxId, ids[j]);
+        }
+        int b = 64 - Long.numberOfLeadingZeros(maxId);
+        long idMask = (1L << b) - 1L;
+        long[] packed = new long[n];
+        for (int j = 0; j < n; j++) {
+            packed[j] = ((getBits(keys[ids[j]]) >> b) << b) | ids[j];
+        }
+        Arrays.parallelSort(packed);
+        for (int j = 0; j < n; j++) {
+            ids[j] = (int) (packed[j] & idMask);
+        }
+        // Order runs of ids with the same most significant key bits.
+        int s = 0;
+        for (int j = 1; j <= n; j++) {
+            if (j == n || (packed[j] >> b) != (packed[s] >> b)) {
+                if (j - s > 1) {
+                    insertionSort(ids, s, j, compare);
+                }
+                s = j;
+            }
+        }
+    }
+
+    /**
+     * @param k A key.
+     * @return A long that orders the same as k when compared as a signed long.
+     */
+    static long getBits(double k) {
+        long bits = Double.doubleToLongBits(k);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Sort ids from start (inclusive) to end (exclusive).
+     */
+    private static void insertionSort(int[] ids, int start, int end,
+            IntBinaryOperator compare) {
+        for (int j = start + 1; j < end; j++) {
+            int id = ids[j];
+            int k = j - 1;
+            while (k >= start && compare.applyAsInt(ids[k], id) > 0) {
+                ids[k + 1] = ids[k];
+                k--;
+            }
+            ids[k + 1] = id;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+import java.io.Serializable;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import uk.ac.leeds.ccg.r3d.entities.Area;
+import uk.ac.leeds.ccg.v3d.core.V3D_Environment;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_Triangle;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_Vector;
+import uk.ac.leeds.ccg.v3d.geometry.light.V3D_V;
+import uk.ac.leeds.ccg.v3d.geometry.light.V3D_VLine;
+import uk.ac.leeds.ccg.v3d.geometry.light.V3D_VTriangle;
+
+/**
+ * A compact triangle mesh with the float coordinates of an STL file. Each
+ * unique vertex is stored once in {@link #vertices} and each triangle is three
+ * indexes of vertices in {@link #triangles} with a normal in {@link #normals}
+ * and an attribute in {@link #attributes}. The BigRational geometry is only
+ * created for a triangle when it is wanted (see
+ * {@link #getArea(V3D_Environment, int, int, RoundingMode)}).
+ *
+ * Vertices added with the same coordinates are welded: {@link #addVertex}
+ * returns the index of the existing vertex. This uses a hash table which is
+ * discarded by {@link #trim()}, after which no more vertices can be added.
+ *
+ * The coordinates are relative to {@link #offset}.
+ *
+ * @author Andy Turner
+ */
+public class Mesh implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The offset of the coordinates.
+     */
+    public final V3D_Vector offset;
+
+    /**
+     * The number of vertices.
+     */
+    public int nVertices;
+
+    /**
+     * The coordinates of each vertex {x0, y0, z0, x1, y1, z1, ...}.
+     */
+    public float[] vertices;
+
+    /**
+     * The number of triangles.
+     */
+    public int nTriangles;
+
+    /**
+     * The indexes of the vertices of each triangle {p0, q0, r0, p1, q1, r1,
+     * ...}.
+     */
+    public int[] triangles;
+
+    /**
+     * The normal of each triangle as read {x0, y0, z0, x1, y1, z1, ...}. This
+     * is not necessarily a unit normal and may be zero.
+     */
+    public float[] normals;
+
+    /**
+     * The attribute of each triangle.
+     */
+    public short[] attributes;
+
+    /**
+     * For welding vertices: an open addressing hash table of vertex indexes
+     * plus 1 (0 for empty).
+     */
+    private transient int[] table;
+
+    /**
+     * Create a new instance.
+     *
+     * @param offset What {@link #offset} is set to.
+     * @param n The expected number of triangles.
+     */
+    public Mesh(V3D_Vector offset, int n) {
+        this.offset = offset;
+        n = Math.max(n, 1);
+        // There are about half as many vertices as triangles in closed meshes.
+        vertices = new float[(n / 2 + 1) * 3];
+        triangles = new int[n * 3];
+        normals = new float[n * 3];
+        attributes = new short[n];
+        table = new int[Integer.highestOneBit(n) * 2];
+    }
+
+    /**
+     * Add a vertex unless one with the same coordinates has already been
+     * added.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The index of the vertex.
+     */
+    public int addVertex(float x, float y, float z) {
+        // Adding 0 turns -0 into 0 so they weld.
+        x += 0f;
+        y += 0f;
+        z += 0f;
+        int mask = table.length - 1;
+        int i = hash(x, y, z) & mask;
+        while (table[i] != 0) {
+            int v = (table[i] - 1) * 3;
+            if (vertices[v] == x && vertices[v + 1] == y
+                    && vertices[v + 2] == z) {
+                return table[i] - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        if (nVertices * 3 == vertices.length) {
+            vertices = Arrays.copyOf(vertices, vertices.length * 2);
+        }
+        int v = nVertices * 3;
+        vertices[v] = x;
+        vertices[v + 1] = y;
+        vertices[v + 2] = z;
+        nVertices++;
+        table[i] = nVertices;
+        if (nVertices * 2 > table.length) {
+            rehash();
+        }
+        return nVertices - 1;
+    }
+
+    /**
+     * Double the size of {@link #table}.
+     */
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int v = 0; v < nVertices; v++) {
+            int i = hash(vertices[v * 3], vertices[v * 3 + 1],
+                    vertices[v * 3 + 2]) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = v + 1;
+        }
+    }
+
+    /**
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return A hash of the coordinates.
+     */
+    private static int hash(float x, float y, float z) {
+        long h = Float.floatToIntBits(x) * 0x9E3779B97F4A7C15L;
+        h = (h ^ Float.floatToIntBits(y)) * 0x9E3779B97F4A7C15L;
+        h = (h ^ Float.floatToIntBits(z)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Add a triangle.
+     *
+     * @param p The index of the first vertex.
+     * @param q The index of the second vertex.
+     * @param r The index of the third vertex.
+     * @param nx The x component of the normal.
+     * @param ny The y component of the normal.
+     * @param nz The z component of the normal.
+     * @param attribute The attribute.
+     * @return The index of the triangle.
+     */
+    public int addTriangle(int p, int q, int r, float nx, float ny, float nz,
+            short attribute) {
+        if (nTriangles == attributes.length) {
+            int n = nTriangles * 2;
+            triangles = Arrays.copyOf(triangles, n * 3);
+            normals = Arrays.copyOf(normals, n * 3);
+            attributes = Arrays.copyOf(attributes, n);
+        }
+        int t = nTriangles * 3;
+        triangles[t] = p;
+        triangles[t + 1] = q;
+        triangles[t + 2] = r;
+        normals[t] = nx;
+        normals[t + 1] = ny;
+        normals[t + 2] = nz;
+        attributes[nTriangles] = attribute;
+        nTriangles++;
+        return nTriangles - 1;
+    }
+
+    /**
+     * Discard the hash table used for welding and shrink the arrays to fit.
+     * No more vertices can be added after this.
+     */
+    public void trim() {
+        table = null;
+        vertices = Arrays.copyOf(vertices, nVertices * 3);
+        triangles = Arrays.copyOf(triangles, nTriangles * 3);
+        normals = Arrays.copyOf(normals, nTriangles * 3);
+        attributes = Arrays.copyOf(attributes, nTriangles);
+    }
+
+    /**
+     * @param v The index of a vertex.
+     * @return The vertex.
+     */
+    public V3D_V getVertex(int v) {
+        return new V3D_V(vertices[v * 3], vertices[v * 3 + 1],
+                vertices[v * 3 + 2]);
+    }
+
+    /**
+     * Create the triangle vectors for the triangle with index t.
+     *
+     * @param t The index of the triangle.
+     * @return The triangle vectors.
+     */
+    public V3D_VTriangle getVTriangle(int t) {
+        V3D_V p = getVertex(triangles[t * 3]);
+        V3D_V q = getVertex(triangles[t * 3 + 1]);
+        V3D_V r = getVertex(triangles[t * 3 + 2]);
+        return new V3D_VTriangle(new V3D_VLine(p, q), new V3D_VLine(q, r),
+                new V3D_VLine(r, p));
+    }
+
+    /**
+     * Create the triangle with index t.
+     *
+     * @param env The environment.
+     * @param t The index of the triangle.
+     * @return The triangle.
+     */
+    public V3D_Triangle getTriangle(V3D_Environment env, int t) {
+        return new V3D_Triangle(env, offset, getVTriangle(t));
+    }
+
+    /**
+     * Create an area for the triangle with index t. This is the same as the
+     * area that {@link uk.ac.leeds.ccg.r3d.io.STL_Reader} creates for it.
+     *
+     * @param env The environment.
+     * @param t The index of the triangle.
+     * @param oom The Order of Magnitude for the precision of a normal
+     * calculated for the triangle if its normal is zero.
+     * @param rm The RoundingMode for any rounding.
+     * @return The area.
+     */
+    public Area getArea(V3D_Environment env, int t, int oom, RoundingMode rm) {
+        V3D_VTriangle vt = getVTriangle(t);
+        V3D_V n = new V3D_V(normals[t * 3], normals[t * 3 + 1],
+                normals[t * 3 + 2]);
+        if (n.isZero()) {
+            n = vt.getNormal().getUnitVector(oom, rm);
+        }
+        return new Area(new V3D_Triangle(env, offset, vt), n, attributes[t]);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * For cancelling a render and listening to its progress. Renders check
+ * {@link #checkCancelled()} between areas, tiles and rows of pixels and stop
+ * by throwing a {@link CancellationException} soon after {@link #cancel()} is
+ * called.
+ *
+ * Progress is reported for finding the closest area through each pixel which
+ * is most of the work of a render. The units of work depend on the camera and
+ * engine: for areas processed in order they are ray tests of areas with
+ * pixels in their screen bounds (areas that are found to be hidden count as
+ * done), for rays cast through each pixel they are pixels, and for
+ * {@link Camera} they are areas.
+ *
+ * Each instance is for a single render.
+ *
+ * @author Andy Turner
+ */
+public class RenderControl {
+
+    /**
+     * For running a render with a control (see
+     * {@link RenderControl#submit(Job, RenderProgress, Executor)}).
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    public interface Job<T> {
+
+        /**
+         * @param control The control for the render.
+         * @return The result.
+         * @throws Exception If the render fails.
+         */
+        public T run(RenderControl control) throws Exception;
+    }
+
+    /**
+     * Set to true when cancelled.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * The listener or {@code null}.
+     */
+    private final RenderProgress progress;
+
+    /**
+     * The work done.
+     */
+    private final AtomicLong done = new AtomicLong();
+
+    /**
+     * The total work.
+     */
+    private volatile long total;
+
+    /**
+     * The amount of work worth reporting (about 1% of {@link #total}).
+     */
+    private volatile long step = 1L;
+
+    /**
+     * Create a new instance with no listener.
+     */
+    public RenderControl() {
+        this(null);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param progress The listener or {@code null}.
+     */
+    public RenderControl(RenderProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Ask the render to stop.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return {@code true} if {@link #cancel()} has been called.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException If {@link #cancel()} has been called.
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("The render was cancelled.");
+        }
+    }
+
+    /**
+     * Set the total work and set the work done to zero.
+     *
+     * @param total The total work.
+     */
+    public void start(long total) {
+        done.set(0L);
+        this.total = total;
+        step = Math.max(1L, total / 100L);
+    }
+
+    /**
+     * @return The amount of work worth reporting with {@link #advance(long)}.
+     * Work can be accumulated until there is this much to avoid reporting
+     * too often.
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * Add work done and report progress.
+     *
+     * @param n The work done since last reported.
+     */
+    public void advance(long n) {
+        long d = done.addAndGet(n);
+        if (progress != null) {
+            progress.progress(d, total);
+        }
+    }
+
+    /**
+     * @return The work done.
+     */
+    public long getDone() {
+        return done.get();
+    }
+
+    /**
+     * @return The total work.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Run a render with a new control on an executor. Cancelling the returned
+     * future, or completing it exceptionally in any other way (for instance
+     * with {@link CompletableFuture#orTimeout}), cancels the control and so
+     * stops the render.
+     *
+     * @param <T> The type of the result.
+     * @param job The render.
+     * @param progress The listener or {@code null}.
+     * @param executor The executor to run the render on. A render may block
+     * waiting for the pool of threads it renders with, so this should not be
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+     * @return The future result of the render.
+     */
+    public static <T> CompletableFuture<T> submit(Job<T> job,
+            RenderProgress progress, Executor executor) {
+        RenderControl control = new RenderControl(progress);
+        CompletableFuture<T> f = new CompletableFuture<>();
+        f.whenComplete((r, ex) -> {
+            if (ex != null) {
+                control.cancel();
+            }
+        });
+        executor.execute(() -> {
+            try {
+                f.complete(job.run(control));
+            } catch (Throwable ex) {
+                f.completeExceptionally(ex);
+            }
+        });
+        return f;
+    }
+
+    /**
+     * Run a render with a new control on a new daemon thread (see
+     * {@link #submit(Job, RenderProgress, Executor)}).
+     *
+     * @param <T> The type of the result.
+     * @param job The render.
+     * @param progress The listener or {@code null}.
+     * @return The future result of the render.
+     */
+    public static <T> CompletableFuture<T> submit(Job<T> job,
+            RenderProgress progress) {
+        return submit(job, progress, r -> {
+            Thread t = new Thread(r, "ccg-r3d-render");
+            t.setDaemon(true);
+            t.start();
+        });
+    }
+}
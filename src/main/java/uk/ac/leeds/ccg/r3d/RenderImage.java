@@ -29,6 +29,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import uk.ac.leeds.ccg.generic.io.Generic_IO;
 import uk.ac.leeds.ccg.math.arithmetic.Math_BigDecimal;
+import uk.ac.leeds.ccg.r3d.RenderMetrics.Phase;
 import uk.ac.leeds.ccg.r3d.io.IO;
 import uk.ac.leeds.ccg.v3d.core.V3D_Environment;
 import uk.ac.leeds.ccg.v3d.geometry.V3D_AABB;
@@ -53,6 +54,13 @@ public class RenderImage {
      */
     Path output;
 
+    /**
+     * For recording the time taken by each phase of rendering and writing an
+     * image and counting the work done. This is given to the camera for each
+     * render.
+     */
+    public RenderMetrics metrics = RenderMetrics.NONE;
+
     /**
      * Create a new instance.
      *
@@ -486,8 +494,11 @@ public class RenderImage {
             Color color = Color.YELLOW;
             Path input = Paths.get(inDataDir.toString(), name, name + ".stl");
             // Init universe
+            RenderStats stats = new RenderStats();
+            long t0 = System.nanoTime();
             Universe universe = new Universe(input, V3D_Vector.ZERO, color,
                     oom, rm, env);
+            stats.time(Phase.LOAD, System.nanoTime() - t0);
             // Detail the camera
             Dimension size = new Dimension(w, h);
             V3D_Point centroid = universe.aabb.getCentroid(oom, rm);
@@ -512,7 +523,9 @@ public class RenderImage {
             V3D_Vector lighting = new V3D_Vector(1, 2, 3).getUnitVector(oom, rm);
             Path dir = Paths.get(outDataDir.toString(), name);
             r.output = Paths.get(dir.toString(), "test.png");
+            r.metrics = stats;
             r.run(size, lighting, ambientLight, castShadow, oom, rm);
+            System.out.println(stats);
 //                            }
 //                        }
 //                    }
@@ -672,21 +685,24 @@ public class RenderImage {
     }
 
     /**
-     * The process for rendering and image.
+     * The process for rendering and image. The time taken by each phase is
+     * reported to {@link #metrics}.
      *
      * @throws Exception
      */
     public void run(Dimension size, V3D_Vector lighting, BigRational ambientLight,
             boolean castShadow, boolean addGraticules, int oom, RoundingMode rm) throws Exception {
+        universe.camera.metrics = metrics;
         int[] pix = universe.camera.render(this.universe, lighting, ambientLight, castShadow, addGraticules, oom, rm);
         /**
          * Convert pix to an image and write to a file.
          */
+        long t0 = System.nanoTime();
         MemoryImageSource m = new MemoryImageSource(size.width, size.height, pix, 0, size.width);
         Panel panel = new Panel();
         Image image = panel.createImage(m);
         IO.imageToFile(image, "png", this.output);
-        System.out.println("Rendered");
+        metrics.time(Phase.ENCODE, System.nanoTime() - t0);
     }
 
     /**
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+/**
+ * For recording how long each phase of loading, rendering and writing an
+ * image takes and counting the work done. Cameras report to the metrics they
+ * are given (see {@link Camera#metrics} and
+ * {@link uk.ac.leeds.ccg.r3d.d.Camera_d#metrics}), which are {@link #NONE} by
+ * default. {@link RenderStats} is an implementation that totals everything
+ * reported.
+ *
+ * Implementations may be called from several threads at once. Counts are
+ * reported once for each area, tile or row of pixels rather than for each
+ * pixel, so calls are not too frequent.
+ *
+ * @author Andy Turner
+ */
+public interface RenderMetrics {
+
+    /**
+     * The phases that are timed.
+     */
+    public enum Phase {
+        /**
+         * Reading the geometry and constructing the universe.
+         */
+        LOAD,
+        /**
+         * Finding which lines and areas are in the view of the camera.
+         */
+        CULLING,
+        /**
+         * Rendering the graticules, lines and points.
+         */
+        LINE_PASS,
+        /**
+         * Setting the lighting of areas. (Where the areas are ordered, this
+         * is done together with calculating their distances and is timed as
+         * {@link #ORDERING}.)
+         */
+        LIGHTING,
+        /**
+         * Calculating the minimum distance of each area from the camera
+         * focus, ordering the areas by it and calculating their screen bounds.
+         */
+        ORDERING,
+        /**
+         * Finding the closest area through each pixel.
+         */
+        AREA_PASS,
+        /**
+         * Casting shadow rays.
+         */
+        SHADOW_PASS,
+        /**
+         * Colouring the pixels with the closest areas.
+         */
+        COMPOSITE,
+        /**
+         * Creating the image and writing it to a file.
+         */
+        ENCODE
+    }
+
+    /**
+     * The things that are counted.
+     */
+    public enum Counter {
+        /**
+         * Rays cast through pixels to find the closest area with a BVH and
+         * shadow rays.
+         */
+        RAYS_CAST,
+        /**
+         * Tests of whether the ray through a pixel intersects an area, or for
+         * rasterised triangles, of the depth of a triangle in a pixel.
+         */
+        INTERSECTION_TESTS,
+        /**
+         * Tests of an area for a pixel rejected as something closer had
+         * already been rendered through it.
+         */
+        DEPTH_REJECTIONS,
+        /**
+         * Exceptions caught, for instance where the resolution is too coarse
+         * to intersect a ray with an area.
+         */
+        EXCEPTIONS
+    }
+
+    /**
+     * Metrics that ignore everything reported.
+     */
+    public static final RenderMetrics NONE = new RenderMetrics() {
+        @Override
+        public void time(Phase phase, long nanos) {
+        }
+
+        @Override
+        public void count(Counter counter, long n) {
+        }
+    };
+
+    /**
+     * Report time spent in a phase.
+     *
+     * @param phase The phase.
+     * @param nanos The time in nanoseconds.
+     */
+    public void time(Phase phase, long nanos);
+
+    /**
+     * Report a count.
+     *
+     * @param counter What is counted.
+     * @param n The number to add to the count.
+     */
+    public void count(Counter counter, long n);
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+/**
+ * For listening to the progress of a render (see {@link RenderControl}).
+ *
+ * @author Andy Turner
+ */
+@FunctionalInterface
+public interface RenderProgress {
+
+    /**
+     * Called as a render progresses. This may be called from several threads
+     * at once if the render is parallel, in which case calls may arrive out of
+     * order.
+     *
+     * @param done The work done so far.
+     * @param total The total work to do. The fraction of the render done is
+     * {@code done / total}.
+     */
+    public void progress(long done, long total);
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link RenderMetrics} that total the time reported for each phase and the
+ * counts reported for each counter. Totals accumulate over all the renders
+ * reported until {@link #reset()}. It is safe to report from several threads.
+ *
+ * @author Andy Turner
+ */
+public class RenderStats implements RenderMetrics {
+
+    /**
+     * The total nanoseconds for each phase indexed by ordinal.
+     */
+    private final LongAdder[] nanos;
+
+    /**
+     * The total for each counter indexed by ordinal.
+     */
+    private final LongAdder[] counts;
+
+    /**
+     * Create a new instance.
+     */
+    public RenderStats() {
+        nanos = new LongAdder[Phase.values().length];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = new LongAdder();
+        }
+        counts = new LongAdder[Counter.values().length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void time(Phase phase, long nanos) {
+        this.nanos[phase.ordinal()].add(nanos);
+    }
+
+    @Override
+    public void count(Counter counter, long n) {
+        counts[counter.ordinal()].add(n);
+    }
+
+    /**
+     * @param phase The phase.
+     * @return The total nanoseconds reported for phase.
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * @param counter The counter.
+     * @return The total reported for counter.
+     */
+    public long getCount(Counter counter) {
+        return counts[counter.ordinal()].sum();
+    }
+
+    /**
+     * Set all the totals to zero.
+     */
+    public void reset() {
+        for (LongAdder x : nanos) {
+            x.reset();
+        }
+        for (LongAdder x : counts) {
+            x.reset();
+        }
+    }
+
+    /**
+     * @return The milliseconds for each phase and the total for each counter
+     * that are not zero.
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder(getClass().getSimpleName())
+                .append("(");
+        String sep = "";
+        for (Phase p : Phase.values()) {
+            long t = getNanos(p);
+            if (t != 0L) {
+                s.append(sep).append(p).append("=")
+                        .append(String.format("%.3f", t / 1000000d))
+                        .append("ms");
+                sep = ", ";
+            }
+        }
+        for (Counter c : Counter.values()) {
+            long n = getCount(c);
+            if (n != 0L) {
+                s.append(sep).append(c).append("=").append(n);
+                sep = ", ";
+            }
+        }
+        return s.append(")").toString();
+    }
+}
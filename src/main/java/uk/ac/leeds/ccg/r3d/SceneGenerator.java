@@ -0,0 +1,465 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import uk.ac.leeds.ccg.r3d.io.STL_Writer;
+
+/**
+ * For generating scenes of triangles of any size for testing and
+ * benchmarking. A scene is given by its type, the number of triangles wanted
+ * and a seed for the pseudo random numbers used, so the same scene can be
+ * generated again without having to be stored. The triangles are generated one
+ * at a time and passed to a {@link Visitor}, so scenes of tens of millions of
+ * triangles can be written to binary STL files (see
+ * {@link #writeBinary(Path)}) without being held in memory. A universe can be
+ * filled with a scene using
+ * {@link Universe#Universe(SceneGenerator, uk.ac.leeds.ccg.v3d.geometry.V3D_Vector, java.awt.Color, int, java.math.RoundingMode, uk.ac.leeds.ccg.v3d.core.V3D_Environment)}
+ * or the equivalent constructor of {@link uk.ac.leeds.ccg.r3d.d.Universe_d}.
+ *
+ * Each scene fits within the cube with corners (-1, -1, -1) and (1, 1, 1) and
+ * the corners of each triangle are ordered so that the normal given by the
+ * right hand rule faces outwards (or upwards).
+ *
+ * @author Andy Turner
+ */
+public class SceneGenerator {
+
+    /**
+     * The types of scene.
+     */
+    public enum Scene {
+
+        /**
+         * Triangles with random corners scattered randomly through the cube.
+         */
+        SOUP,
+        /**
+         * A unit sphere made by subdividing each face of an icosahedron into
+         * f * f triangles, so there are 20 * f * f triangles. The seed is not
+         * used. This is a closed surface.
+         */
+        SPHERE,
+        /**
+         * A square heightfield of m * m cells each split into two triangles,
+         * so there are 2 * m * m triangles. The heights are the sum of sine
+         * waves with random directions and phases.
+         */
+        TERRAIN,
+        /**
+         * A square grid of g * g box buildings with random footprints and
+         * heights. Each building has four walls and a flat roof and no floor,
+         * so there are 10 * g * g triangles.
+         */
+        BUILDINGS
+    }
+
+    /**
+     * For visiting each triangle of a scene.
+     */
+    public interface Visitor {
+
+        /**
+         * @param px The x coordinate of the first corner.
+         * @param py The y coordinate of the first corner.
+         * @param pz The z coordinate of the first corner.
+         * @param qx The x coordinate of the second corner.
+         * @param qy The y coordinate of the second corner.
+         * @param qz The z coordinate of the second corner.
+         * @param rx The x coordinate of the third corner.
+         * @param ry The y coordinate of the third corner.
+         * @param rz The z coordinate of the third corner.
+         * @throws IOException If the visitor writes and this fails.
+         */
+        void visit(double px, double py, double pz, double qx, double qy,
+                double qz, double rx, double ry, double rz) throws IOException;
+    }
+
+    /**
+     * The type of scene.
+     */
+    public final Scene scene;
+
+    /**
+     * The number of triangles asked for. The actual number (see
+     * {@link #getNumberOfTriangles()}) is close to this.
+     */
+    public final long n;
+
+    /**
+     * The seed for the pseudo random numbers.
+     */
+    public final long seed;
+
+    /**
+     * The number of divisions: the frequency f for {@link Scene#SPHERE}, the
+     * number of cells m along each side for {@link Scene#TERRAIN} and the
+     * number of buildings g along each side for {@link Scene#BUILDINGS}.
+     */
+    public final int k;
+
+    /**
+     * Create a new instance.
+     *
+     * @param scene What {@link #scene} is set to.
+     * @param n What {@link #n} is set to.
+     * @param seed What {@link #seed} is set to.
+     */
+    public SceneGenerator(Scene scene, long n, long seed) {
+        this.scene = scene;
+        this.n = n;
+        this.seed = seed;
+        k = switch (scene) {
+            case SOUP ->
+                0;
+            case SPHERE ->
+                getDivisions(n, 20);
+            case TERRAIN ->
+                getDivisions(n, 2);
+            case BUILDINGS ->
+                getDivisions(n, 10);
+        };
+    }
+
+    /**
+     * Create a new instance from a name of the form
+     * {@code <scene>_<n>} or {@code <scene>_<n>_<seed>}, for example
+     * "terrain_100000" or "soup_1000000_7". The seed defaults to 0.
+     *
+     * @param name The name.
+     * @return A new instance.
+     */
+    public static SceneGenerator parse(String name) {
+        String[] s = name.split("_");
+        if (s.length < 2 || s.length > 3) {
+            throw new IllegalArgumentException("Expected <scene>_<n> or "
+                    + "<scene>_<n>_<seed>, not " + name);
+        }
+        return new SceneGenerator(Scene.valueOf(s[0].toUpperCase()),
+                Long.parseLong(s[1]), s.length == 3 ? Long.parseLong(s[2]) : 0L);
+    }
+
+    /**
+     * @return The name of the scene in the form parsed by
+     * {@link #parse(String)}.
+     */
+    @Override
+    public String toString() {
+        return scene.name().toLowerCase() + "_" + n + "_" + seed;
+    }
+
+    /**
+     * Write a scene to a binary STL file.
+     *
+     * @param args The name of the scene (see {@link #parse(String)}) and the
+     * path of the file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: SceneGenerator <scene>_<n>[_<seed>] "
+                    + "<file.stl>");
+            return;
+        }
+        SceneGenerator g = parse(args[0]);
+        System.out.println("Writing " + g.getNumberOfTriangles()
+                + " triangles to " + args[1]);
+        g.writeBinary(Paths.get(args[1]));
+    }
+
+    private static int getDivisions(long n, int m) {
+        return (int) Math.max(1L, Math.round(Math.sqrt((double) n / m)));
+    }
+
+    /**
+     * @return The number of triangles in the scene.
+     */
+    public long getNumberOfTriangles() {
+        return switch (scene) {
+            case SOUP ->
+                n;
+            case SPHERE ->
+                20L * k * k;
+            case TERRAIN ->
+                2L * k * k;
+            case BUILDINGS ->
+                10L * k * k;
+        };
+    }
+
+    /**
+     * @return true if the scene is a closed surface.
+     */
+    public boolean isClosed() {
+        return scene == Scene.SPHERE;
+    }
+
+    /**
+     * Generate the triangles of the scene.
+     *
+     * @param v The visitor for each triangle.
+     * @throws IOException If the visitor throws it.
+     */
+    public void generate(Visitor v) throws IOException {
+        switch (scene) {
+            case SOUP ->
+                generateSoup(v);
+            case SPHERE ->
+                generateSphere(v);
+            case TERRAIN ->
+                generateTerrain(v);
+            case BUILDINGS ->
+                generateBuildings(v);
+        }
+    }
+
+    /**
+     * Write the scene to a binary STL file.
+     *
+     * @param p The path of the file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeBinary(Path p) throws IOException {
+        try (STL_Writer w = new STL_Writer(p, getNumberOfTriangles())) {
+            generate(w::write);
+        }
+    }
+
+    private void generateSoup(Visitor v) throws IOException {
+        Random r = new Random(seed);
+        // Triangles about the size of the spacing between them.
+        double s = 1d / Math.cbrt(Math.max(1L, n));
+        double c = 1d - s;
+        for (long i = 0; i < n; i++) {
+            double x = c * (2d * r.nextDouble() - 1d);
+            double y = c * (2d * r.nextDouble() - 1d);
+            double z = c * (2d * r.nextDouble() - 1d);
+            v.visit(x + s * (2d * r.nextDouble() - 1d),
+                    y + s * (2d * r.nextDouble() - 1d),
+                    z + s * (2d * r.nextDouble() - 1d),
+                    x + s * (2d * r.nextDouble() - 1d),
+                    y + s * (2d * r.nextDouble() - 1d),
+                    z + s * (2d * r.nextDouble() - 1d),
+                    x + s * (2d * r.nextDouble() - 1d),
+                    y + s * (2d * r.nextDouble() - 1d),
+                    z + s * (2d * r.nextDouble() - 1d));
+        }
+    }
+
+    private void generateSphere(Visitor v) throws IOException {
+        double t = (1d + Math.sqrt(5d)) / 2d;
+        double[][] vs = {{-1, t, 0}, {1, t, 0}, {-1, -t, 0}, {1, -t, 0},
+        {0, -1, t}, {0, 1, t}, {0, -1, -t}, {0, 1, -t},
+        {t, 0, -1}, {t, 0, 1}, {-t, 0, -1}, {-t, 0, 1}};
+        int[][] fs = {{0, 11, 5}, {0, 5, 1}, {0, 1, 7}, {0, 7, 10},
+        {0, 10, 11}, {1, 5, 9}, {5, 11, 4}, {11, 10, 2}, {10, 7, 6},
+        {7, 1, 8}, {3, 9, 4}, {3, 4, 2}, {3, 2, 6}, {3, 6, 8}, {3, 8, 9},
+        {4, 9, 5}, {2, 4, 11}, {6, 2, 10}, {8, 6, 7}, {9, 8, 1}};
+        int f = k;
+        /*
+         * The points on the edges of the icosahedron indexed by the corners
+         * at either end (lowest first) and the number of divisions from the
+         * lowest. These are shared by the faces either side, so the sphere is
+         * closed with the points on the edges bitwise equal.
+         */
+        double[][][] es = new double[vs.length * vs.length][][];
+        // The points of a face indexed by i * (f + 1) + j for i + j <= f.
+        double[][] p = new double[(f + 1) * (f + 1)][];
+        for (int[] face : fs) {
+            double[] a = vs[face[0]];
+            double[] b = vs[face[1]];
+            double[] c = vs[face[2]];
+            for (int i = 0; i <= f; i++) {
+                for (int j = 0; i + j <= f; j++) {
+                    double[] x;
+                    if (j == 0) {
+                        x = getEdgePoint(vs, es, f, face[0], face[1], i);
+                    } else if (i == 0) {
+                        x = getEdgePoint(vs, es, f, face[0], face[2], j);
+                    } else if (i + j == f) {
+                        x = getEdgePoint(vs, es, f, face[1], face[2], j);
+                    } else {
+                        x = new double[3];
+                        for (int d = 0; d < 3; d++) {
+                            x[d] = a[d] + ((b[d] - a[d]) * i
+                                    + (c[d] - a[d]) * j) / f;
+                        }
+                        normalise(x);
+                    }
+                    p[i * (f + 1) + j] = x;
+                }
+            }
+            for (int i = 0; i < f; i++) {
+                for (int j = 0; i + j < f; j++) {
+                    visit(v, p[i * (f + 1) + j], p[(i + 1) * (f + 1) + j],
+                            p[i * (f + 1) + j + 1]);
+                    if (i + j < f - 1) {
+                        visit(v, p[(i + 1) * (f + 1) + j],
+                                p[(i + 1) * (f + 1) + j + 1],
+                                p[i * (f + 1) + j + 1]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a point on an edge of the icosahedron projected onto the sphere.
+     *
+     * @param vs The corners of the icosahedron.
+     * @param es The points on the edges calculated so far.
+     * @param f The number of divisions of each edge.
+     * @param u The index of the corner the point is measured from.
+     * @param w The index of the corner at the other end of the edge.
+     * @param s The number of divisions from u.
+     * @return The point.
+     */
+    private static double[] getEdgePoint(double[][] vs, double[][][] es,
+            int f, int u, int w, int s) {
+        if (u > w) {
+            return getEdgePoint(vs, es, f, w, u, f - s);
+        }
+        double[][] e = es[u * vs.length + w];
+        if (e == null) {
+            e = new double[f + 1][];
+            double[] a = vs[u];
+            double[] b = vs[w];
+            for (int i = 0; i <= f; i++) {
+                double[] x = new double[3];
+                for (int d = 0; d < 3; d++) {
+                    // The corners exactly, so they are the same for each edge.
+                    x[d] = i == f ? b[d] : a[d] + (b[d] - a[d]) * i / f;
+                }
+                normalise(x);
+                e[i] = x;
+            }
+            es[u * vs.length + w] = e;
+        }
+        return e[s];
+    }
+
+    /**
+     * Scale a vector to unit length.
+     *
+     * @param x The vector.
+     */
+    private static void normalise(double[] x) {
+        double m = Math.sqrt(x[0] * x[0] + x[1] * x[1] + x[2] * x[2]);
+        x[0] /= m;
+        x[1] /= m;
+        x[2] /= m;
+    }
+
+    private static void visit(Visitor v, double[] p, double[] q, double[] r)
+            throws IOException {
+        v.visit(p[0], p[1], p[2], q[0], q[1], q[2], r[0], r[1], r[2]);
+    }
+
+    private void generateTerrain(Visitor v) throws IOException {
+        Random r = new Random(seed);
+        // Three waves for each of six octaves.
+        int nw = 18;
+        double[] wx = new double[nw];
+        double[] wy = new double[nw];
+        double[] wa = new double[nw];
+        double[] wp = new double[nw];
+        double sum = 0d;
+        for (int i = 0; i < nw; i++) {
+            int octave = i / 3;
+            double angle = 2d * Math.PI * r.nextDouble();
+            double frequency = Math.PI * (1 << octave);
+            wx[i] = frequency * Math.cos(angle);
+            wy[i] = frequency * Math.sin(angle);
+            wa[i] = 1d / (1 << octave);
+            wp[i] = 2d * Math.PI * r.nextDouble();
+            sum += wa[i];
+        }
+        // Scale so heights are in [-0.5, 0.5].
+        for (int i = 0; i < nw; i++) {
+            wa[i] /= 2d * sum;
+        }
+        int m = k;
+        double[] z0 = new double[m + 1];
+        double[] z1 = new double[m + 1];
+        for (int j = 0; j <= m; j++) {
+            z1[j] = getHeight(-1d, getCoordinate(j, m), wx, wy, wa, wp);
+        }
+        for (int i = 0; i < m; i++) {
+            double[] swap = z0;
+            z0 = z1;
+            z1 = swap;
+            double x0 = getCoordinate(i, m);
+            double x1 = getCoordinate(i + 1, m);
+            for (int j = 0; j <= m; j++) {
+                z1[j] = getHeight(x1, getCoordinate(j, m), wx, wy, wa, wp);
+            }
+            for (int j = 0; j < m; j++) {
+                double y0 = getCoordinate(j, m);
+                double y1 = getCoordinate(j + 1, m);
+                v.visit(x0, y0, z0[j], x1, y0, z1[j], x1, y1, z1[j + 1]);
+                v.visit(x0, y0, z0[j], x1, y1, z1[j + 1], x0, y1, z0[j + 1]);
+            }
+        }
+    }
+
+    private static double getCoordinate(int i, int m) {
+        return -1d + 2d * i / m;
+    }
+
+    private static double getHeight(double x, double y, double[] wx,
+            double[] wy, double[] wa, double[] wp) {
+        double z = 0d;
+        for (int i = 0; i < wx.length; i++) {
+            z += wa[i] * Math.sin(wx[i] * x + wy[i] * y + wp[i]);
+        }
+        return z;
+    }
+
+    private void generateBuildings(Visitor v) throws IOException {
+        Random r = new Random(seed);
+        int g = k;
+        double c = 2d / g;
+        for (int i = 0; i < g; i++) {
+            for (int j = 0; j < g; j++) {
+                double cx = -1d + c * (i + 0.5d);
+                double cy = -1d + c * (j + 0.5d);
+                double hx = c * (0.25d + 0.2d * r.nextDouble());
+                double hy = c * (0.25d + 0.2d * r.nextDouble());
+                double u = r.nextDouble();
+                double h = 0.05d + 0.95d * u * u;
+                double x0 = cx - hx;
+                double x1 = cx + hx;
+                double y0 = cy - hy;
+                double y1 = cy + hy;
+                // Walls facing -y, +x, +y and -x.
+                v.visit(x0, y0, 0d, x1, y0, 0d, x1, y0, h);
+                v.visit(x0, y0, 0d, x1, y0, h, x0, y0, h);
+                v.visit(x1, y0, 0d, x1, y1, 0d, x1, y1, h);
+                v.visit(x1, y0, 0d, x1, y1, h, x1, y0, h);
+                v.visit(x1, y1, 0d, x0, y1, 0d, x0, y1, h);
+                v.visit(x1, y1, 0d, x0, y1, h, x1, y1, h);
+                v.visit(x0, y1, 0d, x0, y0, 0d, x0, y0, h);
+                v.visit(x0, y1, 0d, x0, y0, h, x0, y1, h);
+                // Roof.
+                v.visit(x0, y0, h, x1, y0, h, x1, y1, h);
+                v.visit(x0, y0, h, x1, y1, h, x0, y1, h);
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@ package uk.ac.leeds.ccg.r3d;
 import ch.obermuhlner.math.big.BigRational;
 import java.awt.Color;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -25,6 +26,7 @@ import uk.ac.leeds.ccg.r3d.entities.Area;
 import uk.ac.leeds.ccg.r3d.entities.Line;
 import uk.ac.leeds.ccg.r3d.entities.Point;
 import uk.ac.leeds.ccg.r3d.io.STL_Reader;
+import uk.ac.leeds.ccg.r3d.jfr.UniverseBuildEvent;
 import uk.ac.leeds.ccg.v3d.core.V3D_Environment;
 import uk.ac.leeds.ccg.v3d.geometry.V3D_AABB;
 import uk.ac.leeds.ccg.v3d.geometry.V3D_Area;
@@ -221,6 +223,8 @@ public class Universe {
     public Universe(Path path, V3D_Vector offset, Color color,
             int oom, RoundingMode rm, 
         V3D_Environment env) throws IOException {
+        UniverseBuildEvent event = new UniverseBuildEvent();
+        event.begin();
         this.env = env;
         points = new ArrayList<>();
         lines = new ArrayList<>();
@@ -252,6 +256,64 @@ public class Universe {
             }
         }
         aabb = new V3D_AABB(env, oom, xmin, xmax, ymin, ymax, zmin, zmax);
+        event.source = path.toString();
+        event.areas = areas.size();
+        event.oom = oom;
+        event.commit();
+    }
+
+    /**
+     * Create a new instance filled with the triangles of a generated scene.
+     *
+     * @param g The scene generator.
+     * @param offset The offset for each geometry created.
+     * @param color The colour of the triangles.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @param env The environment.
+     */
+    public Universe(SceneGenerator g, V3D_Vector offset, Color color,
+            int oom, RoundingMode rm, V3D_Environment env) {
+        UniverseBuildEvent event = new UniverseBuildEvent();
+        event.begin();
+        this.env = env;
+        points = new ArrayList<>();
+        lines = new ArrayList<>();
+        areas = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8,
+                g.getNumberOfTriangles()));
+        double[] b = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        try {
+            g.generate((px, py, pz, qx, qy, qz, rx, ry, rz) -> {
+                areas.add(new Area(new V3D_Triangle(env, offset,
+                        new V3D_Vector(px, py, pz),
+                        new V3D_Vector(qx, qy, qz),
+                        new V3D_Vector(rx, ry, rz)), color));
+                b[0] = Math.min(b[0], Math.min(px, Math.min(qx, rx)));
+                b[1] = Math.max(b[1], Math.max(px, Math.max(qx, rx)));
+                b[2] = Math.min(b[2], Math.min(py, Math.min(qy, ry)));
+                b[3] = Math.max(b[3], Math.max(py, Math.max(qy, ry)));
+                b[4] = Math.min(b[4], Math.min(pz, Math.min(qz, rz)));
+                b[5] = Math.max(b[5], Math.max(pz, Math.max(qz, rz)));
+            });
+        } catch (IOException ex) {
+            // Not thrown as nothing is written.
+            throw new UncheckedIOException(ex);
+        }
+        BigRational[] c = new BigRational[6];
+        for (int i = 0; i < 6; i++) {
+            c[i] = BigRational.valueOf(b[i]);
+        }
+        aabb = new V3D_AABB(env, oom,
+                c[0].add(offset.getDX(oom, rm)), c[1].add(offset.getDX(oom, rm)),
+                c[2].add(offset.getDY(oom, rm)), c[3].add(offset.getDY(oom, rm)),
+                c[4].add(offset.getDZ(oom, rm)), c[5].add(offset.getDZ(oom, rm)));
+        event.source = g.toString();
+        event.areas = areas.size();
+        event.closed = g.isClosed();
+        event.oom = oom;
+        event.commit();
     }
 
     /**
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+import ch.obermuhlner.math.big.BigRational;
+import java.io.Serializable;
+import java.math.RoundingMode;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_Point;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_Vector;
+
+/**
+ * A view-projection transform for mapping between points in the universe and
+ * screen coordinates with BigRational arithmetic. This is as
+ * {@link uk.ac.leeds.ccg.r3d.d.ViewProjection_d} except that the screen
+ * normal is not normalised (so that everything is rational and the mapping is
+ * exact given the coordinates it is created from), so w is proportional to
+ * rather than equal to the distance in front of the focus.
+ *
+ * The screen is the plane through a point p spanned by a row vector a and a
+ * column vector b. The screen coordinates (r, c) of a point s on the screen
+ * are such that {@code s = p + r * a + c * b}, so the pixel in row {@code row}
+ * and column {@code col} covers [row, row + 1) x [col, col + 1). {@link #m}
+ * maps {x, y, z, 1} to {r * w, c * w, 1, w}.
+ *
+ * @author Andy Turner
+ */
+public class ViewProjection implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The 4x4 view-projection matrix in row major order.
+     */
+    public final BigRational[] m = new BigRational[16];
+
+    /**
+     * The inverse of {@link #m} in row major order.
+     */
+    public final BigRational[] inverse = new BigRational[16];
+
+    /**
+     * The value of w for points on the screen.
+     */
+    public final BigRational d;
+
+    /**
+     * The Order of Magnitude for the precision of the coordinates this was
+     * created from.
+     */
+    public final int oom;
+
+    /**
+     * The RoundingMode used for the coordinates this was created from.
+     */
+    public final RoundingMode rm;
+
+    /**
+     * Create a new instance.
+     *
+     * @param f The focus.
+     * @param p The screen origin.
+     * @param a The row vector.
+     * @param b The column vector.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     */
+    public ViewProjection(V3D_Point f, V3D_Point p, V3D_Vector a,
+            V3D_Vector b, int oom, RoundingMode rm) {
+        this.oom = oom;
+        this.rm = rm;
+        BigRational[] fv = {f.getX(oom, rm), f.getY(oom, rm), f.getZ(oom, rm)};
+        BigRational[] av = {a.getDX(oom, rm), a.getDY(oom, rm),
+            a.getDZ(oom, rm)};
+        BigRational[] bv = {b.getDX(oom, rm), b.getDY(oom, rm),
+            b.getDZ(oom, rm)};
+        BigRational[] fp = {p.getX(oom, rm).subtract(fv[0]),
+            p.getY(oom, rm).subtract(fv[1]), p.getZ(oom, rm).subtract(fv[2])};
+        // The normal of the screen facing away from the focus.
+        BigRational[] n = cross(av, bv);
+        if (dot(fp, n).signum() < 0) {
+            for (int k = 0; k < 3; k++) {
+                n[k] = n[k].negate();
+            }
+        }
+        d = dot(fp, n);
+        // The dual basis vectors giving screen coordinates by dot product.
+        BigRational[] as = cross(bv, n);
+        BigRational asm = dot(av, as);
+        BigRational[] bs = cross(n, av);
+        BigRational bsm = dot(bv, bs);
+        for (int k = 0; k < 3; k++) {
+            as[k] = as[k].divide(asm);
+            bs[k] = bs[k].divide(bsm);
+        }
+        BigRational fpa = dot(fp, as);
+        BigRational fpb = dot(fp, bs);
+        for (int k = 0; k < 3; k++) {
+            m[k] = d.multiply(as[k]).subtract(fpa.multiply(n[k]));
+            m[4 + k] = d.multiply(bs[k]).subtract(fpb.multiply(n[k]));
+            m[8 + k] = BigRational.ZERO;
+            m[12 + k] = n[k];
+        }
+        m[3] = dot(m, 0, fv).negate();
+        m[7] = dot(m, 4, fv).negate();
+        m[11] = BigRational.ONE;
+        m[15] = dot(n, fv).negate();
+        invert(m, inverse);
+    }
+
+    /**
+     * @param x A point.
+     * @return The value of w for x which is positive if x is in front of the
+     * focus.
+     */
+    public BigRational getW(V3D_Point x) {
+        return apply(m, 12, x);
+    }
+
+    /**
+     * @param x A point in front of the focus.
+     * @return The row coordinate of the projection of the point.
+     */
+    public BigRational getRow(V3D_Point x) {
+        return apply(m, 0, x).divide(getW(x));
+    }
+
+    /**
+     * @param x A point in front of the focus.
+     * @return The column coordinate of the projection of the point.
+     */
+    public BigRational getCol(V3D_Point x) {
+        return apply(m, 4, x).divide(getW(x));
+    }
+
+    /**
+     * Get the point on the screen with the screen coordinates (r, c).
+     *
+     * @param r The row coordinate.
+     * @param c The column coordinate.
+     * @return The coordinates {x, y, z}.
+     */
+    public BigRational[] getScreenPoint(BigRational r, BigRational c) {
+        BigRational[] v = {r, c, d.reciprocal(), BigRational.ONE};
+        BigRational h = dot4(inverse, 12, v);
+        return new BigRational[]{dot4(inverse, 0, v).divide(h),
+            dot4(inverse, 4, v).divide(h), dot4(inverse, 8, v).divide(h)};
+    }
+
+    /**
+     * @param x A number.
+     * @return The largest int that is not greater than x.
+     */
+    public static int floor(BigRational x) {
+        int i = x.intValue();
+        if (x.signum() < 0 && x.compareTo(BigRational.valueOf(i)) != 0) {
+            i--;
+        }
+        return i;
+    }
+
+    private BigRational apply(BigRational[] a, int i, V3D_Point x) {
+        return a[i].multiply(x.getX(oom, rm))
+                .add(a[i + 1].multiply(x.getY(oom, rm)))
+                .add(a[i + 2].multiply(x.getZ(oom, rm))).add(a[i + 3]);
+    }
+
+    private static BigRational dot(BigRational[] u, BigRational[] v) {
+        return dot(u, 0, v);
+    }
+
+    private static BigRational dot(BigRational[] u, int i, BigRational[] v) {
+        return u[i].multiply(v[0]).add(u[i + 1].multiply(v[1]))
+                .add(u[i + 2].multiply(v[2]));
+    }
+
+    private static BigRational dot4(BigRational[] u, int i, BigRational[] v) {
+        return dot(u, i, v).add(u[i + 3].multiply(v[3]));
+    }
+
+    private static BigRational[] cross(BigRational[] u, BigRational[] v) {
+        return new BigRational[]{
+            u[1].multiply(v[2]).subtract(u[2].multiply(v[1])),
+            u[2].multiply(v[0]).subtract(u[0].multiply(v[2])),
+            u[0].multiply(v[1]).subtract(u[1].multiply(v[0]))};
+    }
+
+    /**
+     * Invert a 4x4 matrix by Gauss-Jordan elimination. As the arithmetic is
+     * exact, any non-zero pivot will do.
+     *
+     * @param a The matrix in row major order.
+     * @param r The array to set to the inverse in row major order.
+     */
+    static void invert(BigRational[] a, BigRational[] r) {
+        BigRational[] w = a.clone();
+        for (int i = 0; i < 16; i++) {
+            r[i] = (i % 5 == 0) ? BigRational.ONE : BigRational.ZERO;
+        }
+        for (int col = 0; col < 4; col++) {
+            int pivot = col;
+            while (w[pivot * 4 + col].isZero()) {
+                pivot++;
+            }
+            if (pivot != col) {
+                swapRows(w, pivot, col);
+                swapRows(r, pivot, col);
+            }
+            BigRational pv = w[col * 4 + col];
+            for (int k = 0; k < 4; k++) {
+                w[col * 4 + k] = w[col * 4 + k].divide(pv);
+                r[col * 4 + k] = r[col * 4 + k].divide(pv);
+            }
+            for (int row = 0; row < 4; row++) {
+                if (row != col) {
+                    BigRational f = w[row * 4 + col];
+                    if (!f.isZero()) {
+                        for (int k = 0; k < 4; k++) {
+                            w[row * 4 + k] = w[row * 4 + k].subtract(
+                                    f.multiply(w[col * 4 + k]));
+                            r[row * 4 + k] = r[row * 4 + k].subtract(
+                                    f.multiply(r[col * 4 + k]));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void swapRows(BigRational[] a, int i, int j) {
+        for (int k = 0; k < 4; k++) {
+            BigRational t = a[i * 4 + k];
+            a[i * 4 + k] = a[j * 4 + k];
+            a[j * 4 + k] = t;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+import uk.ac.leeds.ccg.r3d.RenderControl;
+import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
+
+/**
+ * A tile of the screen of a {@link Camera_d} and the areas with projected
+ * bounds that overlap it. If there is a lot of work to do, the tile is split
+ * in two along its longest side and each half is processed as a separate task
+ * so that dense regions of a mesh are shared among the workers of a
+ * {@link java.util.concurrent.ForkJoinPool}.
+ *
+ * The areas are processed in the order given, so each pixel is tested against
+ * the same sequence of areas as in the serial render and the results are the
+ * same. Tiles do not overlap, so no two tasks write to the same pixel of the
+ * frame buffer. Each tile stops processing areas once all its pixels are
+ * covered by something nearer than the remaining areas (see
+ * {@link Camera_d#processAreas}).
+ *
+ * @author Andy Turner
+ */
+public class AreaTile_d extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of ray tests below which a tile is not split.
+     */
+    public static final long MIN_WORK = 4096L;
+
+    /**
+     * The number of rows or columns below which a tile is not split.
+     */
+    public static final int MIN_SIZE = 8;
+
+    /**
+     * The camera.
+     */
+    final Camera_d camera;
+
+    /**
+     * The areas.
+     */
+    final ArrayList<Area_d> areas;
+
+    /**
+     * The minimum distance squared for each area and the camera focus.
+     */
+    final double[] mind2sa;
+
+    /**
+     * The screen bounds of each area {minRow, minCol, maxRow, maxCol}.
+     */
+    final int[][] bounds;
+
+    /**
+     * The projected triangles for rasterising or {@code null}.
+     */
+    final double[] screen;
+
+    /**
+     * The frame buffer.
+     */
+    final FrameBuffer_d fb;
+
+    /**
+     * The indexes of the areas that overlap this tile, nearest first.
+     */
+    final int[] order;
+
+    /**
+     * The number of areas in order.
+     */
+    final int n;
+
+    /**
+     * The bounds of this tile (inclusive).
+     */
+    final int minRow, minCol, maxRow, maxCol;
+
+    /**
+     * The tolerance within which vector components are regarded as equal.
+     */
+    final double epsilon;
+
+    /**
+     * For cancelling and reporting progress. Tiles are not serialized, so
+     * this is transient.
+     */
+    final transient RenderControl control;
+
+    /**
+     * Create a new instance.
+     *
+     * @param camera What {@link #camera} is set to.
+     * @param areas What {@link #areas} is set to.
+     * @param mind2sa What {@link #mind2sa} is set to.
+     * @param bounds What {@link #bounds} is set to.
+     * @param screen What {@link #screen} is set to.
+     * @param fb What {@link #fb} is set to.
+     * @param order What {@link #order} is set to.
+     * @param n What {@link #n} is set to.
+     * @param minRow What {@link #minRow} is set to.
+     * @param minCol What {@link #minCol} is set to.
+     * @param maxRow What {@link #maxRow} is set to.
+     * @param maxCol What {@link #maxCol} is set to.
+     * @param epsilon What {@link #epsilon} is set to.
+     * @param control What {@link #control} is set to.
+     */
+    public AreaTile_d(Camera_d camera, ArrayList<Area_d> areas,
+            double[] mind2sa, int[][] bounds, double[] screen,
+            FrameBuffer_d fb, int[] order, int n, int minRow, int minCol,
+            int maxRow, int maxCol,
+            double epsilon, RenderControl control) {
+        this.camera = camera;
+        this.areas = areas;
+        this.mind2sa = mind2sa;
+        this.bounds = bounds;
+        this.screen = screen;
+        this.fb = fb;
+        this.order = order;
+        this.n = n;
+        this.minRow = minRow;
+        this.minCol = minCol;
+        this.maxRow = maxRow;
+        this.maxCol = maxCol;
+        this.epsilon = epsilon;
+        this.control = control;
+    }
+
+    @Override
+    protected void compute() {
+        control.checkCancelled();
+        int nr = maxRow - minRow + 1;
+        int nc = maxCol - minCol + 1;
+        if ((nr >= MIN_SIZE * 2 || nc >= MIN_SIZE * 2) && getWork() > MIN_WORK) {
+            if (nr >= nc) {
+                int mid = minRow + nr / 2;
+                invokeAll(getTile(minRow, minCol, mid - 1, maxCol),
+                        getTile(mid, minCol, maxRow, maxCol));
+            } else {
+                int mid = minCol + nc / 2;
+                invokeAll(getTile(minRow, minCol, maxRow, mid - 1),
+                        getTile(minRow, mid, maxRow, maxCol));
+            }
+        } else {
+            camera.processAreas(areas, mind2sa, bounds, screen, fb, order, n,
+                    minRow, minCol, maxRow, maxCol, epsilon, control);
+        }
+    }
+
+    /**
+     * @return The number of ray tests of the areas in this tile.
+     */
+    long getWork() {
+        long w = 0L;
+        for (int j = 0; j < n; j++) {
+            int[] b = bounds[order[j]];
+            long r = Math.min(b[2], maxRow) - Math.max(b[0], minRow) + 1;
+            long c = Math.min(b[3], maxCol) - Math.max(b[1], minCol) + 1;
+            w += r * c;
+        }
+        return w;
+    }
+
+    /**
+     * @return A tile for part of this tile with the areas that overlap it.
+     */
+    AreaTile_d getTile(int r0, int c0, int r1, int c1) {
+        int[] o = new int[n];
+        int m = 0;
+        for (int j = 0; j < n; j++) {
+            int[] b = bounds[order[j]];
+            if (b[0] <= r1 && b[2] >= r0 && b[1] <= c1 && b[3] >= c0) {
+                o[m] = order[j];
+                m++;
+            }
+        }
+        return new AreaTile_d(camera, areas, mind2sa, bounds, screen, fb, o, m,
+                r0, c0, r1, c1, epsilon, control);
+    }
+}
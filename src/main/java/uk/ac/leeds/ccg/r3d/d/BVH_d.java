@@ -0,0 +1,645 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.util.ArrayList;
+import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_AABB_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Area_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Ray_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * A Bounding Volume Hierarchy (BVH) of areas for finding which areas a ray
+ * intersects. The hierarchy is built top down from the Axis Aligned Bounding
+ * Box (AABB) of each area by splitting the areas of each node into two using
+ * the Surface Area Heuristic (SAH) evaluated over a number of bins along each
+ * axis.
+ *
+ * The nodes are stored in flat arrays. The left child of an internal node
+ * directly follows it and {@link #nodeRight} gives the index of the right
+ * child. A leaf refers to a range of {@link #index}.
+ *
+ * Triangles are intersected using {@link RayTriangle_d}. Other areas are
+ * intersected using V3D_Area_d.getIntersectNonCoplanar.
+ *
+ * The hierarchy is not updated if areas are added or changed, so a new one
+ * should be built (see {@link Universe_d#getBVH()}).
+ *
+ * @author Andy Turner
+ */
+public class BVH_d {
+
+    /**
+     * The maximum number of areas in a leaf unless splitting is impossible or
+     * more costly.
+     */
+    public static final int LEAF_SIZE = 4;
+
+    /**
+     * The maximum number of areas in a leaf.
+     */
+    public static final int MAX_LEAF_SIZE = 16;
+
+    /**
+     * The number of bins used to evaluate splits.
+     */
+    public static final int NBINS = 12;
+
+    /**
+     * The maximum depth of the hierarchy beyond which nodes are split in half.
+     */
+    static final int MAX_DEPTH = 60;
+
+    /**
+     * The cost of traversing a node relative to intersecting an area.
+     */
+    static final double TRAVERSAL_COST = 1d;
+
+    /**
+     * The areas.
+     */
+    public final ArrayList<Area_d> areas;
+
+    /**
+     * The number of areas.
+     */
+    public final int n;
+
+    /**
+     * The AABB of each area {xmin, ymin, zmin, xmax, ymax, zmax}.
+     */
+    final double[] areaBounds;
+
+    /**
+     * For each area, whether it is a triangle.
+     */
+    final boolean[] isTriangle;
+
+    /**
+     * The coordinates of the corners of each triangle as used by
+     * {@link RayTriangle_d}.
+     */
+    final double[] coords;
+
+    /**
+     * The area indexes ordered so that the areas of each leaf are together.
+     */
+    public final int[] index;
+
+    /**
+     * The AABB of each node {xmin, ymin, zmin, xmax, ymax, zmax}.
+     */
+    final double[] nodeBounds;
+
+    /**
+     * For internal nodes, the index of the right child.
+     */
+    final int[] nodeRight;
+
+    /**
+     * For leaf nodes, the index in {@link #index} of the first area.
+     */
+    final int[] nodeStart;
+
+    /**
+     * For leaf nodes, the number of areas. This is 0 for internal nodes.
+     */
+    final int[] nodeCount;
+
+    /**
+     * The number of nodes.
+     */
+    int nNodes;
+
+    /**
+     * The depth of the hierarchy.
+     */
+    int depth;
+
+    /**
+     * Create a new instance.
+     *
+     * @param areas The areas.
+     * @throws ArithmeticException If there are too many areas for the
+     * coordinates and nodes to be stored in arrays.
+     */
+    public BVH_d(ArrayList<Area_d> areas) {
+        this.areas = areas;
+        this.n = areas.size();
+        areaBounds = new double[Math.multiplyExact(n, 6)];
+        isTriangle = new boolean[n];
+        coords = new double[Math.multiplyExact(n, 9)];
+        index = new int[n];
+        for (int i = 0; i < n; i++) {
+            setArea(i);
+            index[i] = i;
+        }
+        int maxNodes = Math.max(1, Math.multiplyExact(2, n) - 1);
+        nodeBounds = new double[Math.multiplyExact(maxNodes, 6)];
+        nodeRight = new int[maxNodes];
+        nodeStart = new int[maxNodes];
+        nodeCount = new int[maxNodes];
+        if (n > 0) {
+            build(0, n, 0, new double[NBINS * 7], new double[6]);
+        }
+    }
+
+    /**
+     * Create a new instance with nodes that have already been built, for
+     * example by an instance that was written to a file (see
+     * {@link UniverseSnapshot_d}).
+     *
+     * @param areas The areas.
+     * @param index What {@link #index} is set to.
+     * @param nodeBounds What {@link #nodeBounds} is set to.
+     * @param nodeRight What {@link #nodeRight} is set to.
+     * @param nodeStart What {@link #nodeStart} is set to.
+     * @param nodeCount What {@link #nodeCount} is set to.
+     * @param depth What {@link #depth} is set to.
+     */
+    BVH_d(ArrayList<Area_d> areas, int[] index, double[] nodeBounds,
+            int[] nodeRight, int[] nodeStart, int[] nodeCount, int depth) {
+        this.areas = areas;
+        this.n = areas.size();
+        areaBounds = new double[Math.multiplyExact(n, 6)];
+        isTriangle = new boolean[n];
+        coords = new double[Math.multiplyExact(n, 9)];
+        for (int i = 0; i < n; i++) {
+            setArea(i);
+        }
+        this.index = index;
+        this.nodeBounds = nodeBounds;
+        this.nodeRight = nodeRight;
+        this.nodeStart = nodeStart;
+        this.nodeCount = nodeCount;
+        this.nNodes = nodeCount.length;
+        this.depth = depth;
+    }
+
+    /**
+     * Set the bounds and any triangle coordinates of an area.
+     *
+     * @param i The index of the area.
+     */
+    private void setArea(int i) {
+        Area_d a = areas.get(i);
+        int j = i * 6;
+        int k = i * 9;
+        isTriangle[i] = a.getCoords(coords, k);
+        if (isTriangle[i]) {
+            for (int d = 0; d < 3; d++) {
+                areaBounds[j + d] = Math.min(coords[k + d],
+                        Math.min(coords[k + 3 + d], coords[k + 6 + d]));
+                areaBounds[j + 3 + d] = Math.max(coords[k + d],
+                        Math.max(coords[k + 3 + d], coords[k + 6 + d]));
+            }
+        } else {
+            V3D_AABB_d b = a.getAABB();
+            areaBounds[j] = b.getXMin();
+            areaBounds[j + 1] = b.getYMin();
+            areaBounds[j + 2] = b.getZMin();
+            areaBounds[j + 3] = b.getXMax();
+            areaBounds[j + 4] = b.getYMax();
+            areaBounds[j + 5] = b.getZMax();
+        }
+    }
+
+    /**
+     * @return The number of nodes.
+     */
+    public int getNumberOfNodes() {
+        return nNodes;
+    }
+
+    /**
+     * @return The depth of the hierarchy.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Build the node for the areas in index from start to end.
+     *
+     * @param start The index in index of the first area.
+     * @param end One more than the index in index of the last area.
+     * @param d The depth of the node.
+     * @param bins For storing the bounds and counts of bins.
+     * @param cb For storing the bounds of the area centroids.
+     * @return The index of the node.
+     */
+    private int build(int start, int end, int d, double[] bins, double[] cb) {
+        int node = nNodes;
+        nNodes++;
+        depth = Math.max(depth, d);
+        // Calculate the node bounds and the bounds of the area centroids.
+        int nb = node * 6;
+        for (int k = 0; k < 3; k++) {
+            nodeBounds[nb + k] = Double.POSITIVE_INFINITY;
+            nodeBounds[nb + k + 3] = Double.NEGATIVE_INFINITY;
+            cb[k] = Double.POSITIVE_INFINITY;
+            cb[k + 3] = Double.NEGATIVE_INFINITY;
+        }
+        for (int j = start; j < end; j++) {
+            int ab = index[j] * 6;
+            for (int k = 0; k < 3; k++) {
+                double min = areaBounds[ab + k];
+                double max = areaBounds[ab + k + 3];
+                nodeBounds[nb + k] = Math.min(nodeBounds[nb + k], min);
+                nodeBounds[nb + k + 3] = Math.max(nodeBounds[nb + k + 3], max);
+                double c = (min + max) / 2d;
+                cb[k] = Math.min(cb[k], c);
+                cb[k + 3] = Math.max(cb[k + 3], c);
+            }
+        }
+        int count = end - start;
+        if (count <= LEAF_SIZE) {
+            return leaf(node, start, count);
+        }
+        // Find the best split.
+        int bestAxis = -1;
+        int bestBin = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < 3; k++) {
+            double cmin = cb[k];
+            double extent = cb[k + 3] - cmin;
+            if (extent > 0d) {
+                // Each bin has a count and bounds.
+                for (int b = 0; b < NBINS; b++) {
+                    int bi = b * 7;
+                    bins[bi] = 0d;
+                    for (int m = 0; m < 3; m++) {
+                        bins[bi + 1 + m] = Double.POSITIVE_INFINITY;
+                        bins[bi + 4 + m] = Double.NEGATIVE_INFINITY;
+                    }
+                }
+                for (int j = start; j < end; j++) {
+                    int ab = index[j] * 6;
+                    int bi = getBin(ab, k, cmin, extent) * 7;
+                    bins[bi]++;
+                    for (int m = 0; m < 3; m++) {
+                        bins[bi + 1 + m] = Math.min(bins[bi + 1 + m],
+                                areaBounds[ab + m]);
+                        bins[bi + 4 + m] = Math.max(bins[bi + 4 + m],
+                                areaBounds[ab + m + 3]);
+                    }
+                }
+                // Evaluate the cost of splitting after each bin.
+                for (int s = 0; s < NBINS - 1; s++) {
+                    double cost = getSplitCost(bins, s);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestAxis = k;
+                        bestBin = s;
+                    }
+                }
+            }
+        }
+        double parentArea = getSurfaceArea(nodeBounds, nb);
+        int mid;
+        if (bestAxis == -1 || d >= MAX_DEPTH) {
+            // The centroids coincide (or the tree is too deep).
+            if (count <= MAX_LEAF_SIZE) {
+                return leaf(node, start, count);
+            }
+            mid = start + count / 2;
+        } else {
+            if (parentArea > 0d) {
+                bestCost = TRAVERSAL_COST + bestCost / parentArea;
+                if (bestCost >= count && count <= MAX_LEAF_SIZE) {
+                    return leaf(node, start, count);
+                }
+            }
+            // Partition.
+            double cmin = cb[bestAxis];
+            double extent = cb[bestAxis + 3] - cmin;
+            int i = start;
+            int j = end - 1;
+            while (i <= j) {
+                if (getBin(index[i] * 6, bestAxis, cmin, extent) <= bestBin) {
+                    i++;
+                } else {
+                    int t = index[i];
+                    index[i] = index[j];
+                    index[j] = t;
+                    j--;
+                }
+            }
+            mid = i;
+            if (mid == start || mid == end) {
+                mid = start + count / 2;
+            }
+        }
+        nodeCount[node] = 0;
+        build(start, mid, d + 1, bins, cb);
+        nodeRight[node] = build(mid, end, d + 1, bins, cb);
+        return node;
+    }
+
+    /**
+     * Make node a leaf.
+     */
+    private int leaf(int node, int start, int count) {
+        nodeStart[node] = start;
+        nodeCount[node] = count;
+        return node;
+    }
+
+    /**
+     * @return The bin for the centroid of the area with bounds starting at ab.
+     */
+    private int getBin(int ab, int axis, double cmin, double extent) {
+        double c = (areaBounds[ab + axis] + areaBounds[ab + axis + 3]) / 2d;
+        int b = (int) (NBINS * ((c - cmin) / extent));
+        return Math.min(NBINS - 1, Math.max(0, b));
+    }
+
+    /**
+     * @return The SAH cost (without the parent area normalisation or
+     * traversal cost) of splitting after bin s.
+     */
+    private static double getSplitCost(double[] bins, int s) {
+        double[] l = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        double[] r = l.clone();
+        double nl = 0d;
+        double nr = 0d;
+        for (int b = 0; b < NBINS; b++) {
+            int bi = b * 7;
+            double c = bins[bi];
+            if (c > 0d) {
+                double[] x = b <= s ? l : r;
+                for (int m = 0; m < 3; m++) {
+                    x[m] = Math.min(x[m], bins[bi + 1 + m]);
+                    x[m + 3] = Math.max(x[m + 3], bins[bi + 4 + m]);
+                }
+                if (b <= s) {
+                    nl += c;
+                } else {
+                    nr += c;
+                }
+            }
+        }
+        if (nl == 0d || nr == 0d) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return getSurfaceArea(l, 0) * nl + getSurfaceArea(r, 0) * nr;
+    }
+
+    /**
+     * @return The surface area of the box with bounds starting at i.
+     */
+    private static double getSurfaceArea(double[] b, int i) {
+        double dx = b[i + 3] - b[i];
+        double dy = b[i + 4] - b[i + 1];
+        double dz = b[i + 5] - b[i + 2];
+        return 2d * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * Get the distance along the ray to the entry of the box of node, or
+     * {@link Double#NaN} if the ray does not enter the box before tMax. If a
+     * component of the ray direction is zero, the inverse is infinite and the
+     * ray is parallel to the slab of the box for that axis: it is in the slab
+     * for its whole length if the origin is in it (including on a face), and
+     * otherwise never. This is tested explicitly as (bound - o) * inverse is
+     * {@link Double#NaN} if the origin is on a face.
+     */
+    private double getEntry(int node, double ox, double oy, double oz,
+            double idx, double idy, double idz, double tMin, double tMax) {
+        int nb = node * 6;
+        double tn = tMin;
+        double tf = tMax;
+        for (int a = 0; a < 3; a++) {
+            double o = a == 0 ? ox : a == 1 ? oy : oz;
+            double id = a == 0 ? idx : a == 1 ? idy : idz;
+            double min = nodeBounds[nb + a];
+            double max = nodeBounds[nb + a + 3];
+            if (Double.isInfinite(id)) {
+                if (o < min || o > max) {
+                    return Double.NaN;
+                }
+            } else {
+                double t0 = (min - o) * id;
+                double t1 = (max - o) * id;
+                tn = Math.max(tn, Math.min(t0, t1));
+                tf = Math.min(tf, Math.max(t0, t1));
+            }
+        }
+        // Allow for rounding at the faces of flat boxes.
+        if (tn <= tf * (1d + 1e-12) + 1e-12) {
+            return tn;
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Get the distance along a ray to where it intersects an area.
+     *
+     * @param i The index of the area.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return The distance along the ray to the intersection in units of the
+     * length of the ray direction, or {@link Double#NaN} if there is no
+     * intersection.
+     */
+    public double getIntersect(int i, double ox, double oy, double oz,
+            double dx, double dy, double dz, double epsilon) {
+        if (isTriangle[i]) {
+            return RayTriangle_d.getIntersect(ox, oy, oz, dx, dy, dz, coords,
+                    i * 9);
+        }
+        V3D_Area_d a = areas.get(i).getArea();
+        V3D_Point_d o = new V3D_Point_d(a.env, ox, oy, oz);
+        try {
+            V3D_Point_d p = a.getIntersectNonCoplanar(new V3D_Ray_d(o,
+                    new V3D_Vector_d(dx, dy, dz)), epsilon);
+            if (p == null) {
+                return Double.NaN;
+            }
+            return Math.sqrt(p.getDistanceSquared(o)
+                    / (dx * dx + dy * dy + dz * dz));
+        } catch (RuntimeException ex) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Find the closest area intersected by a ray.
+     *
+     * @param ox The x coordinate of the ray origin.
+     * @param oy The y coordinate of the ray origin.
+     * @param oz The z coordinate of the ray origin.
+     * @param dx The x component of the ray direction.
+     * @param dy The y component of the ray direction.
+     * @param dz The z component of the ray direction.
+     * @param tMax Only intersections closer than this distance along the ray
+     * (in units of the length of the ray direction) are found.
+     * @param t For returning the distance along the ray of the intersection in
+     * t[0].
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return The index of the closest area intersected, or -1 if none are.
+     */
+    public int getClosest(double ox, double oy, double oz,
+            double dx, double dy, double dz, double tMax, double[] t,
+            double epsilon) {
+        if (n == 0) {
+            return -1;
+        }
+        double idx = 1d / dx;
+        double idy = 1d / dy;
+        double idz = 1d / dz;
+        int r = -1;
+        double best = tMax;
+        int[] stack = new int[depth + 2];
+        int sp = 0;
+        if (!Double.isNaN(getEntry(0, ox, oy, oz, idx, idy, idz, 0d, best))) {
+            stack[sp++] = 0;
+        }
+        while (sp > 0) {
+            int node = stack[--sp];
+            int count = nodeCount[node];
+            if (count > 0) {
+                int s = nodeStart[node];
+                for (int j = s; j < s + count; j++) {
+                    int i = index[j];
+                    double ti = getIntersect(i, ox, oy, oz, dx, dy, dz,
+                            epsilon);
+                    if (ti < best) {
+                        best = ti;
+                        r = i;
+                    }
+                }
+            } else {
+                int left = node + 1;
+                int right = nodeRight[node];
+                double tl = getEntry(left, ox, oy, oz, idx, idy, idz, 0d, best);
+                double tr = getEntry(right, ox, oy, oz, idx, idy, idz, 0d, best);
+                // Push the further child first so the nearer is visited first.
+                if (Double.isNaN(tl)) {
+                    if (!Double.isNaN(tr)) {
+                        stack[sp++] = right;
+                    }
+                } else if (Double.isNaN(tr)) {
+                    stack[sp++] = left;
+                } else if (tl <= tr) {
+                    stack[sp++] = right;
+                    stack[sp++] = left;
+                } else {
+                    stack[sp++] = left;
+                    stack[sp++] = right;
+                }
+            }
+        }
+        if (r != -1) {
+            t[0] = best;
+        }
+        return r;
+    }
+
+    /**
+     * Find if any area is intersected by a ray between tMin and tMax. The
+     * search stops at the first intersection found.
+     *
+     * @param ox The x coordinate of the ray origin.
+     * @param oy The y coordinate of the ray origin.
+     * @param oz The z coordinate of the ray origin.
+     * @param dx The x component of the ray direction.
+     * @param dy The y component of the ray direction.
+     * @param dz The z component of the ray direction.
+     * @param tMin Only intersections further than this distance along the ray
+     * (in units of the length of the ray direction) are counted.
+     * @param tMax Only intersections closer than this distance along the ray
+     * (in units of the length of the ray direction) are counted.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return {@code true} if an area is intersected.
+     */
+    public boolean isIntersected(double ox, double oy, double oz,
+            double dx, double dy, double dz, double tMin, double tMax,
+            double epsilon) {
+        return isIntersected(ox, oy, oz, dx, dy, dz, tMin, tMax, -1, epsilon);
+    }
+
+    /**
+     * Find if any area other than {@code ignore} is intersected by a ray
+     * between tMin and tMax. The search stops at the first intersection found.
+     * This is for testing if a point on area {@code ignore} is in shadow.
+     *
+     * @param ox The x coordinate of the ray origin.
+     * @param oy The y coordinate of the ray origin.
+     * @param oz The z coordinate of the ray origin.
+     * @param dx The x component of the ray direction.
+     * @param dy The y component of the ray direction.
+     * @param dz The z component of the ray direction.
+     * @param tMin Only intersections further than this distance along the ray
+     * (in units of the length of the ray direction) are counted.
+     * @param tMax Only intersections closer than this distance along the ray
+     * (in units of the length of the ray direction) are counted.
+     * @param ignore The index of an area not to test, or -1.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return {@code true} if an area is intersected.
+     */
+    public boolean isIntersected(double ox, double oy, double oz,
+            double dx, double dy, double dz, double tMin, double tMax,
+            int ignore, double epsilon) {
+        if (n == 0) {
+            return false;
+        }
+        double idx = 1d / dx;
+        double idy = 1d / dy;
+        double idz = 1d / dz;
+        int[] stack = new int[depth + 2];
+        int sp = 0;
+        if (!Double.isNaN(getEntry(0, ox, oy, oz, idx, idy, idz, tMin, tMax))) {
+            stack[sp++] = 0;
+        }
+        while (sp > 0) {
+            int node = stack[--sp];
+            int count = nodeCount[node];
+            if (count > 0) {
+                int s = nodeStart[node];
+                for (int j = s; j < s + count; j++) {
+                    int i = index[j];
+                    if (i != ignore) {
+                        double ti = getIntersect(i, ox, oy, oz, dx, dy, dz,
+                                epsilon);
+                        if (ti > tMin && ti < tMax) {
+                            return true;
+                        }
+                    }
+                }
+            } else {
+                int left = node + 1;
+                int right = nodeRight[node];
+                if (!Double.isNaN(getEntry(right, ox, oy, oz, idx, idy, idz,
+                        tMin, tMax))) {
+                    stack[sp++] = right;
+                }
+                if (!Double.isNaN(getEntry(left, ox, oy, oz, idx, idy, idz,
+                        tMin, tMax))) {
+                    stack[sp++] = left;
+                }
+            }
+        }
+        return false;
+    }
+}
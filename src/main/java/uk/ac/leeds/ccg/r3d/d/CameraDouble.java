@@ -141,6 +141,12 @@ public class CameraDouble extends V3D_PointDouble {
      */
     public double pixelSize;
 
+    /**
+     * For mapping between points in the universe and the screen coordinates
+     * of the rows and columns of the rays (see {@link #getRay}).
+     */
+    public ViewProjection_d viewProjection;
+
     /**
      * Create a new instance.
      *
@@ -177,11 +183,16 @@ public class CameraDouble extends V3D_PointDouble {
         this.epsilon = epsilon;
         nrows = dim.height;
         ncols = dim.width;
-        init();
+        init(pt.getX(), pt.getY(), pt.getZ());
         System.out.println("Initialised Camera");
     }
 
-    private void init() {
+    /**
+     * @param fx The x coordinate of the camera.
+     * @param fy The y coordinate of the camera.
+     * @param fz The z coordinate of the camera.
+     */
+    private void init(double fx, double fy, double fz) {
         p = screen.getP();
         pq = screen.getPQR().getPQ();
         //qr = screen.pqr.getQR();
@@ -192,6 +203,9 @@ public class CameraDouble extends V3D_PointDouble {
         screenWidth = qr.getLength();
         screenHeight = pq.getLength();
         pixelSize = screenWidth / (double) ncols;
+        viewProjection = new ViewProjection_d(fx, fy, fz,
+                p.getX(), p.getY(), p.getZ(), pqv.dx, pqv.dy, pqv.dz,
+                qrv.dx, qrv.dy, qrv.dz);
         rays = new HashMap<>();
     }
 
@@ -204,7 +218,7 @@ public class CameraDouble extends V3D_PointDouble {
     public void translate(V3D_VectorDouble v) {
         super.translate(v);
         screen.translate(v);
-        init();
+        init(getX(), getY(), getZ());
     }
 
     /**
@@ -395,9 +409,9 @@ public class CameraDouble extends V3D_PointDouble {
             // Render triangle corners and edges
             // Render edges
             for (var t : universe.triangles) {
-                renderLine(epsilon, mind2s, new LineDouble(t.triangle.getPQ(), Color.YELLOW), t.triangle.pl, pix);
-                renderLine(epsilon, mind2s, new LineDouble(t.triangle.getQR(), Color.CYAN), t.triangle.pl, pix);
-                renderLine(epsilon, mind2s, new LineDouble(t.triangle.getRP(), Color.MAGENTA), t.triangle.pl, pix);
+                renderLine(epsilon, mind2s, new LineDouble(t.triangle.getPQ(), Color.YELLOW), pix);
+                renderLine(epsilon, mind2s, new LineDouble(t.triangle.getQR(), Color.CYAN), pix);
+                renderLine(epsilon, mind2s, new LineDouble(t.triangle.getRP(), Color.MAGENTA), pix);
                 //renderLine(epsilon, mind2s, new LineDouble(t.triangle.getPQ(), Color.YELLOW), pix);
                 //renderLine(epsilon, mind2s, new LineDouble(t.triangle.getQR(), Color.CYAN), pix);
                 //renderLine(epsilon, mind2s, new LineDouble(t.triangle.getRP(), Color.MAGENTA), pix);
@@ -421,32 +435,17 @@ public class CameraDouble extends V3D_PointDouble {
                 V3D_PointDouble x_min = new V3D_PointDouble(new V3D_VectorDouble(xmin, 0d, 0d));
                 V3D_PointDouble x_max = new V3D_PointDouble(new V3D_VectorDouble(xmax, 0d, 0d));
                 LineDouble xAxis = new LineDouble(new V3D_LineSegmentDouble(x_min, x_max), Color.BLUE);
-                V3D_PointDouble xpoi = xAxis.l.l.getPointOfIntersection(this, epsilon);
-                V3D_VectorDouble xpoin = new V3D_VectorDouble(xpoi, this);
-                if (!xpoin.isZero()) {
-                    V3D_PlaneDouble xpoinpl = new V3D_PlaneDouble(xpoi, xpoin);
-                    renderLine(epsilon, mind2s, xAxis, xpoinpl, pix);
-                }
+                renderLine(epsilon, mind2s, xAxis, pix);
                 // y axis                
                 V3D_PointDouble y_min = new V3D_PointDouble(new V3D_VectorDouble(0d, ymin, 0d));
                 V3D_PointDouble y_max = new V3D_PointDouble(new V3D_VectorDouble(0d, ymax, 0d));
                 LineDouble yAxis = new LineDouble(new V3D_LineSegmentDouble(y_min, y_max), Color.RED);
-                V3D_PointDouble ypoi = yAxis.l.l.getPointOfIntersection(this, epsilon);
-                V3D_VectorDouble ypoin = new V3D_VectorDouble(ypoi, this);
-                if (!ypoin.isZero()) {
-                    V3D_PlaneDouble ypoinpl = new V3D_PlaneDouble(ypoi, ypoin);
-                    renderLine(epsilon, mind2s, yAxis, ypoinpl, pix);
-                }
+                renderLine(epsilon, mind2s, yAxis, pix);
                 // z axis
                 V3D_PointDouble z_min = new V3D_PointDouble(new V3D_VectorDouble(0d, 0d, zmin));
                 V3D_PointDouble z_max = new V3D_PointDouble(new V3D_VectorDouble(0d, 0d, zmax));
                 LineDouble zAxis = new LineDouble(new V3D_LineSegmentDouble(z_min, z_max), Color.GREEN);
-                V3D_PointDouble zpoi = zAxis.l.l.getPointOfIntersection(this, epsilon);
-                V3D_VectorDouble zpoin = new V3D_VectorDouble(zpoi, this);
-                if (!zpoin.isZero()) {
-                    V3D_PlaneDouble zpoinpl = new V3D_PlaneDouble(zpoi, zpoin);
-                    renderLine(epsilon, mind2s, zAxis, zpoinpl, pix);
-                }
+                renderLine(epsilon, mind2s, zAxis, pix);
             }
 
             // Render corners
@@ -462,80 +461,71 @@ public class CameraDouble extends V3D_PointDouble {
 
     /**
      * For rendering a line on the image. Lines may be obscured by triangles and
-     * each other. This will render the closest one.
+     * each other. This will render the closest one. The line segment is
+     * clipped to the part in front of this, projected onto the screen and the
+     * pixels it passes through are walked with {@link PixelLine_d}. The depth
+     * in each pixel is the distance squared to the point on the line segment
+     * that projects to the middle of the part of the projected segment in the
+     * pixel.
      *
      * @param epsilon The tolerance for intersection.
      * @param l The line to render.
-     * @param plane A plane on which l.l is located. 
      * @param pix The image.
      */
     public void renderLine(double epsilon,
-            HashMap<Grids_2D_ID_int, Double> mind2s, LineDouble l, V3D_PlaneDouble plane, int[] pix) {
+            HashMap<Grids_2D_ID_int, Double> mind2s, LineDouble l, int[] pix) {
         if (V3D_LineDouble.isCollinear(epsilon, l.l.l, this)) {
             // If the line segment is collinear with this, then render as a point.
             // Not sure which end is closer, so render both.
             renderPoint(epsilon, mind2s, new PointDouble(l.l.l.getP(), l.color), pix);
             renderPoint(epsilon, mind2s, new PointDouble(l.l.l.getQ(), l.color), pix);
         } else {
-            V3D_TriangleDouble t = new V3D_TriangleDouble(l.l, this);
-            V3D_FiniteGeometryDouble ti = screen.getIntersection(t, epsilon);
-            if (ti != null) {
-                if (ti instanceof V3D_PointDouble tip) {
-                    renderPoint(epsilon, mind2s, new PointDouble(tip, l.color), pix);
-                } else {
-                    V3D_LineSegmentDouble til = (V3D_LineSegmentDouble) ti;
-                    // Calculate the row and column bounds.
-                    int minr = getScreenRow(til.getP(), epsilon);
-                    int minc = getScreenCol(til.getP(), epsilon);
-                    int maxr = minr;
-                    int maxc = minc;
-                    int sr = getScreenRow(til.getQ(), epsilon);
-                    int sc = getScreenCol(til.getQ(), epsilon);
-                    minr = Math.min(minr, sr);
-                    minc = Math.min(minc, sc);
-                    maxr = Math.max(maxr, sr);
-                    maxc = Math.max(maxc, sc);
-                    if (minr < 0) {
-                        minr = 0;
-                    }
-                    if (minc < 0) {
-                        minc = 0;
-                    }
-                    if (maxr >= nrows) {
-                        maxr = nrows - 1;
-                    }
-                    if (maxc >= ncols) {
-                        maxc = ncols - 1;
-                    }
-                    V3D_PlaneDouble spl = screen.getPlane();
-                    for (int r = minr; r <= maxr; r++) {
-                        for (int c = minc; c <= maxc; c++) {
-                            V3D_RectangleDouble pixel = getPixel(spl, r, c);
-                            //System.out.println("" + r + ", "
-                            V3D_FiniteGeometryDouble pit = pixel.getIntersection(t, epsilon);
-                            if (pit != null) {
-                                Grids_2D_ID_int id = new Grids_2D_ID_int(r, c);
-                                V3D_RayDouble ray = getRay(id);
-                                V3D_GeometryDouble ri = ray.getIntersection(plane, epsilon);
-                                double d2;
-                                if (ri instanceof V3D_PointDouble rip) {
-                                    d2 = rip.getDistanceSquared(this);
-                                    Double d2p = mind2s.get(id);
-                                    if (d2p == null) {
-                                        mind2s.put(id, d2); // So closest things are at the front.
-                                        render(pix, r, c, l.color);
-                                    } else {
-                                        if (d2 <= d2p + epsilon) {
-                                            mind2s.put(id, d2); // So closest things are at the front.
-                                            render(pix, r, c, l.color);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
+            V3D_PointDouble lp = l.l.l.getP();
+            V3D_PointDouble lq = l.l.l.getQ();
+            double fx = getX();
+            double fy = getY();
+            double fz = getZ();
+            double[] a = {lp.getX(), lp.getY(), lp.getZ()};
+            double[] b = {lq.getX(), lq.getY(), lq.getZ()};
+            double wa = viewProjection.getW(a[0], a[1], a[2]);
+            double wb = viewProjection.getW(b[0], b[1], b[2]);
+            // Clip to the part in front of this.
+            double wmin = Math.max(epsilon, Double.MIN_NORMAL);
+            if (wa < wmin && wb < wmin) {
+                return;
+            }
+            if (wa < wmin) {
+                double u = (wb - wmin) / (wb - wa);
+                for (int k = 0; k < 3; k++) {
+                    a[k] = b[k] + u * (a[k] - b[k]);
+                }
+            } else if (wb < wmin) {
+                double u = (wa - wmin) / (wa - wb);
+                for (int k = 0; k < 3; k++) {
+                    b[k] = a[k] + u * (b[k] - a[k]);
                 }
             }
+            double[] sa = new double[3];
+            double[] sb = new double[3];
+            viewProjection.project(a[0], a[1], a[2], sa, 0);
+            viewProjection.project(b[0], b[1], b[2], sb, 0);
+            double iwa = sa[2];
+            double iwb = sb[2];
+            PixelLine_d.traverse(sa[0], sa[1], sb[0], sb[1], nrows, ncols,
+                    (r, c, t) -> {
+                        // Perspective correct parameter along the segment.
+                        double u = t * iwb / ((1d - t) * iwa + t * iwb);
+                        double x = a[0] + u * (b[0] - a[0]) - fx;
+                        double y = a[1] + u * (b[1] - a[1]) - fy;
+                        double z = a[2] + u * (b[2] - a[2]) - fz;
+                        double d2 = x * x + y * y + z * z;
+                        Grids_2D_ID_int id = new Grids_2D_ID_int(r, c);
+                        Double d2p = mind2s.get(id);
+                        if (d2p == null || d2 <= d2p + epsilon) {
+                            mind2s.put(id, d2); // So closest things are at the front.
+                            render(pix, r, c, l.color);
+                        }
+                    });
         }
     }
 
@@ -550,12 +540,13 @@ public class CameraDouble extends V3D_PointDouble {
      * @return pix
      */
     public void renderPoint(double epsilon, HashMap<Grids_2D_ID_int, Double> mind2s, PointDouble p, int[] pix) {
-        if (!this.equals(epsilon, p.p)) {
-            V3D_RayDouble ray = new V3D_RayDouble(this, p.p);
-            V3D_PointDouble pt = (V3D_PointDouble) screen.getIntersection(ray, epsilon);
-            if (pt != null) {
-                int r = getScreenRow(pt, epsilon);
-                int c = getScreenCol(pt, epsilon);
+        double[] s = new double[3];
+        double w = viewProjection.project(p.p.getX(), p.p.getY(), p.p.getZ(),
+                s, 0);
+        if (w > epsilon) {
+            int r = (int) Math.floor(s[0]);
+            int c = (int) Math.floor(s[1]);
+            if (r >= 0 && r < nrows && c >= 0 && c < ncols) {
                 Grids_2D_ID_int id = new Grids_2D_ID_int(r, c);
                 double d2 = p.p.getDistanceSquared(this);
                 Double d2p = mind2s.get(id);
@@ -759,53 +750,40 @@ public class CameraDouble extends V3D_PointDouble {
      *
      * @param p A point in the universe.
      * @return The ID of the screen cell that intersects a ray from this to p,
-     * or {@code null}.
+     * or {@code null} if p is not in front of this.
      */
     protected Grids_2D_ID_int getRC(V3D_PointDouble p, double epsilon) {
-        if (this.equals(epsilon, p)) {
-            return new Grids_2D_ID_int(
-                    getScreenRow(p, epsilon),
-                    getScreenCol(p, epsilon));
-        }
-        V3D_RayDouble ray = new V3D_RayDouble(this, p);
-        //V3D_PointDouble px = (V3D_PointDouble) screen.getIntersection(ray, epsilon);
-        V3D_PointDouble px = (V3D_PointDouble) ray.getIntersection(screen.getPlane(), epsilon);
-        if (px == null) {
+        double[] s = new double[3];
+        if (viewProjection.project(p.getX(), p.getY(), p.getZ(), s, 0)
+                <= epsilon) {
             return null;
-        } else {
-            return new Grids_2D_ID_int(
-                    getScreenRow(px, epsilon),
-                    getScreenCol(px, epsilon));
         }
+        return new Grids_2D_ID_int((int) Math.floor(s[0]),
+                (int) Math.floor(s[1]));
     }
 
     /**
      * Calculate and return the row index of the screen that p is on.
      *
-     * @param p A point on the screen.
-     * @param qr The line segment that is the bottom of the screen.
+     * @param p A point on the screen (or in front of this, in which case it is
+     * projected onto the screen).
      * @return The row index of the screen for the point p.
      */
     protected int getScreenRow(V3D_PointDouble p, double epsilon) {
-        //V3D_PointDouble px = qr.l.getPointOfIntersection(p, epsilon);
-        //double d = px.getDistance(p);
-        double d = qr.getDistance(p, epsilon);
-        //double d = pq.getDistance(p, epsilon);
-        return (int) (d / pixelSize);
+        return (int) Math.floor(viewProjection.getRow(p.getX(), p.getY(),
+                p.getZ()));
     }
 
     /**
      * Calculate and return the column index of the screen that p is on.
      *
-     * @param p A point on the screen.
+     * @param p A point on the screen (or in front of this, in which case it is
+     * projected onto the screen).
      * @return The column index of the screen for the point p.
      */
     protected int getScreenCol(V3D_PointDouble p, double epsilon) {
-        //V3D_PointDouble py = pq.l.getPointOfIntersection(p, epsilon);
-        //double d = py.getDistance(p);
-        double d = pq.getDistance(p, epsilon);
-        //double d = qr.getDistance(p, epsilon);
-        return (int) (d / pixelSize);
+        return (int) Math.floor(viewProjection.getCol(p.getX(), p.getY(),
+                p.getZ()));
     }
 
     /**
@@ -819,11 +797,8 @@ public class CameraDouble extends V3D_PointDouble {
     protected V3D_RayDouble getRay(Grids_2D_ID_int id) {
         V3D_RayDouble r = rays.get(id);
         if (r == null) {
-            V3D_VectorDouble rv = pqv.multiply(id.getRow());
-            V3D_VectorDouble cv = qrv.multiply(id.getCol());
-            V3D_PointDouble rcpt = new V3D_PointDouble(p);
-            rcpt.translate(rv.add(cv));
-            r = new V3D_RayDouble(this, rcpt);
+            r = new V3D_RayDouble(this, getScreenPoint(id.getRow(),
+                    id.getCol()));
             rays.put(id, r);
         }
         return r;
@@ -835,18 +810,20 @@ public class CameraDouble extends V3D_PointDouble {
      * @return The pixel rectangle.
      */
     public V3D_RectangleDouble getPixel(V3D_PlaneDouble pl, int row, int col) {
-        // p
-        V3D_PointDouble pP = new V3D_PointDouble(p);
-        pP.translate(pqv.multiply(row).add(qrv.multiply(col)));
-        // q
-        V3D_PointDouble pQ = new V3D_PointDouble(p);
-        pQ.translate(pqv.multiply(row + 1).add(qrv.multiply(col)));
-        // r
-        V3D_PointDouble pR = new V3D_PointDouble(p);
-        pR.translate(pqv.multiply(row + 1).add(qrv.multiply(col + 1)));
-        // s
-        V3D_PointDouble pS = new V3D_PointDouble(p);
-        pS.translate(pqv.multiply(row).add(qrv.multiply(col + 1)));
-        return new V3D_RectangleDouble(pP, pQ, pR, pS);
+        return new V3D_RectangleDouble(getScreenPoint(row, col),
+                getScreenPoint(row + 1, col),
+                getScreenPoint(row + 1, col + 1),
+                getScreenPoint(row, col + 1));
+    }
+
+    /**
+     * @param r The row coordinate.
+     * @param c The column coordinate.
+     * @return The point on the screen with the screen coordinates (r, c).
+     */
+    private V3D_PointDouble getScreenPoint(double r, double c) {
+        double[] x = new double[3];
+        viewProjection.getScreenPoint(r, c, x, 0);
+        return new V3D_PointDouble(x[0], x[1], x[2]);
     }
 }
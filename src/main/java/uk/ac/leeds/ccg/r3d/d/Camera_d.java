@@ -17,18 +17,34 @@ package uk.ac.leeds.ccg.r3d.d;
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Set;
-import java.util.TreeMap;
-import uk.ac.leeds.ccg.generic.util.Generic_Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 import uk.ac.leeds.ccg.grids.d2.Grids_2D_ID_int;
-import uk.ac.leeds.ccg.math.arithmetic.Math_Double;
+import uk.ac.leeds.ccg.r3d.DepthSort;
+import uk.ac.leeds.ccg.r3d.RenderControl;
+import uk.ac.leeds.ccg.r3d.RenderMetrics;
+import uk.ac.leeds.ccg.r3d.RenderMetrics.Counter;
+import uk.ac.leeds.ccg.r3d.RenderMetrics.Phase;
+import uk.ac.leeds.ccg.r3d.RenderProgress;
 import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
 import uk.ac.leeds.ccg.r3d.d.entities.Line_d;
 import uk.ac.leeds.ccg.r3d.d.entities.Point_d;
 import uk.ac.leeds.ccg.r3d.d.entities.Triangle_d;
+import uk.ac.leeds.ccg.r3d.jfr.RenderEvent;
+import uk.ac.leeds.ccg.r3d.jfr.TileRenderEvent;
 import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Geometry_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
@@ -40,10 +56,10 @@ import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Area_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_FiniteGeometry_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Line_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_LineSegment_d;
-import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Plane_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Ray_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Frustum_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Tetrahedron_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.light.V3D_V_d;
 
 /**
  * Camera instances are situated in the 3D Universe. They are a frustum with
@@ -84,15 +100,137 @@ public class Camera_d extends V3D_Frustum_d {
     public final int ncols;
 
     /**
-     * For storing rays from the camera focal point through each pixel centre.
+     * The x coordinate of the origin of all rays (the focus).
      */
-    public final HashMap<Grids_2D_ID_int, V3D_Ray_d> rays;
+    public double rayX;
+
+    /**
+     * The y coordinate of the origin of all rays (the focus).
+     */
+    public double rayY;
+
+    /**
+     * The z coordinate of the origin of all rays (the focus).
+     */
+    public double rayZ;
+
+    /**
+     * The x component of the unit direction of the ray from the focus through
+     * each pixel indexed by {@code row * ncols + col}.
+     */
+    public final double[] rayDX;
+
+    /**
+     * The y component of the unit direction of the ray from the focus through
+     * each pixel indexed by {@code row * ncols + col}.
+     */
+    public final double[] rayDY;
+
+    /**
+     * The z component of the unit direction of the ray from the focus through
+     * each pixel indexed by {@code row * ncols + col}.
+     */
+    public final double[] rayDZ;
+
+    /**
+     * For storing the rays created by {@link #getRay(int, int)} indexed by
+     * {@code row * ncols + col}. These are only wanted for areas that are
+     * not triangles, so they are created when first wanted.
+     */
+    private AtomicReferenceArray<V3D_Ray_d> rays;
+
+    /**
+     * For mapping between points in the universe and the screen coordinates
+     * of the rows and columns of the rays of {@link #initRays()}.
+     */
+    public ViewProjection_d viewProjection;
+
+    /**
+     * The unit normal of the screen facing away from the focus {nx, ny, nz}.
+     */
+    protected double screenNX, screenNY, screenNZ;
+
+    /**
+     * The planes bounding the view for culling. For each plane there are four
+     * values {nx, ny, nz, d} with the unit normal {nx, ny, nz} facing into the
+     * view, so a point {x, y, z} is outside the plane if
+     * {@code nx * x + ny * y + nz * z + d} is negative. The first plane is
+     * through {@link #focus} facing the screen, the other four are through
+     * {@link #focus} and the sides of the screen extended by a pixel (so
+     * that lines rendered with a width are not culled).
+     */
+    public final double[] frustum = new double[20];
 
     /**
      * For storing the length/width of a pixel.
      */
     public double pixelSize;
 
+    /**
+     * The factor by which the lighting colour of an area is multiplied where
+     * it is in shadow.
+     */
+    public double shadowFactor = 0.9d;
+
+    /**
+     * If this is true and {@link Universe_d#closed} is true, then areas facing
+     * away from {@link #focus} are not processed by the area pass.
+     */
+    public boolean cullBackFaces;
+
+    /**
+     * The ways of finding the closest area through each pixel.
+     */
+    public enum Engine {
+
+        /**
+         * Each area is processed in turn from the nearest to the furthest and
+         * intersected with the rays through the pixels it projects onto.
+         */
+        AREA,
+        /**
+         * A ray through each pixel is intersected with the areas using the
+         * {@link BVH_d} of the universe.
+         */
+        BVH,
+        /**
+         * As for {@link #AREA}, but each triangle is projected onto the screen
+         * once and rasterised using edge functions with perspective correct
+         * depth (see {@link Camera_d#rasterise}). Other areas and triangles
+         * that are not wholly in front of the focus are processed as for
+         * {@link #AREA}.
+         */
+        RASTER
+    }
+
+    /**
+     * The distance in pixels from an edge of a projected triangle within
+     * which {@link #rasterise} decides whether a pixel is in the triangle and
+     * its depth using {@link RayTriangle_d} as {@link Engine#AREA} does, so
+     * that pixels on and very near edges are treated the same by both
+     * engines.
+     */
+    static final double RASTER_MARGIN = 1d / 1000000d;
+
+    /**
+     * The way of finding the closest area through each pixel.
+     */
+    public Engine engine = Engine.AREA;
+
+    /**
+     * For recording the time taken by each phase of rendering and counting
+     * the rays cast, intersection tests, depth test rejections and exceptions
+     * caught. This is not serialized, so a deserialized camera reports to
+     * {@link RenderMetrics#NONE}.
+     */
+    public transient RenderMetrics metrics = RenderMetrics.NONE;
+
+    /**
+     * The frame buffer of the last render, for looking up the depth and the
+     * index of the area rendered through each pixel.
+     */
+    public FrameBuffer_d frameBuffer;
+
     /**
      * Create a new instance.
      *
@@ -109,7 +247,11 @@ public class Camera_d extends V3D_Frustum_d {
         this.pixelSize = pixelSize;
         this.nrows = dim.height;
         this.ncols = dim.width;
-        this.rays = new HashMap<>();
+        int n = nrows * ncols;
+        this.rayDX = new double[n];
+        this.rayDY = new double[n];
+        this.rayDZ = new double[n];
+        initRays();
     }
 
     /**
@@ -126,7 +268,11 @@ public class Camera_d extends V3D_Frustum_d {
         this.pixelSize = rect.getPQR().getPQ().getLength() / (double) dim.height;
         this.nrows = dim.height;
         this.ncols = dim.width;
-        this.rays = new HashMap<>();
+        int n = nrows * ncols;
+        this.rayDX = new double[n];
+        this.rayDY = new double[n];
+        this.rayDZ = new double[n];
+        initRays();
     }
 
     /**
@@ -149,12 +295,109 @@ public class Camera_d extends V3D_Frustum_d {
             double ambientLight, boolean castShadow, boolean addGraticules,
             double epsilon)
             throws Exception {
+        return render(universe, lighting, ambientLight, castShadow,
+                addGraticules, 1, epsilon);
+    }
+
+    /**
+     * Renders the visible universe as an image map.
+     *
+     * Each pixel is set to the colour of the closest geometry intersecting the
+     * ray from the {@link #focus} through the pixel centre.
+     *
+     * If {@code parallelism} is greater than 1, the areas are processed in
+     * tiles of the screen using a {@link ForkJoinPool} with that parallelism
+     * (see {@link AreaTile_d}). The result is the same as for the serial
+     * render. If {@link #engine} is {@link Engine#BVH}, then rows of pixels are
+     * processed in parallel instead.
+     *
+     * If {@code castShadow} is {@code true}, then pixels showing points on
+     * areas that are shaded from the lighting by other areas are darkened (see
+     * {@link #castShadows(BVH_d, FrameBuffer_d, V3D_Vector_d, int, double, RenderControl)}).
+     *
+     * The time taken by each phase and the work done are reported to
+     * {@link #metrics}, and a {@link RenderEvent} is recorded for the frame.
+     *
+     * @param universe
+     * @param lighting The lighting vector.
+     * @param parallelism The number of threads to use for processing areas.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return An image map.
+     * @throws Exception
+     */
+    public int[] render(Universe_d universe, V3D_Vector_d lighting,
+            double ambientLight, boolean castShadow, boolean addGraticules,
+            int parallelism, double epsilon)
+            throws Exception {
+        return render(universe, lighting, ambientLight, castShadow,
+                addGraticules, parallelism, epsilon, new RenderControl());
+    }
+
+    /**
+     * Renders the visible universe as an image map in the background (see
+     * {@link #render(Universe_d, V3D_Vector_d, double, boolean, boolean, int, double, RenderControl)}).
+     * Cancelling the returned future stops the render soon after.
+     *
+     * @param universe The universe.
+     * @param lighting The lighting vector.
+     * @param ambientLight The proportion of light for areas facing away from
+     * the lighting.
+     * @param castShadow Whether to cast shadows.
+     * @param addGraticules Whether to add graticules.
+     * @param parallelism The number of threads to use for processing areas.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @param progress The listener for the progress of the render or
+     * {@code null}.
+     * @param executor The executor to run the render on (see
+     * {@link RenderControl#submit(RenderControl.Job, RenderProgress, java.util.concurrent.Executor)}).
+     * @return The future image map.
+     */
+    public CompletableFuture<int[]> renderAsync(Universe_d universe,
+            V3D_Vector_d lighting, double ambientLight, boolean castShadow,
+            boolean addGraticules, int parallelism, double epsilon,
+            RenderProgress progress, Executor executor) {
+        return RenderControl.submit(c -> render(universe, lighting,
+                ambientLight, castShadow, addGraticules, parallelism, epsilon,
+                c), progress, executor);
+    }
+
+    /**
+     * Renders the visible universe as an image map as for
+     * {@link #render(Universe_d, V3D_Vector_d, double, boolean, boolean, int, double)},
+     * checking whether control is cancelled between lines, areas, tiles and
+     * rows of pixels and reporting the progress of the area pass to it.
+     *
+     * @param universe The universe.
+     * @param lighting The lighting vector.
+     * @param ambientLight The proportion of light for areas facing away from
+     * the lighting.
+     * @param castShadow Whether to cast shadows.
+     * @param addGraticules Whether to add graticules.
+     * @param parallelism The number of threads to use for processing areas.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @param control For cancelling the render and reporting progress.
+     * @return An image map.
+     * @throws java.util.concurrent.CancellationException If control is
+     * cancelled.
+     * @throws Exception
+     */
+    public int[] render(Universe_d universe, V3D_Vector_d lighting,
+            double ambientLight, boolean castShadow, boolean addGraticules,
+            int parallelism, double epsilon, RenderControl control)
+            throws Exception {
+        RenderEvent event = new RenderEvent();
+        event.begin();
         int n = ncols * nrows;
         int[] pix = new int[n];
-        HashMap<Grids_2D_ID_int, Double> mind2s = new HashMap<>();
+        FrameBuffer_d fb = new FrameBuffer_d(nrows, ncols);
+        frameBuffer = fb;
+        long t0 = System.nanoTime();
+        long now;
         // Add axes
         if (addGraticules) {
-            System.out.println("Add Graticules");
             double xmin = universe.aabb.getXMin();
             double xmax = universe.aabb.getXMax();
             double ymin = universe.aabb.getYMin();
@@ -171,96 +414,53 @@ public class Camera_d extends V3D_Frustum_d {
                     (xmax - xmin) / scale,
                     (ymax - ymin) / scale,
                     (zmax - zmin) / scale));
-            System.out.println("tr=" + tr.toString());
             // Render axes
             // x axis
             V3D_Point_d x_min = new V3D_Point_d(env, new V3D_Vector_d(xmin / scale, 0d, 0d));
             V3D_Point_d x_max = new V3D_Point_d(env, new V3D_Vector_d(xmax / scale, 0d, 0d));
             V3D_LineSegment_d x_axis = new V3D_LineSegment_d(x_min, x_max);
             x_axis.translate(tr);
-            System.out.println("X graticule " + x_axis.toString());
             Line_d xAxis = new Line_d(x_axis, Color.BLUE);
-            V3D_Point_d xpoi = xAxis.l.l.getPointOfIntersect(focus, epsilon);
-            V3D_Vector_d xpoin = new V3D_Vector_d(xpoi, focus);
-            if (xpoin.isZero(epsilon)) {
-                renderPoint(epsilon, mind2s, new Point_d(xAxis.l.l.getP(), xAxis.color), pix);
-                renderPoint(epsilon, mind2s, new Point_d(xAxis.l.l.getQ(), xAxis.color), pix);
-            } else {
-                V3D_Plane_d xpoinpl = new V3D_Plane_d(xpoi, xpoin);
-                renderLine(epsilon, mind2s, xAxis, xpoinpl, pix);
-            }
+            renderLine(epsilon, fb, xAxis, pix);
             // y axis                
             V3D_Point_d y_min = new V3D_Point_d(env, new V3D_Vector_d(0d, ymin / scale, 0d));
             V3D_Point_d y_max = new V3D_Point_d(env, new V3D_Vector_d(0d, ymax / scale, 0d));
             V3D_LineSegment_d y_axis = new V3D_LineSegment_d(y_min, y_max);
             y_axis.translate(tr);
-            System.out.println("Y graticule " + y_axis.toString());
             Line_d yAxis = new Line_d(y_axis, Color.RED);
-            V3D_Point_d ypoi = yAxis.l.l.getPointOfIntersect(focus, epsilon);
-            V3D_Vector_d ypoin = new V3D_Vector_d(ypoi, focus);
-            if (ypoin.isZero(epsilon)) {
-                renderPoint(epsilon, mind2s, new Point_d(yAxis.l.l.getP(), yAxis.color), pix);
-                renderPoint(epsilon, mind2s, new Point_d(yAxis.l.l.getQ(), yAxis.color), pix);
-            } else {
-                V3D_Plane_d ypoinpl = new V3D_Plane_d(ypoi, ypoin);
-                renderLine(epsilon, mind2s, yAxis, ypoinpl, pix);
-            }
+            renderLine(epsilon, fb, yAxis, pix);
             // z axis
             V3D_Point_d z_min = new V3D_Point_d(env, new V3D_Vector_d(0d, 0d, zmin / scale));
             V3D_Point_d z_max = new V3D_Point_d(env, new V3D_Vector_d(0d, 0d, zmax / scale));
             V3D_LineSegment_d z_axis = new V3D_LineSegment_d(z_min, z_max);
             z_axis.translate(tr);
-            System.out.println("Z graticule " + z_axis.toString());
             Line_d zAxis = new Line_d(z_axis, Color.GREEN);
-            V3D_Point_d zpoi = zAxis.l.l.getPointOfIntersect(focus, epsilon);
-            V3D_Vector_d zpoin = new V3D_Vector_d(zpoi, focus);
-            if (zpoin.isZero(epsilon)) {
-                renderPoint(epsilon, mind2s, new Point_d(zAxis.l.l.getP(), zAxis.color), pix);
-                renderPoint(epsilon, mind2s, new Point_d(zAxis.l.l.getQ(), zAxis.color), pix);
-            } else {
-                V3D_Plane_d zpoinpl = new V3D_Plane_d(zpoi, zpoin);
-                renderLine(epsilon, mind2s, zAxis, zpoinpl, pix);
-            }
+            renderLine(epsilon, fb, zAxis, pix);
         }
+        now = System.nanoTime();
+        metrics.time(Phase.LINE_PASS, now - t0);
+        t0 = now;
+        // Cull lines and areas that are not in view.
+        boolean[] linesInView = getInFrustum(universe.lines,
+                x -> x.l.getAABB(), parallelism, epsilon);
+        boolean[] areasInView = getInFrustum(universe.areas,
+                x -> x.getAABB(), parallelism, epsilon);
+        now = System.nanoTime();
+        metrics.time(Phase.CULLING, now - t0);
+        t0 = now;
         // Render Lines
         int nlines = universe.lines.size();
-        universe.lines.forEach(x
-                -> {
-//            if (x.l.l.v.isScalarMultiple(rect.getPQR().getPQV(), epsilon)) {
-//                renderLine(epsilon, mind2s, x, new V3D_Plane_d(x.l, rect.getPQR().getQRV()), pix);
-//            } else {
-//                renderLine(epsilon, mind2s, x, new V3D_Plane_d(x.l, rect.getPQR().getPQV()), pix);
-//            }
-            //if (x.l.l.v.isScalarMultiple(rect.getPQR().getPQV(), epsilon)) {
-            //    if (Math_Double.equals(x.l.l.v.getDotProduct(rect.getPQR().getPQV()), 0d, epsilon)) {
-                    if (Math_Double.equals(x.l.l.v.getDotProduct(rect.getPQR().getQRV()), 0d, epsilon)) {
-                        renderLine(epsilon, mind2s, x, new V3D_Plane_d(x.l, rect.getPQR().getQRV()), pix);
-                    } else {
-                        renderLine(epsilon, mind2s, x, new V3D_Plane_d(x.l, rect.getPQR().getPQV()), pix);
-                    }
-//                } else {
-//                    if (Math_Double.equals(x.l.l.v.getDotProduct(rect.getPQR().getQRV()), 0d, epsilon)) {
-//                        renderLine(epsilon, mind2s, x, new V3D_Plane_d(x.l, rect.getPQR().getQRV()), pix);
-//                    } else {
-//                        renderLine(epsilon, mind2s, x, new V3D_Plane_d(x.l, rect.getPQR().getPQV()), pix);
-//                    }
-//                }
-//            } else {
-//                if (Math_Double.equals(x.l.l.v.getDotProduct(rect.getPQR().getPQV()), 0d, epsilon)) {
-//                    if (Math_Double.equals(x.l.l.v.getDotProduct(rect.getPQR().getQRV()), 0d, epsilon)) {
-//                        renderLine(epsilon, mind2s, x, new V3D_Plane_d(x.l, rect.getPQR().getQRV()), pix);
-//                    } else {
-//                        renderLine(epsilon, mind2s, x, new V3D_Plane_d(x.l, rect.getPQR().getPQV()), pix);
-//                    }
-//                } else {
-//                    if (Math_Double.equals(x.l.l.v.getDotProduct(rect.getPQR().getQRV()), 0d, epsilon)) {
-//                        renderLine(epsilon, mind2s, x, new V3D_Plane_d(x.l, rect.getPQR().getQRV()), pix);
-//                    } else {
-//                        renderLine(epsilon, mind2s, x, new V3D_Plane_d(x.l, rect.getPQR().getPQV()), pix);
-//                    }
-//                }
-//            }
-        });
+        for (int li = 0; li < nlines; li++) {
+            control.checkCancelled();
+            if (!linesInView[li]) {
+                continue;
+            }
+            Line_d x = universe.lines.get(li);
+            renderLine(epsilon, fb, x, pix);
+        }
+        now = System.nanoTime();
+        metrics.time(Phase.LINE_PASS, now - t0);
+        t0 = now;
         // Render Areas
         int nAreas = universe.areas.size();
         V3D_Point_d centroid = universe.aabb.getCentroid();
@@ -269,193 +469,399 @@ public class Camera_d extends V3D_Frustum_d {
              * Find the closest area intersects for a ray and colour the pixel
              * accordingly.
              */
-            System.out.println("Calculate the minimum distance between each"
-                    + " area and the camera focal point. Order the areas by"
-                    + " the distance, and set the lighting.");
-            TreeMap<Double, Set<Integer>> mindOrderedAreas = new TreeMap<>();
-            /**
-             * mind2sa is the minimum distance of each each area to the camera
-             * point for those parts of the area in view of the camera i.e.
-             * through the frustum.
-             */
-            double[] mind2sa = new double[nAreas];
-            process(centroid, 0, universe.areas, lighting, ambientLight,
-                    mindOrderedAreas, mind2sa, epsilon);
-            int nAP = (nAreas / 100);
-            if (nAP < 1) {
-                nAP = 1;
-            }
-            for (int i = 0; i < nAreas; i++) {
-                if (i % nAP == 0) {
-                    System.out.println("Area " + i + " out of " + nAreas);
+            if (engine == Engine.BVH) {
+                for (int i = 0; i < nAreas; i++) {
+                    if (areasInView[i]) {
+                        universe.areas.get(i).setLighting(centroid, lighting,
+                                ambientLight, epsilon);
+                    }
                 }
-                process(centroid, i, universe.areas, lighting, ambientLight,
-                        mindOrderedAreas, mind2sa, epsilon);
-            }
-            System.out.println("Minimum distance squared between any area and"
-                    + " the camera focal point = "
-                    + mindOrderedAreas.firstKey().toString());
-            System.out.println("Process each area working from the closest to "
-                    + "the furthest.");
-            // Process areas.
-            HashMap<Grids_2D_ID_int, Integer> closestIndex = new HashMap<>();
-            /**
-             * idPoint is used to store the point of intersection for the
-             * area closest to the camera. (This may later be used to see if that
-             * point on the area is in shadow.)
-             */
-            //HashMap<Grids_2D_ID_int, V3D_Point_d> idPoint = new HashMap<>();
-            for (double mind2 : mindOrderedAreas.keySet()) {
-                System.out.println("mind2 = " + mind2);
-                Set<Integer> areaIndexes = mindOrderedAreas.get(mind2);
-                for (var i : areaIndexes) {
-                    processArea(i, universe.areas.get(i).area, mind2sa,
-                            mind2s, closestIndex, //idPoint, 
-                            epsilon);
+                now = System.nanoTime();
+                metrics.time(Phase.LIGHTING, now - t0);
+                t0 = now;
+                // Cast a ray through each pixel to find the closest area.
+                control.start(n);
+                castRays(universe.getBVH(), fb, parallelism, epsilon, control);
+            } else {
+                /**
+                 * Calculate the minimum distance between each area and the
+                 * camera focal point, order the areas by the distance, and set
+                 * the lighting.
+                 *
+                 * mind2sa is the minimum distance of each each area to the camera
+                 * point for those parts of the area in view of the camera i.e.
+                 * through the frustum. order is the indexes of the areas to
+                 * process.
+                 */
+                double[] mind2sa = new double[nAreas];
+                int[] order = new int[nAreas];
+                int no = 0;
+                boolean cull = cullBackFaces && universe.closed;
+                for (int i = 0; i < nAreas; i++) {
+                    control.checkCancelled();
+                    if (process(centroid, i, universe.areas, lighting,
+                            ambientLight, mind2sa, areasInView, cull, epsilon)) {
+                        order[no] = i;
+                        no++;
+                    }
+                }
+                // Order the areas by distance.
+                DepthSort.sort(mind2sa, order, no);
+                // Calculate the screen bounds of the areas.
+                int[][] bounds = new int[nAreas][];
+                int nb = 0;
+                long work = 0L;
+                double[] coords = new double[9];
+                for (int j = 0; j < no; j++) {
+                    int i = order[j];
+                    Area_d a = universe.areas.get(i);
+                    int[] b = a.getCoords(coords, 0)
+                            ? getScreenBounds(coords, 3, epsilon)
+                            : getScreenBounds(a.getPointsArray(), epsilon);
+                    if (b != null) {
+                        bounds[i] = b;
+                        order[nb] = i;
+                        nb++;
+                        work += (long) (b[2] - b[0] + 1) * (b[3] - b[1] + 1);
+                    }
+                }
+                no = nb;
+                // Project triangles onto the screen for rasterising.
+                double[] screen = null;
+                if (engine == Engine.RASTER) {
+                    double[] s = new double[Math.multiplyExact(nAreas, 9)];
+                    int[] o = order;
+                    forEach(no, j -> {
+                        int i = o[j];
+                        double[] c = new double[9];
+                        if (!universe.areas.get(i).getCoords(c, 0)
+                                || !project(c, s, i * 9, epsilon)) {
+                            s[i * 9] = Double.NaN;
+                        }
+                    }, parallelism);
+                    screen = s;
+                }
+                now = System.nanoTime();
+                metrics.time(Phase.ORDERING, now - t0);
+                t0 = now;
+                // Process each area working from the closest to the furthest.
+                control.start(work);
+                if (parallelism > 1) {
+                    ForkJoinPool pool = new ForkJoinPool(parallelism);
+                    try {
+                        pool.invoke(new AreaTile_d(this, universe.areas, mind2sa,
+                                bounds, screen, fb, order, no, 0, 0, nrows - 1,
+                                ncols - 1, epsilon, control));
+                    } finally {
+                        pool.shutdown();
+                    }
+                } else {
+                    processAreas(universe.areas, mind2sa, bounds, screen, fb,
+                            order, no, 0, 0, nrows - 1, ncols - 1, epsilon,
+                            control);
                 }
             }
-            // Render pixels
-            System.out.println("Render the closest area.");
-            int pixelsToPop = closestIndex.size();
-            int pixelsToPopPC = pixelsToPop / 100;
-            int pixel = 0;
-            for (var x : closestIndex.keySet()) {
-                if (pixelsToPopPC > 0) {
-                    if (pixel % pixelsToPopPC == 0) {
-                        System.out.println("Rendering pixel " + pixel
-                                + " out of " + pixelsToPop);
+            control.checkCancelled();
+            now = System.nanoTime();
+            metrics.time(Phase.AREA_PASS, now - t0);
+            t0 = now;
+            // Cast shadows
+            boolean[] shadow = null;
+            if (castShadow) {
+                shadow = castShadows(universe.getBVH(), fb, lighting,
+                        parallelism, epsilon, control);
+                now = System.nanoTime();
+                metrics.time(Phase.SHADOW_PASS, now - t0);
+                t0 = now;
+            }
+            // Render the closest area through each pixel.
+            Color[] shadowColors = new Color[nAreas];
+            for (int row = 0; row < nrows; row++) {
+                for (int col = 0; col < ncols; col++) {
+                    int i = fb.getIndex(row, col);
+                    int ci = fb.id[i];
+                    if (ci != FrameBuffer_d.NO_ID) {
+                        Area_d a = universe.areas.get(ci);
+                        if (shadow != null && shadow[i]) {
+                            if (shadowColors[ci] == null) {
+                                shadowColors[ci] = getShadowColor(a);
+                            }
+                            render(pix, row, col, shadowColors[ci]);
+                        } else {
+                            render(pix, row, col, a.lightingColor);
+                        }
                     }
                 }
-                pixel++;
-                int ci = closestIndex.get(x);
-                Area_d a = universe.areas.get(ci);
-                render(pix, x.getRow(), x.getCol(), a.lightingColor);
             }
+            metrics.time(Phase.COMPOSITE, System.nanoTime() - t0);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.areas = nAreas;
+            event.lines = nlines;
+            event.rows = nrows;
+            event.cols = ncols;
+            event.engine = engine.name();
+            event.parallelism = parallelism;
+            event.castShadow = castShadow;
+            event.epsilon = epsilon;
+            event.commit();
         }
         return pix;
     }
 
+    /**
+     * Update the frame buffer with the closest area intersected by the ray
+     * through each pixel. Anything already rendered through a pixel occludes
+     * areas that are further away.
+     *
+     * @param bvh The BVH of the areas.
+     * @param fb The frame buffer.
+     * @param parallelism The number of threads to use.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @param control For cancelling and reporting progress for each row.
+     * @throws Exception
+     */
+    protected void castRays(BVH_d bvh, FrameBuffer_d fb, int parallelism,
+            double epsilon, RenderControl control) throws Exception {
+        IntConsumer castRow = row -> {
+            control.checkCancelled();
+            double[] t = new double[1];
+            metrics.count(Counter.RAYS_CAST, ncols);
+            for (int col = 0; col < ncols; col++) {
+                int i = fb.getIndex(row, col);
+                // The ray direction is a unit vector.
+                int ai = bvh.getClosest(rayX, rayY, rayZ, rayDX[i], rayDY[i],
+                        rayDZ[i], Math.sqrt(fb.depth[i]), t, epsilon);
+                if (ai != -1) {
+                    fb.set(i, t[0] * t[0], ai);
+                }
+            }
+            control.advance(ncols);
+        };
+        forEachRow(castRow, parallelism);
+    }
+
+    /**
+     * Find which pixels show a point on an area that is in shadow. A shadow
+     * ray is cast from the point where the ray through the pixel hits the
+     * closest area in the direction of the lighting vector. (Areas facing the
+     * lighting vector are lit most brightly by {@link Area_d#setLighting}, so
+     * the light is in that direction.) The point is in shadow if
+     * the shadow ray intersects any other area. The hit point is the ray table
+     * origin plus the ray table direction multiplied by the square root of the
+     * frame buffer depth (the direction is a unit vector).
+     *
+     * @param bvh The BVH of the areas.
+     * @param fb The frame buffer with the closest areas.
+     * @param lighting The lighting vector.
+     * @param parallelism The number of threads to use.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @param control For cancelling between rows.
+     * @return For each pixel indexed by {@code row * ncols + col}, whether it
+     * is in shadow.
+     * @throws Exception
+     */
+    protected boolean[] castShadows(BVH_d bvh, FrameBuffer_d fb,
+            V3D_Vector_d lighting, int parallelism, double epsilon,
+            RenderControl control) throws Exception {
+        boolean[] shadow = new boolean[fb.depth.length];
+        V3D_Vector_d lu = lighting.getUnitVector();
+        double lx = lu.dx;
+        double ly = lu.dy;
+        double lz = lu.dz;
+        IntConsumer castRow = row -> {
+            control.checkCancelled();
+            long nRays = 0L;
+            for (int col = 0; col < ncols; col++) {
+                int i = fb.getIndex(row, col);
+                int ai = fb.id[i];
+                if (ai != FrameBuffer_d.NO_ID) {
+                    nRays++;
+                    double t = Math.sqrt(fb.depth[i]);
+                    double hx = rayX + rayDX[i] * t;
+                    double hy = rayY + rayDY[i] * t;
+                    double hz = rayZ + rayDZ[i] * t;
+                    /**
+                     * Ignore intersections very close to the hit point as
+                     * these are most likely with the same area or a
+                     * neighbouring area sharing an edge.
+                     */
+                    double tMin = epsilon * (1d + t);
+                    shadow[i] = bvh.isIntersected(hx, hy, hz, lx, ly, lz,
+                            tMin, Double.POSITIVE_INFINITY, ai, epsilon);
+                }
+            }
+            metrics.count(Counter.RAYS_CAST, nRays);
+        };
+        forEachRow(castRow, parallelism);
+        return shadow;
+    }
+
+    /**
+     * Apply f to each row index. If {@code parallelism} is greater than 1,
+     * rows are processed in parallel using a {@link ForkJoinPool} with that
+     * parallelism.
+     *
+     * @param f The function to apply to each row index.
+     * @param parallelism The number of threads to use.
+     * @throws Exception
+     */
+    protected void forEachRow(IntConsumer f, int parallelism)
+            throws Exception {
+        forEach(nrows, f, parallelism);
+    }
+
+    /**
+     * Apply f to each index from 0 to n - 1. If {@code parallelism} is greater
+     * than 1, indexes are processed in parallel using a {@link ForkJoinPool}
+     * with that parallelism.
+     *
+     * @param n The number of indexes.
+     * @param f The function to apply to each index.
+     * @param parallelism The number of threads to use.
+     * @throws Exception
+     */
+    protected static void forEach(int n, IntConsumer f, int parallelism)
+            throws Exception {
+        if (parallelism > 1) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> IntStream.range(0, n).parallel()
+                        .forEach(f)).get();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof CancellationException c) {
+                    throw c;
+                }
+                throw ex;
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                f.accept(i);
+            }
+        }
+    }
+
+    /**
+     * Get the colour of an area in shadow. This is the area lighting colour
+     * multiplied by {@link #shadowFactor}.
+     *
+     * @param a The area.
+     * @return The colour of the area in shadow.
+     */
+    public Color getShadowColor(Area_d a) {
+        Color c = a.lightingColor;
+        return new Color((int) (c.getRed() * shadowFactor),
+                (int) (c.getGreen() * shadowFactor),
+                (int) (c.getBlue() * shadowFactor));
+    }
+
+    /**
+     * Get the closest area of the universe intersected by the ray through the
+     * centre of a pixel.
+     *
+     * @param universe The universe.
+     * @param row The row of the pixel (row 0 is the bottom row of the image).
+     * @param col The column of the pixel.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return The closest area or {@code null} if no area is intersected.
+     */
+    public Area_d pick(Universe_d universe, int row, int col,
+            double epsilon) {
+        int i = row * ncols + col;
+        int ai = universe.getBVH().getClosest(rayX, rayY, rayZ, rayDX[i],
+                rayDY[i], rayDZ[i], Double.POSITIVE_INFINITY, new double[1],
+                epsilon);
+        if (ai == -1) {
+            return null;
+        }
+        return universe.areas.get(ai);
+    }
+
     /**
      * For rendering a line on the image. Lines may be obscured by triangles and
-     * each other. This will render the closest one.
+     * each other. This will render the closest one. The line segment is
+     * clipped to the part in front of the focus, projected onto the screen and
+     * the pixels it passes through are walked with {@link PixelLine_d}. The
+     * depth in each pixel is the distance squared to the point on the line
+     * segment that projects to the middle of the part of the projected segment
+     * in the pixel. This uses that the reciprocal of the distance in front of
+     * the focus is linear on the screen.
      *
      * @param epsilon The tolerance within which vector components are regarded
      * as equal.
+     * @param fb The frame buffer.
      * @param l The line to render.
-     * @param plane A plane on which l.l is located.
      * @param pix The image.
      */
-    public void renderLine(double epsilon,
-            HashMap<Grids_2D_ID_int, Double> mind2s, Line_d l,
-            V3D_Plane_d plane, int[] pix) {
+    public void renderLine(double epsilon, FrameBuffer_d fb, Line_d l,
+            int[] pix) {
         if (V3D_Line_d.isCollinear(epsilon, l.l.l, this.focus)) {
             // If the line segment is collinear with this, then render as a point.
             // Not sure which end is closer, so render both.
-            renderPoint(epsilon, mind2s, new Point_d(l.l.l.getP(), l.color), pix);
-            renderPoint(epsilon, mind2s, new Point_d(l.l.l.getQ(), l.color), pix);
+            renderPoint(epsilon, fb, new Point_d(l.l.l.getP(), l.color), pix);
+            renderPoint(epsilon, fb, new Point_d(l.l.l.getQ(), l.color), pix);
         } else {
-            V3D_Triangle_d t = new V3D_Triangle_d(l.l, this.focus);
-            V3D_LineSegment_d rp = t.getRP();
-            V3D_LineSegment_d qr = t.getQR();
-            V3D_Plane_d rectpl = rect.getPl();
-            V3D_Point_d rpi = rectpl.getIntersectNonParallel(rp, epsilon);
-            //V3D_FiniteGeometry_d ti = rect.getIntersectNonCoplanar(t, epsilon);
-            if (rpi != null) {
-                // Calculate the row and column bounds.
-                int rrpi = getScreenRow(rpi, epsilon);
-                int crpi = getScreenCol(rpi, epsilon);
-                V3D_Point_d qri = rectpl.getIntersectNonParallel(qr, epsilon);
-                if (qri != null) {
-                    int rqri = getScreenRow(qri, epsilon);
-                    int cqri = getScreenCol(qri, epsilon);
-                    int minri;
-                    int minci;
-                    int maxri;
-                    int maxci;
-                    boolean pbq;
-                    if (rrpi < rqri) {
-                        pbq = true;
-                        minri = rrpi;
-                        maxri = rqri;
-                    } else {
-                        pbq = false;
-                        minri = rqri;
-                        maxri = rrpi;
-                    }
-                    boolean plq;
-                    if (crpi < cqri) {
-                        plq = true;
-                        minci = crpi;
-                        maxci = cqri;
-                    } else {
-                        plq = false;
-                        minci = cqri;
-                        maxci = crpi;
-                    }
-                    /**
-                     * As the calculation of row and column is imprecise, add a
-                     * row a column to ensure rendering.
-                     */
-                    minri -= 1;
-                    maxri += 1;
-                    minci -= 1;
-                    maxci += 1;
-                    // Clip to bounds
-                    if (minri < 0) {
-                        minri = 0;
-                    }
-                    if (minci < 0) {
-                        minci = 0;
-                    }
-                    if (maxri >= nrows) {
-                        maxri = nrows - 1;
-                    }
-                    if (maxci >= ncols) {
-                        maxci = ncols - 1;
-                    }
-                    V3D_Point_d sr = getPoint(rrpi, crpi, epsilon);
-                    V3D_Point_d sq = getPoint(rqri, cqri, epsilon);
-                    if (sr.equals(sq, epsilon)) {
-                        renderPoint(epsilon, mind2s, new Point_d(rpi, l.color), pix);
-                    } else {
-                        // Calculate/store the screen projected line segment.
-                        V3D_Line_d sl = new V3D_Line_d(sr, sq);
-                        double lw = pixelSize * 2d;
-                        for (int row = minri; row < maxri + 1; row++) {
-                            for (int col = minci; col < maxci + 1; col++) {
-                                // Calculate the pixel distance from the screen projected line segment.
-                                V3D_Point_d sp = getPoint(row, col, epsilon);
-                                double d = sl.getDistance(sp, epsilon);
-                                if (d < lw) {
-                                    V3D_Rectangle_d pixel = getPixel(row, col);
-                                    if (pixel.intersects0(t, epsilon)) {
-                                        Grids_2D_ID_int id = new Grids_2D_ID_int(row, col);
-                                        V3D_Ray_d ray = getRay(id);
-                                        V3D_Point_d ri = ray.getIntersect0(plane, epsilon);
-                                        if (ri != null) {
-                                            double d2;
-                                            d2 = ri.getDistanceSquared(this.focus);
-                                            Double d2p = mind2s.get(id);
-                                            if (d2p == null) {
-                                                mind2s.put(id, d2); // So closest things are at the front.
-                                                render(pix, row, col, l.color);
-                                            } else {
-                                                if (d2 <= d2p + epsilon) {
-                                                    mind2s.put(id, d2); // So closest things are at the front.
-                                                    render(pix, row, col, l.color);
-                                                } else {
-                                                    // There is a closer line already rendered for the pixel.
-                                                    int debug = 1;
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+            V3D_Point_d lp = l.l.l.getP();
+            V3D_Point_d lq = l.l.l.getQ();
+            double[] a = {lp.getX(), lp.getY(), lp.getZ()};
+            double[] b = {lq.getX(), lq.getY(), lq.getZ()};
+            double wa = viewProjection.getW(a[0], a[1], a[2]);
+            double wb = viewProjection.getW(b[0], b[1], b[2]);
+            // Clip to the part in front of the focus.
+            double wmin = Math.max(epsilon, Double.MIN_NORMAL);
+            if (wa < wmin && wb < wmin) {
+                return;
+            }
+            if (wa < wmin) {
+                clipNear(b, a, wb, wa, wmin);
+            } else if (wb < wmin) {
+                clipNear(a, b, wa, wb, wmin);
             }
+            double[] sa = new double[3];
+            double[] sb = new double[3];
+            viewProjection.project(a[0], a[1], a[2], sa, 0);
+            viewProjection.project(b[0], b[1], b[2], sb, 0);
+            double iwa = sa[2];
+            double iwb = sb[2];
+            PixelLine_d.traverse(sa[0], sa[1], sb[0], sb[1], nrows, ncols,
+                    (row, col, t) -> {
+                        // Perspective correct parameter along the segment.
+                        double u = t * iwb / ((1d - t) * iwa + t * iwb);
+                        double x = a[0] + u * (b[0] - a[0]) - rayX;
+                        double y = a[1] + u * (b[1] - a[1]) - rayY;
+                        double z = a[2] + u * (b[2] - a[2]) - rayZ;
+                        double d2 = x * x + y * y + z * z;
+                        int i = fb.getIndex(row, col);
+                        if (d2 <= fb.depth[i] + epsilon) {
+                            // So closest things are at the front.
+                            fb.set(i, d2, FrameBuffer_d.NO_ID);
+                            render(pix, row, col, l.color);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Move the end of a line segment that is behind the near plane onto it.
+     *
+     * @param in The coordinates of the end in front of the near plane.
+     * @param out The coordinates of the end behind the near plane which are
+     * updated.
+     * @param win The distance of in in front of the focus.
+     * @param wout The distance of out in front of the focus.
+     * @param wmin The distance of the near plane in front of the focus.
+     */
+    private static void clipNear(double[] in, double[] out, double win,
+            double wout, double wmin) {
+        double u = (win - wmin) / (win - wout);
+        for (int k = 0; k < 3; k++) {
+            out[k] = in[k] + u * (out[k] - in[k]);
         }
     }
 
@@ -464,29 +870,24 @@ public class Camera_d extends V3D_Frustum_d {
      *
      * @param epsilon The tolerance within which vector components are regarded
      * as equal.
+     * @param fb The frame buffer.
      * @param p The point to render.
      * @param pix The image.
-     * @return pix
-     */
-    public void renderPoint(double epsilon,
-            HashMap<Grids_2D_ID_int, Double> mind2s, Point_d p, int[] pix) {
-        if (!focus.equals(p.p, epsilon)) {
-            V3D_Ray_d ray = new V3D_Ray_d(focus, p.p);
-            V3D_Point_d pt = (V3D_Point_d) rect.getIntersect(ray, epsilon);
-            if (pt != null) {
-                int r = getScreenRow(pt, epsilon);
-                int c = getScreenCol(pt, epsilon);
-                Grids_2D_ID_int id = new Grids_2D_ID_int(r, c);
+     */
+    public void renderPoint(double epsilon, FrameBuffer_d fb, Point_d p,
+            int[] pix) {
+        double[] s = new double[3];
+        double w = viewProjection.project(p.p.getX(), p.p.getY(), p.p.getZ(),
+                s, 0);
+        if (w > epsilon) {
+            int r = (int) Math.floor(s[0]);
+            int c = (int) Math.floor(s[1]);
+            if (fb.isInBounds(r, c)) {
                 double d2 = p.p.getDistanceSquared(focus);
-                Double d2p = mind2s.get(id);
-                if (d2p == null) {
-                    mind2s.put(id, d2);
+                int i = fb.getIndex(r, c);
+                if (d2 <= fb.depth[i] + epsilon) {
+                    fb.set(i, d2, FrameBuffer_d.NO_ID);
                     render(pix, r, c, p.color);
-                } else {
-                    if (d2 <= d2p + epsilon) {
-                        mind2s.put(id, d2);
-                        render(pix, r, c, p.color);
-                    }
                 }
             }
         }
@@ -503,28 +904,32 @@ public class Camera_d extends V3D_Frustum_d {
     /**
      * Calculate the minimum distance squared from this area to the camera point
      * for those parts visible through the camera frustum. These are stored in
-     * mind2t. The mindOrderedTriangles map is updated so that the indexes of
-     * the triangles are stored against the minimum distances. Additionally,
-     * this sets the colour of the triangle based on the lighting vector and
-     * ambientLight.
+     * mind2t. Additionally, this sets the colour of the triangle based on the
+     * lighting vector and ambientLight.
      *
      * @param centroid
      * @param index
      * @param areas
      * @param lighting
      * @param ambientLight
-     * @param mindOrderedTriangles
      * @param mind2t
+     * @param inView If inView[index] is false, then the area is not to be
+     * processed.
+     * @param cull If true and the area faces away from {@link #focus}, then
+     * the area is not to be processed.
      * @param epsilon The tolerance within which vector components are regarded
      * as equal.
+     * @return {@code true} if the area is to be processed.
      */
-    private void process(V3D_Point_d centroid, int index,
+    private boolean process(V3D_Point_d centroid, int index,
             ArrayList<Area_d> areas, V3D_Vector_d lighting, double ambientLight,
-            TreeMap<Double, Set<Integer>> mindOrderedTriangles,
-            double[] mind2t, double epsilon) {
+            double[] mind2t, boolean[] inView, boolean cull, double epsilon) {
         Area_d area = areas.get(index);
+        if (!inView[index] || (cull && isBackFace(area))) {
+            mind2t[index] = Double.MAX_VALUE;
+            return false;
+        }
         area.setLighting(centroid, lighting, ambientLight, epsilon);
-        V3D_Area_d a = area.area;
         /**
          * Algorithm:
          *
@@ -541,8 +946,7 @@ public class Camera_d extends V3D_Frustum_d {
          * 4. Calculate the distance from this to the points of intersection and
          * store the minimum of these distances
          */
-        V3D_Point_d[] pts = a.getPointsArray();
-        V3D_Plane_d tpl = a.pl;
+        V3D_Point_d[] pts = area.getPointsArray();
         double mind2 = Double.MAX_VALUE;
         for (var pt : pts) {
             if (!pt.equals(focus, epsilon)) {
@@ -554,97 +958,707 @@ public class Camera_d extends V3D_Frustum_d {
             }
         }
         mind2t[index] = mind2;
-        Generic_Collections.addToMap(mindOrderedTriangles, mind2t[index], index);
+        return true;
+    }
+
+    /**
+     * An area is a back face if its normal points away from {@link #focus}.
+     * The normal is {@link Area_d#normal} if that is set and otherwise the
+     * normal of the area plane. For closed surfaces with outward facing
+     * normals, back faces cannot be seen from outside.
+     *
+     * @param area The area.
+     * @return {@code true} if area is a back face.
+     */
+    public boolean isBackFace(Area_d area) {
+        double nx;
+        double ny;
+        double nz;
+        V3D_V_d normal = area.getNormal();
+        if (normal == null || normal.isZero()) {
+            V3D_Vector_d n = area.getArea().pl.getN();
+            nx = n.dx;
+            ny = n.dy;
+            nz = n.dz;
+        } else {
+            nx = normal.x;
+            ny = normal.y;
+            nz = normal.z;
+        }
+        double[] c = new double[9];
+        if (!area.getCoords(c, 0)) {
+            V3D_Point_d p = area.getArea().pl.getP();
+            c[0] = p.getX();
+            c[1] = p.getY();
+            c[2] = p.getZ();
+        }
+        return nx * (c[0] - rayX) + ny * (c[1] - rayY)
+                + nz * (c[2] - rayZ) > 0d;
     }
 
     /**
-     * Calculate mind2s.
-     * 
+     * Update the frame buffer with the area where it is the closest thing
+     * rendered through a pixel.
+     *
      * @param index The area index.
      * @param a The area.
      * @param mind2sa The minimum distance squared for each area and the
      * camera point.
-     * @param mind2s The minimum distances squared of geometries through each
-     * pixel.
-     * @param closestIndex The indexes of the closest areas through each
-     * pixel.
-     * @param idPoint The point of intersection on the closest area through
-     * each pixel.
+     * @param fb The frame buffer storing the minimum distances squared of
+     * geometries through each pixel and the indexes of the closest areas.
      * @param epsilon The tolerance within which vector components are regarded
      * as equal.
+     * @return The number of pixels that were empty and now have the area.
      */
-    protected void processArea(int index, V3D_Area_d a,
-            double[] mind2sa, HashMap<Grids_2D_ID_int, Double> mind2s,
-            HashMap<Grids_2D_ID_int, Integer> closestIndex,
-            //HashMap<Grids_2D_ID_int, V3D_Point_d> idPoint,
-            double epsilon) {
+    protected int processArea(int index, V3D_Area_d a,
+            double[] mind2sa, FrameBuffer_d fb, double epsilon) {
+        // Only pixels within the extent of the area projected onto the screen.
+        int[] bounds = getScreenBounds(a.getPointsArray(), epsilon);
+        if (bounds != null) {
+            return processArea(index, a, mind2sa, fb, bounds, epsilon);
+        }
+        return 0;
+    }
+
+    /**
+     * Update the frame buffer with the area where it is the closest thing
+     * rendered through a pixel within {@code bounds}.
+     *
+     * @param index The area index.
+     * @param a The area.
+     * @param mind2sa The minimum distance squared for each area and the
+     * camera point.
+     * @param fb The frame buffer storing the minimum distances squared of
+     * geometries through each pixel and the indexes of the closest areas.
+     * @param bounds The pixels to process {minRow, minCol, maxRow, maxCol}.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return The number of pixels that were empty and now have the area.
+     */
+    protected int processArea(int index, V3D_Area_d a, double[] mind2sa,
+            FrameBuffer_d fb, int[] bounds, double epsilon) {
+        int covered = 0;
         /**
-         * Loop over the extent, and where necessary, calculate the intersection
+         * Loop over the bounds, and where necessary, calculate the intersection
          * to determine if the area is in the pixel and if the distance is a
-         * minimum distance. The bounding box or convex hull of an area can be
-         * used to find the min and max row and column rather than looking
-         * everywhere.
+         * minimum distance. Empty pixels have an infinite depth. Triangles
+         * are intersected with the rays in the ray table directly (see
+         * processTriangle); other areas are intersected using
+         * V3D_Area_d.getIntersectNonCoplanar.
          */
-        for (int row = 0; row < nrows; row++) {
-            for (int col = 0; col < ncols; col++) {
-                Grids_2D_ID_int id = new Grids_2D_ID_int(row, col);
-                Double mind2 = mind2s.get(id);
-                if (mind2 == null) {
+        if (a instanceof V3D_Triangle_d t) {
+            double[] c = new double[9];
+            RayTriangle_d.getCoords(t, c, 0);
+            return processTriangle(index, c, mind2sa, fb, bounds);
+        }
+        long tests = 0L;
+        long rejections = 0L;
+        long exceptions = 0L;
+        for (int row = bounds[0]; row <= bounds[2]; row++) {
+            for (int col = bounds[1]; col <= bounds[3]; col++) {
+                int i = fb.getIndex(row, col);
+                double mind2 = fb.depth[i];
+                if (mind2sa[index] < mind2) {
+                    tests++;
                     try {
-                        V3D_Ray_d ray = getRay(id);
-                        V3D_Point_d ti = a.getIntersectNonCoplanar(ray, epsilon);
+                        V3D_Point_d ti = a.getIntersectNonCoplanar(
+                                getRay(row, col), epsilon);
                         if (ti != null) {
                             double d2 = ti.getDistanceSquared(focus);
-                            mind2s.put(id, d2);
-                            closestIndex.put(id, index);
-                            //idPoint.put(id, ti);
+                            if (d2 < mind2) {
+                                if (mind2 == Double.POSITIVE_INFINITY) {
+                                    covered++;
+                                }
+                                fb.set(i, d2, index);
+                            } else {
+                                rejections++;
+                            }
                         }
                     } catch (RuntimeException ex) {
-                        System.out.println("Resolution too coarse to render "
-                                + "triangle: " + a.toString());
-                        
-                        V3D_Ray_d ray = getRay(id);
-                        V3D_Point_d ti = a.getIntersectNonCoplanar(ray, epsilon);
-                        if (ti != null) {
-                            double d2 = ti.getDistanceSquared(focus);
-                            mind2s.put(id, d2);
-                            closestIndex.put(id, index);
-                            //idPoint.put(id, ti);
-                        }
+                        // The resolution is too coarse to render the area.
+                        exceptions++;
                     }
                 } else {
-                    if (mind2sa[index] < mind2) {
-                        try {
-                            V3D_Ray_d ray = getRay(id);
-                            V3D_Point_d ti = a.getIntersectNonCoplanar(ray, epsilon);
-                            if (ti != null) {
-                                double d2 = ti.getDistanceSquared(focus);
-                                if (d2 < mind2) {
-                                    mind2s.put(id, d2);
-                                    closestIndex.put(id, index);
-                                    //idPoint.put(id, ti);
-                                }
-                            }
-                        } catch (RuntimeException ex) {
-                            System.out.println("Resolution too coarse to render "
-                                    + "triangle: " + a.toString());
-                            
-                            V3D_Ray_d ray = getRay(id);
-                            V3D_Point_d ti = a.getIntersectNonCoplanar(ray, epsilon);
-                            if (ti != null) {
-                                // Only render areas that intersect the ray at a point and that are beyond the camera rect.
-                                double d2 = ti.getDistanceSquared(focus);
-                                if (d2 < mind2) {
-                                    mind2s.put(id, d2);
-                                    closestIndex.put(id, index);
-                                    //idPoint.put(id, ti);
-                                }
+                    rejections++;
+                }
+            }
+        }
+        metrics.count(Counter.INTERSECTION_TESTS, tests);
+        metrics.count(Counter.DEPTH_REJECTIONS, rejections);
+        metrics.count(Counter.EXCEPTIONS, exceptions);
+        return covered;
+    }
+
+    /**
+     * Update the frame buffer with the triangle where it is the closest thing
+     * rendered through a pixel within {@code bounds}. The rays in the ray
+     * table are intersected with the triangle using {@link RayTriangle_d}.
+     *
+     * @param index The area index.
+     * @param c The coordinates of the triangle corners (see
+     * {@link RayTriangle_d#getCoords(V3D_Triangle_d, double[], int)}).
+     * @param mind2sa The minimum distance squared for each area and the
+     * camera point.
+     * @param fb The frame buffer.
+     * @param bounds The pixels to process {minRow, minCol, maxRow, maxCol}.
+     * @return The number of pixels that were empty and now have the area.
+     */
+    protected int processTriangle(int index, double[] c, double[] mind2sa,
+            FrameBuffer_d fb, int[] bounds) {
+        int covered = 0;
+        long tests = 0L;
+        long rejections = 0L;
+        for (int row = bounds[0]; row <= bounds[2]; row++) {
+            for (int col = bounds[1]; col <= bounds[3]; col++) {
+                int i = fb.getIndex(row, col);
+                double mind2 = fb.depth[i];
+                if (mind2sa[index] < mind2) {
+                    tests++;
+                    double d = RayTriangle_d.getIntersect(rayX, rayY, rayZ,
+                            rayDX[i], rayDY[i], rayDZ[i], c, 0);
+                    if (!Double.isNaN(d)) {
+                        // The ray direction is a unit vector.
+                        double d2 = d * d;
+                        if (d2 < mind2) {
+                            if (mind2 == Double.POSITIVE_INFINITY) {
+                                covered++;
                             }
+                            fb.set(i, d2, index);
+                        } else {
+                            rejections++;
+                        }
+                    }
+                } else {
+                    rejections++;
+                }
+            }
+        }
+        metrics.count(Counter.INTERSECTION_TESTS, tests);
+        metrics.count(Counter.DEPTH_REJECTIONS, rejections);
+        return covered;
+    }
+
+    /**
+     * Update the frame buffer with the area where it is the closest thing
+     * rendered through a pixel within {@code bounds}. If the area has been
+     * projected onto the screen, then it is rasterised, otherwise rays are
+     * intersected with it. Only the coordinates of triangles are used, so
+     * the geometry of areas that create it when wanted is not created.
+     *
+     * @param index The area index.
+     * @param a The area.
+     * @param mind2sa The minimum distance squared for each area and the
+     * camera point.
+     * @param fb The frame buffer.
+     * @param bounds The pixels to process {minRow, minCol, maxRow, maxCol}.
+     * @param screen The projected triangles indexed by area (see
+     * {@link #project(V3D_Triangle_d, double[], int, double)}) with
+     * {@link Double#NaN} as the first value for areas that are not projected,
+     * or {@code null} if no areas are projected.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return The number of pixels that were empty and now have the area.
+     */
+    protected int processArea(int index, Area_d a, double[] mind2sa,
+            FrameBuffer_d fb, int[] bounds, double[] screen, double epsilon) {
+        double[] c = new double[9];
+        if (a.getCoords(c, 0)) {
+            if (screen != null && !Double.isNaN(screen[index * 9])) {
+                return rasterise(index, c, screen, index * 9, mind2sa, fb,
+                        bounds);
+            }
+            return processTriangle(index, c, mind2sa, fb, bounds);
+        }
+        return processArea(index, a.getArea(), mind2sa, fb, bounds, epsilon);
+    }
+
+    /**
+     * Project the corners of a triangle onto the screen. For each corner
+     * {p, q, r} three values are set: the row and column coordinates (in the
+     * units of the rows and columns of the rays of {@link #initRays()}, so the
+     * ray through the pixel in row and col goes through the point with
+     * coordinates row and col), and the reciprocal of the distance of the
+     * corner in front of the focus. This uses {@link #viewProjection}.
+     *
+     * @param t The triangle.
+     * @param s The array to put the values in.
+     * @param i The index in s of the first value.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return {@code false} if any corner is not in front of the focus by more
+     * than epsilon in which case the values set are not meaningful.
+     */
+    public boolean project(V3D_Triangle_d t, double[] s, int i,
+            double epsilon) {
+        double[] c = new double[9];
+        RayTriangle_d.getCoords(t, c, 0);
+        return project(c, s, i, epsilon);
+    }
+
+    /**
+     * Project the corners of a triangle onto the screen as
+     * {@link #project(V3D_Triangle_d, double[], int, double)} does.
+     *
+     * @param c The coordinates of the triangle corners (see
+     * {@link RayTriangle_d#getCoords(V3D_Triangle_d, double[], int)}).
+     * @param s The array to put the values in.
+     * @param i The index in s of the first value.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return {@code false} if any corner is not in front of the focus by more
+     * than epsilon in which case the values set are not meaningful.
+     */
+    public boolean project(double[] c, double[] s, int i, double epsilon) {
+        for (int k = 0; k < 9; k += 3) {
+            double w = viewProjection.project(c[k], c[k + 1], c[k + 2], s,
+                    i + k);
+            if (w <= epsilon) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rasterise a projected triangle. For each pixel in bounds, edge functions
+     * evaluated at the row and column of the pixel determine whether the
+     * pixel ray goes through the triangle. So the result for a pixel does not
+     * depend on bounds, and so not on how the screen is divided into tiles.
+     * For pixels more than {@link #RASTER_MARGIN} inside every edge, the
+     * barycentric coordinates given by the edge functions interpolate the
+     * reciprocal of the distance in front of the focus, which is linear on
+     * the screen. This gives the distance along the ray and so the depth is
+     * the same as for ray casting to within rounding. For pixels within
+     * {@link #RASTER_MARGIN} of an edge, the ray is intersected with the
+     * triangle using {@link RayTriangle_d}, so pixels on edges are included
+     * and shared edges are resolved exactly as by {@link Engine#AREA}.
+     *
+     * @param index The area index.
+     * @param c The coordinates of the triangle corners (see
+     * {@link RayTriangle_d#getCoords(V3D_Triangle_d, double[], int)}).
+     * @param s The projected triangle (see
+     * {@link #project(V3D_Triangle_d, double[], int, double)}).
+     * @param j The index in s of the first value.
+     * @param mind2sa The minimum distance squared for each area and the
+     * camera point.
+     * @param fb The frame buffer.
+     * @param bounds The pixels to process {minRow, minCol, maxRow, maxCol}.
+     * @return The number of pixels that were empty and now have the area.
+     */
+    protected int rasterise(int index, double[] c, double[] s, int j,
+            double[] mind2sa, FrameBuffer_d fb, int[] bounds) {
+        double r0 = s[j];
+        double c0 = s[j + 1];
+        double iw0 = s[j + 2];
+        double r1 = s[j + 3];
+        double c1 = s[j + 4];
+        double iw1 = s[j + 5];
+        double r2 = s[j + 6];
+        double c2 = s[j + 7];
+        double iw2 = s[j + 8];
+        double area2 = (r1 - r0) * (c2 - c0) - (c1 - c0) * (r2 - r0);
+        if (area2 == 0d || Double.isNaN(area2)) {
+            // The triangle is edge on to the focus.
+            return 0;
+        }
+        double sign = area2 > 0d ? 1d : -1d;
+        area2 *= sign;
+        // Edge function coefficients, e0 is for the edge opposite p.
+        double e0c = (r2 - r1) * sign;
+        double e0r = (c2 - c1) * sign;
+        double e1c = (r0 - r2) * sign;
+        double e1r = (c0 - c2) * sign;
+        double e2c = (r1 - r0) * sign;
+        double e2r = (c1 - c0) * sign;
+        // The edge function values within RASTER_MARGIN of each edge.
+        double m0 = RASTER_MARGIN * Math.hypot(e0c, e0r);
+        double m1 = RASTER_MARGIN * Math.hypot(e1c, e1r);
+        double m2 = RASTER_MARGIN * Math.hypot(e2c, e2r);
+        double mind2a = mind2sa[index];
+        int covered = 0;
+        long tests = 0L;
+        long rejections = 0L;
+        for (int row = bounds[0]; row <= bounds[2]; row++) {
+            double e0rr = e0r * (row - r1);
+            double e1rr = e1r * (row - r2);
+            double e2rr = e2r * (row - r0);
+            int i = fb.getIndex(row, bounds[1]);
+            for (int col = bounds[1]; col <= bounds[3]; col++, i++) {
+                double e0 = e0c * (col - c1) - e0rr;
+                double e1 = e1c * (col - c2) - e1rr;
+                double e2 = e2c * (col - c0) - e2rr;
+                if (e0 <= -m0 || e1 <= -m1 || e2 <= -m2) {
+                    continue;
+                }
+                double mind2 = fb.depth[i];
+                if (mind2a < mind2) {
+                    tests++;
+                    double d;
+                    if (e0 >= m0 && e1 >= m1 && e2 >= m2) {
+                        // The distance in front of the focus.
+                        double w = area2 / (e0 * iw0 + e1 * iw1 + e2 * iw2);
+                        // The distance along the ray (a unit vector).
+                        d = w / (rayDX[i] * screenNX + rayDY[i] * screenNY
+                                + rayDZ[i] * screenNZ);
+                    } else {
+                        d = RayTriangle_d.getIntersect(rayX, rayY, rayZ,
+                                rayDX[i], rayDY[i], rayDZ[i], c, 0);
+                        if (Double.isNaN(d)) {
+                            continue;
                         }
                     }
+                    double d2 = d * d;
+                    if (d2 < mind2) {
+                        if (mind2 == Double.POSITIVE_INFINITY) {
+                            covered++;
+                        }
+                        fb.set(i, d2, index);
+                    } else {
+                        rejections++;
+                    }
+                } else {
+                    rejections++;
+                }
+            }
+        }
+        metrics.count(Counter.INTERSECTION_TESTS, tests);
+        metrics.count(Counter.DEPTH_REJECTIONS, rejections);
+        return covered;
+    }
+
+    /**
+     * Process areas in order for the pixels in a region of the screen. The
+     * areas are ordered by their minimum distance squared from the camera
+     * point, closest first. The number of pixels in the region covered by
+     * something is tracked. Once all are covered, the area pass stops as soon
+     * as the next area is no closer than the furthest depth in the region, as
+     * then neither it nor any area after it can be closest through any pixel.
+     * The furthest depth is only recalculated once areas covering as many
+     * pixels as there are in the region have been processed since it was last
+     * calculated. As depths only ever decrease, a value that has not been
+     * recalculated is an upper bound and so can be used to stop early. A
+     * {@link TileRenderEvent} is recorded for the region.
+     *
+     * @param areas The areas.
+     * @param mind2sa The minimum distance squared for each area and the
+     * camera point.
+     * @param bounds The screen bounds of each area {minRow, minCol, maxRow,
+     * maxCol}.
+     * @param screen The projected triangles to rasterise or {@code null} (see
+     * {@link #processArea(int, Area_d, double[], FrameBuffer_d, int[], double[], double)}).
+     * @param fb The frame buffer.
+     * @param order The indexes of the areas to process, closest first.
+     * @param n The number of areas in order.
+     * @param minRow The minimum row of the region.
+     * @param minCol The minimum column of the region.
+     * @param maxRow The maximum row of the region.
+     * @param maxCol The maximum column of the region.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @param control For cancelling between areas and reporting progress in
+     * ray tests (the number of pixels of the region in the screen bounds of
+     * each area, which for areas after stopping count as done).
+     * @return The number of areas processed before stopping.
+     */
+    protected int processAreas(ArrayList<Area_d> areas, double[] mind2sa,
+            int[][] bounds, double[] screen, FrameBuffer_d fb, int[] order,
+            int n, int minRow, int minCol, int maxRow, int maxCol,
+            double epsilon, RenderControl control) {
+        TileRenderEvent event = new TileRenderEvent();
+        event.begin();
+        long size = (long) (maxRow - minRow + 1) * (maxCol - minCol + 1);
+        long covered = 0L;
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                if (!fb.isEmpty(fb.getIndex(row, col))) {
+                    covered++;
+                }
+            }
+        }
+        double maxd2 = Double.POSITIVE_INFINITY;
+        long work = 0L;
+        int[] tb = new int[4];
+        int np = n;
+        long step = control.getStep();
+        long unreported = 0L;
+        for (int j = 0; j < n; j++) {
+            control.checkCancelled();
+            int i = order[j];
+            if (covered == size) {
+                if (maxd2 == Double.POSITIVE_INFINITY || work >= size) {
+                    maxd2 = fb.getMaxDepth(minRow, minCol, maxRow, maxCol);
+                    work = 0L;
+                }
+                if (mind2sa[i] >= maxd2) {
+                    np = j;
+                    break;
                 }
             }
+            int[] b = bounds[i];
+            tb[0] = Math.max(b[0], minRow);
+            tb[1] = Math.max(b[1], minCol);
+            tb[2] = Math.min(b[2], maxRow);
+            tb[3] = Math.min(b[3], maxCol);
+            covered += processArea(i, areas.get(i), mind2sa, fb, tb,
+                    screen, epsilon);
+            long w = (long) (tb[2] - tb[0] + 1) * (tb[3] - tb[1] + 1);
+            work += w;
+            unreported += w;
+            if (unreported >= step) {
+                control.advance(unreported);
+                unreported = 0L;
+            }
+        }
+        // The areas after stopping are hidden.
+        for (int j = np; j < n; j++) {
+            int[] b = bounds[order[j]];
+            long r = Math.min(b[2], maxRow) - Math.max(b[0], minRow) + 1;
+            long c = Math.min(b[3], maxCol) - Math.max(b[1], minCol) + 1;
+            unreported += r * c;
+        }
+        control.advance(unreported);
+        event.end();
+        if (event.shouldCommit()) {
+            event.minRow = minRow;
+            event.minCol = minCol;
+            event.maxRow = maxRow;
+            event.maxCol = maxCol;
+            event.areas = n;
+            event.processed = np;
+            event.epsilon = epsilon;
+            event.commit();
+        }
+        return np;
+    }
+
+    /**
+     * Calculate the row and column bounds of the pixels with rays that may
+     * intersect the convex hull of {@code pts} (see
+     * {@link #getScreenBounds(double[], int, double)}).
+     *
+     * @param pts The points.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return {minRow, minCol, maxRow, maxCol} or {@code null} if no ray can
+     * intersect the convex hull of {@code pts}.
+     */
+    protected int[] getScreenBounds(V3D_Point_d[] pts, double epsilon) {
+        double[] c = new double[pts.length * 3];
+        for (int k = 0; k < pts.length; k++) {
+            c[k * 3] = pts[k].getX();
+            c[k * 3 + 1] = pts[k].getY();
+            c[k * 3 + 2] = pts[k].getZ();
+        }
+        return getScreenBounds(c, pts.length, epsilon);
+    }
+
+    /**
+     * Calculate the row and column bounds of the pixels with rays that may
+     * intersect the convex hull of some points. Each point is projected onto
+     * the screen with {@link #viewProjection} in the same row and column
+     * coordinates that {@link #initRays()} uses. As the calculation is
+     * imprecise, a margin of a row and a column is added. If some, but not all
+     * of the points are not in front of {@link #focus}, the projection is
+     * unbounded and so the bounds of the whole screen are returned.
+     *
+     * @param c The coordinates of the points {x0, y0, z0, x1, y1, z1, ...}.
+     * @param n The number of points.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return {minRow, minCol, maxRow, maxCol} or {@code null} if no ray can
+     * intersect the convex hull of the points.
+     */
+    protected int[] getScreenBounds(double[] c, int n, double epsilon) {
+        double[] s = new double[3];
+        double minr = Double.POSITIVE_INFINITY;
+        double minc = Double.POSITIVE_INFINITY;
+        double maxr = Double.NEGATIVE_INFINITY;
+        double maxc = Double.NEGATIVE_INFINITY;
+        int nBehind = 0;
+        boolean unbounded = false;
+        for (int k = 0; k < n * 3; k += 3) {
+            double w = viewProjection.project(c[k], c[k + 1], c[k + 2], s, 0);
+            if (w <= epsilon) {
+                if (w <= 0d) {
+                    nBehind++;
+                }
+                unbounded = true;
+            } else {
+                minr = Math.min(minr, s[0]);
+                maxr = Math.max(maxr, s[0]);
+                minc = Math.min(minc, s[1]);
+                maxc = Math.max(maxc, s[1]);
+            }
+        }
+        if (nBehind == n) {
+            return null;
+        }
+        if (unbounded) {
+            return new int[]{0, 0, nrows - 1, ncols - 1};
+        }
+        if (maxr < -1d || maxc < -1d || minr > nrows || minc > ncols) {
+            return null;
+        }
+        int[] b = new int[4];
+        b[0] = Math.max(0, (int) Math.floor(minr) - 1);
+        b[1] = Math.max(0, (int) Math.floor(minc) - 1);
+        b[2] = Math.min(nrows - 1, (int) Math.ceil(Math.min(maxr, nrows)) + 1);
+        b[3] = Math.min(ncols - 1, (int) Math.ceil(Math.min(maxc, ncols)) + 1);
+        return b;
+    }
+
+    /**
+     * Calculates {@link #rayX}, {@link #rayY}, {@link #rayZ}, {@link #rayDX},
+     * {@link #rayDY} and {@link #rayDZ}. This is done when the camera is
+     * constructed and should be done again if {@link #focus} or {@link #rect}
+     * are changed.
+     */
+    public final void initRays() {
+        rayX = focus.getX();
+        rayY = focus.getY();
+        rayZ = focus.getZ();
+        V3D_Point_d p = rect.getP();
+        double px = p.getX() - rayX;
+        double py = p.getY() - rayY;
+        double pz = p.getZ() - rayZ;
+        double vx = verticalUV.dx;
+        double vy = verticalUV.dy;
+        double vz = verticalUV.dz;
+        double hx = horizontalUV.dx;
+        double hy = horizontalUV.dy;
+        double hz = horizontalUV.dz;
+        for (int row = 0; row < nrows; row++) {
+            double rx = px + vx * row;
+            double ry = py + vy * row;
+            double rz = pz + vz * row;
+            int i = row * ncols;
+            for (int col = 0; col < ncols; col++) {
+                double dx = rx + hx * col;
+                double dy = ry + hy * col;
+                double dz = rz + hz * col;
+                double m = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                rayDX[i] = dx / m;
+                rayDY[i] = dy / m;
+                rayDZ[i] = dz / m;
+                i++;
+            }
+        }
+        rays = new AtomicReferenceArray<>(nrows * ncols);
+        viewProjection = new ViewProjection_d(rayX, rayY, rayZ,
+                p.getX(), p.getY(), p.getZ(), vx, vy, vz, hx, hy, hz);
+        screenNX = viewProjection.m[12];
+        screenNY = viewProjection.m[13];
+        screenNZ = viewProjection.m[14];
+        initFrustum(px, py, pz);
+    }
+
+    /**
+     * Calculates {@link #frustum}.
+     *
+     * @param px The x component of the vector from the focus to rect.getP().
+     * @param py The y component of the vector from the focus to rect.getP().
+     * @param pz The z component of the vector from the focus to rect.getP().
+     */
+    private void initFrustum(double px, double py, double pz) {
+        V3D_Vector_d v = verticalUV;
+        V3D_Vector_d h = horizontalUV;
+        // Corner directions in order around the screen.
+        int[] rows = {-1, -1, nrows, nrows};
+        int[] cols = {-1, ncols, ncols, -1};
+        double[][] c = new double[4][];
+        double[] sum = new double[3];
+        for (int k = 0; k < 4; k++) {
+            c[k] = new double[]{
+                px + v.dx * rows[k] + h.dx * cols[k],
+                py + v.dy * rows[k] + h.dy * cols[k],
+                pz + v.dz * rows[k] + h.dz * cols[k]};
+            for (int m = 0; m < 3; m++) {
+                sum[m] += c[k][m];
+            }
+        }
+        setFrustumPlane(0, sum[0], sum[1], sum[2], sum);
+        for (int k = 0; k < 4; k++) {
+            double[] a = c[k];
+            double[] b = c[(k + 1) % 4];
+            setFrustumPlane(k + 1,
+                    a[1] * b[2] - a[2] * b[1],
+                    a[2] * b[0] - a[0] * b[2],
+                    a[0] * b[1] - a[1] * b[0], sum);
+        }
+    }
+
+    /**
+     * Set plane k of {@link #frustum} to the plane through {@link #focus} with
+     * normal n oriented so that the direction inside is on the inside.
+     */
+    private void setFrustumPlane(int k, double nx, double ny, double nz,
+            double[] inside) {
+        double m = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (nx * inside[0] + ny * inside[1] + nz * inside[2] < 0d) {
+            m = -m;
+        }
+        nx /= m;
+        ny /= m;
+        nz /= m;
+        int i = k * 4;
+        frustum[i] = nx;
+        frustum[i + 1] = ny;
+        frustum[i + 2] = nz;
+        frustum[i + 3] = -(nx * rayX + ny * rayY + nz * rayZ);
+    }
+
+    /**
+     * Test if an axis aligned bounding box may be in view. It is not in view
+     * if it is entirely outside any of the planes of {@link #frustum}.
+     *
+     * @param b The axis aligned bounding box.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return {@code false} if b is not in view.
+     */
+    public boolean isInFrustum(V3D_AABB_d b, double epsilon) {
+        double xmin = b.getXMin();
+        double xmax = b.getXMax();
+        double ymin = b.getYMin();
+        double ymax = b.getYMax();
+        double zmin = b.getZMin();
+        double zmax = b.getZMax();
+        for (int i = 0; i < frustum.length; i += 4) {
+            double nx = frustum[i];
+            double ny = frustum[i + 1];
+            double nz = frustum[i + 2];
+            // The corner furthest inside the plane.
+            double d = nx * (nx > 0d ? xmax : xmin)
+                    + ny * (ny > 0d ? ymax : ymin)
+                    + nz * (nz > 0d ? zmax : zmin) + frustum[i + 3];
+            if (d < -epsilon) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    /**
+     * Test which of a list of entities may be in view (see
+     * {@link #isInFrustum(V3D_AABB_d, double)}).
+     *
+     * @param <T> The type of entity.
+     * @param entities The entities.
+     * @param aabb For getting the axis aligned bounding box of an entity.
+     * @param parallelism The number of threads to use.
+     * @param epsilon The tolerance within which vector components are regarded
+     * as equal.
+     * @return For each entity, {@code false} if it is not in view.
+     * @throws Exception
+     */
+    public <T> boolean[] getInFrustum(List<T> entities,
+            Function<T, V3D_AABB_d> aabb, int parallelism, double epsilon)
+            throws Exception {
+        int n = entities.size();
+        boolean[] r = new boolean[n];
+        forEach(n, i -> r[i] = isInFrustum(aabb.apply(entities.get(i)),
+                epsilon), parallelism);
+        return r;
     }
 
     /**
@@ -656,14 +1670,49 @@ public class Camera_d extends V3D_Frustum_d {
      * screen pixel.
      */
     protected V3D_Ray_d getRay(Grids_2D_ID_int id) {
-        V3D_Ray_d r = rays.get(id);
+        return getRay(id.getRow(), id.getCol());
+    }
+
+    /**
+     * For getting the rays from the camera focal point through the centre of
+     * each screen pixel. This creates a ray for every pixel.
+     *
+     * @return A map of the ray through each screen pixel.
+     * @deprecated The rays are no longer stored in a map: the public
+     * {@code rays} field was replaced by {@link #rayDX}, {@link #rayDY} and
+     * {@link #rayDZ}. Use these or {@link #getRay(int, int)} instead.
+     */
+    @Deprecated
+    public HashMap<Grids_2D_ID_int, V3D_Ray_d> getRays() {
+        HashMap<Grids_2D_ID_int, V3D_Ray_d> r = new HashMap<>();
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                r.put(new Grids_2D_ID_int(row, col), getRay(row, col));
+            }
+        }
+        return r;
+    }
+
+    /**
+     * For getting a ray from the camera focal point through the centre of the
+     * screen pixel in {@code row} and {@code col}. The ray is created from
+     * {@link #rayDX}, {@link #rayDY} and {@link #rayDZ} when first wanted and
+     * is stored for reuse until {@link #initRays()} is called again.
+     *
+     * @param row The row of the screen pixel.
+     * @param col The column of the screen pixel.
+     * @return The ray from the camera focal point through the centre of the
+     * screen pixel.
+     */
+    protected V3D_Ray_d getRay(int row, int col) {
+        int i = row * ncols + col;
+        V3D_Ray_d r = rays.get(i);
         if (r == null) {
-            V3D_Vector_d rv = verticalUV.multiply(id.getRow());
-            V3D_Vector_d cv = horizontalUV.multiply(id.getCol());
-            V3D_Point_d rcpt = new V3D_Point_d(rect.getP());
-            rcpt.translate(rv.add(cv));
-            r = new V3D_Ray_d(focus, rcpt);
-            rays.put(id, r);
+            r = new V3D_Ray_d(focus, new V3D_Vector_d(rayDX[i], rayDY[i],
+                    rayDZ[i]));
+            if (!rays.compareAndSet(i, null, r)) {
+                r = rays.get(i);
+            }
         }
         return r;
     }
@@ -674,51 +1723,52 @@ public class Camera_d extends V3D_Frustum_d {
      * @param p A point in the universe.
      * @param epsilon The tolerance within which vector components are regarded
      * as equal.
-     * @return The ID of the rect cell that intersects a ray from this to focus,
-     * or {@code null}.
+     * @return The ID of the rect cell that intersects a ray from focus to p,
+     * or {@code null} if p is not in front of the focus.
      */
     protected Grids_2D_ID_int getRC(V3D_Point_d p, double epsilon) {
-        if (focus.equals(p, epsilon)) {
-            return new Grids_2D_ID_int(
-                    getScreenRow(p, epsilon),
-                    getScreenCol(p, epsilon));
-        }
-        V3D_Ray_d ray = new V3D_Ray_d(focus, p);
-        //V3D_Point_d px = (V3D_Point_d) rect.getIntersect(ray, epsilon);
-        V3D_Point_d px = (V3D_Point_d) ray.getIntersect(rect.getPl(), epsilon);
-        if (px == null) {
+        double[] s = new double[3];
+        if (viewProjection.project(p.getX(), p.getY(), p.getZ(), s, 0)
+                <= epsilon) {
             return null;
-        } else {
-            return new Grids_2D_ID_int(
-                    getScreenRow(px, epsilon),
-                    getScreenCol(px, epsilon));
         }
+        return new Grids_2D_ID_int((int) Math.floor(s[0]),
+                (int) Math.floor(s[1]));
     }
 
     /**
-     * Calculate and return the row index of {@code p}.
+     * Calculate and return the row index of {@code p}. This is the row
+     * coordinate of {@code p} on the screen rounded down, so rows are
+     * measured along PQ from P of {@link #rect} and the row of any point in
+     * a pixel from {@link #getPixel(int, int)} is the row of that pixel.
+     * Points before P give negative rows. This used to be {@code nrows} less
+     * the number of pixels in the distance of {@code p} from QR, which is one
+     * more than this for points not on a pixel boundary and which is the same
+     * for points either side of QR.
      *
-     * @param p A point on the screen.
+     * @param p A point on the screen (or in front of the focus, in which case
+     * it is projected onto the screen).
      * @param epsilon The tolerance within which vector components are regarded
      * as equal.
      * @return The row index of {@code p}.
      */
     protected int getScreenRow(V3D_Point_d p, double epsilon) {
-        double d = rect.getPQR().getQR().getDistance(p, epsilon);
-        return nrows - (int) (d / pixelSize);
+        return (int) Math.floor(viewProjection.getRow(p.getX(), p.getY(),
+                p.getZ()));
     }
 
     /**
      * Calculate and return the column index of {@code p}.
      *
-     * @param p A point on the screen.
+     * @param p A point on the screen (or in front of the focus, in which case
+     * it is projected onto the screen).
      * @param epsilon The tolerance within which vector components are regarded
      * as equal.
      * @return The column index of {@code p}.
      */
     protected int getScreenCol(V3D_Point_d p, double epsilon) {
-        double d = rect.getPQR().getPQ().getDistance(p, epsilon);
-        return (int) (d / pixelSize);
+        return (int) Math.floor(viewProjection.getCol(p.getX(), p.getY(),
+                p.getZ()));
     }
 
     /**
@@ -732,11 +1782,7 @@ public class Camera_d extends V3D_Frustum_d {
      * {@code col}..
      */
     protected V3D_Point_d getPoint(int row, int col, double epsilon) {
-        V3D_Point_d p = rect.getP();
-        V3D_Point_d pP = new V3D_Point_d(p);
-        pP.translate(verticalUV.multiply(row + 0.5d).add(
-                horizontalUV.multiply(col + 0.5d)));
-        return pP;
+        return getScreenPoint(row + 0.5d, col + 0.5d);
     }
 
     /**
@@ -748,19 +1794,34 @@ public class Camera_d extends V3D_Frustum_d {
      * @return The pixel rectangle indexed by {@code row} and {@code col}.
      */
     public V3D_Rectangle_d getPixel(int row, int col) {
-        // Get bottom left point (row=0, col=0).
-        V3D_Point_d p = rect.getP();
-        V3D_Point_d pP = new V3D_Point_d(p);
-        pP.translate(verticalUV.multiply(row).add(horizontalUV.multiply(col)));
-        // q
-        V3D_Point_d pQ = new V3D_Point_d(p);
-        pQ.translate(verticalUV.multiply(row + 1).add(horizontalUV.multiply(col)));
-        // r
-        V3D_Point_d pR = new V3D_Point_d(p);
-        pR.translate(verticalUV.multiply(row + 1).add(horizontalUV.multiply(col + 1)));
-        // s
-        V3D_Point_d pS = new V3D_Point_d(p);
-        pS.translate(verticalUV.multiply(row).add(horizontalUV.multiply(col + 1)));
-        return new V3D_Rectangle_d(pP, pQ, pR, pS);
+        return new V3D_Rectangle_d(getScreenPoint(row, col),
+                getScreenPoint(row + 1, col),
+                getScreenPoint(row + 1, col + 1),
+                getScreenPoint(row, col + 1));
+    }
+
+    /**
+     * @param r The row coordinate.
+     * @param c The column coordinate.
+     * @return The point on the screen with the screen coordinates (r, c).
+     */
+    private V3D_Point_d getScreenPoint(double r, double c) {
+        double[] x = new double[3];
+        viewProjection.getScreenPoint(r, c, x, 0);
+        return new V3D_Point_d(env, x[0], x[1], x[2]);
+    }
+
+    /**
+     * Read a serialized camera and set {@link #metrics} to
+     * {@link RenderMetrics#NONE} as it is not serialized.
+     *
+     * @param in The stream.
+     * @throws IOException If the stream cannot be read.
+     * @throws ClassNotFoundException If a class of a field cannot be found.
+     */
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        metrics = RenderMetrics.NONE;
     }
 }
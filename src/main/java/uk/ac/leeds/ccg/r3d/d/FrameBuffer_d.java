@@ -0,0 +1,141 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A frame buffer for storing, for each pixel of a {@link Camera_d} screen, the
+ * minimum distance squared of any geometry rendered through the pixel and the
+ * ID of the entity that is at that distance. The pixels are stored in flat
+ * arrays indexed by {@code row * ncols + col}.
+ *
+ * @author Andy Turner
+ */
+public class FrameBuffer_d implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The ID used for pixels without an area. Lines and points are rendered
+     * directly to the image and are stored with this ID.
+     */
+    public static final int NO_ID = -1;
+
+    /**
+     * The number of rows.
+     */
+    public final int nrows;
+
+    /**
+     * The number of columns.
+     */
+    public final int ncols;
+
+    /**
+     * The minimum distance squared of anything rendered through each pixel.
+     * Empty pixels have a value of {@link Double#POSITIVE_INFINITY}.
+     */
+    public final double[] depth;
+
+    /**
+     * The ID of the entity at {@link #depth} for each pixel.
+     */
+    public final int[] id;
+
+    /**
+     * Create a new instance.
+     *
+     * @param nrows What {@link #nrows} is set to.
+     * @param ncols What {@link #ncols} is set to.
+     */
+    public FrameBuffer_d(int nrows, int ncols) {
+        this.nrows = nrows;
+        this.ncols = ncols;
+        int n = nrows * ncols;
+        this.depth = new double[n];
+        this.id = new int[n];
+        clear();
+    }
+
+    /**
+     * Sets all pixels empty.
+     */
+    public final void clear() {
+        Arrays.fill(depth, Double.POSITIVE_INFINITY);
+        Arrays.fill(id, NO_ID);
+    }
+
+    /**
+     * @param row The row.
+     * @param col The column.
+     * @return {@code true} if {@code row} and {@code col} are on the screen.
+     */
+    public boolean isInBounds(int row, int col) {
+        return row >= 0 && row < nrows && col >= 0 && col < ncols;
+    }
+
+    /**
+     * @param row The row.
+     * @param col The column.
+     * @return The index of the pixel in {@link #depth} and {@link #id}.
+     */
+    public int getIndex(int row, int col) {
+        return row * ncols + col;
+    }
+
+    /**
+     * @param i The index of the pixel.
+     * @return {@code true} if nothing has been rendered through the pixel.
+     */
+    public boolean isEmpty(int i) {
+        return depth[i] == Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Get the maximum depth of the pixels in a region.
+     *
+     * @param minRow The minimum row of the region.
+     * @param minCol The minimum column of the region.
+     * @param maxRow The maximum row of the region.
+     * @param maxCol The maximum column of the region.
+     * @return The maximum depth of the pixels in the region.
+     */
+    public double getMaxDepth(int minRow, int minCol, int maxRow, int maxCol) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int row = minRow; row <= maxRow; row++) {
+            int i = getIndex(row, minCol);
+            for (int col = minCol; col <= maxCol; col++) {
+                max = Math.max(max, depth[i]);
+                i++;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Set the depth and ID of a pixel.
+     *
+     * @param i The index of the pixel.
+     * @param d2 The distance squared.
+     * @param entityID The ID.
+     */
+    public void set(int i, double d2, int entityID) {
+        depth[i] = d2;
+        id[i] = entityID;
+    }
+}
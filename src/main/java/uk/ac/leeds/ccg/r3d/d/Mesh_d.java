@@ -0,0 +1,387 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_AABB_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Triangle_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.light.V3D_VLine_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.light.V3D_VTriangle_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.light.V3D_V_d;
+
+/**
+ * A compact triangle mesh. Each unique vertex is stored once in
+ * {@link #vertices} and each triangle is three indexes of vertices in
+ * {@link #triangles} with a unit normal in {@link #normals} and an attribute
+ * in {@link #attributes}. This takes much less memory than an
+ * {@link uk.ac.leeds.ccg.r3d.d.entities.Area_d} with a {@link V3D_Triangle_d}
+ * for each triangle.
+ *
+ * Vertices added with the same coordinates are welded: {@link #addVertex}
+ * returns the index of the existing vertex. This uses a hash table which is
+ * discarded by {@link #trim()}, after which no more vertices can be added.
+ *
+ * The coordinates are relative to {@link #offset}.
+ *
+ * The triangles are only created as V3D geometries when they are wanted for
+ * exact geometry operations. {@link #getTriangle(int)} keeps the most recently
+ * created in a small cache of {@link #CACHE_SIZE} triangles. Rendering only
+ * needs the coordinates (see {@link #getCoords(int, double[], int)}).
+ *
+ * @author Andy Turner
+ */
+public class Mesh_d implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of triangles cached by {@link #getTriangle(int)}.
+     */
+    public static final int CACHE_SIZE = 1024;
+
+    /**
+     * The environment of the triangles.
+     */
+    public final V3D_Environment_d env;
+
+    /**
+     * The offset of the coordinates.
+     */
+    public final V3D_Vector_d offset;
+
+    /**
+     * The number of vertices.
+     */
+    public int nVertices;
+
+    /**
+     * The coordinates of each vertex {x0, y0, z0, x1, y1, z1, ...}.
+     */
+    public double[] vertices;
+
+    /**
+     * The number of triangles.
+     */
+    public int nTriangles;
+
+    /**
+     * The indexes of the vertices of each triangle {p0, q0, r0, p1, q1, r1,
+     * ...}.
+     */
+    public int[] triangles;
+
+    /**
+     * The unit normal of each triangle {x0, y0, z0, x1, y1, z1, ...}.
+     */
+    public double[] normals;
+
+    /**
+     * The attribute of each triangle.
+     */
+    public short[] attributes;
+
+    /**
+     * Set to true if the triangles are known to form closed surfaces. This is
+     * set from the topology assessment of
+     * {@link uk.ac.leeds.ccg.r3d.io.d.STL_Reader_d#readMesh(java.nio.file.Path, V3D_Vector_d, double, boolean)}.
+     */
+    public boolean closed;
+
+    /**
+     * For welding vertices: an open addressing hash table of vertex indexes
+     * plus 1 (0 for empty).
+     */
+    private transient int[] table;
+
+    /**
+     * A cache of triangles indexed by the triangle index modulo
+     * {@link #CACHE_SIZE}.
+     */
+    private transient Cached[] cache;
+
+    /**
+     * A cached triangle. The fields are final so it can be shared between
+     * threads without synchronisation.
+     */
+    private static final class Cached {
+
+        /**
+         * The index of the triangle.
+         */
+        final int t;
+
+        /**
+         * The triangle.
+         */
+        final V3D_Triangle_d triangle;
+
+        Cached(int t, V3D_Triangle_d triangle) {
+            this.t = t;
+            this.triangle = triangle;
+        }
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param env What {@link #env} is set to.
+     * @param offset What {@link #offset} is set to.
+     * @param n The expected number of triangles.
+     */
+    public Mesh_d(V3D_Environment_d env, V3D_Vector_d offset, int n) {
+        this.env = env;
+        this.offset = offset;
+        n = Math.max(n, 1);
+        // There are about half as many vertices as triangles in closed meshes.
+        vertices = new double[(n / 2 + 1) * 3];
+        triangles = new int[n * 3];
+        normals = new double[n * 3];
+        attributes = new short[n];
+        table = new int[Integer.highestOneBit(n) * 2];
+    }
+
+    /**
+     * Create a new instance from arrays which are used rather than copied.
+     * No more vertices can be added (see {@link #trim()}).
+     *
+     * @param env What {@link #env} is set to.
+     * @param offset What {@link #offset} is set to.
+     * @param vertices What {@link #vertices} is set to.
+     * @param triangles What {@link #triangles} is set to.
+     * @param normals What {@link #normals} is set to.
+     * @param attributes What {@link #attributes} is set to.
+     */
+    public Mesh_d(V3D_Environment_d env, V3D_Vector_d offset,
+            double[] vertices, int[] triangles, double[] normals,
+            short[] attributes) {
+        this.env = env;
+        this.offset = offset;
+        this.vertices = vertices;
+        this.triangles = triangles;
+        this.normals = normals;
+        this.attributes = attributes;
+        nVertices = vertices.length / 3;
+        nTriangles = attributes.length;
+    }
+
+    /**
+     * Add a vertex unless one with the same coordinates has already been
+     * added.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The index of the vertex.
+     * @throws IllegalStateException If {@link #trim()} has been called.
+     */
+    public int addVertex(double x, double y, double z) {
+        if (table == null) {
+            throw new IllegalStateException("No vertices can be added to a "
+                    + "trimmed mesh.");
+        }
+        // Adding 0 turns -0 into 0 so they weld.
+        x += 0d;
+        y += 0d;
+        z += 0d;
+        int mask = table.length - 1;
+        int i = hash(x, y, z) & mask;
+        while (table[i] != 0) {
+            int v = (table[i] - 1) * 3;
+            if (vertices[v] == x && vertices[v + 1] == y
+                    && vertices[v + 2] == z) {
+                return table[i] - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        if (nVertices * 3 == vertices.length) {
+            vertices = Arrays.copyOf(vertices, vertices.length * 2);
+        }
+        int v = nVertices * 3;
+        vertices[v] = x;
+        vertices[v + 1] = y;
+        vertices[v + 2] = z;
+        nVertices++;
+        table[i] = nVertices;
+        if (nVertices * 2 > table.length) {
+            rehash();
+        }
+        return nVertices - 1;
+    }
+
+    /**
+     * Double the size of {@link #table}.
+     */
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int v = 0; v < nVertices; v++) {
+            int i = hash(vertices[v * 3], vertices[v * 3 + 1],
+                    vertices[v * 3 + 2]) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = v + 1;
+        }
+    }
+
+    /**
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return A hash of the coordinates.
+     */
+    static int hash(double x, double y, double z) {
+        long h = Double.doubleToLongBits(x) * 0x9E3779B97F4A7C15L;
+        h = (h ^ Double.doubleToLongBits(y)) * 0x9E3779B97F4A7C15L;
+        h = (h ^ Double.doubleToLongBits(z)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Add a triangle.
+     *
+     * @param p The index of the first vertex.
+     * @param q The index of the second vertex.
+     * @param r The index of the third vertex.
+     * @param nx The x component of the unit normal.
+     * @param ny The y component of the unit normal.
+     * @param nz The z component of the unit normal.
+     * @param attribute The attribute.
+     * @return The index of the triangle.
+     */
+    public int addTriangle(int p, int q, int r, double nx, double ny,
+            double nz, short attribute) {
+        if (nTriangles == attributes.length) {
+            int n = nTriangles * 2;
+            triangles = Arrays.copyOf(triangles, n * 3);
+            normals = Arrays.copyOf(normals, n * 3);
+            attributes = Arrays.copyOf(attributes, n);
+        }
+        int t = nTriangles * 3;
+        triangles[t] = p;
+        triangles[t + 1] = q;
+        triangles[t + 2] = r;
+        normals[t] = nx;
+        normals[t + 1] = ny;
+        normals[t + 2] = nz;
+        attributes[nTriangles] = attribute;
+        nTriangles++;
+        return nTriangles - 1;
+    }
+
+    /**
+     * Discard the hash table used for welding and shrink the arrays to fit.
+     * No more vertices can be added after this.
+     */
+    public void trim() {
+        table = null;
+        vertices = Arrays.copyOf(vertices, nVertices * 3);
+        triangles = Arrays.copyOf(triangles, nTriangles * 3);
+        normals = Arrays.copyOf(normals, nTriangles * 3);
+        attributes = Arrays.copyOf(attributes, nTriangles);
+    }
+
+    /**
+     * @param v The index of a vertex.
+     * @return The vertex.
+     */
+    public V3D_V_d getVertex(int v) {
+        return new V3D_V_d(vertices[v * 3], vertices[v * 3 + 1],
+                vertices[v * 3 + 2]);
+    }
+
+    /**
+     * Create the triangle with index t. This is the same as the triangle
+     * that {@link uk.ac.leeds.ccg.r3d.io.d.STL_Reader_d} creates for it.
+     *
+     * @param t The index of the triangle.
+     * @return The triangle.
+     */
+    public V3D_Triangle_d createTriangle(int t) {
+        V3D_V_d p = getVertex(triangles[t * 3]);
+        V3D_V_d q = getVertex(triangles[t * 3 + 1]);
+        V3D_V_d r = getVertex(triangles[t * 3 + 2]);
+        return new V3D_Triangle_d(env, offset, new V3D_VTriangle_d(
+                new V3D_VLine_d(p, q), new V3D_VLine_d(q, r),
+                new V3D_VLine_d(r, p)));
+    }
+
+    /**
+     * Get the triangle with index t from the cache or create it and put it
+     * in the cache replacing any other triangle cached in its place.
+     *
+     * @param t The index of the triangle.
+     * @return The triangle.
+     */
+    public V3D_Triangle_d getTriangle(int t) {
+        Cached[] c = cache;
+        if (c == null) {
+            c = new Cached[CACHE_SIZE];
+            cache = c;
+        }
+        int i = t & (CACHE_SIZE - 1);
+        Cached x = c[i];
+        if (x == null || x.t != t) {
+            x = new Cached(t, createTriangle(t));
+            c[i] = x;
+        }
+        return x.triangle;
+    }
+
+    /**
+     * Set the coordinates of the corners of the triangle with index t as
+     * {@link RayTriangle_d#getCoords(V3D_Triangle_d, double[], int)} does for
+     * the triangle.
+     *
+     * @param t The index of the triangle.
+     * @param coords The array to put the coordinates in.
+     * @param i The index in coords of the first coordinate.
+     */
+    public void getCoords(int t, double[] coords, int i) {
+        for (int k = 0; k < 3; k++) {
+            int v = triangles[t * 3 + k] * 3;
+            coords[i + k * 3] = vertices[v] + offset.dx;
+            coords[i + k * 3 + 1] = vertices[v + 1] + offset.dy;
+            coords[i + k * 3 + 2] = vertices[v + 2] + offset.dz;
+        }
+    }
+
+    /**
+     * @return The AABB of the vertices.
+     */
+    public V3D_AABB_d getAABB() {
+        double xmin = Double.POSITIVE_INFINITY;
+        double xmax = Double.NEGATIVE_INFINITY;
+        double ymin = Double.POSITIVE_INFINITY;
+        double ymax = Double.NEGATIVE_INFINITY;
+        double zmin = Double.POSITIVE_INFINITY;
+        double zmax = Double.NEGATIVE_INFINITY;
+        for (int v = 0; v < nVertices * 3; v += 3) {
+            xmin = Math.min(xmin, vertices[v]);
+            xmax = Math.max(xmax, vertices[v]);
+            ymin = Math.min(ymin, vertices[v + 1]);
+            ymax = Math.max(ymax, vertices[v + 1]);
+            zmin = Math.min(zmin, vertices[v + 2]);
+            zmax = Math.max(zmax, vertices[v + 2]);
+        }
+        return new V3D_AABB_d(env, xmin + offset.dx, xmax + offset.dx,
+                ymin + offset.dy, ymax + offset.dy, zmin + offset.dz,
+                zmax + offset.dz);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+/**
+ * For walking the pixels that a line segment projected onto a screen passes
+ * through. Screen coordinates are in pixel units so that the pixel in row r
+ * and column c covers [r, r + 1) x [c, c + 1). The traversal is the digital
+ * differential analyser of Amanatides and Woo which steps from one pixel to
+ * the next by comparing the distances along the segment to the next row and
+ * column boundaries. Nothing is allocated.
+ *
+ * @author Andy Turner
+ */
+public class PixelLine_d {
+
+    /**
+     * For visiting a pixel.
+     */
+    public interface Visitor {
+
+        /**
+         * @param row The row index of the pixel.
+         * @param col The column index of the pixel.
+         * @param t The parameter along the segment of the middle of the part
+         * of it that is in the pixel, in the range [0, 1].
+         */
+        void visit(int row, int col, double t);
+    }
+
+    private PixelLine_d() {
+    }
+
+    /**
+     * Visit each pixel that the segment from (r0, c0) to (r1, c1) passes
+     * through in order from (r0, c0). The segment is first clipped to the
+     * screen. Where the segment passes exactly through the corner of a pixel,
+     * the pixel diagonally opposite is visited next.
+     *
+     * @param r0 The row coordinate of the start of the segment.
+     * @param c0 The column coordinate of the start of the segment.
+     * @param r1 The row coordinate of the end of the segment.
+     * @param c1 The column coordinate of the end of the segment.
+     * @param nrows The number of rows of pixels on the screen.
+     * @param ncols The number of columns of pixels on the screen.
+     * @param v The visitor.
+     */
+    public static void traverse(double r0, double c0, double r1, double c1,
+            int nrows, int ncols, Visitor v) {
+        double dr = r1 - r0;
+        double dc = c1 - c0;
+        // Liang-Barsky clip to the screen.
+        double[] t = {0d, 1d};
+        if (!clip(-dr, r0, t) || !clip(dr, nrows - r0, t)
+                || !clip(-dc, c0, t) || !clip(dc, ncols - c0, t)) {
+            return;
+        }
+        double ta = t[0];
+        double tb = t[1];
+        int row = clamp((int) Math.floor(r0 + ta * dr), nrows);
+        int col = clamp((int) Math.floor(c0 + ta * dc), ncols);
+        int stepR = dr > 0d ? 1 : -1;
+        int stepC = dc > 0d ? 1 : -1;
+        double tDeltaR = dr == 0d ? Double.POSITIVE_INFINITY : 1d / Math.abs(dr);
+        double tDeltaC = dc == 0d ? Double.POSITIVE_INFINITY : 1d / Math.abs(dc);
+        double tMaxR = dr == 0d ? Double.POSITIVE_INFINITY
+                : ((dr > 0d ? row + 1 : row) - r0) / dr;
+        double tMaxC = dc == 0d ? Double.POSITIVE_INFINITY
+                : ((dc > 0d ? col + 1 : col) - c0) / dc;
+        // Guard against rounding stepping back onto a boundary already passed.
+        while (tMaxR <= ta) {
+            tMaxR += tDeltaR;
+        }
+        while (tMaxC <= ta) {
+            tMaxC += tDeltaC;
+        }
+        int n = nrows + ncols;
+        for (int k = 0; k <= n; k++) {
+            double tn = Math.min(Math.min(tMaxR, tMaxC), tb);
+            v.visit(row, col, (ta + tn) / 2d);
+            if (tn >= tb) {
+                return;
+            }
+            ta = tn;
+            if (tMaxR <= tMaxC) {
+                row += stepR;
+                tMaxR += tDeltaR;
+            }
+            if (tMaxC <= tn) {
+                col += stepC;
+                tMaxC += tDeltaC;
+            }
+            if (row < 0 || row >= nrows || col < 0 || col >= ncols) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Clip a parameter range against one boundary.
+     *
+     * @param p The rate of approach to the boundary.
+     * @param q The distance inside the boundary at the start.
+     * @param t The parameter range {min, max} which is updated.
+     * @return false if nothing is left after clipping.
+     */
+    private static boolean clip(double p, double q, double[] t) {
+        if (p == 0d) {
+            return q >= 0d;
+        }
+        double r = q / p;
+        if (p < 0d) {
+            if (r > t[1]) {
+                return false;
+            }
+            if (r > t[0]) {
+                t[0] = r;
+            }
+        } else {
+            if (r < t[0]) {
+                return false;
+            }
+            if (r < t[1]) {
+                t[1] = r;
+            }
+        }
+        return true;
+    }
+
+    private static int clamp(int i, int n) {
+        return i < 0 ? 0 : (i >= n ? n - 1 : i);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Triangle_d;
+
+/**
+ * For intersecting rays and triangles given as primitive coordinates using the
+ * Möller–Trumbore algorithm. Nothing is allocated, so this is suitable for the
+ * innermost loops of rendering.
+ *
+ * @author Andy Turner
+ */
+public class RayTriangle_d {
+
+    /**
+     * The tolerance on the barycentric coordinates of intersections, so that
+     * rounding does not let a ray through an edge shared by two triangles
+     * miss both of them.
+     */
+    static final double EDGE = 1d / 1000000000000d;
+
+    private RayTriangle_d() {
+    }
+
+    /**
+     * Get the coordinates of the corners of a triangle in the form used by
+     * {@link #getIntersect(double, double, double, double, double, double, double[], int)}.
+     *
+     * @param t The triangle.
+     * @param coords The array to put the coordinates in.
+     * @param i The index in coords of the first coordinate.
+     */
+    public static void getCoords(V3D_Triangle_d t, double[] coords, int i) {
+        V3D_Point_d p = t.getP();
+        V3D_Point_d q = t.getQ();
+        V3D_Point_d r = t.getR();
+        coords[i] = p.getX();
+        coords[i + 1] = p.getY();
+        coords[i + 2] = p.getZ();
+        coords[i + 3] = q.getX();
+        coords[i + 4] = q.getY();
+        coords[i + 5] = q.getZ();
+        coords[i + 6] = r.getX();
+        coords[i + 7] = r.getY();
+        coords[i + 8] = r.getZ();
+    }
+
+    /**
+     * Get the distance along a ray to where it intersects a triangle. Rays that
+     * lie in the plane of the triangle and triangles with no area are not
+     * intersected. Points on an edge, and those within {@link #EDGE} of it in
+     * barycentric coordinates, are intersected, so a ray through an edge
+     * shared by two triangles intersects both.
+     *
+     * @param ox The x coordinate of the ray origin.
+     * @param oy The y coordinate of the ray origin.
+     * @param oz The z coordinate of the ray origin.
+     * @param dx The x component of the ray direction.
+     * @param dy The y component of the ray direction.
+     * @param dz The z component of the ray direction.
+     * @param c The coordinates of the triangle corners {px, py, pz, qx, qy,
+     * qz, rx, ry, rz} starting at index {@code i}.
+     * @param i The index in c of the first coordinate.
+     * @return The distance along the ray to the intersection in units of the
+     * length of the ray direction, or {@link Double#NaN} if there is no
+     * intersection.
+     */
+    public static double getIntersect(double ox, double oy, double oz,
+            double dx, double dy, double dz, double[] c, int i) {
+        double px = c[i];
+        double py = c[i + 1];
+        double pz = c[i + 2];
+        // Edges from p.
+        double e1x = c[i + 3] - px;
+        double e1y = c[i + 4] - py;
+        double e1z = c[i + 5] - pz;
+        double e2x = c[i + 6] - px;
+        double e2y = c[i + 7] - py;
+        double e2z = c[i + 8] - pz;
+        // h = d x e2
+        double hx = dy * e2z - dz * e2y;
+        double hy = dz * e2x - dx * e2z;
+        double hz = dx * e2y - dy * e2x;
+        double det = e1x * hx + e1y * hy + e1z * hz;
+        if (det == 0d || Double.isNaN(det)) {
+            return Double.NaN;
+        }
+        double f = 1d / det;
+        double sx = ox - px;
+        double sy = oy - py;
+        double sz = oz - pz;
+        double u = f * (sx * hx + sy * hy + sz * hz);
+        if (u < -EDGE || u > 1d + EDGE) {
+            return Double.NaN;
+        }
+        // q = s x e1
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double v = f * (dx * qx + dy * qy + dz * qz);
+        if (v < -EDGE || u + v > 1d + EDGE) {
+            return Double.NaN;
+        }
+        double t = f * (e2x * qx + e2y * qy + e2z * qz);
+        if (t > 0d) {
+            return t;
+        }
+        return Double.NaN;
+    }
+}
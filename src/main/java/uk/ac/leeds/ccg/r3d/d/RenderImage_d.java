@@ -22,6 +22,9 @@ import java.awt.Panel;
 import java.awt.image.MemoryImageSource;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import uk.ac.leeds.ccg.r3d.RenderMetrics;
+import uk.ac.leeds.ccg.r3d.RenderMetrics.Phase;
+import uk.ac.leeds.ccg.r3d.RenderStats;
 import uk.ac.leeds.ccg.r3d.io.IO;
 import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_AABB_d;
@@ -46,6 +49,13 @@ public class RenderImage_d {
      */
     Path output;
 
+    /**
+     * For recording the time taken by each phase of rendering and writing an
+     * image and counting the work done. This is given to the camera for each
+     * render.
+     */
+    public RenderMetrics metrics = RenderMetrics.NONE;
+
     /**
      * Create a new instance.
      *
@@ -404,11 +414,16 @@ public class RenderImage_d {
             String name = "Utah_teapot_(solid)";
             Color color = Color.YELLOW;
             Path input = Paths.get(inDataDir.toString(), name, name + ".stl");
-            // Init universe
+            // Init universe from a snapshot written on the first run.
+            Path snapshot = Paths.get(outDataDir.toString(), name,
+                    name + ".r3du");
             double scale = 10d;
-            Universe_d universe = new Universe_d(env, input,
-                    V3D_Vector_d.ZERO, color, assessTopology, epsilon, scale,
+            RenderStats stats = new RenderStats();
+            long t0 = System.nanoTime();
+            Universe_d universe = UniverseSnapshot_d.getUniverse(env, input,
+                    snapshot, V3D_Vector_d.ZERO, color, assessTopology, scale,
                     false);
+            stats.time(Phase.LOAD, System.nanoTime() - t0);
             // Detail the camera
             Dimension dim = new Dimension(w, h);
             V3D_Point_d centroid = universe.aabb.getCentroid();
@@ -454,7 +469,9 @@ public class RenderImage_d {
             //+ "_j=" + String.format("%,.2f", pt.getY())
             //+ "_k=" + String.format("%,.2f", pt.getZ())
             //+ ")_" + ls + "_epsilon=" + epsilon + ".png");
+            r.metrics = stats;
             r.run(dim, lighting, ambientLight, castShadow, epsilon);
+            System.out.println(stats);
             //r.run(dim, lighting, ambientLight, castShadow, epsilon);
             //            }
             //        }
@@ -947,16 +964,34 @@ public class RenderImage_d {
     public void run(Dimension size, V3D_Vector_d lighting, double ambientLight,
             boolean castShadow, boolean addGraticules, double epsilon)
             throws Exception {
+        run(size, lighting, ambientLight, castShadow, addGraticules, 1,
+                epsilon);
+    }
+
+    /**
+     * The process for rendering an image.
+     *
+     * The time taken by each phase is reported to {@link #metrics}.
+     *
+     * @param parallelism The number of threads to use for rendering. If this
+     * is 1, then the render is serial.
+     * @throws Exception
+     */
+    public void run(Dimension size, V3D_Vector_d lighting, double ambientLight,
+            boolean castShadow, boolean addGraticules, int parallelism,
+            double epsilon) throws Exception {
+        universe.camera.metrics = metrics;
         int[] pix = universe.camera.render(this.universe, lighting,
-                ambientLight, castShadow, addGraticules, epsilon);
+                ambientLight, castShadow, addGraticules, parallelism, epsilon);
         /**
          * Convert pix to an image and write to a file.
          */
+        long t0 = System.nanoTime();
         MemoryImageSource m = new MemoryImageSource(size.width, size.height, pix, 0, size.width);
         Panel panel = new Panel();
         Image image = panel.createImage(m);
         IO.imageToFile(image, "png", this.output);
-        System.out.println("Rendered");
+        metrics.time(Phase.ENCODE, System.nanoTime() - t0);
     }
 
     /**
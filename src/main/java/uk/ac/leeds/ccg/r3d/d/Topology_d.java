@@ -0,0 +1,428 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * For assessing the topology of triangles by counting how many triangles
+ * contain each point and share each edge. For simple closed surfaces, ones
+ * that bound volumes, each edge is shared by exactly two triangles (see
+ * {@link #isClosed()}).
+ *
+ * Points are identified by index. The vertices of a {@link Mesh_d} are
+ * already welded and {@link #of(double[], int, int)} welds the corners of
+ * triangles with the same coordinates. Edges are identified by the indexes of
+ * their ends, smallest first, packed into a long. The counts are kept in
+ * primitive open addressing hash tables rather than maps of boxed counts.
+ *
+ * The work is split into tasks which are done in parallel if the parallelism
+ * is greater than 1: ranges of {@link #RANGE} triangles, and partitions of the
+ * points and edges by hash so that each table is only used by one task. The
+ * indexes of the corners and edges are first bucketed by partition in one
+ * pass, so each partition task only looks at its own.
+ *
+ * @author Andy Turner
+ */
+public class Topology_d {
+
+    /**
+     * The number of triangles in each range processed by a task.
+     */
+    static final int RANGE = 1 << 14;
+
+    /**
+     * The number of unique points.
+     */
+    public int nPoints;
+
+    /**
+     * The number of unique edges.
+     */
+    public int nEdges;
+
+    /**
+     * The minimum number of triangles containing any unique point.
+     */
+    public int minPointCount;
+
+    /**
+     * The maximum number of triangles containing any unique point.
+     */
+    public int maxPointCount;
+
+    /**
+     * The minimum number of triangles sharing any edge.
+     */
+    public int minEdgeCount;
+
+    /**
+     * The maximum number of triangles sharing any edge.
+     */
+    public int maxEdgeCount;
+
+    /**
+     * Create a new instance.
+     *
+     * @param nPoints The number of points.
+     * @param triangles The indexes of the points of each triangle {p0, q0, r0,
+     * p1, q1, r1, ...}.
+     * @param nTriangles The number of triangles.
+     * @param parallelism The number of threads to use.
+     * @throws InterruptedException If interrupted while waiting for tasks.
+     */
+    public Topology_d(int nPoints, int[] triangles, int nTriangles,
+            int parallelism) throws InterruptedException {
+        this.nPoints = nPoints;
+        int n3 = Math.multiplyExact(nTriangles, 3);
+        // Count points.
+        int[] counts = new int[nPoints];
+        for (int k = 0; k < n3; k++) {
+            counts[triangles[k]]++;
+        }
+        if (nPoints > 0) {
+            minPointCount = Integer.MAX_VALUE;
+            for (int c : counts) {
+                minPointCount = Math.min(minPointCount, c);
+                maxPointCount = Math.max(maxPointCount, c);
+            }
+        }
+        // Key and hash the edges.
+        long[] keys = new long[n3];
+        int[] hashes = new int[n3];
+        forEach((nTriangles + RANGE - 1) / RANGE, r -> {
+            int t1 = Math.min(nTriangles, (r + 1) * RANGE);
+            for (int k = r * RANGE * 3; k < t1 * 3; k += 3) {
+                for (int j = 0; j < 3; j++) {
+                    int a = triangles[k + j];
+                    int b = triangles[k + (j + 1) % 3];
+                    long key = a < b ? ((long) a << 32) | b
+                            : ((long) b << 32) | a;
+                    keys[k + j] = key;
+                    hashes[k + j] = hash(key);
+                }
+            }
+        }, parallelism);
+        // Count edges.
+        int bits = getPartitionBits(parallelism);
+        int[] start = new int[(1 << bits) + 1];
+        int[] order = bucket(hashes, bits, start);
+        EdgeCounts[] ecs = new EdgeCounts[1 << bits];
+        forEach(ecs.length, p -> {
+            EdgeCounts ec = new EdgeCounts(start[p + 1] - start[p]);
+            for (int j = start[p]; j < start[p + 1]; j++) {
+                int k = order == null ? j : order[j];
+                ec.add(keys[k], hashes[k]);
+            }
+            ecs[p] = ec;
+        }, parallelism);
+        minEdgeCount = Integer.MAX_VALUE;
+        for (EdgeCounts ec : ecs) {
+            nEdges += ec.size;
+            for (int c : ec.counts) {
+                if (c > 0) {
+                    minEdgeCount = Math.min(minEdgeCount, c);
+                    maxEdgeCount = Math.max(maxEdgeCount, c);
+                }
+            }
+        }
+        if (nEdges == 0) {
+            minEdgeCount = 0;
+        }
+    }
+
+    /**
+     * Weld the corners of triangles with the same coordinates into points and
+     * assess the topology. Coordinates are the same if they are equal as
+     * doubles (so 0 and -0 are the same).
+     *
+     * @param coords The coordinates of the corners of each triangle {px0,
+     * py0, pz0, qx0, qy0, qz0, rx0, ry0, rz0, px1, ...}.
+     * @param nTriangles The number of triangles.
+     * @param parallelism The number of threads to use.
+     * @return The topology.
+     * @throws InterruptedException If interrupted while waiting for tasks.
+     */
+    public static Topology_d of(double[] coords, int nTriangles,
+            int parallelism) throws InterruptedException {
+        int n3 = Math.multiplyExact(nTriangles, 3);
+        int[] hashes = new int[n3];
+        int nRanges = (nTriangles + RANGE - 1) / RANGE;
+        forEach(nRanges, r -> {
+            int k1 = Math.min(nTriangles, (r + 1) * RANGE) * 3;
+            for (int k = r * RANGE * 3; k < k1; k++) {
+                hashes[k] = Mesh_d.hash(coords[k * 3] + 0d,
+                        coords[k * 3 + 1] + 0d, coords[k * 3 + 2] + 0d);
+            }
+        }, parallelism);
+        /**
+         * Each partition numbers its points from 0 and these are offset by
+         * the number of points in the preceding partitions.
+         */
+        int bits = getPartitionBits(parallelism);
+        int[] start = new int[(1 << bits) + 1];
+        int[] order = bucket(hashes, bits, start);
+        int[] points = new int[n3];
+        int[] offsets = new int[(1 << bits) + 1];
+        forEach(1 << bits, p -> offsets[p + 1] = weld(coords, hashes, order,
+                start[p], start[p + 1], points), parallelism);
+        for (int p = 1; p < offsets.length; p++) {
+            offsets[p] += offsets[p - 1];
+        }
+        if (bits > 0) {
+            forEach(nRanges, r -> {
+                int k1 = Math.min(nTriangles, (r + 1) * RANGE) * 3;
+                for (int k = r * RANGE * 3; k < k1; k++) {
+                    points[k] += offsets[getPartition(hashes[k], bits)];
+                }
+            }, parallelism);
+        }
+        return new Topology_d(offsets[offsets.length - 1], points, nTriangles,
+                parallelism);
+    }
+
+    /**
+     * Bucket indexes by the partition of their hash. Within each partition the
+     * indexes are in ascending order, so the partitions are processed in the
+     * same order as by a scan of all the indexes.
+     *
+     * @param hashes The hashes.
+     * @param bits The number of bits of the hashes giving the partition.
+     * @param start For setting the start of the indexes of each partition in
+     * the result, followed by the number of indexes.
+     * @return The indexes of the hashes ordered by partition, or {@code null}
+     * if there is only one partition in which case the indexes are in order.
+     */
+    private static int[] bucket(int[] hashes, int bits, int[] start) {
+        if (bits == 0) {
+            start[1] = hashes.length;
+            return null;
+        }
+        for (int h : hashes) {
+            start[getPartition(h, bits) + 1]++;
+        }
+        for (int p = 1; p < start.length; p++) {
+            start[p] += start[p - 1];
+        }
+        int[] next = Arrays.copyOf(start, start.length - 1);
+        int[] order = new int[hashes.length];
+        for (int k = 0; k < hashes.length; k++) {
+            order[next[getPartition(hashes[k], bits)]++] = k;
+        }
+        return order;
+    }
+
+    /**
+     * Weld the corners in a partition.
+     *
+     * @param coords The coordinates of the corners.
+     * @param hashes The hash of the coordinates of each corner.
+     * @param order The indexes of the corners ordered by partition (see
+     * {@link #bucket(int[], int, int[])}) or {@code null} if the indexes are
+     * in order.
+     * @param from The start in order of the indexes of the partition.
+     * @param to The end in order of the indexes of the partition.
+     * @param points For setting the index of the point of each corner in the
+     * partition numbering the points of the partition from 0.
+     * @return The number of points in the partition.
+     */
+    private static int weld(double[] coords, int[] hashes, int[] order,
+            int from, int to, int[] points) {
+        // The index plus 1 of the first corner of each point (0 for empty).
+        int[] table = new int[Math.max(16,
+                Integer.highestOneBit(to - from) * 2)];
+        int size = 0;
+        for (int j = from; j < to; j++) {
+            int k = order == null ? j : order[j];
+            int mask = table.length - 1;
+            int i = hashes[k] & mask;
+            while (table[i] != 0) {
+                int f = table[i] - 1;
+                if (coords[f * 3] == coords[k * 3]
+                        && coords[f * 3 + 1] == coords[k * 3 + 1]
+                        && coords[f * 3 + 2] == coords[k * 3 + 2]) {
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+            if (table[i] == 0) {
+                table[i] = k + 1;
+                points[k] = size;
+                size++;
+                if (size * 2 > table.length) {
+                    int[] old = table;
+                    table = new int[old.length * 2];
+                    mask = table.length - 1;
+                    for (int f : old) {
+                        if (f != 0) {
+                            int h = hashes[f - 1] & mask;
+                            while (table[h] != 0) {
+                                h = (h + 1) & mask;
+                            }
+                            table[h] = f;
+                        }
+                    }
+                }
+            } else {
+                points[k] = points[table[i] - 1];
+            }
+        }
+        return size;
+    }
+
+    /**
+     * An open addressing hash table of edge counts.
+     */
+    private static final class EdgeCounts {
+
+        /**
+         * The edge keys.
+         */
+        long[] keys;
+
+        /**
+         * The counts (0 for empty).
+         */
+        int[] counts;
+
+        /**
+         * The number of edges.
+         */
+        int size;
+
+        /**
+         * @param n The expected number of edges.
+         */
+        EdgeCounts(int n) {
+            int length = Math.max(16, Integer.highestOneBit(n) * 2);
+            keys = new long[length];
+            counts = new int[length];
+        }
+
+        /**
+         * Add 1 to the count of an edge.
+         *
+         * @param key The edge key.
+         * @param h The hash of the key.
+         */
+        void add(long key, int h) {
+            int mask = counts.length - 1;
+            int i = h & mask;
+            while (counts[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (counts[i] == 0) {
+                keys[i] = key;
+                size++;
+            }
+            counts[i]++;
+            if (size * 2 > counts.length) {
+                long[] oldKeys = keys;
+                int[] oldCounts = counts;
+                keys = new long[oldKeys.length * 2];
+                counts = new int[oldCounts.length * 2];
+                mask = counts.length - 1;
+                for (int j = 0; j < oldCounts.length; j++) {
+                    if (oldCounts[j] != 0) {
+                        int k = hash(oldKeys[j]) & mask;
+                        while (counts[k] != 0) {
+                            k = (k + 1) & mask;
+                        }
+                        keys[k] = oldKeys[j];
+                        counts[k] = oldCounts[j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if each edge is shared by exactly two triangles.
+     */
+    public boolean isClosed() {
+        return minEdgeCount == 2 && maxEdgeCount == 2;
+    }
+
+    /**
+     * @param key An edge key.
+     * @return A hash of the key.
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @param parallelism The number of threads to use.
+     * @return The number of bits of a hash giving its partition: 0 if
+     * parallelism is 1, otherwise enough for about 4 partitions per thread.
+     */
+    private static int getPartitionBits(int parallelism) {
+        if (parallelism <= 1) {
+            return 0;
+        }
+        return Math.min(8, 32 - Integer.numberOfLeadingZeros(
+                parallelism * 4 - 1));
+    }
+
+    /**
+     * @param h A hash.
+     * @param bits The number of bits of the hash giving its partition.
+     * @return The partition given by the highest bits of the hash.
+     */
+    private static int getPartition(int h, int bits) {
+        return bits == 0 ? 0 : h >>> (32 - bits);
+    }
+
+    /**
+     * Apply f to each index from 0 to n - 1. If {@code parallelism} is greater
+     * than 1, indexes are processed in parallel using a {@link ForkJoinPool}
+     * with that parallelism.
+     *
+     * @param n The number of indexes.
+     * @param f The function to apply to each index.
+     * @param parallelism The number of threads to use.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private static void forEach(int n, IntConsumer f, int parallelism)
+            throws InterruptedException {
+        if (parallelism > 1 && n > 1) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> IntStream.range(0, n).parallel()
+                        .forEach(f)).get();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException r) {
+                    throw r;
+                }
+                if (ex.getCause() instanceof Error e) {
+                    throw e;
+                }
+                throw new IllegalStateException(ex.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                f.accept(i);
+            }
+        }
+    }
+}
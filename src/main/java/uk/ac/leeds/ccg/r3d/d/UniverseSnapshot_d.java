@@ -0,0 +1,575 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
+import uk.ac.leeds.ccg.r3d.d.entities.MeshArea_d;
+import uk.ac.leeds.ccg.r3d.io.d.STL_Reader_d;
+import uk.ac.leeds.ccg.r3d.jfr.UniverseBuildEvent;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_AABB_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.light.V3D_V_d;
+
+/**
+ * For writing a universe of triangles to a binary snapshot file and reading
+ * it back, so a universe can be built once and then loaded in milliseconds
+ * rather than reading an STL file and rebuilding it each time.
+ *
+ * The snapshot has the mesh of the triangles (see {@link Mesh_d}), the
+ * colour of each triangle, the AABB of the universe, whether it is closed and
+ * the nodes of its {@link BVH_d} if that has been built. Everything is little
+ * endian. After a {@link #HEADER} byte header there is a section for each
+ * array, each of which starts at a multiple of 8 bytes:
+ * <ul>
+ * <li>Header: the magic bytes "R3DU", the {@link #VERSION}, flags
+ * ({@link #CLOSED}, {@link #HAS_BVH}, {@link #SOURCE}, {@link #TOPOLOGY} and
+ * {@link #INIT_NORMAL}), the number of vertices, triangles and BVH nodes, the
+ * BVH depth, the colour the triangles were given (ARGB), the mesh offset (3
+ * doubles), the AABB {xmin, xmax, ymin, ymax, zmin, zmax} and the scale the
+ * STL file was read with.</li>
+ * <li>{@link Mesh_d#vertices} (doubles), {@link Mesh_d#triangles} (ints),
+ * {@link Mesh_d#normals} (doubles) and {@link Mesh_d#attributes}
+ * (shorts).</li>
+ * <li>The colour of each triangle (ARGB ints).</li>
+ * <li>If there is a BVH, the area index order (ints), node bounds (doubles),
+ * right children, leaf starts and leaf counts (ints).</li>
+ * </ul>
+ *
+ * Snapshots are written to a temporary file which is then moved into place,
+ * so a snapshot is either complete or not there. Arrays are written by bulk
+ * copying slices of them into a buffer, and read by memory mapping each
+ * section and bulk copying it into an array.
+ *
+ * @author Andy Turner
+ */
+public class UniverseSnapshot_d {
+
+    /**
+     * The first 4 bytes of a snapshot.
+     */
+    static final int MAGIC = 0x55443352; // "R3DU" little endian
+
+    /**
+     * The version of the format written.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The number of bytes of the header.
+     */
+    static final int HEADER = 112;
+
+    /**
+     * The flag for a universe that is closed (see {@link Universe_d#closed}).
+     */
+    static final int CLOSED = 1;
+
+    /**
+     * The flag for a snapshot with a BVH.
+     */
+    static final int HAS_BVH = 2;
+
+    /**
+     * The flag for a snapshot written by
+     * {@link #getUniverse(V3D_Environment_d, Path, Path, V3D_Vector_d, Color, boolean, double, boolean)},
+     * so the colour, scale, {@link #TOPOLOGY} and {@link #INIT_NORMAL} in
+     * the header are those the STL file was read with.
+     */
+    static final int SOURCE = 4;
+
+    /**
+     * The flag for a snapshot of an STL file read with topology assessed.
+     */
+    static final int TOPOLOGY = 8;
+
+    /**
+     * The flag for a snapshot of an STL file read with the normals
+     * calculated from the triangle corners.
+     */
+    static final int INIT_NORMAL = 16;
+
+    /**
+     * The size of the buffer used for writing.
+     */
+    static final int BUFFER = 1 << 16;
+
+    private UniverseSnapshot_d() {
+    }
+
+    /**
+     * Get a universe from a snapshot if there is one at least as new as the
+     * STL file that was written by this method with the same offset, colour,
+     * scale, assessTopology and initNormal, otherwise read the STL file into a
+     * mesh (see
+     * {@link STL_Reader_d#readMesh(Path, V3D_Vector_d, double, boolean)}),
+     * build the universe and its BVH, and write the snapshot.
+     *
+     * @param env The environment.
+     * @param stl The path of the STL binary file.
+     * @param snapshot The path of the snapshot.
+     * @param offset The offset.
+     * @param color The colour of the triangles.
+     * @param assessTopology If true, then topology is assessed to set
+     * {@link Universe_d#closed}.
+     * @param scale What numbers are multiplied by.
+     * @param initNormal If this is true, then the normal read from the file is
+     * discounted and the normal is calculated from the triangle corner point
+     * vectors.
+     * @return The universe.
+     * @throws IOException If the STL file cannot be read or the snapshot
+     * cannot be read or written.
+     */
+    public static Universe_d getUniverse(V3D_Environment_d env, Path stl,
+            Path snapshot, V3D_Vector_d offset, Color color,
+            boolean assessTopology, double scale, boolean initNormal)
+            throws IOException {
+        int flags = SOURCE | (assessTopology ? TOPOLOGY : 0)
+                | (initNormal ? INIT_NORMAL : 0);
+        if (Files.exists(snapshot) && Files.getLastModifiedTime(snapshot)
+                .compareTo(Files.getLastModifiedTime(stl)) >= 0
+                && isSnapshotOf(snapshot, offset, color, scale, flags)) {
+            return read(env, snapshot);
+        }
+        STL_Reader_d reader = new STL_Reader_d(env, assessTopology);
+        Mesh_d mesh = reader.readMesh(stl, offset, scale, initNormal);
+        Universe_d u = new Universe_d(env, mesh, color);
+        u.getBVH();
+        write(u, snapshot, flags, color.getRGB(), scale);
+        return u;
+    }
+
+    /**
+     * @param p The path of the snapshot.
+     * @param offset The offset.
+     * @param color The colour of the triangles.
+     * @param scale What numbers are multiplied by.
+     * @param flags The {@link #SOURCE}, {@link #TOPOLOGY} and
+     * {@link #INIT_NORMAL} flags.
+     * @return true if p is a snapshot of the current version written with
+     * these parameters.
+     * @throws IOException If p cannot be read.
+     */
+    private static boolean isSnapshotOf(Path p, V3D_Vector_d offset,
+            Color color, double scale, int flags) throws IOException {
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            if (fc.size() < HEADER) {
+                return false;
+            }
+            ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, HEADER)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            int mask = SOURCE | TOPOLOGY | INIT_NORMAL;
+            return b.getInt(0) == MAGIC && b.getInt(4) == VERSION
+                    && (b.getInt(8) & mask) == flags
+                    && b.getInt(28) == color.getRGB()
+                    && Double.compare(b.getDouble(32), offset.dx) == 0
+                    && Double.compare(b.getDouble(40), offset.dy) == 0
+                    && Double.compare(b.getDouble(48), offset.dz) == 0
+                    && Double.compare(b.getDouble(104), scale) == 0;
+        }
+    }
+
+    /**
+     * Write a snapshot of a universe. If the universe was created from a mesh
+     * (see {@link Universe_d#Universe_d(V3D_Environment_d, Mesh_d, Color)}),
+     * then that is written, otherwise a mesh is made from the coordinates of
+     * the areas. The BVH is written if it has been built.
+     *
+     * @param u The universe.
+     * @param p The path of the snapshot.
+     * @throws IOException If the snapshot cannot be written.
+     * @throws IllegalArgumentException If the universe has points or lines or
+     * areas that are not triangles.
+     */
+    public static void write(Universe_d u, Path p) throws IOException {
+        write(u, p, 0, 0, Double.NaN);
+    }
+
+    /**
+     * @param u The universe.
+     * @param p The path of the snapshot.
+     * @param source The {@link #SOURCE}, {@link #TOPOLOGY} and
+     * {@link #INIT_NORMAL} flags.
+     * @param color The ARGB colour the triangles were given.
+     * @param scale The scale the STL file was read with.
+     * @throws IOException If the snapshot cannot be written.
+     * @throws IllegalArgumentException If the universe has points or lines or
+     * areas that are not triangles.
+     */
+    private static void write(Universe_d u, Path p, int source, int color,
+            double scale) throws IOException {
+        if (!u.points.isEmpty() || !u.lines.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Only universes of areas can be written as snapshots.");
+        }
+        Mesh_d mesh = getMesh(u);
+        int n = mesh.nTriangles;
+        BVH_d bvh = (u.bvh != null && u.bvh.n == n) ? u.bvh : null;
+        int[] colors = new int[n];
+        for (int i = 0; i < n; i++) {
+            colors[i] = u.areas.get(i).color.getRGB();
+        }
+        Path dir = p.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = dir.resolve(p.getFileName() + "."
+                + ProcessHandle.current().pid() + "."
+                + Thread.currentThread().threadId() + ".tmp");
+        try {
+            try (FileChannel fc = FileChannel.open(tmp,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                Writer w = new Writer(fc);
+                ByteBuffer b = w.b;
+                b.putInt(MAGIC);
+                b.putInt(VERSION);
+                b.putInt((u.closed ? CLOSED : 0) | (bvh == null ? 0 : HAS_BVH)
+                        | source);
+                b.putInt(mesh.nVertices);
+                b.putInt(n);
+                b.putInt(bvh == null ? 0 : bvh.nNodes);
+                b.putInt(bvh == null ? 0 : bvh.depth);
+                b.putInt(color);
+                b.putDouble(mesh.offset.dx);
+                b.putDouble(mesh.offset.dy);
+                b.putDouble(mesh.offset.dz);
+                b.putDouble(u.aabb.getXMin());
+                b.putDouble(u.aabb.getXMax());
+                b.putDouble(u.aabb.getYMin());
+                b.putDouble(u.aabb.getYMax());
+                b.putDouble(u.aabb.getZMin());
+                b.putDouble(u.aabb.getZMax());
+                b.putDouble(scale);
+                w.putDoubles(mesh.vertices, mesh.nVertices * 3);
+                w.putInts(mesh.triangles, n * 3);
+                w.putDoubles(mesh.normals, n * 3);
+                w.putShorts(mesh.attributes, n);
+                w.putInts(colors, n);
+                if (bvh != null) {
+                    w.putInts(bvh.index, n);
+                    w.putDoubles(bvh.nodeBounds, bvh.nNodes * 6);
+                    w.putInts(bvh.nodeRight, bvh.nNodes);
+                    w.putInts(bvh.nodeStart, bvh.nNodes);
+                    w.putInts(bvh.nodeCount, bvh.nNodes);
+                }
+                w.flush();
+            }
+            Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @param u The universe.
+     * @return The mesh the areas of u were created from in order, or a new
+     * mesh made from the coordinates of the areas.
+     * @throws IllegalArgumentException If an area is not a triangle.
+     */
+    private static Mesh_d getMesh(Universe_d u) {
+        int n = u.areas.size();
+        if (u.mesh != null && u.mesh.nTriangles == n) {
+            boolean same = true;
+            for (int i = 0; i < n && same; i++) {
+                same = u.areas.get(i) instanceof MeshArea_d a
+                        && a.mesh == u.mesh && a.index == i;
+            }
+            if (same) {
+                return u.mesh;
+            }
+        }
+        Mesh_d mesh = new Mesh_d(u.env, V3D_Vector_d.ZERO, n);
+        double[] c = new double[9];
+        for (Area_d a : u.areas) {
+            if (!a.getCoords(c, 0)) {
+                throw new IllegalArgumentException(
+                        "Only triangles can be written as snapshots.");
+            }
+            int pi = mesh.addVertex(c[0], c[1], c[2]);
+            int qi = mesh.addVertex(c[3], c[4], c[5]);
+            int ri = mesh.addVertex(c[6], c[7], c[8]);
+            V3D_V_d nv = a.getNormal();
+            if (nv == null) {
+                nv = new V3D_V_d(0d, 0d, 0d);
+            }
+            mesh.addTriangle(pi, qi, ri, nv.x, nv.y, nv.z, a.attribute);
+        }
+        mesh.trim();
+        return mesh;
+    }
+
+    /**
+     * Read a snapshot. The areas of the universe are {@link MeshArea_d}
+     * instances of the mesh in the snapshot.
+     *
+     * @param env The environment.
+     * @param p The path of the snapshot.
+     * @return The universe.
+     * @throws IOException If the snapshot cannot be read or is not a snapshot
+     * of a version that can be read.
+     */
+    public static Universe_d read(V3D_Environment_d env, Path p)
+            throws IOException {
+        UniverseBuildEvent event = new UniverseBuildEvent();
+        event.begin();
+        Universe_d u;
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            if (fc.size() < HEADER) {
+                throw new IOException("Not a universe snapshot: " + p);
+            }
+            ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, HEADER)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (b.getInt() != MAGIC) {
+                throw new IOException("Not a universe snapshot: " + p);
+            }
+            int version = b.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported universe snapshot version "
+                        + version + ": " + p);
+            }
+            int flags = b.getInt();
+            int nVertices = b.getInt();
+            int n = b.getInt();
+            int nNodes = b.getInt();
+            int depth = b.getInt();
+            b.getInt(); // colour
+            V3D_Vector_d offset = new V3D_Vector_d(b.getDouble(),
+                    b.getDouble(), b.getDouble());
+            V3D_AABB_d aabb = new V3D_AABB_d(env, b.getDouble(),
+                    b.getDouble(), b.getDouble(), b.getDouble(),
+                    b.getDouble(), b.getDouble());
+            boolean hasBVH = (flags & HAS_BVH) != 0;
+            long size = HEADER + pad(nVertices * 24L) + pad(n * 12L)
+                    + pad(n * 24L) + pad(n * 2L) + pad(n * 4L);
+            if (hasBVH) {
+                size += pad(n * 4L) + pad(nNodes * 48L) + 3 * pad(nNodes * 4L);
+            }
+            if (nVertices < 0 || n < 0 || nNodes < 0 || fc.size() != size) {
+                throw new IOException("Truncated or corrupt universe snapshot: "
+                        + p);
+            }
+            Reader r = new Reader(fc);
+            Mesh_d mesh = new Mesh_d(env, offset, r.getDoubles(nVertices * 3),
+                    r.getInts(n * 3), r.getDoubles(n * 3), r.getShorts(n));
+            int[] colors = r.getInts(n);
+            u = new Universe_d(env, offset, 0d);
+            u.mesh = mesh;
+            u.aabb = aabb;
+            u.closed = (flags & CLOSED) != 0;
+            mesh.closed = u.closed;
+            u.areas = new ArrayList<>(n);
+            HashMap<Integer, Color> cs = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                Color c = cs.computeIfAbsent(colors[i], x -> new Color(x, true));
+                u.areas.add(new MeshArea_d(mesh, i, c));
+            }
+            if (hasBVH) {
+                int[] index = r.getInts(n);
+                double[] nodeBounds = r.getDoubles(nNodes * 6);
+                int[] nodeRight = r.getInts(nNodes);
+                int[] nodeStart = r.getInts(nNodes);
+                int[] nodeCount = r.getInts(nNodes);
+                u.bvh = new BVH_d(u.areas, index, nodeBounds, nodeRight,
+                        nodeStart, nodeCount, depth);
+            }
+        }
+        event.source = p.toString();
+        event.areas = u.areas.size();
+        event.closed = u.closed;
+        event.commit();
+        return u;
+    }
+
+    /**
+     * @param bytes A number of bytes.
+     * @return bytes rounded up to a multiple of 8.
+     */
+    static long pad(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * For writing sections through a buffer.
+     */
+    private static final class Writer {
+
+        /**
+         * The file channel.
+         */
+        final FileChannel fc;
+
+        /**
+         * The buffer.
+         */
+        final ByteBuffer b;
+
+        Writer(FileChannel fc) {
+            this.fc = fc;
+            b = ByteBuffer.allocate(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Write the buffer if there are fewer than bytes remaining.
+         *
+         * @param bytes The number of bytes to be put next.
+         * @throws IOException If the buffer cannot be written.
+         */
+        void ensure(int bytes) throws IOException {
+            if (b.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /**
+         * Write the buffer.
+         *
+         * @throws IOException If the buffer cannot be written.
+         */
+        void flush() throws IOException {
+            b.flip();
+            while (b.hasRemaining()) {
+                fc.write(b);
+            }
+            b.clear();
+        }
+
+        /**
+         * Pad with zeros to a multiple of 8 bytes.
+         *
+         * @throws IOException If the buffer cannot be written.
+         */
+        void pad() throws IOException {
+            ensure(8);
+            while ((b.position() & 7) != 0) {
+                b.put((byte) 0);
+            }
+        }
+
+        /**
+         * Make room for at least one element and get how many can be put.
+         *
+         * @param size The number of bytes of an element.
+         * @param n The number of elements left to put.
+         * @return The number of elements to put next.
+         * @throws IOException If the buffer cannot be written.
+         */
+        int next(int size, int n) throws IOException {
+            ensure(size);
+            return Math.min(n, b.remaining() / size);
+        }
+
+        /**
+         * Advance the buffer past elements put through a view of it.
+         *
+         * @param bytes The number of bytes put.
+         */
+        void skip(int bytes) {
+            b.position(b.position() + bytes);
+        }
+
+        void putDoubles(double[] a, int n) throws IOException {
+            for (int i = 0; i < n;) {
+                int m = next(8, n - i);
+                b.asDoubleBuffer().put(a, i, m);
+                skip(m * 8);
+                i += m;
+            }
+            pad();
+        }
+
+        void putInts(int[] a, int n) throws IOException {
+            for (int i = 0; i < n;) {
+                int m = next(4, n - i);
+                b.asIntBuffer().put(a, i, m);
+                skip(m * 4);
+                i += m;
+            }
+            pad();
+        }
+
+        void putShorts(short[] a, int n) throws IOException {
+            for (int i = 0; i < n;) {
+                int m = next(2, n - i);
+                b.asShortBuffer().put(a, i, m);
+                skip(m * 2);
+                i += m;
+            }
+            pad();
+        }
+    }
+
+    /**
+     * For reading sections by memory mapping them.
+     */
+    private static final class Reader {
+
+        /**
+         * The file channel.
+         */
+        final FileChannel fc;
+
+        /**
+         * The position of the next section.
+         */
+        long position = HEADER;
+
+        Reader(FileChannel fc) {
+            this.fc = fc;
+        }
+
+        /**
+         * Map the next section.
+         *
+         * @param bytes The number of bytes of the section.
+         * @return The mapped section.
+         * @throws IOException If the section cannot be mapped.
+         */
+        ByteBuffer map(long bytes) throws IOException {
+            ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, position,
+                    bytes).order(ByteOrder.LITTLE_ENDIAN);
+            position += pad(bytes);
+            return b;
+        }
+
+        double[] getDoubles(int n) throws IOException {
+            double[] a = new double[n];
+            map(n * 8L).asDoubleBuffer().get(a);
+            return a;
+        }
+
+        int[] getInts(int n) throws IOException {
+            int[] a = new int[n];
+            map(n * 4L).asIntBuffer().get(a);
+            return a;
+        }
+
+        short[] getShorts(int n) throws IOException {
+            short[] a = new short[n];
+            map(n * 2L).asShortBuffer().get(a);
+            return a;
+        }
+    }
+}
@@ -17,15 +17,19 @@ package uk.ac.leeds.ccg.r3d.d;
 
 import java.awt.Color;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import uk.ac.leeds.ccg.data.id.Data_ID_long;
+import uk.ac.leeds.ccg.r3d.SceneGenerator;
 import uk.ac.leeds.ccg.r3d.d.entities.Line_d;
 import uk.ac.leeds.ccg.r3d.d.entities.Point_d;
 import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
+import uk.ac.leeds.ccg.r3d.d.entities.MeshArea_d;
 import uk.ac.leeds.ccg.r3d.d.entities.Tetrahedron_d;
 import uk.ac.leeds.ccg.r3d.d.entities.Triangle_d;
 import uk.ac.leeds.ccg.r3d.io.d.STL_Reader_d;
+import uk.ac.leeds.ccg.r3d.jfr.UniverseBuildEvent;
 import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_AABB_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Area_d;
@@ -69,6 +73,20 @@ public class Universe_d {
      */
     public ArrayList<Area_d> areas;
 
+    /**
+     * The mesh that {@link #areas} were created from or {@code null}.
+     */
+    public Mesh_d mesh;
+
+    /**
+     * Set to true if the areas are known to form closed surfaces with normals
+     * facing outwards. This is set from the topology assessment of
+     * {@link STL_Reader_d} and is set to false if an area is added. If this
+     * is true, then areas facing away from a camera outside the surfaces
+     * cannot be seen and may be culled (see {@link Camera_d#cullBackFaces}).
+     */
+    public boolean closed;
+
     /**
      * The volumes.
      */
@@ -83,6 +101,12 @@ public class Universe_d {
      */
     long nextID;
 
+    /**
+     * The bounding volume hierarchy of {@link #areas}. This is built when
+     * needed and is discarded when an area is added.
+     */
+    BVH_d bvh;
+
     /**
      * Create a new instance.
      *
@@ -108,13 +132,15 @@ public class Universe_d {
      */
     public Universe_d(V3D_Environment_d env, Path path, V3D_Vector_d offset, Color color,
             boolean assessTopology, double epsilon, double scale, boolean initNormal) throws IOException {
+        UniverseBuildEvent event = new UniverseBuildEvent();
+        event.begin();
         this.env = env;
         points = new ArrayList<>();
         lines = new ArrayList<>();
         areas = new ArrayList<>();
         STL_Reader_d data = new STL_Reader_d(env, assessTopology);
         data.readBinary(path, offset, scale, initNormal);
-        V3D_Point_d p = data.triangles.get(0).area.pl.getP();
+        V3D_Point_d p = data.triangles.get(0).getArea().pl.getP();
         double xmin = p.getX();
         double xmax = p.getX();
         double ymin = p.getY();
@@ -125,7 +151,7 @@ public class Universe_d {
             a.color = color;
             a.lightingColor = color;
             areas.add(a);
-            for (var pt : a.area.getPoints().values()) {
+            for (var pt : a.getArea().getPoints().values()) {
                 double x = pt.getX();
                 double y = pt.getY();
                 double z = pt.getZ();
@@ -139,7 +165,90 @@ public class Universe_d {
             //break;
         }
         aabb = new V3D_AABB_d(env, xmin, xmax, ymin, ymax, zmin, zmax);
-        System.out.println(aabb.toString());
+        closed = data.closed;
+        event.source = path.toString();
+        event.areas = areas.size();
+        event.closed = closed;
+        event.epsilon = epsilon;
+        event.commit();
+    }
+
+    /**
+     * Create a new instance with an area for each triangle of a mesh (see
+     * {@link STL_Reader_d#readMesh(Path, V3D_Vector_d, double, boolean)}).
+     * The areas are {@link MeshArea_d} instances which refer to the mesh
+     * rather than each having a {@link V3D_Triangle_d}, so this is quicker
+     * and takes less memory than reading the STL file into a universe.
+     * {@link #closed} is set from {@link Mesh_d#closed}.
+     *
+     * @param env The environment.
+     * @param mesh What {@link #mesh} is set to.
+     * @param color The colour of the triangles.
+     */
+    public Universe_d(V3D_Environment_d env, Mesh_d mesh, Color color) {
+        UniverseBuildEvent event = new UniverseBuildEvent();
+        event.begin();
+        this.env = env;
+        this.mesh = mesh;
+        points = new ArrayList<>();
+        lines = new ArrayList<>();
+        areas = new ArrayList<>(mesh.nTriangles);
+        for (int t = 0; t < mesh.nTriangles; t++) {
+            areas.add(new MeshArea_d(mesh, t, color));
+        }
+        aabb = mesh.getAABB();
+        closed = mesh.closed;
+        event.source = "mesh";
+        event.areas = areas.size();
+        event.closed = closed;
+        event.commit();
+    }
+
+    /**
+     * Create a new instance filled with the triangles of a generated scene.
+     *
+     * @param env The environment.
+     * @param g The scene generator.
+     * @param offset The offset for each geometry created.
+     * @param color The colour of the triangles.
+     */
+    public Universe_d(V3D_Environment_d env, SceneGenerator g,
+            V3D_Vector_d offset, Color color) {
+        UniverseBuildEvent event = new UniverseBuildEvent();
+        event.begin();
+        this.env = env;
+        points = new ArrayList<>();
+        lines = new ArrayList<>();
+        areas = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8,
+                g.getNumberOfTriangles()));
+        double[] b = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        try {
+            g.generate((px, py, pz, qx, qy, qz, rx, ry, rz) -> {
+                areas.add(new Area_d(new V3D_Triangle_d(env, offset,
+                        new V3D_Vector_d(px, py, pz),
+                        new V3D_Vector_d(qx, qy, qz),
+                        new V3D_Vector_d(rx, ry, rz)), color));
+                b[0] = Math.min(b[0], Math.min(px, Math.min(qx, rx)));
+                b[1] = Math.max(b[1], Math.max(px, Math.max(qx, rx)));
+                b[2] = Math.min(b[2], Math.min(py, Math.min(qy, ry)));
+                b[3] = Math.max(b[3], Math.max(py, Math.max(qy, ry)));
+                b[4] = Math.min(b[4], Math.min(pz, Math.min(qz, rz)));
+                b[5] = Math.max(b[5], Math.max(pz, Math.max(qz, rz)));
+            });
+        } catch (IOException ex) {
+            // Not thrown as nothing is written.
+            throw new UncheckedIOException(ex);
+        }
+        aabb = new V3D_AABB_d(env, b[0] + offset.dx, b[1] + offset.dx,
+                b[2] + offset.dy, b[3] + offset.dy, b[4] + offset.dz,
+                b[5] + offset.dz);
+        closed = g.isClosed();
+        event.source = g.toString();
+        event.areas = areas.size();
+        event.closed = closed;
+        event.commit();
     }
 
     /**
@@ -281,6 +390,21 @@ public class Universe_d {
         Area_d e = new Area_d(a, baseColor);
         areas.add(e);
         aabb = aabb.union(a.getAABB());
+        bvh = null;
+        closed = false;
         return e;
     }
+
+    /**
+     * Get the bounding volume hierarchy of {@link #areas} building it if
+     * necessary. It is rebuilt if areas have been added.
+     *
+     * @return The bounding volume hierarchy of {@link #areas}.
+     */
+    public BVH_d getBVH() {
+        if (bvh == null || bvh.n != areas.size()) {
+            bvh = new BVH_d(areas);
+        }
+        return bvh;
+    }
 }
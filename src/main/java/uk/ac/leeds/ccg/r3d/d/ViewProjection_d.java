@@ -0,0 +1,256 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.io.Serializable;
+
+/**
+ * A view-projection transform for mapping between points in the universe and
+ * screen coordinates with primitive arithmetic.
+ *
+ * The screen is the plane through a point p spanned by a row vector a and a
+ * column vector b. The screen coordinates (r, c) of a point s on the screen
+ * are such that {@code s = p + r * a + c * b}, so the pixel in row {@code row}
+ * and column {@code col} covers [row, row + 1) x [col, col + 1). A point x in
+ * the universe is projected onto the screen along the line from the focus f.
+ * With w being the distance of x in front of f along the unit normal of the
+ * screen facing away from f, {@link #m} maps {x, y, z, 1} to
+ * {r * w, c * w, 1, w}. So dividing by the last value gives the screen
+ * coordinates and 1 / w, which is linear on the screen and so can be
+ * interpolated.
+ *
+ * @author Andy Turner
+ */
+public class ViewProjection_d implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The 4x4 view-projection matrix in row major order.
+     */
+    public final double[] m = new double[16];
+
+    /**
+     * The inverse of {@link #m} in row major order.
+     */
+    public final double[] inverse = new double[16];
+
+    /**
+     * The distance of the screen in front of the focus.
+     */
+    public final double d;
+
+    /**
+     * Create a new instance.
+     *
+     * @param fx The x coordinate of the focus.
+     * @param fy The y coordinate of the focus.
+     * @param fz The z coordinate of the focus.
+     * @param px The x coordinate of the screen origin.
+     * @param py The y coordinate of the screen origin.
+     * @param pz The z coordinate of the screen origin.
+     * @param ax The x component of the row vector.
+     * @param ay The y component of the row vector.
+     * @param az The z component of the row vector.
+     * @param bx The x component of the column vector.
+     * @param by The y component of the column vector.
+     * @param bz The z component of the column vector.
+     */
+    public ViewProjection_d(double fx, double fy, double fz,
+            double px, double py, double pz,
+            double ax, double ay, double az,
+            double bx, double by, double bz) {
+        double[] a = {ax, ay, az};
+        double[] b = {bx, by, bz};
+        double[] fp = {px - fx, py - fy, pz - fz};
+        // The unit normal of the screen facing away from the focus.
+        double[] n = cross(a, b);
+        double nm = Math.sqrt(dot(n, n));
+        if (dot(fp, n) < 0d) {
+            nm = -nm;
+        }
+        for (int k = 0; k < 3; k++) {
+            n[k] /= nm;
+        }
+        d = dot(fp, n);
+        // The dual basis vectors giving screen coordinates by dot product.
+        double[] as = cross(b, n);
+        double asm = dot(a, as);
+        double[] bs = cross(n, a);
+        double bsm = dot(b, bs);
+        double[] f = {fx, fy, fz};
+        for (int k = 0; k < 3; k++) {
+            as[k] /= asm;
+            bs[k] /= bsm;
+        }
+        double fpa = dot(fp, as);
+        double fpb = dot(fp, bs);
+        for (int k = 0; k < 3; k++) {
+            m[k] = d * as[k] - fpa * n[k];
+            m[4 + k] = d * bs[k] - fpb * n[k];
+            m[12 + k] = n[k];
+        }
+        m[3] = -(m[0] * fx + m[1] * fy + m[2] * fz);
+        m[7] = -(m[4] * fx + m[5] * fy + m[6] * fz);
+        m[11] = 1d;
+        m[15] = -dot(n, f);
+        invert(m, inverse);
+    }
+
+    /**
+     * @param x The x coordinate of a point.
+     * @param y The y coordinate of a point.
+     * @param z The z coordinate of a point.
+     * @return The distance of the point in front of the focus along the
+     * normal of the screen.
+     */
+    public double getW(double x, double y, double z) {
+        return m[12] * x + m[13] * y + m[14] * z + m[15];
+    }
+
+    /**
+     * @param x The x coordinate of a point in front of the focus.
+     * @param y The y coordinate of a point in front of the focus.
+     * @param z The z coordinate of a point in front of the focus.
+     * @return The row coordinate of the projection of the point.
+     */
+    public double getRow(double x, double y, double z) {
+        return (m[0] * x + m[1] * y + m[2] * z + m[3]) / getW(x, y, z);
+    }
+
+    /**
+     * @param x The x coordinate of a point in front of the focus.
+     * @param y The y coordinate of a point in front of the focus.
+     * @param z The z coordinate of a point in front of the focus.
+     * @return The column coordinate of the projection of the point.
+     */
+    public double getCol(double x, double y, double z) {
+        return (m[4] * x + m[5] * y + m[6] * z + m[7]) / getW(x, y, z);
+    }
+
+    /**
+     * Project a point onto the screen. If the point is not in front of the
+     * focus, the values set are not meaningful.
+     *
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     * @param z The z coordinate of the point.
+     * @param s The array in which to set {r, c, 1 / w} from index i.
+     * @param i The index in s of the first value set.
+     * @return The distance of the point in front of the focus along the
+     * normal of the screen.
+     */
+    public double project(double x, double y, double z, double[] s, int i) {
+        double w = getW(x, y, z);
+        s[i] = (m[0] * x + m[1] * y + m[2] * z + m[3]) / w;
+        s[i + 1] = (m[4] * x + m[5] * y + m[6] * z + m[7]) / w;
+        s[i + 2] = 1d / w;
+        return w;
+    }
+
+    /**
+     * Get the point in the universe with the screen coordinates (r, c) that is
+     * a distance 1 / iw in front of the focus.
+     *
+     * @param r The row coordinate.
+     * @param c The column coordinate.
+     * @param iw The reciprocal of the distance in front of the focus.
+     * @param p The array in which to set the coordinates {x, y, z} from index
+     * i.
+     * @param i The index in p of the first coordinate set.
+     */
+    public void unproject(double r, double c, double iw, double[] p, int i) {
+        double h = inverse[12] * r + inverse[13] * c + inverse[14] * iw
+                + inverse[15];
+        for (int k = 0; k < 3; k++) {
+            int j = k * 4;
+            p[i + k] = (inverse[j] * r + inverse[j + 1] * c
+                    + inverse[j + 2] * iw + inverse[j + 3]) / h;
+        }
+    }
+
+    /**
+     * Get the point on the screen with the screen coordinates (r, c).
+     *
+     * @param r The row coordinate.
+     * @param c The column coordinate.
+     * @param p The array in which to set the coordinates {x, y, z} from index
+     * i.
+     * @param i The index in p of the first coordinate set.
+     */
+    public void getScreenPoint(double r, double c, double[] p, int i) {
+        unproject(r, c, 1d / d, p, i);
+    }
+
+    private static double dot(double[] u, double[] v) {
+        return u[0] * v[0] + u[1] * v[1] + u[2] * v[2];
+    }
+
+    private static double[] cross(double[] u, double[] v) {
+        return new double[]{u[1] * v[2] - u[2] * v[1],
+            u[2] * v[0] - u[0] * v[2],
+            u[0] * v[1] - u[1] * v[0]};
+    }
+
+    /**
+     * Invert a 4x4 matrix by Gauss-Jordan elimination with partial pivoting.
+     *
+     * @param a The matrix in row major order.
+     * @param r The array to set to the inverse in row major order.
+     */
+    static void invert(double[] a, double[] r) {
+        double[] w = a.clone();
+        for (int i = 0; i < 16; i++) {
+            r[i] = (i % 5 == 0) ? 1d : 0d;
+        }
+        for (int col = 0; col < 4; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < 4; row++) {
+                if (Math.abs(w[row * 4 + col]) > Math.abs(w[pivot * 4 + col])) {
+                    pivot = row;
+                }
+            }
+            if (pivot != col) {
+                swapRows(w, pivot, col);
+                swapRows(r, pivot, col);
+            }
+            double pv = w[col * 4 + col];
+            for (int k = 0; k < 4; k++) {
+                w[col * 4 + k] /= pv;
+                r[col * 4 + k] /= pv;
+            }
+            for (int row = 0; row < 4; row++) {
+                if (row != col) {
+                    double f = w[row * 4 + col];
+                    if (f != 0d) {
+                        for (int k = 0; k < 4; k++) {
+                            w[row * 4 + k] -= f * w[col * 4 + k];
+                            r[row * 4 + k] -= f * r[col * 4 + k];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void swapRows(double[] a, int i, int j) {
+        for (int k = 0; k < 4; k++) {
+            double t = a[i * 4 + k];
+            a[i * 4 + k] = a[j * 4 + k];
+            a[j * 4 + k] = t;
+        }
+    }
+}
@@ -16,7 +16,9 @@
 package uk.ac.leeds.ccg.r3d.d.entities;
 
 import java.awt.Color;
+import uk.ac.leeds.ccg.r3d.d.RayTriangle_d;
 import uk.ac.leeds.ccg.r3d.entities.Entity;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_AABB_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Area_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Triangle_d;
@@ -24,6 +26,12 @@ import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.light.V3D_V_d;
 
 /**
+ * An area entity. Rendering only needs the coordinates of areas, so rather
+ * than using {@link #area} and {@link #normal} directly, it uses the accessor
+ * methods which subclasses may override to create the geometry only when it is
+ * wanted (see {@link MeshArea_d}). For such subclasses the fields are
+ * {@code null}, so callers should always use {@link #getArea()} and
+ * {@link #getNormal()} rather than the fields.
  *
  * @author Andy Turner
  */
@@ -32,7 +40,8 @@ public class Area_d extends Entity {
     private static final long serialVersionUID = 1L;
 
     /**
-     * The area.
+     * The area. This is {@code null} for areas that create it when it is
+     * wanted such as {@link MeshArea_d}, so use {@link #getArea()}.
      */
     public V3D_Area_d area;
 
@@ -41,7 +50,9 @@ public class Area_d extends Entity {
      * computed from the geometry using the order of the points and the right
      * hand rule. However, often the normal is provided. The direction of the
      * normal vector allows us to specify sides of the triangle which can be
-     * attributed with different properties e.g. colours.
+     * attributed with different properties e.g. colours. This is {@code null}
+     * for areas that create it when it is wanted such as {@link MeshArea_d},
+     * so use {@link #getNormal()}.
      */
     public V3D_V_d normal;
     
@@ -85,6 +96,65 @@ public class Area_d extends Entity {
         this.area = area;
     }
     
+    /**
+     * Create a new instance with no area for subclasses which create it when
+     * it is wanted.
+     *
+     * @param color What {@link #color} is set to.
+     * @param attribute What {@link #attribute} is set to.
+     */
+    protected Area_d(Color color, short attribute) {
+        super(color);
+        this.attribute = attribute;
+    }
+
+    /**
+     * @return {@link #area}. Subclasses which do not set {@link #area} return
+     * a new or cached area.
+     */
+    public V3D_Area_d getArea() {
+        return area;
+    }
+
+    /**
+     * @return {@link #normal}. Subclasses which do not set {@link #normal}
+     * return a new normal.
+     */
+    public V3D_V_d getNormal() {
+        return normal;
+    }
+
+    /**
+     * @return The AABB of the area.
+     */
+    public V3D_AABB_d getAABB() {
+        return getArea().getAABB();
+    }
+
+    /**
+     * @return The points of the area.
+     */
+    public V3D_Point_d[] getPointsArray() {
+        return getArea().getPointsArray();
+    }
+
+    /**
+     * If the area is a triangle, then set the coordinates of its corners as
+     * {@link RayTriangle_d#getCoords(V3D_Triangle_d, double[], int)} does.
+     *
+     * @param coords The array to put the coordinates in.
+     * @param i The index in coords of the first coordinate.
+     * @return {@code true} if the area is a triangle and the coordinates were
+     * set.
+     */
+    public boolean getCoords(double[] coords, int i) {
+        if (getArea() instanceof V3D_Triangle_d t) {
+            RayTriangle_d.getCoords(t, coords, i);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Used to update {@link #lightingColor} based on the input lightVector. A
      * triangle facing the vector will be bright. One facing away will be
@@ -99,6 +169,7 @@ public class Area_d extends Entity {
     public void setLighting(V3D_Point_d pt, V3D_Vector_d lightVector, 
             double ambientLight, double epsilon) {
         V3D_Vector_d n;
+        V3D_V_d normal = getNormal();
         if (normal == null) {
             n = initN(pt);
         } else {
@@ -131,9 +202,9 @@ public class Area_d extends Entity {
     
     private V3D_Vector_d initN(V3D_Point_d pt) {
         if (pt == null) {
-            return area.pl.getN().getUnitVector();
+            return getArea().pl.getN().getUnitVector();
         } else {
-            return area.pl.getN().getUnitVector(pt);
+            return getArea().pl.getN().getUnitVector(pt);
         }
     }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d.entities;
+
+import java.awt.Color;
+import uk.ac.leeds.ccg.r3d.d.Mesh_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_AABB_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Triangle_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.light.V3D_V_d;
+
+/**
+ * An area for a triangle of a {@link Mesh_d}. Only the index of the triangle
+ * is stored and {@link #area} is {@code null}: the coordinates come from the
+ * mesh and the {@link V3D_Triangle_d} is only created when it is wanted (see
+ * {@link #getArea()}).
+ *
+ * @author Andy Turner
+ */
+public class MeshArea_d extends Area_d {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The mesh.
+     */
+    public final Mesh_d mesh;
+
+    /**
+     * The index of the triangle in {@link #mesh}.
+     */
+    public final int index;
+
+    /**
+     * Create a new instance.
+     *
+     * @param mesh What {@link #mesh} is set to.
+     * @param index What {@link #index} is set to.
+     * @param color What {@link #color} and {@link #lightingColor} are set to.
+     */
+    public MeshArea_d(Mesh_d mesh, int index, Color color) {
+        super(color, mesh.attributes[index]);
+        this.mesh = mesh;
+        this.index = index;
+        this.lightingColor = color;
+    }
+
+    /**
+     * @return The triangle from {@link Mesh_d#getTriangle(int)}.
+     */
+    @Override
+    public V3D_Triangle_d getArea() {
+        return mesh.getTriangle(index);
+    }
+
+    /**
+     * @return The normal from {@link Mesh_d#normals}.
+     */
+    @Override
+    public V3D_V_d getNormal() {
+        int i = index * 3;
+        return new V3D_V_d(mesh.normals[i], mesh.normals[i + 1],
+                mesh.normals[i + 2]);
+    }
+
+    @Override
+    public V3D_AABB_d getAABB() {
+        double[] c = new double[9];
+        mesh.getCoords(index, c, 0);
+        return new V3D_AABB_d(mesh.env,
+                Math.min(c[0], Math.min(c[3], c[6])),
+                Math.max(c[0], Math.max(c[3], c[6])),
+                Math.min(c[1], Math.min(c[4], c[7])),
+                Math.max(c[1], Math.max(c[4], c[7])),
+                Math.min(c[2], Math.min(c[5], c[8])),
+                Math.max(c[2], Math.max(c[5], c[8])));
+    }
+
+    /**
+     * @return The corners of the triangle {p, q, r}. These are the same as
+     * the points of {@link #getArea()}, but are created without it.
+     */
+    @Override
+    public V3D_Point_d[] getPointsArray() {
+        V3D_Point_d[] pts = new V3D_Point_d[3];
+        for (int k = 0; k < 3; k++) {
+            int v = mesh.triangles[index * 3 + k] * 3;
+            pts[k] = new V3D_Point_d(mesh.env, mesh.offset, new V3D_Vector_d(
+                    mesh.vertices[v], mesh.vertices[v + 1],
+                    mesh.vertices[v + 2]));
+        }
+        return pts;
+    }
+
+    @Override
+    public boolean getCoords(double[] coords, int i) {
+        mesh.getCoords(index, coords, i);
+        return true;
+    }
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import javax.imageio.ImageIO;
+import uk.ac.leeds.ccg.r3d.jfr.ImageWriteEvent;
 
 /**
  * For IO.
@@ -38,26 +39,39 @@ public class IO {
     public IO(){}
     
     /**
-     * For writing out images.
+     * For writing out images. An {@link ImageWriteEvent} is recorded.
      * 
      * @param image The image to write out.
      * @param format The format e.g. "jpeg", "png", ...
      * @param p The path of the file to write to.
      */
     public static void imageToFile(Image image, String format, Path p) {
-        Panel panel = new Panel();
-        BufferedImage bi = new BufferedImage(image.getWidth(panel), 
-                image.getHeight(panel), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = bi.createGraphics();
-        g2d.drawImage(image, 0, 0, panel);
-        RenderedImage ri = (RenderedImage) bi;
-        g2d.dispose();
+        ImageWriteEvent event = new ImageWriteEvent();
+        event.begin();
+        RenderedImage ri;
+        if (image instanceof BufferedImage b) {
+            // No need to draw it (which needs a display for the Panel).
+            ri = b;
+        } else {
+            Panel panel = new Panel();
+            BufferedImage bi = new BufferedImage(image.getWidth(panel), 
+                    image.getHeight(panel), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = bi.createGraphics();
+            g2d.drawImage(image, 0, 0, panel);
+            ri = (RenderedImage) bi;
+            g2d.dispose();
+        }
         try {
             Files.createDirectories(p.getParent());
             ImageIO.write(ri, format, p.toFile());
         } catch (IOException e) {
             System.out.println("Format not recognised: " + format);
         }
+        event.path = p.toString();
+        event.format = format;
+        event.width = ri.getWidth();
+        event.height = ri.getHeight();
+        event.commit();
     }
     
 }
@@ -15,18 +15,30 @@
  */
 package uk.ac.leeds.ccg.r3d.io;
 
-import java.io.DataInputStream;
-import java.io.FileInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import uk.ac.leeds.ccg.generic.util.Generic_Collections;
+import uk.ac.leeds.ccg.r3d.Mesh;
 import uk.ac.leeds.ccg.r3d.entities.Area;
+import uk.ac.leeds.ccg.r3d.jfr.STL_LoadEvent;
 import uk.ac.leeds.ccg.v3d.core.V3D_Environment;
 import uk.ac.leeds.ccg.v3d.geometry.V3D_Triangle;
 import uk.ac.leeds.ccg.v3d.geometry.V3D_Vector;
@@ -60,6 +72,23 @@ public class STL_Reader {
      */
     public Stats stats;
 
+    /**
+     * The number of bytes before the first triangle record: an 80 byte header
+     * and the number of triangles.
+     */
+    static final int HEADER = 84;
+
+    /**
+     * The number of bytes of each triangle record: the normal and three
+     * corners (each three 4 byte floats) and a 2 byte attribute.
+     */
+    static final int RECORD = 50;
+
+    /**
+     * The number of triangle records decoded together.
+     */
+    static final int CHUNK = 1 << 12;
+
     /**
      * Create a new instance.
      * 
@@ -91,80 +120,98 @@ public class STL_Reader {
     /**
      * Read the binary STL file at the given Path following the available file
      * specification: https://en.wikipedia.org/wiki/STL_(file_format)#Binary_STL
-     * Everything is assumed to be little endian.Report the min and max of the
- x, y, and z values.
+     * Everything is assumed to be little endian. Report the min and max of the
+     * x, y, and z values. The triangles are decoded in parallel using as many
+     * threads as there are available processors.
      *
      * @param p The file to read.
      * @param offset The common offset.
-     * @param oom
-     * @param rm
-     * @param env
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @param env The environment.
      * @throws IOException
      */
     public void readBinary(Path p, V3D_Vector offset, int oom, RoundingMode rm,
             V3D_Environment env)
             throws IOException {
-        DataInputStream dis = new DataInputStream(new FileInputStream(
-                p.toFile()));
-        // Skip 80 bytes
-        dis.read(new byte[80]);
-        int nTriangles = Integer.reverseBytes(dis.readInt());
-        System.out.println("Reading " + nTriangles + " triangles.");
-        // read triangles
-        float x, y, z;
-        // Read the first triangle
-        x = readFloat(dis);
-        y = readFloat(dis);
-        z = readFloat(dis);
-        V3D_V n = new V3D_V(x, y, z);
-        x = readFloat(dis);
-        y = readFloat(dis);
-        z = readFloat(dis);
-        stats = new Stats(x, y, z);
-        V3D_V pv = new V3D_V(x, y, z);
-        x = readFloat(dis);
-        y = readFloat(dis);
-        z = readFloat(dis);
-        stats.update(x, y, z);
-        V3D_V qv = new V3D_V(x, y, z);
-        x = readFloat(dis);
-        y = readFloat(dis);
-        z = readFloat(dis);
-        stats.update(x, y, z);
-        V3D_V rv = new V3D_V(x, y, z);
-        V3D_VLine pq = new V3D_VLine(pv, qv);
-        V3D_VLine qr = new V3D_VLine(qv, rv);
-        V3D_VLine rp = new V3D_VLine(rv, pv);
-        short attribute = Short.reverseBytes(dis.readShort());
-        process(offset, pv, qv, rv, pq, qr, rp, n, attribute, oom, rm, env);
-        int i = 1;
-        while (dis.available() > 0) {
-            if (i % 100 == 0) {
-                System.out.println("Reading " + i + " out of " + nTriangles + " triangles.");
+        readBinary(p, offset, oom, rm, env,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Read the binary STL file at the given Path following the available file
+     * specification: https://en.wikipedia.org/wiki/STL_(file_format)#Binary_STL
+     * Everything is assumed to be little endian. Report the min and max of the
+     * x, y, and z values.
+     *
+     * The file is memory mapped and the triangle records (which are each
+     * {@link #RECORD} bytes) are decoded in chunks of {@link #CHUNK} records.
+     * If {@code parallelism} is greater than 1, chunks are decoded in parallel
+     * using a {@link ForkJoinPool} with that parallelism. The triangles are
+     * added to {@link #triangles} in the order they are in the file. Any
+     * bytes after the last complete record are ignored.
+     *
+     * @param p The file to read.
+     * @param offset The common offset.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @param env The environment.
+     * @param parallelism The number of threads to use for decoding.
+     * @throws IOException
+     */
+    public void readBinary(Path p, V3D_Vector offset, int oom, RoundingMode rm,
+            V3D_Environment env, int parallelism) throws IOException {
+        STL_LoadEvent event = new STL_LoadEvent();
+        event.begin();
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            int n = getNumberOfRecords(fc, p, event);
+            int nChunks = (n + CHUNK - 1) / CHUNK;
+            Area[] areas = new Area[n];
+            Stats[] chunkStats = new Stats[nChunks];
+            IntConsumer f = c -> {
+                try {
+                    chunkStats[c] = read(fc, c, n, offset, oom, rm, env,
+                            areas);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            };
+            if (parallelism > 1 && nChunks > 1) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    pool.submit(() -> IntStream.range(0, nChunks).parallel()
+                            .forEach(f)).get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof UncheckedIOException u) {
+                        throw u.getCause();
+                    }
+                    if (ex.getCause() instanceof RuntimeException r) {
+                        throw r;
+                    }
+                    throw new IOException(ex.getCause());
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                try {
+                    for (int c = 0; c < nChunks; c++) {
+                        f.accept(c);
+                    }
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+            }
+            stats = chunkStats[0];
+            for (int c = 1; c < nChunks; c++) {
+                stats.update(chunkStats[c]);
             }
-            n = new V3D_V(readFloat(dis), readFloat(dis), readFloat(dis));
-            x = readFloat(dis);
-            y = readFloat(dis);
-            z = readFloat(dis);
-            stats.update(x, y, z);
-            pv = new V3D_V(x, y, z);
-            x = readFloat(dis);
-            y = readFloat(dis);
-            z = readFloat(dis);
-            stats.update(x, y, z);
-            qv = new V3D_V(x, y, z);
-            x = readFloat(dis);
-            y = readFloat(dis);
-            z = readFloat(dis);
-            rv = new V3D_V(x, y, z);
-            stats.update(x, y, z);
-            attribute = Short.reverseBytes(dis.readShort());
-            pq = new V3D_VLine(pv, qv);
-            qr = new V3D_VLine(qv, rv);
-            rp = new V3D_VLine(rv, pv);
-            process(offset, pv, qv, rv, pq, qr, rp, n, attribute, oom, rm, env);
-            i++;
+            triangles.ensureCapacity(triangles.size() + n);
+            triangles.addAll(Arrays.asList(areas));
         }
+        event.commit();
 //        if (assessTopology) {
 //            // Topology checks and reporting.
 //            System.out.println(pointCounts.size() + " unique points.");
@@ -194,33 +241,140 @@ public class STL_Reader {
 //        }
     }
 
-    private void process(V3D_Vector offset, V3D_V pv, V3D_V qv, V3D_V rv,
-            V3D_VLine pq, V3D_VLine qr, V3D_VLine rp, V3D_V n, short attribute,
-            int oom, RoundingMode rm, V3D_Environment env) {
-        V3D_VTriangle vt = new V3D_VTriangle(pq, qr, rp);
-        if (n.isZero()) {
-            n = vt.getNormal().getUnitVector(oom, rm);
+    /**
+     * Read a binary STL file into a mesh in which vertices with the same
+     * coordinates are welded. Report the min and max of the x, y, and z
+     * values. The BigRational geometry is not created.
+     *
+     * @param p The file to read.
+     * @param offset The common offset.
+     * @return The mesh.
+     * @throws IOException
+     */
+    public Mesh readMesh(Path p, V3D_Vector offset) throws IOException {
+        STL_LoadEvent event = new STL_LoadEvent();
+        event.begin();
+        Mesh mesh;
+        stats = null;
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            int n = getNumberOfRecords(fc, p, event);
+            mesh = new Mesh(offset, n);
+            float[] c = new float[12];
+            for (int i0 = 0; i0 < n; i0 += CHUNK) {
+                int i1 = Math.min(n, i0 + CHUNK);
+                ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER + (long) i0 * RECORD, (long) (i1 - i0) * RECORD)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = i0; i < i1; i++) {
+                    for (int j = 0; j < 12; j++) {
+                        c[j] = b.getFloat();
+                    }
+                    for (int j = 3; j < 12; j += 3) {
+                        if (stats == null) {
+                            stats = new Stats(c[j], c[j + 1], c[j + 2]);
+                        } else {
+                            stats.update(c[j], c[j + 1], c[j + 2]);
+                        }
+                    }
+                    mesh.addTriangle(mesh.addVertex(c[3], c[4], c[5]),
+                            mesh.addVertex(c[6], c[7], c[8]),
+                            mesh.addVertex(c[9], c[10], c[11]),
+                            c[0], c[1], c[2], b.getShort());
+                }
+            }
         }
-        Area t = new Area(new V3D_Triangle(env, offset, vt), n, attribute);
-        triangles.add(t);
-//        if (assessTopology) {
-////        Generic_Collections.addToMap(points, pv, t);
-////        Generic_Collections.addToMap(points, qv, t);
-////        Generic_Collections.addToMap(points, rv, t);
-//            Generic_Collections.addToCount(pointCounts, pv, 1);
-//            Generic_Collections.addToCount(pointCounts, qv, 1);
-//            Generic_Collections.addToCount(pointCounts, rv, 1);
-////        Generic_Collections.addToMap(edges, pq, t);
-////        Generic_Collections.addToMap(edges, qr, t);
-////        Generic_Collections.addToMap(edges, rp, t);
-//            Generic_Collections.addToCount(edgeCounts, pq, 1);
-//            Generic_Collections.addToCount(edgeCounts, qr, 1);
-//            Generic_Collections.addToCount(edgeCounts, rp, 1);
-//        }
+        mesh.trim();
+        event.commit();
+        return mesh;
     }
 
-    float readFloat(DataInputStream dis) throws IOException {
-        return Float.intBitsToFloat(Integer.reverseBytes(dis.readInt()));
+    /**
+     * Read the number of triangles from the header of a binary STL file and
+     * set the event attributes. Nothing is printed: the number in the header
+     * and the number of records read are recorded in the event.
+     *
+     * @param fc The file channel.
+     * @param p The file path.
+     * @param event The event.
+     * @return The number of complete triangle records in the file. Any bytes
+     * after the last complete record are ignored.
+     * @throws IOException If there are no triangle records or too many.
+     */
+    static int getNumberOfRecords(FileChannel fc, Path p, STL_LoadEvent event)
+            throws IOException {
+        long size = fc.size();
+        if (size < HEADER + RECORD) {
+            throw new EOFException("No triangles in " + p);
+        }
+        // The number of triangles follows an 80 byte header.
+        ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 80, 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int nTriangles = b.getInt();
+        event.path = p.toString();
+        event.triangles = Integer.toUnsignedLong(nTriangles);
+        long n = (size - HEADER) / RECORD;
+        if (n > Integer.MAX_VALUE - 8) {
+            throw new IOException("Too many triangles in " + p);
+        }
+        event.records = n;
+        return (int) n;
+    }
+
+    /**
+     * Decode a chunk of triangle records.
+     *
+     * @param fc The file channel.
+     * @param c The index of the chunk.
+     * @param n The number of triangle records in the file.
+     * @param offset The common offset.
+     * @param oom The Order of Magnitude for the precision.
+     * @param rm The RoundingMode for any rounding.
+     * @param env The environment.
+     * @param areas The array to set the triangles in.
+     * @return The stats for the chunk.
+     * @throws IOException If the chunk cannot be mapped.
+     */
+    private Stats read(FileChannel fc, int c, int n, V3D_Vector offset,
+            int oom, RoundingMode rm, V3D_Environment env, Area[] areas)
+            throws IOException {
+        int i0 = c * CHUNK;
+        int i1 = Math.min(n, i0 + CHUNK);
+        ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY,
+                HEADER + (long) i0 * RECORD, (long) (i1 - i0) * RECORD)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        Stats s = null;
+        float x, y, z;
+        for (int i = i0; i < i1; i++) {
+            V3D_V nv = new V3D_V(b.getFloat(), b.getFloat(), b.getFloat());
+            x = b.getFloat();
+            y = b.getFloat();
+            z = b.getFloat();
+            if (s == null) {
+                s = new Stats(x, y, z);
+            } else {
+                s.update(x, y, z);
+            }
+            V3D_V pv = new V3D_V(x, y, z);
+            x = b.getFloat();
+            y = b.getFloat();
+            z = b.getFloat();
+            s.update(x, y, z);
+            V3D_V qv = new V3D_V(x, y, z);
+            x = b.getFloat();
+            y = b.getFloat();
+            z = b.getFloat();
+            s.update(x, y, z);
+            V3D_V rv = new V3D_V(x, y, z);
+            short attribute = b.getShort();
+            V3D_VTriangle vt = new V3D_VTriangle(new V3D_VLine(pv, qv),
+                    new V3D_VLine(qv, rv), new V3D_VLine(rv, pv));
+            if (nv.isZero()) {
+                nv = vt.getNormal().getUnitVector(oom, rm);
+            }
+            areas[i] = new Area(new V3D_Triangle(env, offset, vt), nv,
+                    attribute);
+        }
+        return s;
     }
 
     public class Stats {
@@ -241,5 +395,14 @@ public class STL_Reader {
             minz = Math.min(z, minz);
             maxz = Math.max(z, maxz);
         }
+
+        void update(Stats s) {
+            minx = Math.min(s.minx, minx);
+            maxx = Math.max(s.maxx, maxx);
+            miny = Math.min(s.miny, miny);
+            maxy = Math.max(s.maxy, maxy);
+            minz = Math.min(s.minz, minz);
+            maxz = Math.max(s.maxz, maxz);
+        }
     }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * For writing binary STL Files (https://en.wikipedia.org/wiki/STL_(file_format)
+ * as read by {@link STL_Reader} and
+ * {@link uk.ac.leeds.ccg.r3d.io.d.STL_Reader_d}. The number of triangles is
+ * given up front so that triangles can be streamed to the file one at a time
+ * and files of any number of triangles can be written without them all being
+ * in memory. The normal of each triangle is calculated from its corners by
+ * the right hand rule, and coordinates are written as floats.
+ *
+ * @author Andy Turner
+ */
+public class STL_Writer implements Closeable {
+
+    /**
+     * The number of bytes for each triangle: 12 floats and a short.
+     */
+    public static final int TRIANGLE_BYTES = 50;
+
+    /**
+     * The file channel.
+     */
+    private final FileChannel fc;
+
+    /**
+     * For buffering triangles.
+     */
+    private final ByteBuffer b;
+
+    /**
+     * The number of triangles to write.
+     */
+    public final long n;
+
+    /**
+     * The number of triangles written.
+     */
+    public long count;
+
+    /**
+     * Create a new instance and write the header.
+     *
+     * @param p The path of the file to write.
+     * @param n The number of triangles that will be written.
+     * @throws IOException If the file cannot be written.
+     */
+    public STL_Writer(Path p, long n) throws IOException {
+        if (n < 0 || n > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("The number of triangles " + n
+                    + " cannot be written in a binary STL file.");
+        }
+        this.n = n;
+        fc = FileChannel.open(p, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        b = ByteBuffer.allocateDirect(TRIANGLE_BYTES * 8192)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        b.position(80);
+        b.putInt((int) n);
+    }
+
+    /**
+     * Write a triangle with a zero attribute.
+     *
+     * @param px The x coordinate of the first corner.
+     * @param py The y coordinate of the first corner.
+     * @param pz The z coordinate of the first corner.
+     * @param qx The x coordinate of the second corner.
+     * @param qy The y coordinate of the second corner.
+     * @param qz The z coordinate of the second corner.
+     * @param rx The x coordinate of the third corner.
+     * @param ry The y coordinate of the third corner.
+     * @param rz The z coordinate of the third corner.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(double px, double py, double pz, double qx, double qy,
+            double qz, double rx, double ry, double rz) throws IOException {
+        if (count == n) {
+            throw new IOException("More than the " + n + " triangles given in"
+                    + " the header.");
+        }
+        if (b.remaining() < TRIANGLE_BYTES) {
+            flush();
+        }
+        double ax = qx - px;
+        double ay = qy - py;
+        double az = qz - pz;
+        double bx = rx - px;
+        double by = ry - py;
+        double bz = rz - pz;
+        double nx = ay * bz - az * by;
+        double ny = az * bx - ax * bz;
+        double nz = ax * by - ay * bx;
+        double m = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (m > 0d) {
+            nx /= m;
+            ny /= m;
+            nz /= m;
+        }
+        b.putFloat((float) nx);
+        b.putFloat((float) ny);
+        b.putFloat((float) nz);
+        b.putFloat((float) px);
+        b.putFloat((float) py);
+        b.putFloat((float) pz);
+        b.putFloat((float) qx);
+        b.putFloat((float) qy);
+        b.putFloat((float) qz);
+        b.putFloat((float) rx);
+        b.putFloat((float) ry);
+        b.putFloat((float) rz);
+        b.putShort((short) 0);
+        count++;
+    }
+
+    private void flush() throws IOException {
+        b.flip();
+        while (b.hasRemaining()) {
+            fc.write(b);
+        }
+        b.clear();
+    }
+
+    /**
+     * Write anything buffered and close the file.
+     *
+     * @throws IOException If the file cannot be written or if fewer triangles
+     * were written than given in the header.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            fc.close();
+        }
+        if (count != n) {
+            throw new IOException("Only " + count + " of the " + n
+                    + " triangles given in the header were written.");
+        }
+    }
+}
@@ -15,19 +15,31 @@
  */
 package uk.ac.leeds.ccg.r3d.io.d;
 
-import java.io.DataInputStream;
 import java.io.EOFException;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import uk.ac.leeds.ccg.generic.util.Generic_Collections;
+import uk.ac.leeds.ccg.r3d.d.Mesh_d;
+import uk.ac.leeds.ccg.r3d.d.Topology_d;
 import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
 import uk.ac.leeds.ccg.r3d.d.entities.Triangle_d;
+import uk.ac.leeds.ccg.r3d.jfr.STL_LoadEvent;
 import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Triangle_d;
 import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
@@ -67,16 +79,8 @@ public class STL_Reader_d {
     public boolean assessTopology;
 
     /**
-     * Topology. (What triangles have shared points)
-     */
-    //public HashMap<V3D_V, Set<Triangle>> points;
-    /**
-     * Count of triangles with shared points.
-     */
-    public HashMap<V3D_V_d, Integer> pointCounts;
-
-    /**
-     * Topology. (What triangles have shared edges). For simple closed surfaces,
+     * Topology. (What triangles have shared points and edges). For simple
+     * closed surfaces,
      * ones that bound volumes, each triangle edge of the surface must be
      * matched with exactly one other triangle edge. If there are triangles with
      * an edge not shared with any other triangles, then this triangle is at the
@@ -84,36 +88,50 @@ public class STL_Reader_d {
      * then either a surface is self intersecting or is folded. Surfaces may
      * meet along several edges and indeed along (parts of) faces of triangles.
      * Where surfaces are folded and meet along faces there may not be any
-     * shared points or edges.
+     * shared points or edges. This is the topology of the triangles last
+     * read if topology is assessed and {@code null} otherwise.
      */
-    //public HashMap<V3D_VLine, Set<Triangle>> edges;
+    public Topology_d topology;
+
     /**
-     * Count of triangles with shared edges.
+     * Set to true if topology is assessed and each edge is shared by exactly
+     * two triangles. The triangles then form closed surfaces and only the
+     * side of each triangle facing outwards can be seen from outside.
      */
-    public HashMap<V3D_VLine_d, Integer> edgeCounts;
+    public boolean closed;
 
     /**
      * Stats
      */
     public Stats stats;
 
+    /**
+     * The number of bytes before the first triangle record: an 80 byte header
+     * and the number of triangles.
+     */
+    static final int HEADER = 84;
+
+    /**
+     * The number of bytes of each triangle record: the normal and three
+     * corners (each three 4 byte floats) and a 2 byte attribute.
+     */
+    static final int RECORD = 50;
+
+    /**
+     * The number of triangle records decoded together.
+     */
+    static final int CHUNK = 1 << 14;
+
     /**
      * Create a new instance.
      *
-     * @param assessTopology If this is set to true, then {@link #points},
-     * {@link #pointCounts}, {@link #edge} and {@link #edgeCounts} are
-     * initialised and topology will be assessed.
+     * @param assessTopology If this is set to true, then topology will be
+     * assessed and {@link #topology} set.
      */
     public STL_Reader_d(V3D_Environment_d env, boolean assessTopology) {
         this.env = env;
         triangles = new ArrayList<>();
         this.assessTopology = assessTopology;
-        if (assessTopology) {
-            //points = new HashMap<>();
-            pointCounts = new HashMap<>();
-            //edges = new HashMap<>();
-            edgeCounts = new HashMap<>();
-        }
     }
 
     public static void main(String[] args) {
@@ -138,7 +156,8 @@ public class STL_Reader_d {
      * Read the binary STL file at the given Path following the available file
      * specification: https://en.wikipedia.org/wiki/STL_(file_format)#Binary_STL
      * Everything is assumed to be little endian. Report the min and max of the
-     * x, y, and z values.
+     * x, y, and z values. The triangles are decoded in parallel using as many
+     * threads as there are available processors.
      *
      * @param p The file to read.
      * @param offset The common offset.
@@ -146,151 +165,378 @@ public class STL_Reader_d {
      * @param initNormal If this is true, then the normal read from the file is 
      * discounted and the normal is calculated from the triangle corner point
      * vectors. 
-     * @return An ArrayList of triangles read from the file.
      * @throws IOException
      */
     public void readBinary(Path p, V3D_Vector_d offset, double scale, boolean initNormal)
             throws IOException {
-        DataInputStream dis = new DataInputStream(new FileInputStream(
-                p.toFile()));
-        // Skip 80 bytes
-        dis.read(new byte[80]);
-        int nTriangles = Integer.reverseBytes(dis.readInt());
-        System.out.println("Reading " + nTriangles + " triangles.");
-        // read triangles
-        double x, y, z;
-        // Read the first triangle
-        x = getValue(scale, dis);
-        y = getValue(scale, dis);
-        z = getValue(scale, dis) -50d;
-        V3D_V_d n = new V3D_V_d(x, y, z);
-        x = getValue(scale, dis);
-        y = getValue(scale, dis);
-        z = getValue(scale, dis) -50d;
-        stats = new Stats(x, y, z);
-        V3D_V_d pv = new V3D_V_d(x, y, z);
-        x = getValue(scale, dis);
-        y = getValue(scale, dis);
-        z = getValue(scale, dis) -50d;
-        stats.update(x, y, z);
-        V3D_V_d qv = new V3D_V_d(x, y, z);
-        x = getValue(scale, dis);
-        y = getValue(scale, dis);
-        z = getValue(scale, dis) -50d;
-        stats.update(x, y, z);
-        V3D_V_d rv = new V3D_V_d(x, y, z);
-        V3D_VLine_d pq = new V3D_VLine_d(pv, qv);
-        V3D_VLine_d qr = new V3D_VLine_d(qv, rv);
-        V3D_VLine_d rp = new V3D_VLine_d(rv, pv);
-        short attribute = Short.reverseBytes(dis.readShort());
-        process(offset, pv, qv, rv, pq, qr, rp, n, attribute, initNormal);
-        int i = 1;
-        int nTriangles1PC = nTriangles / 100;
-        if (nTriangles1PC < 1) {
-            nTriangles1PC = 1;
-        }
-        while (dis.available() > 0) {
-            try {
-            if (i % nTriangles1PC == 0) {
-                System.out.println("Reading " + i + " out of " + nTriangles + " triangles.");
+        readBinary(p, offset, scale, initNormal,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Read the binary STL file at the given Path following the available file
+     * specification: https://en.wikipedia.org/wiki/STL_(file_format)#Binary_STL
+     * Everything is assumed to be little endian. Report the min and max of the
+     * x, y, and z values.
+     *
+     * The file is memory mapped and the triangle records (which are each
+     * {@link #RECORD} bytes) are decoded in chunks of {@link #CHUNK} records.
+     * If {@code parallelism} is greater than 1, chunks are decoded in parallel
+     * using a {@link ForkJoinPool} with that parallelism. The triangles are
+     * added to {@link #triangles} in the order they are in the file. Any
+     * bytes after the last complete record are ignored. If topology is
+     * assessed, this is also done with that parallelism.
+     *
+     * @param p The file to read.
+     * @param offset The common offset.
+     * @param scale What numbers are multiplied by.
+     * @param initNormal If this is true, then the normal read from the file is 
+     * discounted and the normal is calculated from the triangle corner point
+     * vectors. 
+     * @param parallelism The number of threads to use for decoding.
+     * @throws IOException
+     */
+    public void readBinary(Path p, V3D_Vector_d offset, double scale,
+            boolean initNormal, int parallelism) throws IOException {
+        STL_LoadEvent event = new STL_LoadEvent();
+        event.begin();
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            int n = getNumberOfRecords(fc, p, event);
+            int nChunks = (n + CHUNK - 1) / CHUNK;
+            Area_d[] areas = new Area_d[n];
+            if (assessTopology && n > Integer.MAX_VALUE / 9) {
+                throw new IOException("Too many triangles to assess the "
+                        + "topology of " + p + ": " + n);
             }
-            n = new V3D_V_d(getValue(scale, dis), getValue(scale, dis), getValue(scale, dis));
-            // Turn n into a unit normal.
-            n = n.getUnitVector();
-            x = getValue(scale, dis);
-            y = getValue(scale, dis);
-            z = getValue(scale, dis) -50d;
-            stats.update(x, y, z);
-            pv = new V3D_V_d(x, y, z);
-            x = getValue(scale, dis);
-            y = getValue(scale, dis);
-            z = getValue(scale, dis) -50d;
-            stats.update(x, y, z);
-            qv = new V3D_V_d(x, y, z);
-            x = getValue(scale, dis);
-            y = getValue(scale, dis);
-            z = getValue(scale, dis) -50d;
-            rv = new V3D_V_d(x, y, z);
-            stats.update(x, y, z);
-            attribute = Short.reverseBytes(dis.readShort());
-            pq = new V3D_VLine_d(pv, qv);
-            qr = new V3D_VLine_d(qv, rv);
-            rp = new V3D_VLine_d(rv, pv);
-            process(offset, pv, qv, rv, pq, qr, rp, n, attribute, initNormal);
-            i++;
-            } catch (EOFException ex) {
-                break;
+            double[] coords = assessTopology ? new double[n * 9] : null;
+            Stats[] chunkStats = new Stats[nChunks];
+            IntConsumer f = c -> {
+                try {
+                    chunkStats[c] = read(fc, c, n, offset, scale, initNormal,
+                            areas, coords);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            };
+            if (parallelism > 1 && nChunks > 1) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    pool.submit(() -> IntStream.range(0, nChunks).parallel()
+                            .forEach(f)).get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof UncheckedIOException u) {
+                        throw u.getCause();
+                    }
+                    if (ex.getCause() instanceof RuntimeException r) {
+                        throw r;
+                    }
+                    throw new IOException(ex.getCause());
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                try {
+                    for (int c = 0; c < nChunks; c++) {
+                        f.accept(c);
+                    }
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+            }
+            stats = chunkStats[0];
+            for (int c = 1; c < nChunks; c++) {
+                stats.update(chunkStats[c]);
+            }
+            triangles.ensureCapacity(triangles.size() + n);
+            triangles.addAll(Arrays.asList(areas));
+            if (assessTopology) {
+                try {
+                    topology = Topology_d.of(coords, n, parallelism);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                report(topology);
             }
         }
-        if (assessTopology) {
-            // Topology checks and reporting.
-            System.out.println(pointCounts.size() + " unique points.");
-            System.out.println(edgeCounts.size() + " unique edges.");
-            int pmax = 0;
-            int pmin = pointCounts.entrySet().iterator().next().getValue();
-            for (var pc : pointCounts.keySet()) {
-                pmax = Math.max(pmax, pointCounts.get(pc));
-                pmin = Math.min(pmin, pointCounts.get(pc));
+        event.commit();
+    }
+
+    /**
+     * Topology checks and reporting. This sets {@link #closed}.
+     *
+     * @param t The topology.
+     */
+    private void report(Topology_d t) {
+        System.out.println(t.nPoints + " unique points.");
+        System.out.println(t.nEdges + " unique edges.");
+        System.out.println(t.maxPointCount + " = maximum number of triangles containing any unique point.");
+        System.out.println(t.minPointCount + " = minimum number of triangles containing any unique point.");
+        System.out.println(t.maxEdgeCount + " = maximum number of triangles sharing any edge.");
+        System.out.println(t.minEdgeCount + " = minimum number of triangles sharing any edge.");
+        closed = t.isClosed();
+        if (closed) {
+            System.out.println("Each edge is only shared between two triangles.");
+            if (t.nEdges == t.nPoints * 2 + 2) {
+                System.out.println("There is a single unfolded closed surface.");
             }
-            System.out.println(pmax + " = maximum number of triangles containing any unique point.");
-            System.out.println(pmin + " = minimum number of triangles containing any unique point.");
-            int emax = 0;
-            int emin = edgeCounts.entrySet().iterator().next().getValue();
-            for (var ec : edgeCounts.keySet()) {
-                emax = Math.max(emax, edgeCounts.get(ec));
-                emin = Math.min(emin, edgeCounts.get(ec));
+        }
+    }
+
+    /**
+     * Count the number of triangles containing each unique point.
+     *
+     * @return The count of triangles with shared points or {@code null} if
+     * topology is not assessed.
+     * @deprecated The counts are no longer kept in a map: the public
+     * {@code pointCounts} field was replaced by {@link #topology}. This
+     * creates the map from {@link #triangles} each time it is called.
+     */
+    @Deprecated
+    public HashMap<V3D_V_d, Integer> getPointCounts() {
+        if (!assessTopology) {
+            return null;
+        }
+        HashMap<V3D_V_d, Integer> r = new HashMap<>();
+        for (Area_d a : triangles) {
+            if (a.getArea() instanceof V3D_Triangle_d t) {
+                Generic_Collections.addToCount(r, getV(t.getP().rel), 1);
+                Generic_Collections.addToCount(r, getV(t.getQ().rel), 1);
+                Generic_Collections.addToCount(r, getV(t.getR().rel), 1);
             }
-            System.out.println(emax + " = maximum number of triangles sharing any edge.");
-            System.out.println(emin + " = minimum number of triangles sharing any edge.");
-            if (emax == 2 && emin == 2) {
-                System.out.println("Each edge is only shared between two triangles.");
-                if (edgeCounts.size() == pointCounts.size() * 2 + 2) {
-                    System.out.println("There is a single unfolded closed surface.");
-                }
+        }
+        return r;
+    }
+
+    /**
+     * Count the number of triangles sharing each unique edge.
+     *
+     * @return The count of triangles with shared edges or {@code null} if
+     * topology is not assessed.
+     * @deprecated The counts are no longer kept in a map: the public
+     * {@code edgeCounts} field was replaced by {@link #topology}. This
+     * creates the map from {@link #triangles} each time it is called, which
+     * is slow for large numbers of triangles.
+     */
+    @Deprecated
+    public HashMap<V3D_VLine_d, Integer> getEdgeCounts() {
+        if (!assessTopology) {
+            return null;
+        }
+        HashMap<V3D_VLine_d, Integer> r = new HashMap<>();
+        for (Area_d a : triangles) {
+            if (a.getArea() instanceof V3D_Triangle_d t) {
+                V3D_V_d pv = getV(t.getP().rel);
+                V3D_V_d qv = getV(t.getQ().rel);
+                V3D_V_d rv = getV(t.getR().rel);
+                Generic_Collections.addToCount(r, new V3D_VLine_d(pv, qv), 1);
+                Generic_Collections.addToCount(r, new V3D_VLine_d(qv, rv), 1);
+                Generic_Collections.addToCount(r, new V3D_VLine_d(rv, pv), 1);
             }
         }
+        return r;
     }
 
-    private void process(V3D_Vector_d offset, V3D_V_d pv, 
-            V3D_V_d qv, V3D_V_d rv, V3D_VLine_d pq, 
-            V3D_VLine_d qr, V3D_VLine_d rp, V3D_V_d n, 
-            short attribute, boolean initNormal) {
-        V3D_VTriangle_d vt = new V3D_VTriangle_d(pq, qr, rp);
-        if (n.isZero() || initNormal) {
-            n = vt.getNormal().getUnitVector();
+    /**
+     * @param v A vector.
+     * @return A V3D_V_d with the components of v.
+     */
+    private static V3D_V_d getV(V3D_Vector_d v) {
+        return new V3D_V_d(v.dx, v.dy, v.dz);
+    }
+
+    /**
+     * Read a binary STL file into a mesh in which vertices with the same
+     * coordinates are welded. Report the min and max of the x, y, and z
+     * values. If topology is to be assessed, then it is assessed from the
+     * welded vertices using as many threads as there are available processors.
+     *
+     * The coordinates and normals are the same as for the triangles read by
+     * {@link #readBinary(Path, V3D_Vector_d, double, boolean, int)}. Records
+     * are decoded in order on a single thread as each vertex is looked up in
+     * the hash table of the vertices added before it.
+     *
+     * @param p The file to read.
+     * @param offset The common offset.
+     * @param scale What numbers are multiplied by.
+     * @param initNormal If this is true, then the normal read from the file is 
+     * discounted and the normal is calculated from the triangle corner point
+     * vectors. 
+     * @return The mesh.
+     * @throws IOException
+     */
+    public Mesh_d readMesh(Path p, V3D_Vector_d offset, double scale,
+            boolean initNormal) throws IOException {
+        STL_LoadEvent event = new STL_LoadEvent();
+        event.begin();
+        Mesh_d mesh;
+        stats = null;
+        try (FileChannel fc = FileChannel.open(p, StandardOpenOption.READ)) {
+            int n = getNumberOfRecords(fc, p, event);
+            mesh = new Mesh_d(env, offset, n);
+            double[] c = new double[9];
+            for (int i0 = 0; i0 < n; i0 += CHUNK) {
+                int i1 = Math.min(n, i0 + CHUNK);
+                ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER + (long) i0 * RECORD, (long) (i1 - i0) * RECORD)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = i0; i < i1; i++) {
+                    V3D_V_d nv = new V3D_V_d(b.getFloat() * scale,
+                            b.getFloat() * scale, b.getFloat() * scale);
+                    for (int j = 0; j < 9; j += 3) {
+                        c[j] = b.getFloat() * scale;
+                        c[j + 1] = b.getFloat() * scale;
+                        c[j + 2] = b.getFloat() * scale - 50d;
+                        if (stats == null) {
+                            stats = new Stats(c[j], c[j + 1], c[j + 2]);
+                        } else {
+                            stats.update(c[j], c[j + 1], c[j + 2]);
+                        }
+                    }
+                    short attribute = b.getShort();
+                    int pi = mesh.addVertex(c[0], c[1], c[2]);
+                    int qi = mesh.addVertex(c[3], c[4], c[5]);
+                    int ri = mesh.addVertex(c[6], c[7], c[8]);
+                    if (nv.isZero() || initNormal) {
+                        V3D_V_d pv = mesh.getVertex(pi);
+                        V3D_V_d qv = mesh.getVertex(qi);
+                        V3D_V_d rv = mesh.getVertex(ri);
+                        nv = new V3D_VTriangle_d(new V3D_VLine_d(pv, qv),
+                                new V3D_VLine_d(qv, rv),
+                                new V3D_VLine_d(rv, pv)).getNormal()
+                                .getUnitVector();
+                    } else {
+                        // Turn n into a unit normal.
+                        nv = nv.getUnitVector();
+                    }
+                    mesh.addTriangle(pi, qi, ri, nv.x, nv.y, nv.z, attribute);
+                }
+            }
         }
-        Area_d t = new Area_d(
-                new V3D_Triangle_d(env, offset, vt), n, attribute);
-        triangles.add(t);
+        mesh.trim();
         if (assessTopology) {
-//        Generic_Collections.addToMap(points, pv, t);
-//        Generic_Collections.addToMap(points, qv, t);
-//        Generic_Collections.addToMap(points, rv, t);
-            Generic_Collections.addToCount(pointCounts, pv, 1);
-            Generic_Collections.addToCount(pointCounts, qv, 1);
-            Generic_Collections.addToCount(pointCounts, rv, 1);
-//        Generic_Collections.addToMap(edges, pq, t);
-//        Generic_Collections.addToMap(edges, qr, t);
-//        Generic_Collections.addToMap(edges, rp, t);
-            Generic_Collections.addToCount(edgeCounts, pq, 1);
-            Generic_Collections.addToCount(edgeCounts, qr, 1);
-            Generic_Collections.addToCount(edgeCounts, rp, 1);
+            try {
+                topology = new Topology_d(mesh.nVertices, mesh.triangles,
+                        mesh.nTriangles,
+                        Runtime.getRuntime().availableProcessors());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            report(topology);
+            mesh.closed = closed;
         }
+        event.commit();
+        return mesh;
     }
 
     /**
-     * @param scale The value that the read float is multiplied by.
-     * @param dis The DataInputStream.
-     * @return The value read as a float from the DataInputStream multiplied by 
-     * scale.
-     * @throws IOException 
+     * Read the number of triangles from the header of a binary STL file and
+     * set the event attributes. Nothing is printed: the number in the header
+     * and the number of records read are recorded in the event.
+     *
+     * @param fc The file channel.
+     * @param p The file path.
+     * @param event The event.
+     * @return The number of complete triangle records in the file. Any bytes
+     * after the last complete record are ignored.
+     * @throws IOException If there are no triangle records or too many.
      */
-    double getValue(double scale, DataInputStream dis) throws IOException {
-        return readFloat(dis) * scale;
+    static int getNumberOfRecords(FileChannel fc, Path p, STL_LoadEvent event)
+            throws IOException {
+        long size = fc.size();
+        if (size < HEADER + RECORD) {
+            throw new EOFException("No triangles in " + p);
+        }
+        // The number of triangles follows an 80 byte header.
+        ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 80, 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int nTriangles = b.getInt();
+        event.path = p.toString();
+        event.triangles = Integer.toUnsignedLong(nTriangles);
+        long n = (size - HEADER) / RECORD;
+        if (n > Integer.MAX_VALUE - 8) {
+            throw new IOException("Too many triangles in " + p);
+        }
+        event.records = n;
+        return (int) n;
     }
-    
-    float readFloat(DataInputStream dis) throws IOException {
-        return Float.intBitsToFloat(Integer.reverseBytes(dis.readInt()));
+
+    /**
+     * Decode a chunk of triangle records.
+     *
+     * @param fc The file channel.
+     * @param c The index of the chunk.
+     * @param n The number of triangle records in the file.
+     * @param offset The common offset.
+     * @param scale What numbers are multiplied by.
+     * @param initNormal If this is true, then the normals are calculated.
+     * @param areas The array to set the triangles in.
+     * @param coords The array to set the coordinates of the triangle corners
+     * in for assessing topology or {@code null}.
+     * @return The stats for the chunk.
+     * @throws IOException If the chunk cannot be mapped.
+     */
+    private Stats read(FileChannel fc, int c, int n, V3D_Vector_d offset,
+            double scale, boolean initNormal, Area_d[] areas,
+            double[] coords) throws IOException {
+        int i0 = c * CHUNK;
+        int i1 = Math.min(n, i0 + CHUNK);
+        ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY,
+                HEADER + (long) i0 * RECORD, (long) (i1 - i0) * RECORD)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        Stats s = null;
+        double x, y, z;
+        for (int i = i0; i < i1; i++) {
+            V3D_V_d nv = new V3D_V_d(b.getFloat() * scale,
+                    b.getFloat() * scale, b.getFloat() * scale);
+            x = b.getFloat() * scale;
+            y = b.getFloat() * scale;
+            z = b.getFloat() * scale - 50d;
+            if (s == null) {
+                s = new Stats(x, y, z);
+            } else {
+                s.update(x, y, z);
+            }
+            V3D_V_d pv = new V3D_V_d(x, y, z);
+            x = b.getFloat() * scale;
+            y = b.getFloat() * scale;
+            z = b.getFloat() * scale - 50d;
+            s.update(x, y, z);
+            V3D_V_d qv = new V3D_V_d(x, y, z);
+            x = b.getFloat() * scale;
+            y = b.getFloat() * scale;
+            z = b.getFloat() * scale - 50d;
+            s.update(x, y, z);
+            V3D_V_d rv = new V3D_V_d(x, y, z);
+            short attribute = b.getShort();
+            V3D_VTriangle_d vt = new V3D_VTriangle_d(new V3D_VLine_d(pv, qv),
+                    new V3D_VLine_d(qv, rv), new V3D_VLine_d(rv, pv));
+            if (nv.isZero() || initNormal) {
+                nv = vt.getNormal().getUnitVector();
+            } else {
+                // Turn n into a unit normal.
+                nv = nv.getUnitVector();
+            }
+            areas[i] = new Area_d(new V3D_Triangle_d(env, offset, vt), nv,
+                    attribute);
+            if (coords != null) {
+                int j = i * 9;
+                coords[j] = pv.x;
+                coords[j + 1] = pv.y;
+                coords[j + 2] = pv.z;
+                coords[j + 3] = qv.x;
+                coords[j + 4] = qv.y;
+                coords[j + 5] = qv.z;
+                coords[j + 6] = rv.x;
+                coords[j + 7] = rv.y;
+                coords[j + 8] = rv.z;
+            }
+        }
+        return s;
     }
 
     public class Stats {
@@ -311,5 +557,14 @@ public class STL_Reader_d {
             minz = Math.min(z, minz);
             maxz = Math.max(z, maxz);
         }
+
+        void update(Stats s) {
+            minx = Math.min(s.minx, minx);
+            maxx = Math.max(s.maxx, maxx);
+            miny = Math.min(s.miny, miny);
+            maxy = Math.max(s.maxy, maxy);
+            minz = Math.min(s.minz, minz);
+            maxz = Math.max(s.maxz, maxz);
+        }
     }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Encoding an image and writing it to a file.
+ *
+ * @author Andy Turner
+ */
+@Category({"CCG", "R3D"})
+@Name("uk.ac.leeds.ccg.r3d.ImageWrite")
+@Label("Image Write")
+@Description("Encoding an image and writing it to a file")
+public class ImageWriteEvent extends Event {
+
+    /**
+     * The path of the file.
+     */
+    @Label("Path")
+    public String path;
+
+    /**
+     * The format, for example "png".
+     */
+    @Label("Format")
+    public String format;
+
+    /**
+     * The width in pixels.
+     */
+    @Label("Width")
+    public int width;
+
+    /**
+     * The height in pixels.
+     */
+    @Label("Height")
+    public int height;
+
+    /**
+     * Create a new instance.
+     */
+    public ImageWriteEvent() {
+    }
+}
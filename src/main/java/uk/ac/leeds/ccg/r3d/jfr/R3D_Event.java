@@ -0,0 +1,64 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * The base of the Java Flight Recorder events of ccg-r3d for which the
+ * precision of calculations is of interest. All the events in this package are
+ * in the "R3D" category and are committed if a recording is running, for
+ * example started with
+ * {@code java -XX:StartFlightRecording:filename=r3d.jfr ...}. They can be
+ * viewed along with garbage collection and allocation events using JDK Mission
+ * Control or {@code jfr print --categories R3D r3d.jfr}.
+ *
+ * Calculations with double precision set {@link #epsilon}, and those with
+ * BigRational numbers set {@link #oom}.
+ *
+ * @author Andy Turner
+ */
+@Category({"CCG", "R3D"})
+public abstract class R3D_Event extends Event {
+
+    /**
+     * The tolerance within which vector components are regarded as equal, or
+     * NaN for calculations with BigRational numbers or if there is none.
+     */
+    @Label("Epsilon")
+    @Description("The tolerance within which vector components are regarded"
+            + " as equal (NaN for BigRational calculations or if there is"
+            + " none)")
+    public double epsilon = Double.NaN;
+
+    /**
+     * The Order of Magnitude for the precision of calculations with
+     * BigRational numbers, or {@link Integer#MIN_VALUE} for double precision.
+     */
+    @Label("Order of Magnitude")
+    @Description("The Order of Magnitude for the precision of BigRational"
+            + " calculations (Integer.MIN_VALUE for double precision)")
+    public int oom = Integer.MIN_VALUE;
+
+    /**
+     * Create a new instance.
+     */
+    protected R3D_Event() {
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Rendering a frame: a view of a universe from a camera.
+ *
+ * @author Andy Turner
+ */
+@Name("uk.ac.leeds.ccg.r3d.Render")
+@Label("Render")
+@Description("Rendering a view of a universe from a camera")
+public class RenderEvent extends R3D_Event {
+
+    /**
+     * The number of areas in the universe.
+     */
+    @Label("Areas")
+    public long areas;
+
+    /**
+     * The number of lines in the universe.
+     */
+    @Label("Lines")
+    public long lines;
+
+    /**
+     * The number of rows of pixels.
+     */
+    @Label("Rows")
+    public int rows;
+
+    /**
+     * The number of columns of pixels.
+     */
+    @Label("Columns")
+    public int cols;
+
+    /**
+     * The way of finding the closest area through each pixel (the name of a
+     * {@link uk.ac.leeds.ccg.r3d.d.Camera_d.Engine}, which is "AREA" for
+     * {@link uk.ac.leeds.ccg.r3d.Camera}).
+     */
+    @Label("Engine")
+    public String engine;
+
+    /**
+     * The number of threads.
+     */
+    @Label("Parallelism")
+    public int parallelism;
+
+    /**
+     * Whether shadows are cast.
+     */
+    @Label("Cast Shadow")
+    public boolean castShadow;
+
+    /**
+     * Create a new instance.
+     */
+    public RenderEvent() {
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Reading the triangles of a binary STL file.
+ *
+ * @author Andy Turner
+ */
+@Category({"CCG", "R3D"})
+@Name("uk.ac.leeds.ccg.r3d.STL_Load")
+@Label("STL Load")
+@Description("Reading the triangles of a binary STL file")
+public class STL_LoadEvent extends Event {
+
+    /**
+     * The path of the file.
+     */
+    @Label("Path")
+    public String path;
+
+    /**
+     * The number of triangles given in the header of the file.
+     */
+    @Label("Triangles")
+    public long triangles;
+
+    /**
+     * The number of complete triangle records in the file. This may differ
+     * from {@link #triangles} if the header is wrong.
+     */
+    @Label("Records")
+    public long records;
+
+    /**
+     * Create a new instance.
+     */
+    public STL_LoadEvent() {
+    }
+}
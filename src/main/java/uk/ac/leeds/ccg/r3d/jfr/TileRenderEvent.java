@@ -0,0 +1,74 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Processing the areas of a render for a tile of the screen. A serial render
+ * has a single tile of the whole screen.
+ *
+ * @author Andy Turner
+ */
+@Name("uk.ac.leeds.ccg.r3d.TileRender")
+@Label("Tile Render")
+@Description("Processing the areas of a render for a tile of the screen")
+public class TileRenderEvent extends R3D_Event {
+
+    /**
+     * The minimum row of the tile.
+     */
+    @Label("Min Row")
+    public int minRow;
+
+    /**
+     * The minimum column of the tile.
+     */
+    @Label("Min Column")
+    public int minCol;
+
+    /**
+     * The maximum row of the tile.
+     */
+    @Label("Max Row")
+    public int maxRow;
+
+    /**
+     * The maximum column of the tile.
+     */
+    @Label("Max Column")
+    public int maxCol;
+
+    /**
+     * The number of areas to process.
+     */
+    @Label("Areas")
+    public long areas;
+
+    /**
+     * The number of areas processed before the rest were found to be hidden.
+     */
+    @Label("Areas Processed")
+    public long processed;
+
+    /**
+     * Create a new instance.
+     */
+    public TileRenderEvent() {
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Constructing a universe from a file or generated scene, including any
+ * {@link STL_LoadEvent}.
+ *
+ * @author Andy Turner
+ */
+@Name("uk.ac.leeds.ccg.r3d.UniverseBuild")
+@Label("Universe Build")
+@Description("Constructing a universe from a file or generated scene")
+public class UniverseBuildEvent extends R3D_Event {
+
+    /**
+     * The path of the file or the name of the generated scene.
+     */
+    @Label("Source")
+    public String source;
+
+    /**
+     * The number of areas.
+     */
+    @Label("Areas")
+    public long areas;
+
+    /**
+     * Whether the areas form closed surfaces.
+     */
+    @Label("Closed")
+    public boolean closed;
+
+    /**
+     * Create a new instance.
+     */
+    public UniverseBuildEvent() {
+    }
+}
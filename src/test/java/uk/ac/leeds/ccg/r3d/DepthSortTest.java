@@ -0,0 +1,153 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for DepthSort.
+ *
+ * @author Andy Turner
+ */
+public class DepthSortTest {
+
+    public DepthSortTest() {
+    }
+
+    /**
+     * Sort (key, id) pairs by key then id with a comparator.
+     *
+     * @param keys The keys indexed by id.
+     * @param ids The ids.
+     * @param n The number of ids to sort.
+     * @return The sorted ids.
+     */
+    static int[] referenceSort(double[] keys, int[] ids, int n) {
+        Integer[] r = new Integer[n];
+        for (int j = 0; j < n; j++) {
+            r[j] = ids[j];
+        }
+        Arrays.sort(r, Comparator.<Integer>comparingDouble(i -> keys[i])
+                .thenComparingInt(i -> i));
+        return Arrays.stream(r).mapToInt(i -> i).toArray();
+    }
+
+    /**
+     * Create keys with many duplicates, keys that differ only in their least
+     * significant bits, and special values.
+     *
+     * @param r The random number generator.
+     * @param m The number of keys.
+     * @return The keys.
+     */
+    static double[] getKeys(Random r, int m) {
+        double[] special = {0d, -0d, Double.MIN_VALUE, Double.MAX_VALUE,
+            -Double.MAX_VALUE, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NaN, 1d, Math.nextUp(1d),
+            Math.nextDown(1d)};
+        double[] keys = new double[m];
+        for (int i = 0; i < m; i++) {
+            keys[i] = switch (r.nextInt(4)) {
+                case 0 ->
+                    special[r.nextInt(special.length)];
+                case 1 ->
+                    // Few distinct values, so many duplicates.
+                    r.nextInt(8);
+                case 2 ->
+                    // Differ in the least significant bits.
+                    100d + Math.ulp(100d) * r.nextInt(1000);
+                default ->
+                    r.nextDouble() * 1000d - 10d;
+            };
+        }
+        return keys;
+    }
+
+    /**
+     * Test that sorting gives the same order as sorting (key, id) pairs.
+     */
+    @Test
+    public void testSort() {
+        Random r = new Random(11L);
+        for (int m : new int[]{0, 1, 2, 3, 10, 100, 1000, 100000}) {
+            double[] keys = getKeys(r, m);
+            // All the ids shuffled.
+            int[] ids = new int[m];
+            for (int i = 0; i < m; i++) {
+                ids[i] = i;
+            }
+            for (int i = m - 1; i > 0; i--) {
+                int j = r.nextInt(i + 1);
+                int t = ids[i];
+                ids[i] = ids[j];
+                ids[j] = t;
+            }
+            int[] expected = referenceSort(keys, ids, m);
+            int[] a = ids.clone();
+            DepthSort.sort(keys, a, m);
+            assertArrayEquals(expected, a, "m " + m);
+            // Some of the ids with only the first n sorted.
+            int n = m / 2;
+            int[] b = ids.clone();
+            DepthSort.sort(keys, b, n);
+            assertArrayEquals(referenceSort(keys, ids, n),
+                    Arrays.copyOf(b, n), "m " + m + " n " + n);
+            assertArrayEquals(Arrays.copyOfRange(ids, n, m),
+                    Arrays.copyOfRange(b, n, m), "m " + m + " n " + n);
+        }
+    }
+
+    /**
+     * Test that ids with equal keys are put in the order of the comparator,
+     * here with ties ordered by descending id.
+     */
+    @Test
+    public void testSortCompare() {
+        Random r = new Random(13L);
+        int m = 10000;
+        double[] keys = getKeys(r, m);
+        int[] ids = new int[m];
+        for (int i = 0; i < m; i++) {
+            ids[i] = i;
+        }
+        DepthSort.sort(keys, ids, m, (a, b) -> {
+            int c = Double.compare(keys[a], keys[b]);
+            return c != 0 ? c : Integer.compare(b, a);
+        });
+        for (int j = 1; j < m; j++) {
+            int c = Double.compare(keys[ids[j - 1]], keys[ids[j]]);
+            assertTrue(c < 0 || (c == 0 && ids[j - 1] > ids[j]), "j " + j);
+        }
+    }
+
+    /**
+     * Test that the bits of keys order as the keys do.
+     */
+    @Test
+    public void testGetBits() {
+        double[] k = {Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1d,
+            -Double.MIN_VALUE, -0d, 0d, Double.MIN_VALUE, 1d,
+            Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NaN};
+        for (int i = 1; i < k.length; i++) {
+            assertTrue(DepthSort.getBits(k[i - 1]) < DepthSort.getBits(k[i]),
+                    k[i - 1] + " " + k[i]);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.r3d.SceneGenerator.Scene;
+import uk.ac.leeds.ccg.r3d.d.Mesh_d;
+import uk.ac.leeds.ccg.r3d.io.d.STL_Reader_d;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * Tests for SceneGenerator.
+ *
+ * @author Andy Turner
+ */
+public class SceneGeneratorTest {
+
+    public SceneGeneratorTest() {
+    }
+
+    /**
+     * Test that each scene written to a binary STL file and read back with
+     * topology assessed is closed if and only if
+     * {@link SceneGenerator#isClosed()}, and that the sphere has the number
+     * of vertices of a subdivided icosahedron, so the points shared by faces
+     * are the same.
+     */
+    @Test
+    public void testWriteBinaryIsClosed() throws Exception {
+        V3D_Environment_d env = new V3D_Environment_d();
+        for (Scene scene : Scene.values()) {
+            for (long n : new long[]{1000L, 10000L}) {
+                SceneGenerator g = new SceneGenerator(scene, n, 1L);
+                Path p = Files.createTempFile("scene", ".stl");
+                try {
+                    g.writeBinary(p);
+                    STL_Reader_d reader = new STL_Reader_d(env, true);
+                    Mesh_d mesh = reader.readMesh(p, V3D_Vector_d.ZERO, 1d,
+                            false);
+                    String m = g.toString();
+                    assertEquals(g.getNumberOfTriangles(), mesh.nTriangles, m);
+                    assertEquals(g.isClosed(), mesh.closed, m);
+                    if (scene == Scene.SPHERE) {
+                        assertEquals(10 * g.k * g.k + 2, mesh.nVertices, m);
+                        reader = new STL_Reader_d(env, true);
+                        reader.readBinary(p, V3D_Vector_d.ZERO, 1d, false);
+                        assertTrue(reader.closed, m);
+                    }
+                } finally {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+}
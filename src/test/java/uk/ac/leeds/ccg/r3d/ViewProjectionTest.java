@@ -0,0 +1,136 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d;
+
+import ch.obermuhlner.math.big.BigRational;
+import java.math.RoundingMode;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.v3d.core.V3D_Environment;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_Point;
+import uk.ac.leeds.ccg.v3d.geometry.V3D_Vector;
+
+/**
+ * Tests for ViewProjection.
+ *
+ * @author Andy Turner
+ */
+public class ViewProjectionTest {
+
+    public ViewProjectionTest() {
+    }
+
+    /**
+     * Test that the points on the screen from getScreenPoint have their
+     * screen coordinates, and that getScreenPoint of the screen coordinates
+     * of a point in front of the focus is on the line from the focus through
+     * the point. Everything is rational and no coordinates are rounded to the
+     * Order of Magnitude, so these are exact.
+     */
+    @Test
+    public void testGetScreenPoint() {
+        int oom = -3;
+        RoundingMode rm = RoundingMode.HALF_UP;
+        V3D_Environment env = new V3D_Environment(oom, rm);
+        Random r = new Random(19L);
+        int n = 0;
+        for (int i = 0; i < 200; i++) {
+            long[] v = new long[15];
+            for (int k = 0; k < 15; k++) {
+                v[k] = r.nextInt(21) - 10;
+            }
+            V3D_Point f = new V3D_Point(env, v[0], v[1], v[2]);
+            V3D_Point p = new V3D_Point(env, v[3], v[4], v[5]);
+            V3D_Vector a = new V3D_Vector(v[6], v[7], v[8]);
+            V3D_Vector b = new V3D_Vector(v[9], v[10], v[11]);
+            V3D_Point x = new V3D_Point(env, v[12], v[13], v[14]);
+            BigRational[] fv = {f.getX(oom, rm), f.getY(oom, rm),
+                f.getZ(oom, rm)};
+            BigRational[] pv = {p.getX(oom, rm), p.getY(oom, rm),
+                p.getZ(oom, rm)};
+            BigRational[] av = {a.getDX(oom, rm), a.getDY(oom, rm),
+                a.getDZ(oom, rm)};
+            BigRational[] bv = {b.getDX(oom, rm), b.getDY(oom, rm),
+                b.getDZ(oom, rm)};
+            BigRational[] nv = cross(av, bv);
+            if (isZero(nv) || dot(nv, subtract(pv, fv)).signum() == 0) {
+                // The screen is degenerate or through the focus.
+                continue;
+            }
+            ViewProjection vp = new ViewProjection(f, p, a, b, oom, rm);
+            String m = "i " + i;
+            // A point on the screen with coordinates that are not rounded.
+            BigRational row = BigRational.valueOf(r.nextInt(20001) - 10000,
+                    1000);
+            BigRational col = BigRational.valueOf(r.nextInt(20001) - 10000,
+                    1000);
+            BigRational[] s = vp.getScreenPoint(row, col);
+            for (int k = 0; k < 3; k++) {
+                assertEquals(0, s[k].compareTo(pv[k].add(av[k].multiply(row))
+                        .add(bv[k].multiply(col))), m);
+            }
+            V3D_Point sp = new V3D_Point(env, s[0], s[1], s[2]);
+            assertEquals(0, vp.getW(sp).compareTo(vp.d), m);
+            assertEquals(0, vp.getRow(sp).compareTo(row), m);
+            assertEquals(0, vp.getCol(sp).compareTo(col), m);
+            // A point in front of the focus.
+            if (vp.getW(x).signum() > 0) {
+                n++;
+                BigRational[] xs = vp.getScreenPoint(vp.getRow(x),
+                        vp.getCol(x));
+                BigRational[] xv = {x.getX(oom, rm), x.getY(oom, rm),
+                    x.getZ(oom, rm)};
+                assertTrue(isZero(cross(subtract(xs, fv), subtract(xv, fv))),
+                        m);
+            }
+        }
+        assertTrue(n > 20, "n " + n);
+    }
+
+    /**
+     * Test that floor rounds towards negative infinity.
+     */
+    @Test
+    public void testFloor() {
+        assertEquals(0, ViewProjection.floor(BigRational.ZERO));
+        assertEquals(2, ViewProjection.floor(BigRational.valueOf(5, 2)));
+        assertEquals(-3, ViewProjection.floor(BigRational.valueOf(-5, 2)));
+        assertEquals(-2, ViewProjection.floor(BigRational.valueOf(-2)));
+    }
+
+    private static BigRational dot(BigRational[] u, BigRational[] v) {
+        return u[0].multiply(v[0]).add(u[1].multiply(v[1]))
+                .add(u[2].multiply(v[2]));
+    }
+
+    private static BigRational[] cross(BigRational[] u, BigRational[] v) {
+        return new BigRational[]{
+            u[1].multiply(v[2]).subtract(u[2].multiply(v[1])),
+            u[2].multiply(v[0]).subtract(u[0].multiply(v[2])),
+            u[0].multiply(v[1]).subtract(u[1].multiply(v[0]))};
+    }
+
+    private static BigRational[] subtract(BigRational[] u, BigRational[] v) {
+        return new BigRational[]{u[0].subtract(v[0]), u[1].subtract(v[1]),
+            u[2].subtract(v[2])};
+    }
+
+    private static boolean isZero(BigRational[] u) {
+        return u[0].signum() == 0 && u[1].signum() == 0
+                && u[2].signum() == 0;
+    }
+}
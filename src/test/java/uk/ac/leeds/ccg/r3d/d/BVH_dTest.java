@@ -0,0 +1,63 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Triangle_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * Tests for BVH_d.
+ *
+ * @author Andy Turner
+ */
+public class BVH_dTest {
+
+    public BVH_dTest() {
+    }
+
+    /**
+     * Test that a ray with zero direction components whose origin is on the
+     * faces of the box of the root node is not rejected. The triangle has an
+     * edge at x = 0 and the rays go along the z axis so they hit this edge.
+     */
+    @Test
+    public void testGetClosestOriginOnFace() {
+        V3D_Environment_d env = new V3D_Environment_d();
+        ArrayList<Area_d> areas = new ArrayList<>();
+        areas.add(new Area_d(new V3D_Triangle_d(env, V3D_Vector_d.ZERO,
+                new V3D_Vector_d(0d, -1d, 1d), new V3D_Vector_d(0d, 1d, 1d),
+                new V3D_Vector_d(1d, 0d, 1d)), Color.YELLOW));
+        BVH_d bvh = new BVH_d(areas);
+        double[] t = new double[1];
+        int i = bvh.getClosest(0d, 0d, 0d, 0d, 0d, 1d,
+                Double.POSITIVE_INFINITY, t, 0d);
+        assertEquals(0, i);
+        assertEquals(1d, t[0], 1e-12);
+        assertTrue(bvh.isIntersected(0d, 0d, 0d, 0d, 0d, 1d, 0d,
+                Double.POSITIVE_INFINITY, 0d));
+        // The same from the other side.
+        i = bvh.getClosest(0d, 0d, 2d, 0d, 0d, -1d,
+                Double.POSITIVE_INFINITY, t, 0d);
+        assertEquals(0, i);
+        assertEquals(1d, t[0], 1e-12);
+    }
+}
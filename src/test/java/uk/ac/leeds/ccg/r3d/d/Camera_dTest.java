@@ -0,0 +1,332 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.r3d.RenderControl;
+import uk.ac.leeds.ccg.r3d.SceneGenerator;
+import uk.ac.leeds.ccg.r3d.SceneGenerator.Scene;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Rectangle_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * Tests for Camera_d rendering small generated scenes.
+ *
+ * @author Andy Turner
+ */
+public class Camera_dTest {
+
+    /**
+     * The tolerance within which vector components are regarded as equal.
+     */
+    static final double EPSILON = 1d / 10000000d;
+
+    /**
+     * The number of rows and columns of pixels.
+     */
+    static final int N = 64;
+
+    public Camera_dTest() {
+    }
+
+    /**
+     * Create a universe for a generated scene.
+     *
+     * @param scene The type of scene.
+     * @param n The number of triangles asked for.
+     * @return The universe.
+     */
+    static Universe_d getUniverse(Scene scene, long n) {
+        return new Universe_d(new V3D_Environment_d(),
+                new SceneGenerator(scene, n, 7L), V3D_Vector_d.ZERO,
+                Color.YELLOW);
+    }
+
+    /**
+     * Create a camera looking along the z axis at a universe so that it fills
+     * the view.
+     *
+     * @param u The universe.
+     * @param onAxis If true, then the camera is on the axis through the
+     * centroid of the AABB of the universe, so that for symmetric scenes
+     * edges line up with the pixels, otherwise it is slightly off the axis so
+     * that no edges line up with the pixels.
+     * @return The camera.
+     */
+    static Camera_d getCamera(Universe_d u, boolean onAxis) {
+        V3D_Environment_d env = u.env;
+        V3D_Point_d c = u.aabb.getCentroid();
+        double r = u.aabb.getPointsArray()[0].getDistance(c);
+        double cx = onAxis ? c.getX() : c.getX() + r / 10d;
+        double cy = onAxis ? c.getY() : c.getY() - r / 20d;
+        double fz = c.getZ() - 2.5d * r;
+        double x = N / 2d;
+        double z = fz + N;
+        V3D_Rectangle_d rect = new V3D_Rectangle_d(
+                new V3D_Point_d(env, cx - x, cy - x, z),
+                new V3D_Point_d(env, cx - x, cy + x, z),
+                new V3D_Point_d(env, cx + x, cy + x, z),
+                new V3D_Point_d(env, cx + x, cy - x, z));
+        V3D_Point_d focus = new V3D_Point_d(env, cx, cy, fz);
+        Camera_d camera = new Camera_d(env, V3D_Vector_d.ZERO, focus, rect,
+                new Dimension(N, N));
+        u.setCamera(camera);
+        return camera;
+    }
+
+    /**
+     * Render a universe.
+     *
+     * @param u The universe.
+     * @param engine The engine.
+     * @param parallelism The number of threads to use.
+     * @param onAxis Passed to {@link #getCamera(Universe_d, boolean)}.
+     * @return The frame buffer.
+     */
+    static FrameBuffer_d render(Universe_d u, Camera_d.Engine engine,
+            int parallelism, boolean onAxis) throws Exception {
+        return render(u, engine, parallelism, onAxis, false);
+    }
+
+    /**
+     * Render a universe.
+     *
+     * @param u The universe.
+     * @param engine The engine.
+     * @param parallelism The number of threads to use.
+     * @param onAxis Passed to {@link #getCamera(Universe_d, boolean)}.
+     * @param cullBackFaces What {@link Camera_d#cullBackFaces} is set to.
+     * @return The frame buffer.
+     */
+    static FrameBuffer_d render(Universe_d u, Camera_d.Engine engine,
+            int parallelism, boolean onAxis, boolean cullBackFaces)
+            throws Exception {
+        Camera_d camera = getCamera(u, onAxis);
+        camera.engine = engine;
+        camera.cullBackFaces = cullBackFaces;
+        camera.render(u, new V3D_Vector_d(-1, -2, -3).getUnitVector(),
+                1d / 20d, false, false, parallelism, EPSILON);
+        return camera.frameBuffer;
+    }
+
+    /**
+     * @param fb The frame buffer.
+     * @return The number of pixels with an area.
+     */
+    static int getCovered(FrameBuffer_d fb) {
+        int covered = 0;
+        for (int i : fb.id) {
+            if (i != FrameBuffer_d.NO_ID) {
+                covered++;
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * Test that rendering areas in parallel tiles gives the same frame buffer
+     * as rendering them serially.
+     */
+    @Test
+    public void testRenderParallel() throws Exception {
+        for (Scene scene : Scene.values()) {
+            Universe_d u = getUniverse(scene, 2000L);
+            FrameBuffer_d serial = render(u, Camera_d.Engine.AREA, 1, false);
+            FrameBuffer_d parallel = render(u, Camera_d.Engine.AREA, 4, false);
+            assertTrue(getCovered(serial) > N * N / 10, scene.name());
+            assertArrayEquals(serial.id, parallel.id, scene.name());
+            assertArrayEquals(serial.depth, parallel.depth, scene.name());
+        }
+    }
+
+    /**
+     * Test that the RASTER engine gives the same frame buffer as the AREA
+     * engine: the same area is rendered through each pixel and the depths
+     * agree to within a relative tolerance. This is tested with the camera
+     * off and on axis, and with and without parallelism.
+     */
+    @Test
+    public void testRenderRaster() throws Exception {
+        for (Scene scene : Scene.values()) {
+            Universe_d u = getUniverse(scene, 2000L);
+            for (boolean onAxis : new boolean[]{false, true}) {
+                FrameBuffer_d area = render(u, Camera_d.Engine.AREA, 1,
+                        onAxis);
+                String m = scene + " onAxis " + onAxis;
+                assertTrue(getCovered(area) > N * N / 10, m);
+                for (int parallelism : new int[]{1, 4}) {
+                    FrameBuffer_d raster = render(u, Camera_d.Engine.RASTER,
+                            parallelism, onAxis);
+                    String mp = m + " parallelism " + parallelism;
+                    assertArrayEquals(area.id, raster.id, mp);
+                    for (int i = 0; i < area.depth.length; i++) {
+                        if (!area.isEmpty(i)) {
+                            assertEquals(area.depth[i], raster.depth[i],
+                                    area.depth[i] * 1e-9, mp);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that the RASTER engine gives the same frame buffer whatever the
+     * parallelism, so however the screen is divided into tiles.
+     */
+    @Test
+    public void testRenderRasterParallel() throws Exception {
+        for (Scene scene : Scene.values()) {
+            Universe_d u = getUniverse(scene, 2000L);
+            for (boolean onAxis : new boolean[]{false, true}) {
+                FrameBuffer_d serial = render(u, Camera_d.Engine.RASTER, 1,
+                        onAxis);
+                FrameBuffer_d parallel = render(u, Camera_d.Engine.RASTER, 4,
+                        onAxis);
+                String m = scene + " onAxis " + onAxis;
+                assertArrayEquals(serial.id, parallel.id, m);
+                assertArrayEquals(serial.depth, parallel.depth, m);
+            }
+        }
+    }
+
+    /**
+     * Test that culling back faces of a closed surface does not change what
+     * is rendered, so no ray through an edge shared by two front faces misses
+     * both of them.
+     */
+    @Test
+    public void testRenderCullBackFaces() throws Exception {
+        for (long n : new long[]{1000L, 10000L}) {
+            Universe_d u = getUniverse(Scene.SPHERE, n);
+            assertTrue(u.closed);
+            for (Camera_d.Engine engine : Camera_d.Engine.values()) {
+                for (boolean onAxis : new boolean[]{false, true}) {
+                    FrameBuffer_d all = render(u, engine, 1, onAxis, false);
+                    FrameBuffer_d culled = render(u, engine, 1, onAxis, true);
+                    String m = n + " " + engine + " onAxis " + onAxis;
+                    assertArrayEquals(all.id, culled.id, m);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that the progress of a render in the background reaches its total
+     * for each engine, serially and in parallel, and that the image is the
+     * same as for rendering in the foreground.
+     */
+    @Test
+    public void testRenderAsyncProgress() throws Exception {
+        Universe_d u = getUniverse(Scene.SPHERE, 2000L);
+        V3D_Vector_d lighting = new V3D_Vector_d(-1, -2, -3).getUnitVector();
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        try {
+            for (Camera_d.Engine engine : Camera_d.Engine.values()) {
+                for (int parallelism : new int[]{1, 4}) {
+                    String m = engine + " " + parallelism;
+                    Camera_d camera = getCamera(u, false);
+                    camera.engine = engine;
+                    int[] e = camera.render(u, lighting, 1d / 20d, false,
+                            false, parallelism, EPSILON);
+                    AtomicLong done = new AtomicLong();
+                    AtomicLong total = new AtomicLong();
+                    int[] a = camera.renderAsync(u, lighting, 1d / 20d, false,
+                            false, parallelism, EPSILON, (d, t) -> {
+                                done.accumulateAndGet(d, Math::max);
+                                total.set(t);
+                            }, es).get();
+                    assertArrayEquals(e, a, m);
+                    assertTrue(total.get() > 0L, m);
+                    assertEquals(total.get(), done.get(), m);
+                }
+            }
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    /**
+     * Test that cancelling the future of a render in the background stops the
+     * render with a {@link CancellationException} before it is done. The
+     * render is submitted as in {@link Camera_d#renderAsync} so that what it
+     * throws can be seen. Each report of progress waits until the future is
+     * cancelled, so the render cannot finish first.
+     */
+    @Test
+    public void testRenderAsyncCancel() throws Exception {
+        Universe_d u = getUniverse(Scene.SPHERE, 2000L);
+        V3D_Vector_d lighting = new V3D_Vector_d(-1, -2, -3).getUnitVector();
+        for (Camera_d.Engine engine : Camera_d.Engine.values()) {
+            for (int parallelism : new int[]{1, 4}) {
+                String m = engine + " " + parallelism;
+                Camera_d camera = getCamera(u, false);
+                camera.engine = engine;
+                CountDownLatch started = new CountDownLatch(1);
+                CountDownLatch cancelled = new CountDownLatch(1);
+                AtomicReference<RenderControl> control = new AtomicReference<>();
+                AtomicReference<Exception> thrown = new AtomicReference<>();
+                ExecutorService es = Executors.newSingleThreadExecutor();
+                try {
+                    CompletableFuture<int[]> f = RenderControl.submit(c -> {
+                        control.set(c);
+                        try {
+                            return camera.render(u, lighting, 1d / 20d, false,
+                                    false, parallelism, EPSILON, c);
+                        } catch (Exception ex) {
+                            thrown.set(ex);
+                            throw ex;
+                        }
+                    }, (d, t) -> {
+                        started.countDown();
+                        try {
+                            cancelled.await();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }, es);
+                    assertTrue(started.await(1, TimeUnit.MINUTES), m);
+                    assertTrue(f.cancel(true), m);
+                    cancelled.countDown();
+                    assertThrows(CancellationException.class, () -> f.get(),
+                            m);
+                } finally {
+                    cancelled.countDown();
+                    es.shutdown();
+                }
+                assertTrue(es.awaitTermination(1, TimeUnit.MINUTES), m);
+                assertTrue(control.get().isCancelled(), m);
+                assertTrue(thrown.get() instanceof CancellationException,
+                        m + " " + thrown.get());
+                assertTrue(control.get().getDone() < control.get().getTotal(),
+                        m);
+            }
+        }
+    }
+}
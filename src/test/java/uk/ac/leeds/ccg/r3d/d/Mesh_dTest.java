@@ -0,0 +1,191 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Triangle_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * Tests for Mesh_d.
+ *
+ * @author Andy Turner
+ */
+public class Mesh_dTest {
+
+    public Mesh_dTest() {
+    }
+
+    /**
+     * Create a mesh of a grid of n by n squares each split into two
+     * triangles.
+     *
+     * @param n The number of squares along each side.
+     * @return The mesh.
+     */
+    static Mesh_d getGrid(int n) {
+        Mesh_d m = new Mesh_d(new V3D_Environment_d(),
+                new V3D_Vector_d(1d, 2d, 3d), 1);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int p = m.addVertex(i, j, 0d);
+                int q = m.addVertex(i + 1, j, 0d);
+                int r = m.addVertex(i + 1, j + 1, 0d);
+                int s = m.addVertex(i, j + 1, 0d);
+                m.addTriangle(p, q, r, 0d, 0d, 1d, (short) i);
+                m.addTriangle(p, r, s, 0d, 0d, 1d, (short) j);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Test that vertices with the same coordinates are welded, including 0
+     * and -0, and that others are not, as the arrays and hash table grow.
+     */
+    @Test
+    public void testAddVertex() {
+        Mesh_d m = new Mesh_d(new V3D_Environment_d(), V3D_Vector_d.ZERO, 1);
+        assertEquals(0, m.addVertex(0d, 0d, 0d));
+        assertEquals(0, m.addVertex(-0d, 0d, -0d));
+        assertEquals(1, m.addVertex(0d, 0d, Double.MIN_VALUE));
+        assertEquals(2, m.nVertices);
+        Random r = new Random(23L);
+        int n = 10000;
+        double[] c = new double[n * 3];
+        int[] v = new int[n];
+        for (int i = 0; i < n; i++) {
+            // Few distinct values so there are many duplicates.
+            for (int k = 0; k < 3; k++) {
+                c[i * 3 + k] = r.nextInt(30) / 4d;
+            }
+            v[i] = m.addVertex(c[i * 3], c[i * 3 + 1], c[i * 3 + 2]);
+            assertEquals(c[i * 3], m.vertices[v[i] * 3]);
+            assertEquals(c[i * 3 + 1], m.vertices[v[i] * 3 + 1]);
+            assertEquals(c[i * 3 + 2], m.vertices[v[i] * 3 + 2]);
+        }
+        int nVertices = m.nVertices;
+        for (int i = 0; i < n; i++) {
+            assertEquals(v[i], m.addVertex(c[i * 3], c[i * 3 + 1],
+                    c[i * 3 + 2]), "i " + i);
+            for (int j = 0; j < i; j++) {
+                if (v[j] == v[i]) {
+                    assertEquals(c[j * 3], c[i * 3]);
+                    assertEquals(c[j * 3 + 1], c[i * 3 + 1]);
+                    assertEquals(c[j * 3 + 2], c[i * 3 + 2]);
+                    break;
+                }
+            }
+        }
+        assertEquals(nVertices, m.nVertices);
+        // A grid of n by n squares has (n + 1)^2 vertices.
+        Mesh_d g = getGrid(20);
+        assertEquals(21 * 21, g.nVertices);
+        assertEquals(2 * 20 * 20, g.nTriangles);
+    }
+
+    /**
+     * Test that trim shrinks the arrays to fit without changing them and
+     * that no vertices can then be added.
+     */
+    @Test
+    public void testTrim() {
+        Mesh_d m = getGrid(7);
+        double[] vertices = Arrays.copyOf(m.vertices, m.nVertices * 3);
+        int[] triangles = Arrays.copyOf(m.triangles, m.nTriangles * 3);
+        double[] normals = Arrays.copyOf(m.normals, m.nTriangles * 3);
+        short[] attributes = Arrays.copyOf(m.attributes, m.nTriangles);
+        m.trim();
+        assertArrayEquals(vertices, m.vertices);
+        assertArrayEquals(triangles, m.triangles);
+        assertArrayEquals(normals, m.normals);
+        assertArrayEquals(attributes, m.attributes);
+        assertThrows(IllegalStateException.class,
+                () -> m.addVertex(0d, 0d, 0d));
+        // Triangles can still be added.
+        m.addTriangle(0, 1, 2, 0d, 0d, 1d, (short) 0);
+        assertEquals(2 * 7 * 7 + 1, m.nTriangles);
+    }
+
+    /**
+     * Test that getTriangle returns the same triangle while it is cached, a
+     * new one once another triangle has taken its place, and triangles with
+     * the coordinates of the mesh when used from several threads.
+     */
+    @Test
+    public void testGetTriangle() throws Exception {
+        Mesh_d m = getGrid(40);
+        m.trim();
+        int n = m.nTriangles;
+        assertTrue(n > 2 * Mesh_d.CACHE_SIZE);
+        V3D_Triangle_d t0 = m.getTriangle(5);
+        assertSame(t0, m.getTriangle(5));
+        // A triangle that is not cached in its place does not replace it.
+        m.getTriangle(6);
+        assertSame(t0, m.getTriangle(5));
+        // One that is does.
+        m.getTriangle(5 + Mesh_d.CACHE_SIZE);
+        V3D_Triangle_d t1 = m.getTriangle(5);
+        assertNotSame(t0, t1);
+        assertCoords(m, 5, t1);
+        ExecutorService es = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> fs = new ArrayList<>();
+            for (int k = 0; k < 4; k++) {
+                long seed = k;
+                fs.add(es.submit(() -> {
+                    Random r = new Random(seed);
+                    for (int i = 0; i < 20000; i++) {
+                        int t = r.nextInt(n);
+                        assertCoords(m, t, m.getTriangle(t));
+                    }
+                }));
+            }
+            for (Future<?> f : fs) {
+                f.get();
+            }
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    /**
+     * Assert that the coordinates of a triangle are those of a triangle of a
+     * mesh.
+     *
+     * @param m The mesh.
+     * @param t The index of the triangle in m.
+     * @param triangle The triangle.
+     */
+    static void assertCoords(Mesh_d m, int t, V3D_Triangle_d triangle) {
+        double[] e = new double[9];
+        double[] a = new double[9];
+        m.getCoords(t, e, 0);
+        RayTriangle_d.getCoords(triangle, a, 0);
+        assertArrayEquals(e, a, "t " + t);
+        RayTriangle_d.getCoords(m.createTriangle(t), a, 0);
+        assertArrayEquals(e, a, "t " + t);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Ray_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Triangle_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * Tests for RayTriangle_d.
+ *
+ * @author Andy Turner
+ */
+public class RayTriangle_dTest {
+
+    /**
+     * A triangle in the plane z = 5 with corners (0, 0), (2, 0) and (0, 2).
+     */
+    static final double[] T = {0d, 0d, 5d, 2d, 0d, 5d, 0d, 2d, 5d};
+
+    public RayTriangle_dTest() {
+    }
+
+    /**
+     * @param ox The x coordinate of the ray origin.
+     * @param oy The y coordinate of the ray origin.
+     * @param oz The z coordinate of the ray origin.
+     * @param dx The x component of the ray direction.
+     * @param dy The y component of the ray direction.
+     * @param dz The z component of the ray direction.
+     * @return The distance along the ray to where it intersects {@link #T}.
+     */
+    static double getIntersect(double ox, double oy, double oz, double dx,
+            double dy, double dz) {
+        return RayTriangle_d.getIntersect(ox, oy, oz, dx, dy, dz, T, 0);
+    }
+
+    /**
+     * Test a ray through the inside of the triangle, in either winding and
+     * with a direction that is not a unit vector.
+     */
+    @Test
+    public void testGetIntersectInside() {
+        assertEquals(5d, getIntersect(0.5d, 0.5d, 0d, 0d, 0d, 1d), 1e-12);
+        assertEquals(2.5d, getIntersect(0.5d, 0.5d, 0d, 0d, 0d, 2d), 1e-12);
+        assertEquals(3d, getIntersect(0.5d, 0.5d, 8d, 0d, 0d, -1d), 1e-12);
+        double[] c = {0d, 0d, 5d, 0d, 2d, 5d, 2d, 0d, 5d};
+        assertEquals(5d, RayTriangle_d.getIntersect(0.5d, 0.5d, 0d, 0d, 0d,
+                1d, c, 0), 1e-12);
+        // An offset index.
+        double[] d = new double[12];
+        System.arraycopy(T, 0, d, 3, 9);
+        assertEquals(5d, RayTriangle_d.getIntersect(0.5d, 0.5d, 0d, 0d, 0d,
+                1d, d, 3), 1e-12);
+    }
+
+    /**
+     * Test that rays through edges and corners intersect and rays just
+     * outside them do not.
+     */
+    @Test
+    public void testGetIntersectEdges() {
+        // Edges.
+        assertEquals(5d, getIntersect(1d, 0d, 0d, 0d, 0d, 1d), 1e-12);
+        assertEquals(5d, getIntersect(0d, 1d, 0d, 0d, 0d, 1d), 1e-12);
+        assertEquals(5d, getIntersect(1d, 1d, 0d, 0d, 0d, 1d), 1e-12);
+        // Corners.
+        assertEquals(5d, getIntersect(0d, 0d, 0d, 0d, 0d, 1d), 1e-12);
+        assertEquals(5d, getIntersect(2d, 0d, 0d, 0d, 0d, 1d), 1e-12);
+        assertEquals(5d, getIntersect(0d, 2d, 0d, 0d, 0d, 1d), 1e-12);
+        // Just outside.
+        double e = 1e-6;
+        assertTrue(Double.isNaN(getIntersect(1d, -e, 0d, 0d, 0d, 1d)));
+        assertTrue(Double.isNaN(getIntersect(-e, 1d, 0d, 0d, 0d, 1d)));
+        assertTrue(Double.isNaN(getIntersect(1d + e, 1d, 0d, 0d, 0d, 1d)));
+        assertTrue(Double.isNaN(getIntersect(-e, -e, 0d, 0d, 0d, 1d)));
+    }
+
+    /**
+     * Test that a ray through a shared edge intersects both triangles,
+     * whatever the order of their corners.
+     */
+    @Test
+    public void testGetIntersectSharedEdge() {
+        Random r = new Random(3L);
+        for (int i = 0; i < 10000; i++) {
+            double[] p = {r.nextDouble(), r.nextDouble(), r.nextDouble()};
+            double[] q = {r.nextDouble(), r.nextDouble(), r.nextDouble()};
+            double[] a = {r.nextDouble(), r.nextDouble(), r.nextDouble()};
+            double[] b = {r.nextDouble(), r.nextDouble(), r.nextDouble()};
+            double[] c0 = {p[0], p[1], p[2], q[0], q[1], q[2], a[0], a[1],
+                a[2]};
+            double[] c1 = {q[0], q[1], q[2], p[0], p[1], p[2], b[0], b[1],
+                b[2]};
+            // A ray from a random origin through a point on pq.
+            double s = r.nextDouble();
+            double ox = 4d * r.nextDouble() - 2d;
+            double oy = 4d * r.nextDouble() - 2d;
+            double oz = 4d * r.nextDouble() - 2d;
+            double dx = p[0] + (q[0] - p[0]) * s - ox;
+            double dy = p[1] + (q[1] - p[1]) * s - oy;
+            double dz = p[2] + (q[2] - p[2]) * s - oz;
+            double t0 = RayTriangle_d.getIntersect(ox, oy, oz, dx, dy, dz, c0,
+                    0);
+            double t1 = RayTriangle_d.getIntersect(ox, oy, oz, dx, dy, dz, c1,
+                    0);
+            assertFalse(Double.isNaN(t0) && Double.isNaN(t1), "i " + i);
+        }
+    }
+
+    /**
+     * Test that rays parallel to the triangle, in its plane or not, do not
+     * intersect it, nor do triangles with no area.
+     */
+    @Test
+    public void testGetIntersectParallel() {
+        assertTrue(Double.isNaN(getIntersect(-1d, 0.5d, 4d, 1d, 0d, 0d)));
+        assertTrue(Double.isNaN(getIntersect(-1d, 0.5d, 5d, 1d, 0d, 0d)));
+        assertTrue(Double.isNaN(getIntersect(0.5d, 0.5d, 0d, 0d, 0d, 0d)));
+        double[] c = {0d, 0d, 5d, 1d, 1d, 5d, 2d, 2d, 5d};
+        assertTrue(Double.isNaN(RayTriangle_d.getIntersect(1d, 1d, 0d, 0d, 0d,
+                1d, c, 0)));
+    }
+
+    /**
+     * Test that triangles behind the ray origin or at it are not intersected.
+     */
+    @Test
+    public void testGetIntersectBehind() {
+        assertTrue(Double.isNaN(getIntersect(0.5d, 0.5d, 0d, 0d, 0d, -1d)));
+        assertTrue(Double.isNaN(getIntersect(0.5d, 0.5d, 10d, 0d, 0d, 1d)));
+        assertTrue(Double.isNaN(getIntersect(0.5d, 0.5d, 5d, 0d, 0d, 1d)));
+    }
+
+    /**
+     * Test that the intersections agree with
+     * {@link V3D_Triangle_d#getIntersectNonCoplanar(V3D_Ray_d, double)} for
+     * random triangles and rays, other than for rays very near an edge.
+     */
+    @Test
+    public void testGetIntersectAgrees() {
+        V3D_Environment_d env = new V3D_Environment_d();
+        double epsilon = 1d / 10000000d;
+        Random r = new Random(7L);
+        int hits = 0;
+        double[] c = new double[9];
+        for (int i = 0; i < 2000; i++) {
+            for (int j = 0; j < 9; j++) {
+                c[j] = 4d * r.nextDouble() - 2d;
+            }
+            V3D_Triangle_d t = new V3D_Triangle_d(
+                    new V3D_Point_d(env, c[0], c[1], c[2]),
+                    new V3D_Point_d(env, c[3], c[4], c[5]),
+                    new V3D_Point_d(env, c[6], c[7], c[8]));
+            double ox = 6d * r.nextDouble() - 3d;
+            double oy = 6d * r.nextDouble() - 3d;
+            double oz = 6d * r.nextDouble() - 3d;
+            // Aim at a point in the plane of the triangle, inside or not.
+            double u = 2d * r.nextDouble() - 0.5d;
+            double v = 2d * r.nextDouble() - 0.5d;
+            V3D_Vector_d d = new V3D_Vector_d(
+                    c[0] + (c[3] - c[0]) * u + (c[6] - c[0]) * v - ox,
+                    c[1] + (c[4] - c[1]) * u + (c[7] - c[1]) * v - oy,
+                    c[2] + (c[5] - c[2]) * u + (c[8] - c[2]) * v - oz)
+                    .getUnitVector();
+            // Skip rays very near an edge, where rounding may differ.
+            if (isNearEdge(c, ox, oy, oz, d.dx, d.dy, d.dz, 1e-6)) {
+                continue;
+            }
+            double[] rc = new double[9];
+            RayTriangle_d.getCoords(t, rc, 0);
+            double td = RayTriangle_d.getIntersect(ox, oy, oz, d.dx, d.dy,
+                    d.dz, rc, 0);
+            V3D_Point_d o = new V3D_Point_d(env, ox, oy, oz);
+            V3D_Point_d ti = t.getIntersectNonCoplanar(new V3D_Ray_d(o, d),
+                    epsilon);
+            String m = "i " + i;
+            if (ti == null) {
+                assertTrue(Double.isNaN(td), m);
+            } else {
+                hits++;
+                assertFalse(Double.isNaN(td), m);
+                assertEquals(ox + td * d.dx, ti.getX(), 1e-9, m);
+                assertEquals(oy + td * d.dy, ti.getY(), 1e-9, m);
+                assertEquals(oz + td * d.dz, ti.getZ(), 1e-9, m);
+            }
+        }
+        assertTrue(hits > 100, "hits " + hits);
+    }
+
+    /**
+     * @return true if the barycentric coordinates of the intersection of the
+     * line of the ray with the plane of the triangle are within e of 0, or if
+     * the ray is nearly parallel to the plane.
+     */
+    static boolean isNearEdge(double[] c, double ox, double oy, double oz,
+            double dx, double dy, double dz, double e) {
+        double e1x = c[3] - c[0], e1y = c[4] - c[1], e1z = c[5] - c[2];
+        double e2x = c[6] - c[0], e2y = c[7] - c[1], e2z = c[8] - c[2];
+        double hx = dy * e2z - dz * e2y;
+        double hy = dz * e2x - dx * e2z;
+        double hz = dx * e2y - dy * e2x;
+        double det = e1x * hx + e1y * hy + e1z * hz;
+        if (Math.abs(det) < e) {
+            return true;
+        }
+        double sx = ox - c[0], sy = oy - c[1], sz = oz - c[2];
+        double u = (sx * hx + sy * hy + sz * hz) / det;
+        double qx = sy * e1z - sz * e1y;
+        double qy = sz * e1x - sx * e1z;
+        double qz = sx * e1y - sy * e1x;
+        double v = (dx * qx + dy * qy + dz * qz) / det;
+        double t = (e2x * qx + e2y * qy + e2z * qz) / det;
+        return Math.abs(u) < e || Math.abs(v) < e || Math.abs(1d - u - v) < e
+                || Math.abs(t) < e;
+    }
+}
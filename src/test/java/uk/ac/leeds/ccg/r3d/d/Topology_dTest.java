@@ -0,0 +1,131 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.r3d.SceneGenerator;
+import uk.ac.leeds.ccg.r3d.SceneGenerator.Scene;
+
+/**
+ * Tests for Topology_d.
+ *
+ * @author Andy Turner
+ */
+public class Topology_dTest {
+
+    public Topology_dTest() {
+    }
+
+    /**
+     * Get the coordinates of the corners of the triangles of a generated
+     * scene.
+     *
+     * @param g The scene generator.
+     * @return The coordinates.
+     */
+    static double[] getCoords(SceneGenerator g) throws IOException {
+        double[] c = new double[(int) g.getNumberOfTriangles() * 9];
+        int[] i = new int[1];
+        g.generate((px, py, pz, qx, qy, qz, rx, ry, rz) -> {
+            for (double x : new double[]{px, py, pz, qx, qy, qz, rx, ry, rz}) {
+                c[i[0]] = x;
+                i[0]++;
+            }
+        });
+        return c;
+    }
+
+    /**
+     * Test that the topology is the same as from counting points and edges
+     * with maps, for each type of scene and with and without parallelism.
+     */
+    @Test
+    public void testOf() throws Exception {
+        for (Scene scene : Scene.values()) {
+            SceneGenerator g = new SceneGenerator(scene, 5000L, 3L);
+            double[] c = getCoords(g);
+            int n = c.length / 9;
+            // Count with maps.
+            HashMap<List<Double>, Integer> ids = new HashMap<>();
+            HashMap<Integer, Integer> pointCounts = new HashMap<>();
+            HashMap<Long, Integer> edgeCounts = new HashMap<>();
+            int[] p = new int[3];
+            for (int t = 0; t < n; t++) {
+                for (int j = 0; j < 3; j++) {
+                    int k = t * 9 + j * 3;
+                    // Adding 0 turns -0 into 0.
+                    List<Double> key = List.of(c[k] + 0d, c[k + 1] + 0d,
+                            c[k + 2] + 0d);
+                    p[j] = ids.computeIfAbsent(key, x -> ids.size());
+                    pointCounts.merge(p[j], 1, Integer::sum);
+                }
+                for (int j = 0; j < 3; j++) {
+                    int a = Math.min(p[j], p[(j + 1) % 3]);
+                    int b = Math.max(p[j], p[(j + 1) % 3]);
+                    edgeCounts.merge(((long) a << 32) | b, 1, Integer::sum);
+                }
+            }
+            for (int parallelism : new int[]{1, 4}) {
+                Topology_d tp = Topology_d.of(c, n, parallelism);
+                String m = scene + " parallelism " + parallelism;
+                assertEquals(ids.size(), tp.nPoints, m);
+                assertEquals(edgeCounts.size(), tp.nEdges, m);
+                assertEquals(min(pointCounts), tp.minPointCount, m);
+                assertEquals(max(pointCounts), tp.maxPointCount, m);
+                assertEquals(min(edgeCounts), tp.minEdgeCount, m);
+                assertEquals(max(edgeCounts), tp.maxEdgeCount, m);
+                assertEquals(min(edgeCounts) == 2 && max(edgeCounts) == 2,
+                        tp.isClosed(), m);
+            }
+        }
+    }
+
+    /**
+     * Test the topology of a closed tetrahedron and of the open surface left
+     * after removing one of its faces.
+     */
+    @Test
+    public void testConstructor() throws Exception {
+        int[] triangles = {0, 1, 2, 0, 3, 1, 1, 3, 2, 2, 3, 0};
+        for (int parallelism : new int[]{1, 4}) {
+            Topology_d t = new Topology_d(4, triangles, 4, parallelism);
+            assertEquals(6, t.nEdges);
+            assertEquals(3, t.minPointCount);
+            assertEquals(3, t.maxPointCount);
+            assertTrue(t.isClosed());
+            t = new Topology_d(4, Arrays.copyOf(triangles, 9), 3, parallelism);
+            assertEquals(6, t.nEdges);
+            assertEquals(2, t.minPointCount);
+            assertEquals(3, t.maxPointCount);
+            assertEquals(1, t.minEdgeCount);
+            assertEquals(2, t.maxEdgeCount);
+            assertFalse(t.isClosed());
+        }
+    }
+
+    private static int min(HashMap<?, Integer> m) {
+        return m.values().stream().mapToInt(x -> x).min().orElse(0);
+    }
+
+    private static int max(HashMap<?, Integer> m) {
+        return m.values().stream().mapToInt(x -> x).max().orElse(0);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.r3d.SceneGenerator;
+import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
+import uk.ac.leeds.ccg.r3d.io.d.STL_Reader_d;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_AABB_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * Tests for UniverseSnapshot_d.
+ *
+ * @author Andy Turner
+ */
+public class UniverseSnapshot_dTest {
+
+    public UniverseSnapshot_dTest() {
+    }
+
+    /**
+     * Write a generated closed scene to a binary STL file.
+     *
+     * @param dir The directory to write to.
+     * @return The path of the file.
+     */
+    static Path writeSTL(Path dir) throws IOException {
+        Path stl = dir.resolve("sphere.stl");
+        new SceneGenerator(SceneGenerator.Scene.SPHERE, 1000L, 1L)
+                .writeBinary(stl);
+        return stl;
+    }
+
+    /**
+     * Delete a directory and everything in it.
+     *
+     * @param dir The directory.
+     */
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /**
+     * Assert that the bounds of two AABBs are the same.
+     *
+     * @param e The expected AABB.
+     * @param a The actual AABB.
+     */
+    static void assertAABBEquals(V3D_AABB_d e, V3D_AABB_d a) {
+        assertEquals(e.getXMin(), a.getXMin());
+        assertEquals(e.getXMax(), a.getXMax());
+        assertEquals(e.getYMin(), a.getYMin());
+        assertEquals(e.getYMax(), a.getYMax());
+        assertEquals(e.getZMin(), a.getZMin());
+        assertEquals(e.getZMax(), a.getZMax());
+    }
+
+    /**
+     * Test that a universe read from a snapshot has the mesh, colours, AABB,
+     * closed flag and BVH of the universe written.
+     */
+    @Test
+    public void testWriteRead() throws Exception {
+        Path dir = Files.createTempDirectory("snapshot");
+        try {
+            V3D_Environment_d env = new V3D_Environment_d();
+            STL_Reader_d reader = new STL_Reader_d(env, true);
+            Mesh_d mesh = reader.readMesh(writeSTL(dir),
+                    new V3D_Vector_d(1d, 2d, 3d), 1d, false);
+            Universe_d u = new Universe_d(env, mesh, Color.YELLOW);
+            u.areas.get(1).color = Color.RED;
+            BVH_d bvh = u.getBVH();
+            Path p = dir.resolve("u.r3du");
+            UniverseSnapshot_d.write(u, p);
+            Universe_d r = UniverseSnapshot_d.read(env, p);
+            Mesh_d rm = r.mesh;
+            int n = mesh.nTriangles;
+            assertEquals(mesh.nVertices, rm.nVertices);
+            assertEquals(n, rm.nTriangles);
+            assertEquals(mesh.offset, rm.offset);
+            assertArrayEquals(Arrays.copyOf(mesh.vertices, mesh.nVertices * 3),
+                    Arrays.copyOf(rm.vertices, rm.nVertices * 3));
+            assertArrayEquals(Arrays.copyOf(mesh.triangles, n * 3),
+                    Arrays.copyOf(rm.triangles, n * 3));
+            assertArrayEquals(Arrays.copyOf(mesh.normals, n * 3),
+                    Arrays.copyOf(rm.normals, n * 3));
+            assertArrayEquals(Arrays.copyOf(mesh.attributes, n),
+                    Arrays.copyOf(rm.attributes, n));
+            assertEquals(n, r.areas.size());
+            for (int i = 0; i < n; i++) {
+                assertEquals(u.areas.get(i).color, r.areas.get(i).color);
+            }
+            assertAABBEquals(u.aabb, r.aabb);
+            assertTrue(u.closed);
+            assertEquals(u.closed, r.closed);
+            assertEquals(u.closed, rm.closed);
+            BVH_d rb = r.bvh;
+            assertNotNull(rb);
+            assertEquals(bvh.nNodes, rb.nNodes);
+            assertEquals(bvh.depth, rb.depth);
+            assertArrayEquals(bvh.index, rb.index);
+            assertArrayEquals(Arrays.copyOf(bvh.nodeBounds, bvh.nNodes * 6),
+                    Arrays.copyOf(rb.nodeBounds, rb.nNodes * 6));
+            assertArrayEquals(Arrays.copyOf(bvh.nodeRight, bvh.nNodes),
+                    Arrays.copyOf(rb.nodeRight, rb.nNodes));
+            assertArrayEquals(Arrays.copyOf(bvh.nodeStart, bvh.nNodes),
+                    Arrays.copyOf(rb.nodeStart, rb.nNodes));
+            assertArrayEquals(Arrays.copyOf(bvh.nodeCount, bvh.nNodes),
+                    Arrays.copyOf(rb.nodeCount, rb.nNodes));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Test that a universe not created from a mesh is written with a mesh
+     * made from the coordinates of its areas and without a BVH if that has
+     * not been built.
+     */
+    @Test
+    public void testWriteReadAreas() throws Exception {
+        Path dir = Files.createTempDirectory("snapshot");
+        try {
+            V3D_Environment_d env = new V3D_Environment_d();
+            Universe_d u = new Universe_d(env, new SceneGenerator(
+                    SceneGenerator.Scene.TERRAIN, 1000L, 1L),
+                    V3D_Vector_d.ZERO, Color.GREEN);
+            Path p = dir.resolve("u.r3du");
+            UniverseSnapshot_d.write(u, p);
+            Universe_d r = UniverseSnapshot_d.read(env, p);
+            assertNull(r.bvh);
+            assertEquals(u.closed, r.closed);
+            assertAABBEquals(u.aabb, r.aabb);
+            assertEquals(u.areas.size(), r.areas.size());
+            double[] e = new double[9];
+            double[] a = new double[9];
+            for (int i = 0; i < u.areas.size(); i++) {
+                Area_d ua = u.areas.get(i);
+                Area_d ra = r.areas.get(i);
+                assertTrue(ua.getCoords(e, 0));
+                assertTrue(ra.getCoords(a, 0));
+                assertArrayEquals(e, a);
+                assertEquals(ua.color, ra.color);
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Test that reading a truncated snapshot, a snapshot of another version
+     * and a file that is not a snapshot throws an IOException.
+     */
+    @Test
+    public void testReadRejects() throws Exception {
+        Path dir = Files.createTempDirectory("snapshot");
+        try {
+            V3D_Environment_d env = new V3D_Environment_d();
+            Path p = dir.resolve("u.r3du");
+            UniverseSnapshot_d.getUniverse(env, writeSTL(dir), p,
+                    V3D_Vector_d.ZERO, Color.YELLOW, false, 1d, false);
+            byte[] b = Files.readAllBytes(p);
+            Path t = dir.resolve("t.r3du");
+            Files.write(t, Arrays.copyOf(b, b.length - 8));
+            assertThrows(IOException.class,
+                    () -> UniverseSnapshot_d.read(env, t));
+            byte[] v = b.clone();
+            ByteBuffer.wrap(v).order(ByteOrder.LITTLE_ENDIAN).putInt(4,
+                    UniverseSnapshot_d.VERSION + 1);
+            Files.write(t, v);
+            IOException ex = assertThrows(IOException.class,
+                    () -> UniverseSnapshot_d.read(env, t));
+            assertTrue(ex.getMessage().contains("version"));
+            Files.write(t, Arrays.copyOf(b, UniverseSnapshot_d.HEADER - 1));
+            assertThrows(IOException.class,
+                    () -> UniverseSnapshot_d.read(env, t));
+            b[0]++;
+            Files.write(t, b);
+            assertThrows(IOException.class,
+                    () -> UniverseSnapshot_d.read(env, t));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * @param p A path.
+     * @return The file key of p, which changes when a snapshot is rewritten
+     * as it is moved into place from a new file.
+     */
+    static Object getFileKey(Path p) throws IOException {
+        return Files.readAttributes(p, BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Test that getUniverse reuses a snapshot written with the same
+     * parameters and rebuilds it when the offset, colour, scale,
+     * assessTopology or initNormal differ.
+     */
+    @Test
+    public void testGetUniverse() throws Exception {
+        Path dir = Files.createTempDirectory("snapshot");
+        try {
+            V3D_Environment_d env = new V3D_Environment_d();
+            Path stl = writeSTL(dir);
+            Path p = dir.resolve("u.r3du");
+            V3D_Vector_d offset = V3D_Vector_d.ZERO;
+            Universe_d u = UniverseSnapshot_d.getUniverse(env, stl, p, offset,
+                    Color.YELLOW, true, 1d, false);
+            assertTrue(u.closed);
+            Object key = getFileKey(p);
+            assertNotNull(key);
+            u = UniverseSnapshot_d.getUniverse(env, stl, p, offset,
+                    Color.YELLOW, true, 1d, false);
+            assertEquals(key, getFileKey(p), "reused");
+            assertTrue(u.closed);
+            V3D_AABB_d aabb = u.aabb;
+            // Offset.
+            V3D_Vector_d offset2 = new V3D_Vector_d(1d, 0d, 0d);
+            u = UniverseSnapshot_d.getUniverse(env, stl, p, offset2,
+                    Color.YELLOW, true, 1d, false);
+            assertNotEquals(key, getFileKey(p), "offset");
+            assertEquals(offset2, u.mesh.offset);
+            assertEquals(aabb.getXMax() + 1d, u.aabb.getXMax(), 1e-12);
+            key = getFileKey(p);
+            // Colour.
+            u = UniverseSnapshot_d.getUniverse(env, stl, p, offset2,
+                    Color.RED, true, 1d, false);
+            assertNotEquals(key, getFileKey(p), "colour");
+            assertEquals(Color.RED, u.areas.get(0).color);
+            key = getFileKey(p);
+            // Scale.
+            u = UniverseSnapshot_d.getUniverse(env, stl, p, offset2,
+                    Color.RED, true, 2d, false);
+            assertNotEquals(key, getFileKey(p), "scale");
+            assertEquals(2d * aabb.getYMax(), u.aabb.getYMax(), 1e-12);
+            key = getFileKey(p);
+            // assessTopology.
+            u = UniverseSnapshot_d.getUniverse(env, stl, p, offset2,
+                    Color.RED, false, 2d, false);
+            assertNotEquals(key, getFileKey(p), "assessTopology");
+            assertFalse(u.closed);
+            key = getFileKey(p);
+            // initNormal.
+            u = UniverseSnapshot_d.getUniverse(env, stl, p, offset2,
+                    Color.RED, false, 2d, true);
+            assertNotEquals(key, getFileKey(p), "initNormal");
+            key = getFileKey(p);
+            u = UniverseSnapshot_d.getUniverse(env, stl, p, offset2,
+                    Color.RED, false, 2d, true);
+            assertEquals(key, getFileKey(p), "reused");
+            // A snapshot written by write is not reused.
+            UniverseSnapshot_d.write(u, p);
+            key = getFileKey(p);
+            UniverseSnapshot_d.getUniverse(env, stl, p, offset2, Color.RED,
+                    false, 2d, true);
+            assertNotEquals(key, getFileKey(p), "write");
+        } finally {
+            delete(dir);
+        }
+    }
+}
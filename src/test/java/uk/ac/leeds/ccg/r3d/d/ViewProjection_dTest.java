@@ -0,0 +1,148 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d;
+
+import java.awt.Dimension;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Ray_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Rectangle_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+
+/**
+ * Tests for ViewProjection_d.
+ *
+ * @author Andy Turner
+ */
+public class ViewProjection_dTest {
+
+    public ViewProjection_dTest() {
+    }
+
+    /**
+     * @param r The random number generator.
+     * @return A view-projection with a random focus, screen origin and row
+     * and column vectors that need not be perpendicular.
+     */
+    static ViewProjection_d getViewProjection(Random r) {
+        double[] v = new double[12];
+        for (int k = 0; k < 12; k++) {
+            v[k] = 20d * r.nextDouble() - 10d;
+        }
+        return new ViewProjection_d(v[0], v[1], v[2], v[3], v[4], v[5], v[6],
+                v[7], v[8], v[9], v[10], v[11]);
+    }
+
+    /**
+     * Test that unproject gives back points that are projected and that
+     * points on the screen from getScreenPoint project to their screen
+     * coordinates.
+     */
+    @Test
+    public void testProjectUnproject() {
+        Random r = new Random(17L);
+        double[] s = new double[3];
+        double[] x = new double[3];
+        for (int i = 0; i < 1000; i++) {
+            ViewProjection_d vp = getViewProjection(r);
+            if (Math.abs(vp.d) < 1d) {
+                continue;
+            }
+            String m = "i " + i;
+            // A point in the universe.
+            double[] p = {20d * r.nextDouble() - 10d,
+                20d * r.nextDouble() - 10d, 20d * r.nextDouble() - 10d};
+            double w = vp.project(p[0], p[1], p[2], s, 0);
+            if (w > 1d) {
+                assertEquals(w, vp.getW(p[0], p[1], p[2]), 1e-12, m);
+                assertEquals(s[0], vp.getRow(p[0], p[1], p[2]), 1e-12, m);
+                assertEquals(s[1], vp.getCol(p[0], p[1], p[2]), 1e-12, m);
+                vp.unproject(s[0], s[1], s[2], x, 0);
+                assertArrayEquals(p, x, 1e-8, m);
+            }
+            // A point on the screen.
+            double row = 200d * r.nextDouble() - 100d;
+            double col = 200d * r.nextDouble() - 100d;
+            vp.getScreenPoint(row, col, x, 0);
+            assertEquals(vp.d, vp.project(x[0], x[1], x[2], s, 0), 1e-8, m);
+            assertEquals(row, s[0], 1e-8, m);
+            assertEquals(col, s[1], 1e-8, m);
+            assertEquals(1d / vp.d, s[2], 1e-8, m);
+        }
+    }
+
+    /**
+     * Test that the ray for each pixel passes through the screen coordinates
+     * of the pixel, and that rows are measured along PQ from P and columns
+     * along PS from P.
+     */
+    @Test
+    public void testGetRay() {
+        V3D_Environment_d env = new V3D_Environment_d();
+        int nrows = 6;
+        int ncols = 9;
+        // A screen in the plane z = 4 with P at (-3, -2), Q at (-3, 4) and S
+        // at (6, -2), slightly off the axis of the focus.
+        V3D_Rectangle_d rect = new V3D_Rectangle_d(
+                new V3D_Point_d(env, -3d, -2d, 4d),
+                new V3D_Point_d(env, -3d, 4d, 4d),
+                new V3D_Point_d(env, 6d, 4d, 4d),
+                new V3D_Point_d(env, 6d, -2d, 4d));
+        V3D_Point_d focus = new V3D_Point_d(env, 1d, 0.5d, -3d);
+        Camera_d c = new Camera_d(env, V3D_Vector_d.ZERO, focus, rect,
+                new Dimension(ncols, nrows));
+        ViewProjection_d vp = c.viewProjection;
+        double[] x = new double[3];
+        for (int row = 0; row < nrows; row++) {
+            for (int col = 0; col < ncols; col++) {
+                String m = "row " + row + " col " + col;
+                V3D_Ray_d ray = c.getRay(row, col);
+                V3D_Point_d o = ray.l.getP();
+                V3D_Vector_d v = ray.l.v;
+                assertEquals(focus.getX(), o.getX(), 1e-12, m);
+                assertEquals(focus.getY(), o.getY(), 1e-12, m);
+                assertEquals(focus.getZ(), o.getZ(), 1e-12, m);
+                for (double t : new double[]{0.5d, 1d, 10d}) {
+                    double px = o.getX() + v.dx * t;
+                    double py = o.getY() + v.dy * t;
+                    double pz = o.getZ() + v.dz * t;
+                    assertEquals(row, vp.getRow(px, py, pz), 1e-9, m);
+                    assertEquals(col, vp.getCol(px, py, pz), 1e-9, m);
+                }
+                // The screen point is P + row * pixel along PQ + col * pixel
+                // along PS.
+                vp.getScreenPoint(row, col, x, 0);
+                assertEquals(-3d + col, x[0], 1e-9, m);
+                assertEquals(-2d + row, x[1], 1e-9, m);
+                assertEquals(4d, x[2], 1e-9, m);
+                // The centre of the pixel is in the pixel.
+                V3D_Point_d p = c.getPoint(row, col, 0d);
+                assertEquals(row, c.getScreenRow(p, 0d), m);
+                assertEquals(col, c.getScreenCol(p, 0d), m);
+            }
+        }
+        // Rows and columns outside the screen are negative or too large.
+        V3D_Point_d p = new V3D_Point_d(env, -3.5d, -2.5d, 4d);
+        assertEquals(-1, c.getScreenRow(p, 0d));
+        assertEquals(-1, c.getScreenCol(p, 0d));
+        p = new V3D_Point_d(env, 6.5d, 4.5d, 4d);
+        assertEquals(nrows, c.getScreenRow(p, 0d));
+        assertEquals(ncols, c.getScreenCol(p, 0d));
+    }
+}
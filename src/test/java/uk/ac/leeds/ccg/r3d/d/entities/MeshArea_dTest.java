@@ -0,0 +1,121 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.d.entities;
+
+import java.awt.Color;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.r3d.SceneGenerator;
+import uk.ac.leeds.ccg.r3d.SceneGenerator.Scene;
+import uk.ac.leeds.ccg.r3d.d.Universe_d;
+import uk.ac.leeds.ccg.r3d.io.d.STL_Reader_d;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_AABB_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Point_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.light.V3D_V_d;
+
+/**
+ * Tests for MeshArea_d.
+ *
+ * @author Andy Turner
+ */
+public class MeshArea_dTest {
+
+    public MeshArea_dTest() {
+    }
+
+    /**
+     * Test that a universe of mesh areas read from a binary STL file has the
+     * same points, AABBs, normals, attributes and coordinates as a universe
+     * of areas created eagerly from the same file.
+     */
+    @Test
+    public void testUniverse() throws Exception {
+        V3D_Environment_d env = new V3D_Environment_d();
+        V3D_Vector_d offset = new V3D_Vector_d(1d, -2d, 3d);
+        for (Scene scene : new Scene[]{Scene.SPHERE, Scene.TERRAIN}) {
+            Path p = Files.createTempFile("mesh", ".stl");
+            try {
+                new SceneGenerator(scene, 5000L, 1L).writeBinary(p);
+                Universe_d e = new Universe_d(env, p, offset, Color.YELLOW,
+                        true, 1d / 10000000d, 1d, false);
+                STL_Reader_d reader = new STL_Reader_d(env, true);
+                Universe_d a = new Universe_d(env,
+                        reader.readMesh(p, offset, 1d, false), Color.YELLOW);
+                String m = scene.toString();
+                assertEquals(e.closed, a.closed, m);
+                assertAABBEquals(e.aabb, a.aabb, m);
+                assertEquals(e.areas.size(), a.areas.size(), m);
+                double[] ec = new double[9];
+                double[] ac = new double[9];
+                for (int i = 0; i < e.areas.size(); i++) {
+                    String mi = m + " i " + i;
+                    Area_d ea = e.areas.get(i);
+                    Area_d aa = a.areas.get(i);
+                    assertTrue(aa instanceof MeshArea_d, mi);
+                    assertNull(aa.area, mi);
+                    V3D_Point_d[] ep = ea.getPointsArray();
+                    V3D_Point_d[] ap = aa.getPointsArray();
+                    assertEquals(ep.length, ap.length, mi);
+                    for (int k = 0; k < ep.length; k++) {
+                        assertEquals(ep[k].getX(), ap[k].getX(), mi);
+                        assertEquals(ep[k].getY(), ap[k].getY(), mi);
+                        assertEquals(ep[k].getZ(), ap[k].getZ(), mi);
+                    }
+                    assertAABBEquals(ea.getAABB(), aa.getAABB(), mi);
+                    V3D_V_d en = ea.getNormal();
+                    V3D_V_d an = aa.getNormal();
+                    assertEquals(en.x, an.x, mi);
+                    assertEquals(en.y, an.y, mi);
+                    assertEquals(en.z, an.z, mi);
+                    assertEquals(ea.attribute, aa.attribute, mi);
+                    assertEquals(ea.color, aa.color, mi);
+                    assertTrue(ea.getCoords(ec, 0), mi);
+                    assertTrue(aa.getCoords(ac, 0), mi);
+                    assertArrayEquals(ec, ac, mi);
+                    // The triangle created when wanted has the same corners.
+                    ap = aa.getArea().getPointsArray();
+                    for (int k = 0; k < ep.length; k++) {
+                        assertEquals(ep[k].getX(), ap[k].getX(), mi);
+                        assertEquals(ep[k].getY(), ap[k].getY(), mi);
+                        assertEquals(ep[k].getZ(), ap[k].getZ(), mi);
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /**
+     * Assert that two AABBs have the same bounds.
+     *
+     * @param e The expected AABB.
+     * @param a The actual AABB.
+     * @param m The message.
+     */
+    static void assertAABBEquals(V3D_AABB_d e, V3D_AABB_d a, String m) {
+        assertEquals(e.getXMin(), a.getXMin(), m);
+        assertEquals(e.getXMax(), a.getXMax(), m);
+        assertEquals(e.getYMin(), a.getYMin(), m);
+        assertEquals(e.getYMax(), a.getYMax(), m);
+        assertEquals(e.getZMin(), a.getZMin(), m);
+        assertEquals(e.getZMax(), a.getZMax(), m);
+    }
+}
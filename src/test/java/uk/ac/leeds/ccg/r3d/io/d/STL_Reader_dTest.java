@@ -0,0 +1,221 @@
+/*
+ * Copyright 2025 Centre for Computational Geography.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.leeds.ccg.r3d.io.d;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import uk.ac.leeds.ccg.r3d.SceneGenerator;
+import uk.ac.leeds.ccg.r3d.SceneGenerator.Scene;
+import uk.ac.leeds.ccg.r3d.d.entities.Area_d;
+import uk.ac.leeds.ccg.v3d.core.d.V3D_Environment_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.V3D_Vector_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.light.V3D_VLine_d;
+import uk.ac.leeds.ccg.v3d.geometry.d.light.V3D_V_d;
+
+/**
+ * Tests for STL_Reader_d.
+ *
+ * @author Andy Turner
+ */
+public class STL_Reader_dTest {
+
+    public STL_Reader_dTest() {
+    }
+
+    /**
+     * Read a binary STL file with topology assessed.
+     *
+     * @param p The file to read.
+     * @param parallelism The number of threads to use for decoding.
+     * @return The reader.
+     * @throws IOException If the file cannot be read.
+     */
+    static STL_Reader_d read(Path p, int parallelism) throws IOException {
+        STL_Reader_d r = new STL_Reader_d(new V3D_Environment_d(), true);
+        r.readBinary(p, V3D_Vector_d.ZERO, 1d, false, parallelism);
+        return r;
+    }
+
+    /**
+     * Write a sphere with triangles in several chunks.
+     *
+     * @param p The file to write.
+     * @return The scene generator.
+     * @throws IOException If the file cannot be written.
+     */
+    static SceneGenerator write(Path p) throws IOException {
+        SceneGenerator g = new SceneGenerator(Scene.SPHERE,
+                3L * STL_Reader_d.CHUNK, 1L);
+        g.writeBinary(p);
+        assertTrue(g.getNumberOfTriangles() > 2L * STL_Reader_d.CHUNK);
+        return g;
+    }
+
+    /**
+     * Assert that two readers read exactly the same triangles, in the same
+     * order, with the same stats and topology.
+     *
+     * @param e The expected reader.
+     * @param a The actual reader.
+     */
+    static void assertSameTriangles(STL_Reader_d e, STL_Reader_d a) {
+        assertEquals(e.triangles.size(), a.triangles.size());
+        double[] ec = new double[9];
+        double[] ac = new double[9];
+        for (int i = 0; i < e.triangles.size(); i++) {
+            Area_d et = e.triangles.get(i);
+            Area_d at = a.triangles.get(i);
+            String m = "i " + i;
+            assertTrue(et.getCoords(ec, 0), m);
+            assertTrue(at.getCoords(ac, 0), m);
+            assertArrayEquals(ec, ac, m);
+            assertEquals(et.normal.x, at.normal.x, m);
+            assertEquals(et.normal.y, at.normal.y, m);
+            assertEquals(et.normal.z, at.normal.z, m);
+            assertEquals(et.attribute, at.attribute, m);
+        }
+        assertEquals(e.stats.minx, a.stats.minx);
+        assertEquals(e.stats.maxx, a.stats.maxx);
+        assertEquals(e.stats.miny, a.stats.miny);
+        assertEquals(e.stats.maxy, a.stats.maxy);
+        assertEquals(e.stats.minz, a.stats.minz);
+        assertEquals(e.stats.maxz, a.stats.maxz);
+        assertEquals(e.topology.nPoints, a.topology.nPoints);
+        assertEquals(e.topology.nEdges, a.topology.nEdges);
+        assertEquals(e.closed, a.closed);
+    }
+
+    /**
+     * Test that decoding chunks in parallel gives the same triangles as
+     * decoding them in order on one thread.
+     */
+    @Test
+    public void testReadBinaryParallel() throws Exception {
+        Path p = Files.createTempFile("stl", ".stl");
+        try {
+            SceneGenerator g = write(p);
+            STL_Reader_d e = read(p, 1);
+            assertEquals(g.getNumberOfTriangles(), e.triangles.size());
+            assertTrue(e.closed);
+            for (int parallelism : new int[]{2, 3, 8}) {
+                assertSameTriangles(e, read(p, parallelism));
+            }
+            // Reading again adds to the triangles already read.
+            STL_Reader_d a = read(p, 4);
+            a.readBinary(p, V3D_Vector_d.ZERO, 1d, false, 4);
+            assertEquals(2 * e.triangles.size(), a.triangles.size());
+        } finally {
+            Files.deleteIfExists(p);
+        }
+    }
+
+    /**
+     * Test that bytes after the last complete record are ignored and that a
+     * file without a complete record cannot be read.
+     */
+    @Test
+    public void testReadBinaryPartialRecord() throws Exception {
+        Path p = Files.createTempFile("stl", ".stl");
+        Path q = Files.createTempFile("stl", ".stl");
+        try {
+            write(p);
+            STL_Reader_d e = read(p, 1);
+            byte[] b = Files.readAllBytes(p);
+            for (int extra : new int[]{1, STL_Reader_d.RECORD / 2,
+                STL_Reader_d.RECORD - 1}) {
+                Files.write(q, Arrays.copyOf(b, b.length + extra));
+                assertSameTriangles(e, read(q, 1));
+                assertSameTriangles(e, read(q, 4));
+            }
+            Files.write(q, Arrays.copyOf(b, STL_Reader_d.HEADER
+                    + STL_Reader_d.RECORD - 1));
+            assertThrows(EOFException.class, () -> read(q, 4));
+        } finally {
+            Files.deleteIfExists(p);
+            Files.deleteIfExists(q);
+        }
+    }
+
+    /**
+     * Test that the number of triangles read is given by the size of the file
+     * when the number in the header disagrees with it.
+     */
+    @Test
+    public void testReadBinaryHeaderCount() throws Exception {
+        Path p = Files.createTempFile("stl", ".stl");
+        try {
+            write(p);
+            STL_Reader_d e = read(p, 1);
+            int n = e.triangles.size();
+            for (int count : new int[]{0, 1, n / 2, n + 1, 2 * n, -1}) {
+                try (FileChannel fc = FileChannel.open(p,
+                        StandardOpenOption.WRITE)) {
+                    ByteBuffer b = ByteBuffer.allocate(4)
+                            .order(ByteOrder.LITTLE_ENDIAN).putInt(count);
+                    fc.write(b.flip(), 80);
+                }
+                String m = "count " + count;
+                assertEquals(n, read(p, 1).triangles.size(), m);
+                assertSameTriangles(e, read(p, 4));
+            }
+        } finally {
+            Files.deleteIfExists(p);
+        }
+    }
+
+    /**
+     * Test that the deprecated point and edge counts agree with the topology.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testGetCounts() throws Exception {
+        Path p = Files.createTempFile("stl", ".stl");
+        try {
+            new SceneGenerator(Scene.SPHERE, 1000L, 1L).writeBinary(p);
+            STL_Reader_d r = read(p, 4);
+            HashMap<V3D_V_d, Integer> pointCounts = r.getPointCounts();
+            assertEquals(r.topology.nPoints, pointCounts.size());
+            assertEquals(r.topology.minPointCount,
+                    Collections.min(pointCounts.values()).intValue());
+            assertEquals(r.topology.maxPointCount,
+                    Collections.max(pointCounts.values()).intValue());
+            HashMap<V3D_VLine_d, Integer> edgeCounts = r.getEdgeCounts();
+            assertEquals(r.topology.nEdges, edgeCounts.size());
+            assertEquals(r.topology.minEdgeCount,
+                    Collections.min(edgeCounts.values()).intValue());
+            assertEquals(r.topology.maxEdgeCount,
+                    Collections.max(edgeCounts.values()).intValue());
+            // The counts are not kept if topology is not assessed.
+            r = new STL_Reader_d(new V3D_Environment_d(), false);
+            r.readBinary(p, V3D_Vector_d.ZERO, 1d, false);
+            assertNull(r.getPointCounts());
+            assertNull(r.getEdgeCounts());
+        } finally {
+            Files.deleteIfExists(p);
+        }
+    }
+}